@@ -0,0 +1,361 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.http.RequestScheduler;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.metrics.LatencyHistogram;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Probes the latency and throughput of the connection of a client by fetching the current user repeatedly.
+ *
+ * The probe first makes a number of sequential requests, telling whether connections are kept alive, and then a number
+ * of concurrent requests, telling the throughput. The connection times, whether the responses were compressed and the
+ * latency percentiles are taken from the requests of both parts.
+ *
+ * The requests are made with a client of the probe's own, created with the server, private token and proxy settings of
+ * the given client, so the given client is never changed: neither its connections, its request limit nor its metrics.
+ * The probe's client is given a limit of requests in flight of at least the number of concurrent requests, and is shut
+ * down once the probe is done, failing the requests still in flight if the probe timed out.
+ */
+public class ConnectionProbe {
+    /** The default number of sequential requests. */
+    public static final int DEFAULT_SEQUENTIAL_REQUESTS = 10;
+
+    /** The default number of concurrent requests. */
+    public static final int DEFAULT_CONCURRENT_REQUESTS = 10;
+
+    /** The default time in milliseconds the probe may take. */
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /** The percentiles of the latency reported. */
+    private static final double[] PERCENTILES = { 0.5, 0.95, 0.99 };
+
+    /** The client with the settings to probe the connection with. */
+    private final GitLabApiClient client;
+
+    /** The number of sequential requests. */
+    private int sequentialRequests = DEFAULT_SEQUENTIAL_REQUESTS;
+
+    /** The number of concurrent requests. */
+    private int concurrentRequests = DEFAULT_CONCURRENT_REQUESTS;
+
+    /** The time in nanoseconds the probe may take. */
+    private long timeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT);
+
+    /**
+     * Creates a probe.
+     *
+     * @param client the client with the settings to probe the connection with (left unchanged)
+     */
+    public ConnectionProbe(GitLabApiClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Sets the number of sequential requests.
+     *
+     * @param requests the number of requests
+     * @return this object for chaining
+     */
+    public ConnectionProbe withSequentialRequests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("Less than one sequential request");
+        }
+        this.sequentialRequests = requests;
+        return this;
+    }
+
+    /**
+     * Sets the number of concurrent requests.
+     *
+     * @param requests the number of requests (0 to only make sequential requests)
+     * @return this object for chaining
+     */
+    public ConnectionProbe withConcurrentRequests(int requests) {
+        if (requests < 0) {
+            throw new IllegalArgumentException("Negative number of concurrent requests");
+        }
+        this.concurrentRequests = requests;
+        return this;
+    }
+
+    /**
+     * Sets the time the probe may take.
+     *
+     * @param timeout the time
+     * @param unit    the time unit of the time
+     * @return this object for chaining
+     */
+    public ConnectionProbe withTimeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Runs the probe.
+     *
+     * @return the outcome of the probe, with the requests completed in time if it timed out
+     * @throws AuthenticationFailedException if the private token of the client is incorrect
+     * @throws InterruptedException          if interrupted while waiting for the requests
+     */
+    public ConnectionProbeResult run() throws AuthenticationFailedException, InterruptedException {
+        final long deadline = System.nanoTime() + timeout;
+        final GitLabApiClient probeClient = createProbeClient();
+        final EndpointMetrics endpoint = probeClient.getMetrics().getEndpoint("GET", "/user");
+        final Counters before = new Counters(endpoint);
+        final Requests requests = new Requests(probeClient);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrentRequests),
+                new ProbeThreadFactory());
+        boolean isTimedOut = false;
+        Counters sequential = null;
+        int sequentialMade = 0;
+        double throughput = 0;
+        try {
+            Future<Void> sequentialResult = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws AuthenticationFailedException {
+                    for (int i = 0; i < sequentialRequests && System.nanoTime() < deadline; i++) {
+                        requests.make();
+                    }
+                    return null;
+                }
+            });
+            isTimedOut = !await(sequentialResult, deadline);
+            sequential = new Counters(endpoint);
+            sequentialMade = requests.successes.get() + requests.failures.get();
+            // stopped at the deadline
+            isTimedOut |= sequentialMade < sequentialRequests;
+
+            if (!isTimedOut && concurrentRequests > 0) {
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(concurrentRequests);
+                for (int i = 0; i < concurrentRequests; i++) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws AuthenticationFailedException {
+                            requests.make();
+                            return null;
+                        }
+                    });
+                }
+                int successesBefore = requests.successes.get();
+                long start = System.nanoTime();
+                for (Future<Void> result : executor.invokeAll(tasks, remaining(deadline), TimeUnit.NANOSECONDS)) {
+                    isTimedOut |= !await(result, deadline);
+                }
+                long elapsed = System.nanoTime() - start;
+                throughput = (requests.successes.get() - successesBefore) * (double)TimeUnit.SECONDS.toNanos(1)
+                        / Math.max(1, elapsed);
+            }
+        } finally {
+            // fails the requests still in flight if the probe timed out
+            probeClient.shutdown();
+            executor.shutdownNow();
+        }
+
+        Counters after = new Counters(endpoint);
+        long[] latencies = new long[PERCENTILES.length];
+        requests.latencies.getPercentiles(PERCENTILES, latencies);
+        long connections = after.connects - before.connects;
+        long tlsHandshakes = after.tlsHandshakes - before.tlsHandshakes;
+        return new ConnectionProbeResult(requests.successes.get(), requests.failures.get(), latencies, connections,
+                sequential.connects - before.connects, sequentialMade,
+                (connections > 0) ? (after.connectTime - before.connectTime) / connections : 0,
+                (tlsHandshakes > 0) ? (after.tlsTime - before.tlsTime) / tlsHandshakes : 0,
+                after.compressedResponses - before.compressedResponses, throughput, isTimedOut,
+                requests.firstFailure.get());
+    }
+
+    /**
+     * Creates the client making the requests of the probe with the settings of the given client.
+     *
+     * @return the client
+     */
+    private GitLabApiClient createProbeClient() {
+        final GitLabApiClient probeClient = new GitLabApiClient(client.getHost(), client.getPrivateToken(),
+                client.getProxyHost(), client.getProxyPort(), client.getProxyUser(), client.getProxyPassword(),
+                client.getExcludedHostnames());
+        final RequestScheduler scheduler = probeClient.getScheduler();
+        if (scheduler.getLimit() < concurrentRequests) {
+            // let all concurrent requests be in flight at once instead of queueing in the scheduler
+            scheduler.setLimit(concurrentRequests);
+        }
+        return probeClient;
+    }
+
+    /**
+     * Waits for a part of the probe until the deadline.
+     *
+     * @param result   the result of the part
+     * @param deadline the deadline in nanoseconds
+     * @return true if the part completed in time
+     * @throws AuthenticationFailedException if the private token of the client is incorrect
+     * @throws InterruptedException          if interrupted while waiting
+     */
+    private static boolean await(Future<Void> result, long deadline)
+            throws AuthenticationFailedException, InterruptedException {
+        try {
+            result.get(remaining(deadline), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (CancellationException e) {
+            // cancelled by invokeAll at the deadline
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AuthenticationFailedException) {
+                throw (AuthenticationFailedException)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the time left until a deadline.
+     *
+     * @param deadline the deadline in nanoseconds
+     * @return the time left in nanoseconds (0 if passed)
+     */
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * The requests of a probe, made from any thread.
+     */
+    private static final class Requests {
+        /** The latencies of the successful requests. */
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        /** The number of successful requests. */
+        private final AtomicInteger successes = new AtomicInteger();
+
+        /** The number of failed requests. */
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /** The first failure (or null if none). */
+        private final AtomicReference<String> firstFailure = new AtomicReference<String>();
+
+        /** The client making the requests. */
+        private final GitLabApiClient probeClient;
+
+        /**
+         * Creates the requests of a probe.
+         *
+         * @param probeClient the client making the requests
+         */
+        private Requests(GitLabApiClient probeClient) {
+            this.probeClient = probeClient;
+        }
+
+        /**
+         * Makes a request, recording its outcome.
+         *
+         * @throws AuthenticationFailedException if the private token of the client is incorrect
+         */
+        private void make() throws AuthenticationFailedException {
+            long start = System.nanoTime();
+            try {
+                probeClient.getCurrentUser();
+                latencies.record(System.nanoTime() - start);
+                successes.incrementAndGet();
+            } catch (AuthenticationFailedException e) {
+                throw e;
+            } catch (GitLabApiException e) {
+                failures.incrementAndGet();
+                firstFailure.compareAndSet(null, (e.getCause() != null) ? e.getCause().toString() : e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The counters of the connections of the endpoint probed at a point in time.
+     */
+    private static final class Counters {
+        /** The number of connections opened. */
+        private final long connects;
+
+        /** The time spent connecting in nanoseconds. */
+        private final long connectTime;
+
+        /** The number of TLS handshakes. */
+        private final long tlsHandshakes;
+
+        /** The time spent in TLS handshakes in nanoseconds. */
+        private final long tlsTime;
+
+        /** The number of responses with a compressed body. */
+        private final long compressedResponses;
+
+        /**
+         * Reads the counters of an endpoint.
+         *
+         * @param endpoint the metrics of the endpoint
+         */
+        private Counters(EndpointMetrics endpoint) {
+            LatencyHistogram connect = endpoint.getPhaseTime(RequestPhase.CONNECT);
+            LatencyHistogram tls = endpoint.getPhaseTime(RequestPhase.TLS);
+            connects = connect.getCount();
+            connectTime = connect.getSum(TimeUnit.NANOSECONDS);
+            tlsHandshakes = tls.getCount();
+            tlsTime = tls.getSum(TimeUnit.NANOSECONDS);
+            compressedResponses = endpoint.getCompressedResponses();
+        }
+    }
+
+    /**
+     * Creates daemon threads making the requests of probes.
+     */
+    private static final class ProbeThreadFactory implements ThreadFactory {
+        /** The number of created threads. */
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "GitLab connection probe " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link ConnectionProbe}.
+ *
+ * Instances are immutable.
+ */
+public final class ConnectionProbeResult {
+    /** The number of successful requests. */
+    private final int requests;
+
+    /** The number of failed requests. */
+    private final int failures;
+
+    /** The median latency of the successful requests in nanoseconds. */
+    private final long p50;
+
+    /** The 95th percentile of the latency of the successful requests in nanoseconds. */
+    private final long p95;
+
+    /** The 99th percentile of the latency of the successful requests in nanoseconds. */
+    private final long p99;
+
+    /** The number of connections opened. */
+    private final long connections;
+
+    /** The number of connections opened by the sequential requests. */
+    private final long sequentialConnections;
+
+    /** The number of sequential requests made. */
+    private final int sequentialRequests;
+
+    /** The mean time of connecting in nanoseconds. */
+    private final long connectTime;
+
+    /** The mean time of the TLS handshakes in nanoseconds (0 without TLS). */
+    private final long tlsTime;
+
+    /** The number of responses with a compressed body. */
+    private final long compressedResponses;
+
+    /** The number of concurrent requests completed per second. */
+    private final double throughput;
+
+    /** Whether the probe was cut short by its timeout. */
+    private final boolean isTimedOut;
+
+    /** The first failure (or null if none). */
+    private final String failure;
+
+    /**
+     * Creates the outcome of a probe.
+     *
+     * @param requests              the number of successful requests
+     * @param failures              the number of failed requests
+     * @param latencies             the median, 95th and 99th percentiles of the latency in nanoseconds
+     * @param connections           the number of connections opened
+     * @param sequentialConnections the number of connections opened by the sequential requests
+     * @param sequentialRequests    the number of sequential requests made
+     * @param connectTime           the mean time of connecting in nanoseconds
+     * @param tlsTime               the mean time of the TLS handshakes in nanoseconds (0 without TLS)
+     * @param compressedResponses   the number of responses with a compressed body
+     * @param throughput            the number of concurrent requests completed per second
+     * @param isTimedOut            whether the probe was cut short by its timeout
+     * @param failure               the first failure (or null if none)
+     */
+    /* package */ ConnectionProbeResult(int requests, int failures, long[] latencies, long connections,
+                                        long sequentialConnections, int sequentialRequests, long connectTime,
+                                        long tlsTime, long compressedResponses, double throughput,
+                                        boolean isTimedOut, String failure) {
+        this.requests = requests;
+        this.failures = failures;
+        this.p50 = latencies[0];
+        this.p95 = latencies[1];
+        this.p99 = latencies[2];
+        this.connections = connections;
+        this.sequentialConnections = sequentialConnections;
+        this.sequentialRequests = sequentialRequests;
+        this.connectTime = connectTime;
+        this.tlsTime = tlsTime;
+        this.compressedResponses = compressedResponses;
+        this.throughput = throughput;
+        this.isTimedOut = isTimedOut;
+        this.failure = failure;
+    }
+
+    /**
+     * Gets the number of successful requests.
+     *
+     * @return the number of requests
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of failed requests.
+     *
+     * @return the number of requests
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the median latency of the successful requests.
+     *
+     * @param unit the time unit of the latency
+     * @return the latency
+     */
+    public long getP50(TimeUnit unit) {
+        return unit.convert(p50, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the 95th percentile of the latency of the successful requests.
+     *
+     * @param unit the time unit of the latency
+     * @return the latency
+     */
+    public long getP95(TimeUnit unit) {
+        return unit.convert(p95, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the 99th percentile of the latency of the successful requests.
+     *
+     * @param unit the time unit of the latency
+     * @return the latency
+     */
+    public long getP99(TimeUnit unit) {
+        return unit.convert(p99, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of connections opened.
+     *
+     * @return the number of connections
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * Checks whether connections were kept alive, i.e. whether the sequential requests reused a connection.
+     *
+     * @return true if kept alive
+     */
+    public boolean isKeepAlive() {
+        return sequentialRequests > 1 && sequentialConnections < sequentialRequests;
+    }
+
+    /**
+     * Gets the mean time of connecting.
+     *
+     * @param unit the time unit of the time
+     * @return the time
+     */
+    public long getConnectTime(TimeUnit unit) {
+        return unit.convert(connectTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the mean time of the TLS handshakes.
+     *
+     * @param unit the time unit of the time
+     * @return the time (0 without TLS)
+     */
+    public long getTlsTime(TimeUnit unit) {
+        return unit.convert(tlsTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks whether the server compressed the responses.
+     *
+     * @return true if any response had a compressed body
+     */
+    public boolean isCompressed() {
+        return compressedResponses > 0;
+    }
+
+    /**
+     * Gets the number of concurrent requests completed per second.
+     *
+     * @return the throughput (0 if no concurrent requests completed)
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Checks whether the probe was cut short by its timeout.
+     *
+     * @return true if timed out
+     */
+    public boolean isTimedOut() {
+        return isTimedOut;
+    }
+
+    /**
+     * Gets the first failure.
+     *
+     * @return the reason the first failed request failed or null if none failed
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return requests + " requests (" + failures + " failed" + (isTimedOut ? ", timed out" : "") + "), latency p50 "
+                + getP50(TimeUnit.MILLISECONDS) + " ms, p95 " + getP95(TimeUnit.MILLISECONDS) + " ms, p99 "
+                + getP99(TimeUnit.MILLISECONDS) + " ms, " + connections + " connections (connect "
+                + getConnectTime(TimeUnit.MILLISECONDS) + " ms, TLS " + getTlsTime(TimeUnit.MILLISECONDS) + " ms), "
+                + "keep-alive " + (isKeepAlive() ? "on" : "off") + ", compression " + (isCompressed() ? "on" : "off")
+                + ", " + String.format("%.1f", throughput) + " requests/s";
+    }
+}
@@ -29,6 +29,7 @@ import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
+import com.mashape.unirest.request.BaseRequest;
 import com.mashape.unirest.request.GetRequest;
 import com.mashape.unirest.request.HttpRequestWithBody;
 import com.mashape.unirest.request.body.MultipartBody;
@@ -38,29 +39,69 @@ import com.sonymobile.gitlab.exceptions.GitLabApiException;
 import com.sonymobile.gitlab.exceptions.GroupNotFoundException;
 import com.sonymobile.gitlab.exceptions.NotFoundException;
 import com.sonymobile.gitlab.exceptions.UserNotFoundException;
+import com.sonymobile.gitlab.helpers.JSONArrayDecoder;
+import com.sonymobile.gitlab.helpers.JSONObjectDecoder;
+import com.sonymobile.gitlab.helpers.LazyJSONArrayList;
+import com.sonymobile.gitlab.http.AdaptiveLimit;
+import com.sonymobile.gitlab.http.ConsumerQuotas;
+import com.sonymobile.gitlab.http.ConsumerUsage;
+import com.sonymobile.gitlab.http.HedgedRequest;
+import com.sonymobile.gitlab.http.HedgingPolicy;
+import com.sonymobile.gitlab.http.HttpRequests;
 import com.sonymobile.gitlab.http.PatternProxyRoutePlanner;
+import com.sonymobile.gitlab.http.ReadEndpoint;
+import com.sonymobile.gitlab.http.ReadEndpointRouter;
+import com.sonymobile.gitlab.http.RequestContext;
+import com.sonymobile.gitlab.http.RequestPriority;
+import com.sonymobile.gitlab.http.RequestScheduler;
+import com.sonymobile.gitlab.http.TimedConnectionManager;
+import com.sonymobile.gitlab.http.TimedSocketFactory;
+import com.sonymobile.gitlab.metrics.ApiCall;
+import com.sonymobile.gitlab.metrics.ApiCallListener;
+import com.sonymobile.gitlab.metrics.ApiMetrics;
+import com.sonymobile.gitlab.metrics.CacheResult;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.metrics.PhaseTimer;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+import com.sonymobile.gitlab.metrics.Span;
+import com.sonymobile.gitlab.metrics.Tracer;
 import com.sonymobile.gitlab.model.FullGitLabUserInfo;
 import com.sonymobile.gitlab.model.GitLabGroupInfo;
 import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
 import com.sonymobile.gitlab.model.GitLabSessionInfo;
 import com.sonymobile.gitlab.model.GitLabUserInfo;
+import com.sonymobile.gitlab.model.GitLabUserPool;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.pool.PoolStats;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
-import static com.sonymobile.gitlab.helpers.JSONArrayIterator.iterator;
+import static com.sonymobile.gitlab.helpers.JSONArrayDecoder.decode;
 import static java.util.Collections.unmodifiableList;
 
 /**
@@ -75,9 +116,66 @@ public class GitLabApiClient {
     /** HTTP status code 201 Created. */
     private static final int HTTP_201_CREATED = 201;
 
+    /** HTTP status code 300 Multiple Choices, the first status code after the successful ones. */
+    private static final int HTTP_300_MULTIPLE_CHOICES = 300;
+
+    /** HTTP status code 400 Bad Request, the first status code of the client errors. */
+    private static final int HTTP_400_BAD_REQUEST = 400;
+
     /** HTTP status code 404 Not Found. */
     private static final int HTTP_404_NOT_FOUND = 404;
 
+    /** HTTP status code 500 Internal Server Error. */
+    private static final int HTTP_500_INTERNAL_SERVER_ERROR = 500;
+
+    /** The path of the API relative to the host. */
+    private static final String API_PATH = "/api/v3";
+
+    /** The path of the resource requested to check the health of read endpoints. */
+    private static final String HEALTH_CHECK_PATH = "/user";
+
+    /** The number of items requested per page of a listing (the highest number the API allows). */
+    private static final int PAGE_SIZE = 100;
+
+    /** Pattern to match the link to the next page in the Link header of a page of a listing. */
+    private static final Pattern NEXT_PAGE_LINK = Pattern.compile("rel=\"next\"");
+
+    /** Decoder creating groups from JSON objects. */
+    private static final JSONObjectDecoder<GitLabGroupInfo> GROUP_DECODER = new JSONObjectDecoder<GitLabGroupInfo>() {
+        @Override
+        public GitLabGroupInfo decode(JSONObject jsonObject) {
+            return new GitLabGroupInfo(jsonObject);
+        }
+    };
+
+    /** Decoder creating sessions from JSON objects. */
+    private static final JSONObjectDecoder<GitLabSessionInfo> SESSION_DECODER =
+            new JSONObjectDecoder<GitLabSessionInfo>() {
+                @Override
+                public GitLabSessionInfo decode(JSONObject jsonObject) {
+                    return new GitLabSessionInfo(jsonObject);
+                }
+            };
+
+    /** The call of each thread with a successful response which hasn't been decoded yet. */
+    private static final ThreadLocal<CallTimer> UNDECODED_CALL = new ThreadLocal<CallTimer>();
+
+    /** The timer of each thread reused by the calls which are neither listened to nor traced. */
+    private static final ThreadLocal<CallTimer> UNOBSERVED_CALL = new ThreadLocal<CallTimer>() {
+        @Override
+        protected CallTimer initialValue() {
+            return new CallTimer();
+        }
+    };
+
+    /** Decoder creating users from JSON objects. */
+    private static final JSONObjectDecoder<GitLabUserInfo> USER_DECODER = new JSONObjectDecoder<GitLabUserInfo>() {
+        @Override
+        public GitLabUserInfo decode(JSONObject jsonObject) {
+            return new FullGitLabUserInfo(jsonObject);
+        }
+    };
+
     /** The URL of the host server excluding the path. */
     private final String host;
 
@@ -99,6 +197,39 @@ public class GitLabApiClient {
     /** The hosts excluded from the proxy (or null if no exclusions are used). */
     private final List<Pattern> excludedHostnames;
 
+    /** The pool sharing user identities between group members (shared with impersonating clients). */
+    private GitLabUserPool userPool = new GitLabUserPool();
+
+    /** The HTTP client with the connection pool (shared with impersonating clients). */
+    private HttpClient httpClient;
+
+    /** The connection pool of the HTTP client (shared with impersonating clients). */
+    private TimedConnectionManager connectionManager;
+
+    /** The scheduler of the requests (shared with impersonating clients). */
+    private RequestScheduler scheduler = new RequestScheduler().withAdaptiveLimit(new AdaptiveLimit());
+
+    /** The quotas and usage of the consumers of the client (shared with impersonating clients). */
+    private ConsumerQuotas consumerQuotas = new ConsumerQuotas();
+
+    /** The metrics of the requests by endpoint template (shared with impersonating clients). */
+    private ApiMetrics metrics = new ApiMetrics();
+
+    /** The policy for hedging GET requests (or null to not hedge). */
+    private volatile HedgingPolicy hedgingPolicy = null;
+
+    /** The router of GET requests to read endpoints (or null to read from the host). */
+    private volatile ReadEndpointRouter readEndpointRouter = null;
+
+    /** The listener notified of every API call (or null if nobody is listening). */
+    private volatile ApiCallListener callListener = null;
+
+    /** The tracer starting the spans of the calls and their requests. */
+    private volatile Tracer tracer = Tracer.NOOP;
+
+    /** Whether the context of the span of each request is passed to the server. */
+    private volatile boolean isTraceHeaderAdded = false;
+
     /**
      * The
      *
@@ -165,7 +296,7 @@ public class GitLabApiClient {
         this.proxyPassword = proxyPassword;
         this.excludedHostnames = excludedHostnames;
 
-        // create the HTTP client used by Unirest
+        // create the HTTP client with a connection pool of its own
         initializeHttpClient();
     }
 
@@ -252,7 +383,7 @@ public class GitLabApiClient {
         fields.put("password", password);
 
         // create a session object with the response
-        return new GitLabSessionInfo(post("/session", fields, false).getBody().getObject());
+        return decodeObject(post("/session", fields, false), SESSION_DECODER);
     }
 
     /**
@@ -265,16 +396,42 @@ public class GitLabApiClient {
      */
     public final List<GitLabGroupInfo> getGroups()
             throws GitLabApiException {
-        // get the json array with the groups from the response
-        JSONArray jsonArray = get("/groups", null).getBody().getArray();
+        return getGroups(null);
+    }
 
-        // convert all objects in the json array to groups
-        ArrayList<GitLabGroupInfo> groups = new ArrayList<GitLabGroupInfo>(jsonArray.length());
-        for (final JSONObject jsonObject : iterator(jsonArray)) {
-            groups.add(new GitLabGroupInfo(jsonObject));
-        }
+    /**
+     * Fetches the group the authenticated user can see, decoding large responses in parallel.
+     *
+     * Admin users can see all groups, others can only see groups they are members of.
+     *
+     * @param executor the executor to decode the groups with (or null to decode on the calling thread)
+     * @return a list of groups
+     * @throws GitLabApiException if the request failed
+     * @see JSONArrayDecoder#decode(JSONArray, JSONObjectDecoder, ExecutorService)
+     */
+    public final List<GitLabGroupInfo> getGroups(ExecutorService executor)
+            throws GitLabApiException {
+        // get the json array with the groups from all pages and convert all objects to groups
+        return decodeArray(getAllPages("/groups"), GROUP_DECODER, executor);
+    }
 
-        return groups;
+    /**
+     * Fetches the group the authenticated user can see without decoding them up front.
+     *
+     * Each group is decoded the first time it is read from the list, and the group IDs can be read without decoding
+     * the groups at all. Prefer this over {@link #getGroups()} when only scanning for a few groups.
+     *
+     * @return an unmodifiable list of groups
+     * @throws GitLabApiException if the request failed
+     */
+    public final LazyJSONArrayList<GitLabGroupInfo> getLazyGroups()
+            throws GitLabApiException {
+        try {
+            return new LazyJSONArrayList<GitLabGroupInfo>(getAllPages("/groups"), GROUP_DECODER);
+        } finally {
+            // the groups are decoded when first accessed
+            completeCall(0);
+        }
     }
 
     /**
@@ -288,12 +445,28 @@ public class GitLabApiClient {
             throws GitLabApiException {
         try {
             // create a group object with the response
-            return new GitLabGroupInfo(get("/groups/" + groupId, null).getBody().getObject());
+            return decodeObject(get("/groups/" + groupId, null), GROUP_DECODER);
         } catch (NotFoundException e) {
             throw new GroupNotFoundException("A group with group ID " + groupId + " does not exist");
         }
     }
 
+    /**
+     * Returns the group with a specific group ID if it exists.
+     *
+     * Unlike {@link #getGroup(int)} a missing group is not treated as an error, so no exception is created for it.
+     *
+     * @param groupId a group ID
+     * @return the group or null if the group is missing
+     * @throws GitLabApiException if the request failed
+     */
+    public final GitLabGroupInfo findGroup(int groupId)
+            throws GitLabApiException {
+        final HttpResponse<JsonNode> response = getIfFound("/groups/" + groupId, null);
+        // create a group object with the response
+        return (response != null) ? decodeObject(response, GROUP_DECODER) : null;
+    }
+
     /**
      * Fetches the members of a group.
      *
@@ -303,21 +476,34 @@ public class GitLabApiClient {
      */
     public final List<GitLabGroupMemberInfo> getGroupMembers(int groupId)
             throws GitLabApiException {
-        JSONArray jsonArray;
+        return getGroupMembers(groupId, null);
+    }
+
+    /**
+     * Fetches the members of a group, decoding large responses in parallel.
+     *
+     * @param groupId  an ID of a group
+     * @param executor the executor to decode the members with (or null to decode on the calling thread)
+     * @return the members of the group
+     * @throws GitLabApiException if the request failed or if the group is missing
+     * @see JSONArrayDecoder#decode(JSONArray, JSONObjectDecoder, ExecutorService)
+     */
+    public final List<GitLabGroupMemberInfo> getGroupMembers(final int groupId, ExecutorService executor)
+            throws GitLabApiException {
+        final JSONArray members;
         try {
-            // get the json array with the group members from the response
-            jsonArray = get("/groups/" + groupId + "/members", null).getBody().getArray();
+            members = getAllPages("/groups/" + groupId + "/members");
         } catch (NotFoundException e) {
             throw new GroupNotFoundException("A group with group ID " + groupId + " does not exist");
         }
 
-        // convert all objects in the json array to groups
-        ArrayList<GitLabGroupMemberInfo> members = new ArrayList<GitLabGroupMemberInfo>(jsonArray.length());
-        for (final JSONObject jsonObject : iterator(jsonArray)) {
-            members.add(new GitLabGroupMemberInfo(jsonObject, groupId));
-        }
-
-        return members;
+        // convert all objects in the json array to group members sharing the user identities
+        return decodeArray(members, new JSONObjectDecoder<GitLabGroupMemberInfo>() {
+            @Override
+            public GitLabGroupMemberInfo decode(JSONObject jsonObject) {
+                return new GitLabGroupMemberInfo(jsonObject, groupId, userPool);
+            }
+        }, executor);
     }
 
     /**
@@ -328,16 +514,40 @@ public class GitLabApiClient {
      */
     public final List<GitLabUserInfo> getUsers()
             throws GitLabApiException {
-        // get the json array with the users from the response
-        JSONArray jsonArray = get("/users", null).getBody().getArray();
+        return getUsers(null);
+    }
 
-        // convert all objects in the json array to users
-        ArrayList<GitLabUserInfo> users = new ArrayList<GitLabUserInfo>(jsonArray.length());
-        for (final JSONObject jsonObject : iterator(jsonArray)) {
-            users.add(new FullGitLabUserInfo(jsonObject));
-        }
+    /**
+     * Fetches all users from the system, decoding large responses in parallel.
+     *
+     * @param executor the executor to decode the users with (or null to decode on the calling thread)
+     * @return a list of all users
+     * @throws GitLabApiException if the request failed
+     * @see JSONArrayDecoder#decode(JSONArray, JSONObjectDecoder, ExecutorService)
+     */
+    public final List<GitLabUserInfo> getUsers(ExecutorService executor)
+            throws GitLabApiException {
+        // get the json array with the users from all pages and convert all objects to users
+        return decodeArray(getAllPages("/users"), USER_DECODER, executor);
+    }
 
-        return users;
+    /**
+     * Fetches all users from the system without decoding them up front.
+     *
+     * Each user is decoded the first time it is read from the list, and the user IDs can be read without decoding
+     * the users at all. Prefer this over {@link #getUsers()} when only scanning for a few users.
+     *
+     * @return an unmodifiable list of all users
+     * @throws GitLabApiException if the request failed
+     */
+    public final LazyJSONArrayList<GitLabUserInfo> getLazyUsers()
+            throws GitLabApiException {
+        try {
+            return new LazyJSONArrayList<GitLabUserInfo>(getAllPages("/users"), USER_DECODER);
+        } finally {
+            // the users are decoded when first accessed
+            completeCall(0);
+        }
     }
 
     /**
@@ -351,7 +561,7 @@ public class GitLabApiClient {
     public final GitLabUserInfo getCurrentUser()
             throws GitLabApiException {
         // create a user object with the response
-        return new FullGitLabUserInfo(get("/user", null).getBody().getObject());
+        return decodeObject(get("/user", null), USER_DECODER);
     }
 
     /**
@@ -365,12 +575,28 @@ public class GitLabApiClient {
             throws GitLabApiException {
         try {
             // create a user object with the response
-            return new FullGitLabUserInfo(get("/users/" + userId, null).getBody().getObject());
+            return decodeObject(get("/users/" + userId, null), USER_DECODER);
         } catch (NotFoundException e) {
             throw new UserNotFoundException("A user with group ID " + userId + " does not exist");
         }
     }
 
+    /**
+     * Returns the user with a specific user ID if it exists.
+     *
+     * Unlike {@link #getUser(int)} a missing user is not treated as an error, so no exception is created for it.
+     *
+     * @param userId a user ID
+     * @return the user or null if the user is missing
+     * @throws GitLabApiException if the request failed
+     */
+    public final GitLabUserInfo findUser(int userId)
+            throws GitLabApiException {
+        final HttpResponse<JsonNode> response = getIfFound("/users/" + userId, null);
+        // create a user object with the response
+        return (response != null) ? decodeObject(response, USER_DECODER) : null;
+    }
+
     /**
      * Returns the URL of the host server.
      *
@@ -428,10 +654,10 @@ public class GitLabApiClient {
     /**
      * Returns the excluded hosts.
      *
-     * @return a list of hostname patterns
+     * @return a list of hostname patterns (or null if no hosts are excluded)
      */
     public final List<Pattern> getExcludedHostnames() {
-        return unmodifiableList(excludedHostnames);
+        return (excludedHostnames != null) ? unmodifiableList(excludedHostnames) : null;
     }
 
     /**
@@ -440,7 +666,7 @@ public class GitLabApiClient {
      * @return an URL
      */
     private final String getApiUrl() {
-        return host + "/api/v3";
+        return host + API_PATH;
     }
 
     /**
@@ -453,18 +679,261 @@ public class GitLabApiClient {
      * @return a API client for the impersonated user
      */
     public final GitLabApiClient asUser(int userId) {
-        return new ImpersonatingGitLabApiClient(
+        final GitLabApiClient client = new ImpersonatingGitLabApiClient(
                 userId,
                 host, privateToken,
                 proxyHost, proxyPort,
                 proxyUser, proxyPassword,
                 excludedHostnames);
+        // share the connections and user identities with this client
+        client.userPool = userPool;
+        client.httpClient = httpClient;
+        client.connectionManager = connectionManager;
+        client.scheduler = scheduler;
+        client.consumerQuotas = consumerQuotas;
+        client.metrics = metrics;
+        client.hedgingPolicy = hedgingPolicy;
+        client.readEndpointRouter = readEndpointRouter;
+        client.callListener = callListener;
+        client.tracer = tracer;
+        client.isTraceHeaderAdded = isTraceHeaderAdded;
+        return client;
+    }
+
+    /**
+     * Gets the number of connections of the connection pool by state.
+     *
+     * @return the numbers of leased and available connections and of requests waiting for a connection
+     */
+    public final PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Gets the number of connections of the connection pool by state for each route requested, e.g. the server and
+     * each read server.
+     *
+     * @return the numbers of leased and available connections and of requests waiting by route, sorted by route
+     */
+    public final SortedMap<String, PoolStats> getRoutePoolStats() {
+        return connectionManager.getRouteStats();
+    }
+
+    /**
+     * Shuts down the connection pool, closing all connections and failing the requests in flight.
+     *
+     * The client can't make any further requests. Clients created by {@link #asUser(int)} share the pool.
+     */
+    public final void shutdown() {
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Gets the scheduler of the requests.
+     *
+     * The priority of the requests made by a thread is set with {@link RequestContext#setPriority(RequestPriority)}.
+     *
+     * @return the scheduler
+     */
+    public final RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Gets the quotas and usage of the consumers of the client.
+     *
+     * The consumer of the requests made by a thread is set with {@link RequestContext#setConsumer(String)}.
+     *
+     * @return the consumer quotas
+     */
+    public final ConsumerQuotas getConsumerQuotas() {
+        return consumerQuotas;
+    }
+
+    /**
+     * Sets the quotas and usage of the consumers of the client.
+     *
+     * Lets the usage be kept when a client is replaced. Clients created by {@link #asUser(int)} before the call keep
+     * the previous quotas.
+     *
+     * @param consumerQuotas the consumer quotas
+     */
+    public final void setConsumerQuotas(ConsumerQuotas consumerQuotas) {
+        this.consumerQuotas = consumerQuotas;
+    }
+
+    /**
+     * Gets the metrics of the requests by endpoint template.
+     *
+     * @return the metrics
+     */
+    public final ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics of the requests by endpoint template.
+     *
+     * Lets the metrics be kept when a client is replaced. Clients created by {@link #asUser(int)} before the call keep
+     * the previous metrics.
+     *
+     * @param metrics the metrics
+     */
+    public final void setMetrics(ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the policy for hedging GET requests.
+     *
+     * @return the hedging policy (or null if requests aren't hedged)
+     */
+    public final HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets the policy for hedging GET requests.
+     *
+     * GET requests are only read from the API, so they are safe to send twice. Hedging is off by default.
+     *
+     * @param hedgingPolicy the hedging policy (or null to not hedge)
+     */
+    public final void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Gets the router of GET requests to read endpoints.
+     *
+     * @return the router (or null if all requests are sent to the host)
+     */
+    public final ReadEndpointRouter getReadEndpointRouter() {
+        return readEndpointRouter;
+    }
+
+    /**
+     * Sets the router of GET requests to read endpoints.
+     *
+     * GET requests are sent to the healthiest read endpoint with the lowest latency, falling back to the host if the
+     * endpoint fails. All other requests, e.g. creating sessions, are always sent to the host. Clients created by
+     * {@link #asUser(int)} before the call keep the previous router.
+     *
+     * @param readEndpointRouter the router (or null to send all requests to the host)
+     */
+    public final void setReadEndpointRouter(ReadEndpointRouter readEndpointRouter) {
+        this.readEndpointRouter = readEndpointRouter;
+    }
+
+    /**
+     * Gets the listener notified of every API call.
+     *
+     * @return the listener (or null if nobody is listening)
+     */
+    public final ApiCallListener getCallListener() {
+        return callListener;
+    }
+
+    /**
+     * Sets the listener notified of every API call.
+     *
+     * A call is reported once its response has been decoded. Clients created by {@link #asUser(int)} before the call
+     * keep the previous listener.
+     *
+     * @param callListener the listener (or null to stop listening)
+     */
+    public final void setCallListener(ApiCallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    /**
+     * Gets the tracer starting the spans of the calls and their requests.
+     *
+     * @return the tracer ({@link Tracer#NOOP} if not traced)
+     */
+    public final Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets the tracer starting the spans of the calls and their requests.
+     *
+     * Every call gets a span, a child of the span of the calling thread, and every HTTP request of the call gets a span
+     * of its own. Clients created by {@link #asUser(int)} before the call keep the previous tracer.
+     *
+     * @param tracer the tracer (or null to stop tracing)
+     */
+    public final void setTracer(Tracer tracer) {
+        this.tracer = (tracer != null) ? tracer : Tracer.NOOP;
+    }
+
+    /**
+     * Checks whether the context of the span of each request is passed to the server.
+     *
+     * @return true if a <code>traceparent</code> header is added to the requests
+     */
+    public final boolean isTraceHeaderAdded() {
+        return isTraceHeaderAdded;
+    }
+
+    /**
+     * Sets whether the context of the span of each request is passed to the server in a <code>traceparent</code>
+     * header, e.g. to trace the requests through a proxy or into GitLab.
+     *
+     * @param isTraceHeaderAdded true to add the header to the requests
+     */
+    public final void setTraceHeaderAdded(boolean isTraceHeaderAdded) {
+        this.isTraceHeaderAdded = isTraceHeaderAdded;
+    }
+
+    /**
+     * Checks whether the client impersonates another user.
+     *
+     * @return true if the requests are made as another user
+     */
+    protected boolean isImpersonating() {
+        return false;
+    }
+
+    /**
+     * Checks the health of every read endpoint.
+     *
+     * Requests the current user from each endpoint, letting failing endpoints back into rotation once they respond
+     * and taking endpoints out of rotation before a GET request fails on them.
+     *
+     * @throws GitLabApiException if a request couldn't be made, e.g. if the quota of the consumer was exceeded
+     */
+    public final void checkReadEndpoints() throws GitLabApiException {
+        final ReadEndpointRouter router = readEndpointRouter;
+        if (router == null) {
+            return;
+        }
+
+        for (ReadEndpoint endpoint : router.getEndpoints()) {
+            final long startTime = System.nanoTime();
+            boolean isHealthy = false;
+            try {
+                isHealthy = execute(HEALTH_CHECK_PATH,
+                        createGetRequest(endpoint.getHost(), HEALTH_CHECK_PATH, null, true), false)
+                        .getCode() == HTTP_200_OK;
+            } catch (ApiConnectionFailureException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                // the endpoint is unreachable
+            } finally {
+                // only the status matters
+                completeCall(0);
+            }
+            router.recordHealthCheck(endpoint, System.nanoTime() - startTime, isHealthy);
+        }
     }
 
     /**
-     * Creates the HTTP client.
+     * Creates the HTTP client with a connection pool of its own.
      *
      * If a proxy is specified this will be used for the client.
+     * Subclasses sharing the HTTP client of another client may override this to not create a connection pool.
      */
     protected void initializeHttpClient() {
         // use proxy settings etc from system properties
@@ -490,7 +959,17 @@ public class GitLabApiClient {
             }
         }
 
-        Unirest.setHttpClient(builder.build());
+        // the scheduler limits the requests in flight, so let the pool hold a connection for the highest limit
+        connectionManager = new TimedConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", new TimedSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+                        .register("https", new TimedSocketFactory(SSLConnectionSocketFactory.getSystemSocketFactory()))
+                        .build());
+        connectionManager.setDefaultMaxPerRoute(AdaptiveLimit.DEFAULT_MAX_LIMIT);
+        connectionManager.setMaxTotal(AdaptiveLimit.DEFAULT_MAX_LIMIT);
+        builder.setConnectionManager(connectionManager);
+
+        httpClient = builder.build();
     }
 
     /**
@@ -518,19 +997,160 @@ public class GitLabApiClient {
      */
     protected HttpResponse<JsonNode> get(String path, Map<String, Object> fields, boolean includePrivateToken)
             throws GitLabApiException {
-        final GetRequest request = Unirest.get(getApiUrl() + path);
+        return processResponse(executeGet(path, fields, includePrivateToken), false);
+    }
+
+    /**
+     * Fetches every page of a listing from the API with the private token.
+     *
+     * The pages are requested with the highest page size the API allows until a page is empty or has no link to a
+     * next page, so the listing is either complete or the request fails.
+     *
+     * @param path the path of the listing relative to the API
+     * @return a JSON array with the items of all pages
+     * @throws GitLabApiException if the request for any of the pages failed
+     */
+    private JSONArray getAllPages(String path)
+            throws GitLabApiException {
+        final JSONArray items = new JSONArray();
+        for (int page = 1; ; page++) {
+            final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+            fields.put("page", page);
+            fields.put("per_page", PAGE_SIZE);
+            final HttpResponse<JsonNode> response = get(path, fields);
+
+            boolean isLastPage = false;
+            try {
+                final JSONArray pageItems = response.getBody().getArray();
+                for (int i = 0; i < pageItems.length(); i++) {
+                    items.put(pageItems.get(i));
+                }
+                if (pageItems.length() == 0 || !hasNextPage(response)) {
+                    // the call of the last page is completed by the caller once the items are decoded
+                    isLastPage = true;
+                    return items;
+                }
+            } finally {
+                if (!isLastPage) {
+                    // the items of the page are decoded with the items of the last page
+                    completeCall(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a page of a listing links to a next page.
+     *
+     * @param response the HTTP response with the page
+     * @return true if there is a next page
+     */
+    private static boolean hasNextPage(HttpResponse<JsonNode> response) {
+        final String link = response.getHeaders().getFirst("link");
+        return link != null && NEXT_PAGE_LINK.matcher(link).find();
+    }
+
+    /**
+     * Makes a GET request to the API with the private token, accepting that the resource is missing.
+     *
+     * @param path   the path relative to the API
+     * @param fields the fields for the request (can be null)
+     * @return an HTTP response containing a JSON body or null if the resource is missing
+     * @throws GitLabApiException if the request failed
+     */
+    protected final HttpResponse<JsonNode> getIfFound(String path, Map<String, Object> fields)
+            throws GitLabApiException {
+        final HttpResponse<JsonNode> response = executeGet(path, fields, true);
+        // skip processing the response for missing resources to avoid creating an exception
+        return isResourceMissing(response) ? null : processResponse(response, false);
+    }
+
+    /**
+     * Processes the response of a request, completing the call if the response is rejected.
+     *
+     * A rejected response is never decoded, so its call is completed before the exception reaches the caller.
+     *
+     * @param response the HTTP response
+     * @param isPost   whether the response is the response of a POST request
+     * @return the response if the request succeeded
+     * @throws GitLabApiException if the request failed
+     */
+    private HttpResponse<JsonNode> processResponse(HttpResponse<JsonNode> response, boolean isPost)
+            throws GitLabApiException {
+        try {
+            return isPost ? processPostResponse(response) : processGetResponse(response);
+        } catch (GitLabApiException e) {
+            completeCall(0);
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a GET request to the API without processing the response.
+     *
+     * @param path                the path relative to the API
+     * @param fields              the fields for the request (can be null)
+     * @param includePrivateToken if the private token should be added to the fields
+     * @return an HTTP response containing a JSON body
+     * @throws GitLabApiException if the request failed
+     */
+    protected HttpResponse<JsonNode> executeGet(String path, Map<String, Object> fields, boolean includePrivateToken)
+            throws GitLabApiException {
+        final ReadEndpointRouter router = readEndpointRouter;
+        final ReadEndpoint endpoint = (router != null) ? router.acquire() : null;
+        if (endpoint != null) {
+            final long startTime = System.nanoTime();
+            boolean isHealthy = false;
+            try {
+                final HttpResponse<JsonNode> response =
+                        execute(path, createGetRequest(endpoint.getHost(), path, fields, includePrivateToken), true);
+                isHealthy = response.getCode() < HTTP_500_INTERNAL_SERVER_ERROR;
+                if (isHealthy) {
+                    return response;
+                }
+            } catch (ApiConnectionFailureException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                // the endpoint is unreachable
+            } finally {
+                router.release(endpoint, System.nanoTime() - startTime, isHealthy);
+            }
+            // fall back to the host
+        }
+
+        return execute(path, createGetRequest(host, path, fields, includePrivateToken), true);
+    }
+
+    /**
+     * Creates a GET request to the API of a server.
+     *
+     * @param host                the URL of the server (excluding the path)
+     * @param path                the path relative to the API
+     * @param fields              the fields for the request (can be null)
+     * @param includePrivateToken if the private token should be added to the fields
+     * @return the request
+     */
+    private GetRequest createGetRequest(String host, String path, Map<String, Object> fields,
+                                        boolean includePrivateToken) {
+        final GetRequest request = Unirest.get(host + API_PATH + path);
 
         request.fields(fields);
         if (includePrivateToken) {
             request.field("private_token", privateToken);
         }
 
-        try {
-            // make request
-            return processGetResponse(request.asJson());
-        } catch (UnirestException e) {
-            throw new ApiConnectionFailureException("Could not connect to API", e);
-        }
+        return request;
+    }
+
+    /**
+     * Checks if the HTTP response indicates that the requested resource is missing.
+     *
+     * @param response the HTTP response
+     * @return true if the resource is missing
+     */
+    protected boolean isResourceMissing(HttpResponse<JsonNode> response) {
+        return response.getCode() == HTTP_404_NOT_FOUND;
     }
 
     /**
@@ -590,11 +1210,281 @@ public class GitLabApiClient {
             body.field("private_token", privateToken);
         }
 
+        return processResponse(execute(path, request, false), true);
+    }
+
+    /**
+     * Makes a request once the quota of the consumer and the scheduler let it through.
+     *
+     * Idempotent requests are hedged if a hedging policy is set. The request is recorded in the metrics of its
+     * endpoint template and reported to the call listener if one is set. The call of a successful response must be
+     * completed by the caller with {@link #completeCall(long)} once the response has been decoded, or right away if
+     * it won't be decoded, so the call is reported from the stack of the caller.
+     *
+     * The call is only given a timer of its own if it is listened to or traced, other calls reuse a timer of the
+     * thread since the phases are only kept for the metrics of the endpoint.
+     *
+     * @param path         the path of the request relative to the API
+     * @param request      the request
+     * @param isIdempotent whether the request can safely be made more than once
+     * @return an HTTP response containing a JSON body
+     * @throws GitLabApiException if the request was rejected or a connection to the API could not be made
+     */
+    private HttpResponse<JsonNode> execute(String path, BaseRequest request, boolean isIdempotent)
+            throws GitLabApiException {
+        final EndpointMetrics endpoint = metrics.getEndpoint(request.getHttpRequest().getHttpMethod().name(), path);
+        final ApiCallListener listener = callListener;
+        final Tracer currentTracer = tracer;
+        final CallTimer timer = (listener != null || currentTracer != Tracer.NOOP) ? new CallTimer()
+                : UNOBSERVED_CALL.get();
+        timer.start(endpoint, listener, currentTracer, isImpersonating());
+        final ConsumerUsage usage;
         try {
-            // make request
-            return processPostResponse(request.asJson());
+            usage = acquireQuota();
+        } catch (GitLabApiException e) {
+            // the call never started
+            timer.span.end();
+            throw e;
+        }
+        final long start = System.nanoTime();
+        timer.phases.add(RequestPhase.QUEUE, start - timer.startTime);
+        int status = EndpointMetrics.NO_RESPONSE;
+        long bytesIn = 0;
+        String failure = null;
+        // the requests of the call are children of its span
+        final Span previousSpan = RequestContext.setSpan(timer.span);
+        try {
+            final HedgingPolicy policy = hedgingPolicy;
+            final HttpResponse<JsonNode> response = (isIdempotent && policy != null)
+                    ? executeHedged(request, policy, timer)
+                    : executeScheduled(request, endpoint, timer);
+            status = response.getCode();
+            // the body has been read into memory
+            bytesIn = (response.getRawBody() != null) ? response.getRawBody().available() : 0;
+            return response;
+        } catch (ApiConnectionFailureException e) {
+            failure = (e.getCause() != null) ? e.getCause().toString() : e.getMessage();
+            throw e;
+        } catch (IOException e) {
+            // never thrown by an in-memory body
+            throw new IllegalStateException(e);
+        } finally {
+            RequestContext.setSpan(previousSpan);
+            final long latency = System.nanoTime() - start;
+            consumerQuotas.release(usage, latency);
+            endpoint.record(latency, status, bytesIn);
+            metrics.getTrace().record(endpoint.getTemplate(), status, latency, bytesIn);
+            if (isError(status)) {
+                metrics.recordError(endpoint.getTemplate(), status, failure);
+            }
+            timer.status = status;
+            timer.bytesIn = bytesIn;
+            if (status >= HTTP_200_OK && status < HTTP_300_MULTIPLE_CHOICES) {
+                // the decoding of the response is the last phase of the call
+                UNDECODED_CALL.set(timer);
+            } else {
+                timer.complete();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the status of a response is an error worth recording.
+     *
+     * Missing resources are left out since lookups expect them.
+     *
+     * @param status the status code (or {@link EndpointMetrics#NO_RESPONSE} if no response was received)
+     * @return true if the request failed
+     */
+    private static boolean isError(int status) {
+        return status == EndpointMetrics.NO_RESPONSE || (status >= HTTP_400_BAD_REQUEST && status != HTTP_404_NOT_FOUND);
+    }
+
+    /**
+     * Completes the call of the current thread with a successful response once the response has been decoded.
+     *
+     * @param decodeTime the time spent decoding the response in nanoseconds (or 0 if it wasn't decoded)
+     */
+    private static void completeCall(long decodeTime) {
+        final CallTimer timer = UNDECODED_CALL.get();
+        if (timer != null) {
+            UNDECODED_CALL.remove();
+            timer.phases.add(RequestPhase.DECODE, decodeTime);
+            timer.complete();
+        }
+    }
+
+    /**
+     * Decodes the JSON object of a response into a model object.
+     *
+     * @param response the response
+     * @param decoder  the decoder creating the model object
+     * @param <T>      the type of the model object
+     * @return the model object
+     */
+    private static <T> T decodeObject(HttpResponse<JsonNode> response, JSONObjectDecoder<T> decoder) {
+        final long start = System.nanoTime();
+        try {
+            return decoder.decode(response.getBody().getObject());
+        } finally {
+            completeCall(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Decodes the JSON array of a listing into model objects.
+     *
+     * @param array    the JSON array
+     * @param decoder  the decoder creating the model objects
+     * @param executor the executor to decode large arrays in parallel with (or null to decode on this thread)
+     * @param <T>      the type of the model objects
+     * @return the model objects
+     */
+    private static <T> List<T> decodeArray(JSONArray array, JSONObjectDecoder<T> decoder,
+                                           ExecutorService executor) {
+        final long start = System.nanoTime();
+        try {
+            return decode(array, decoder, executor);
+        } finally {
+            completeCall(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Makes a request once the scheduler lets it through.
+     *
+     * The latency of the request is fed back to the scheduler to adapt the number of requests in flight.
+     *
+     * @param request  the request
+     * @param endpoint the metrics of the endpoint template of the request
+     * @param timer    the timer of the call
+     * @return an HTTP response containing a JSON body
+     * @throws ApiConnectionFailureException if a connection to the API could not be made
+     */
+    private HttpResponse<JsonNode> executeScheduled(BaseRequest request, EndpointMetrics endpoint, CallTimer timer)
+            throws ApiConnectionFailureException {
+        final HttpRequestBase httpRequest = HttpRequests.create(request.getHttpRequest());
+        if (httpRequest instanceof HttpEntityEnclosingRequest
+                && ((HttpEntityEnclosingRequest)httpRequest).getEntity() != null) {
+            timer.bytesOut = ((HttpEntityEnclosingRequest)httpRequest).getEntity().getContentLength();
+            endpoint.recordBytesOut(timer.bytesOut);
+        }
+        final long queueStart = System.nanoTime();
+        acquireSlot();
+        final Span span = HttpRequests.startSpan(tracer, httpRequest, isTraceHeaderAdded);
+        final long start = System.nanoTime();
+        timer.phases.add(RequestPhase.QUEUE, start - queueStart);
+        int status = EndpointMetrics.NO_RESPONSE;
+        boolean isDropped = false;
+        // let the connection manager and socket factories time the connection
+        final PhaseTimer previousTimer = PhaseTimer.setCurrent(timer.phases);
+        try {
+            // make request with the connection pool of this client
+            final org.apache.http.HttpResponse httpResponse = httpClient.execute(httpRequest);
+            final long bodyStart = System.nanoTime();
+            timer.phases.add(RequestPhase.FIRST_BYTE, bodyStart - start - getConnectionTime(timer.phases));
+            if (httpResponse.getEntity() != null) {
+                if (httpResponse.getEntity() instanceof GzipDecompressingEntity
+                        || httpResponse.getEntity() instanceof DeflateDecompressingEntity) {
+                    // decompressed while buffered
+                    endpoint.recordCompressedResponse();
+                }
+                httpResponse.setEntity(new BufferedHttpEntity(httpResponse.getEntity()));
+            }
+            final long parseStart = System.nanoTime();
+            timer.phases.add(RequestPhase.BODY, parseStart - bodyStart);
+            final HttpResponse<JsonNode> response = new HttpResponse<JsonNode>(httpResponse, JsonNode.class);
+            timer.phases.add(RequestPhase.PARSE, System.nanoTime() - parseStart);
+            status = response.getCode();
+            isDropped = AdaptiveLimit.isOverloaded(status);
+            return response;
+        } catch (IOException e) {
+            isDropped = true;
+            throw new ApiConnectionFailureException("Could not connect to API", e);
+        } catch (RuntimeException e) {
+            // the response couldn't be read
+            isDropped = true;
+            throw new ApiConnectionFailureException("Could not connect to API", e);
+        } finally {
+            PhaseTimer.setCurrent(previousTimer);
+            httpRequest.releaseConnection();
+            scheduler.release(System.nanoTime() - start, isDropped);
+            if (status != EndpointMetrics.NO_RESPONSE) {
+                span.setAttribute("http.status_code", status);
+            }
+            span.end();
+        }
+    }
+
+    /**
+     * Gets the time spent getting a connection for a request.
+     *
+     * @param phases the phases of the request
+     * @return the time spent leasing and setting up the connection in nanoseconds
+     */
+    private static long getConnectionTime(PhaseTimer phases) {
+        return phases.get(RequestPhase.LEASE) + phases.get(RequestPhase.DNS) + phases.get(RequestPhase.CONNECT)
+                + phases.get(RequestPhase.TLS);
+    }
+
+    /**
+     * Makes a hedged request once the scheduler lets it through.
+     *
+     * The attempts of a hedged request run in parallel, so only the wait for the scheduler is timed as a phase.
+     *
+     * @param request the request
+     * @param policy  the hedging policy
+     * @param timer   the timer of the call
+     * @return an HTTP response containing a JSON body
+     * @throws ApiConnectionFailureException if a connection to the API could not be made
+     */
+    private HttpResponse<JsonNode> executeHedged(BaseRequest request, HedgingPolicy policy, CallTimer timer)
+            throws ApiConnectionFailureException {
+        final long queueStart = System.nanoTime();
+        acquireSlot();
+        timer.phases.add(RequestPhase.QUEUE, System.nanoTime() - queueStart);
+        try {
+            // the hedged request releases the slot
+            return new HedgedRequest(httpClient, request.getHttpRequest(), scheduler, policy)
+                    .withTracer(tracer, isTraceHeaderAdded)
+                    .execute();
         } catch (UnirestException e) {
             throw new ApiConnectionFailureException("Could not connect to API", e);
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionFailureException("Interrupted while waiting for a response", e);
+        }
+    }
+
+    /**
+     * Waits for the quota of the consumer of the current thread to let a request through.
+     *
+     * @return the usage of the consumer
+     * @throws GitLabApiException if the quota was exceeded or if interrupted while waiting
+     */
+    private ConsumerUsage acquireQuota() throws GitLabApiException {
+        try {
+            return consumerQuotas.acquire();
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionFailureException("Interrupted while waiting to make a request", e);
+        }
+    }
+
+    /**
+     * Waits for the scheduler to let a request of the current priority through.
+     *
+     * @throws ApiConnectionFailureException if interrupted while waiting
+     */
+    private void acquireSlot() throws ApiConnectionFailureException {
+        try {
+            scheduler.acquire(RequestContext.getPriority());
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionFailureException("Interrupted while waiting to make a request", e);
         }
     }
 
@@ -620,4 +1510,86 @@ public class GitLabApiClient {
                 throw new AuthenticationFailedException("Invalid private token");
         }
     }
+
+    /**
+     * The phases and outcome of an API call in progress.
+     *
+     * A timer may be reused for another call once the call it was started for has been completed.
+     */
+    private static final class CallTimer {
+        /** The time spent in each phase of the call. */
+        private final PhaseTimer phases = new PhaseTimer();
+
+        /** The metrics of the endpoint template of the call. */
+        private EndpointMetrics endpoint;
+
+        /** The listener to report the call to (or null if nobody is listening). */
+        private ApiCallListener listener;
+
+        /** The consumer making the call (only kept for the listener). */
+        private String consumer;
+
+        /** The span of the call. */
+        private Span span;
+
+        /** How a lookup cache was involved in the call (only kept for the listener). */
+        private CacheResult cacheResult;
+
+        /** Whether the call impersonates another user. */
+        private boolean isImpersonated;
+
+        /** The start time of the call in milliseconds since the epoch (only kept for the listener). */
+        private long startMillis;
+
+        /** The start time of the call in nanoseconds. */
+        private long startTime;
+
+        /** The status code of the response. */
+        private int status;
+
+        /** The size of the response body in bytes. */
+        private long bytesIn;
+
+        /** The size of the request body in bytes. */
+        private long bytesOut;
+
+        /**
+         * Starts timing a call, discarding what was timed of any previous call.
+         *
+         * @param endpoint       the metrics of the endpoint template of the call
+         * @param listener       the listener to report the call to (or null if nobody is listening)
+         * @param tracer         the tracer starting the span of the call
+         * @param isImpersonated whether the call impersonates another user
+         */
+        private void start(EndpointMetrics endpoint, ApiCallListener listener, Tracer tracer, boolean isImpersonated) {
+            this.endpoint = endpoint;
+            this.listener = listener;
+            this.consumer = (listener != null) ? RequestContext.getConsumer() : null;
+            this.cacheResult = (listener != null) ? RequestContext.getCacheResult() : null;
+            this.isImpersonated = isImpersonated;
+            // the no-op tracer always returns the same span
+            this.span = tracer.startSpan(endpoint.getTemplate(), RequestContext.getSpan());
+            startMillis = (listener != null) ? System.currentTimeMillis() : 0;
+            startTime = System.nanoTime();
+            phases.clear();
+            status = EndpointMetrics.NO_RESPONSE;
+            bytesIn = 0;
+            bytesOut = 0;
+        }
+
+        /**
+         * Records the phases of the completed call and reports the call to the listener, if any.
+         */
+        private void complete() {
+            endpoint.recordPhases(phases);
+            if (status != EndpointMetrics.NO_RESPONSE) {
+                span.setAttribute("http.status_code", status);
+            }
+            span.end();
+            if (listener != null) {
+                listener.callCompleted(new ApiCall(endpoint.getTemplate(), consumer, isImpersonated, cacheResult,
+                        status, bytesIn, bytesOut, startMillis, phases.toArray(), System.nanoTime() - startTime));
+            }
+        }
+    }
 }
@@ -79,12 +79,28 @@ import java.util.regex.Pattern;
     }
 
     @Override
-    protected HttpResponse<JsonNode> get(String path, Map<String, Object> fields, boolean includePrivateToken)
+    protected void initializeHttpClient() {
+        // the HTTP client and its connection pool are taken from the client creating this client
+    }
+
+    @Override
+    protected boolean isImpersonating() {
+        return true;
+    }
+
+    @Override
+    protected HttpResponse<JsonNode> executeGet(String path, Map<String, Object> fields, boolean includePrivateToken)
             throws GitLabApiException {
         fields = (fields == null) ? new HashMap<String, Object>(1) : fields;
         // impersonate the user
         fields.put("sudo", getUserId());
-        return super.get(path, fields, includePrivateToken);
+        return super.executeGet(path, fields, includePrivateToken);
+    }
+
+    @Override
+    protected boolean isResourceMissing(HttpResponse<JsonNode> response) {
+        // a missing impersonated user is an error and not a missing resource
+        return super.isResourceMissing(response) && !isUserNotFound(response);
     }
 
     @Override
@@ -0,0 +1,546 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.exceptions.GroupNotFoundException;
+import com.sonymobile.gitlab.exceptions.UserNotFoundException;
+import com.sonymobile.gitlab.helpers.LazyJSONArrayList;
+import com.sonymobile.gitlab.http.RequestContext;
+import com.sonymobile.gitlab.metrics.ApiCall;
+import com.sonymobile.gitlab.metrics.ApiCallListener;
+import com.sonymobile.gitlab.metrics.CacheResult;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Cached lookups of users, groups and group members by ID using a GitLab API client.
+ *
+ * Values are fresh for a time to live after being fetched. After that the stale value is still returned immediately
+ * while it is fetched again in the background, until it has been stale for a maximum time. Frequently read values are
+ * fetched again ahead of expiry, so hot entries such as the administrator user don't all expire at the same time.
+ *
+ * Lookups of IDs recently found to be missing are answered without a request to the API for a short time. Optionally
+ * a filter of the IDs known to exist, refreshed by every call to {@link #getUsers()} and {@link #getGroups()}, lets
+ * lookups of IDs missing at the time of the last full sweep be answered without a request as well.
+ */
+public class GitLabLookupCache {
+    /** The default time in milliseconds a value is fresh. */
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    /** The default time in milliseconds a value may be served after it stopped being fresh. */
+    public static final long DEFAULT_MAX_STALENESS = TimeUnit.MINUTES.toMillis(5);
+
+    /** The default maximum number of cached values of each kind. */
+    public static final int DEFAULT_CACHE_SIZE = 16384;
+
+    /** The default time in milliseconds to remember missing IDs. */
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    /** The default maximum number of remembered missing IDs. */
+    public static final int DEFAULT_NEGATIVE_CACHE_SIZE = 4096;
+
+    /** The API client to look up with. */
+    private final GitLabApiClient client;
+
+    /** The cached users. */
+    private final RefreshingCache<Integer, GitLabUserInfo> users;
+
+    /** The cached groups. */
+    private final RefreshingCache<Integer, GitLabGroupInfo> groups;
+
+    /** The cached group members by group ID. */
+    private final RefreshingCache<Integer, List<GitLabGroupMemberInfo>> groupMembers;
+
+    /** The users recently found to be missing. */
+    private final NegativeCache missingUsers;
+
+    /** The groups recently found to be missing. */
+    private final NegativeCache missingGroups;
+
+    /** Whether the existence filters are used. */
+    private volatile boolean existenceFilterEnabled = false;
+
+    /** The IDs of existing users at the last sweep (or null if not swept yet). */
+    private volatile IdBloomFilter existingUsers;
+
+    /** The IDs of existing groups at the last sweep (or null if not swept yet). */
+    private volatile IdBloomFilter existingGroups;
+
+    /** The number of lookups answered as missing without a request. */
+    private final AtomicLong missesAvoided = new AtomicLong();
+
+    /**
+     * Creates a lookup cache with the default time to remember missing IDs.
+     *
+     * @param client the API client to look up with
+     */
+    public GitLabLookupCache(GitLabApiClient client) {
+        this(client, DEFAULT_NEGATIVE_TTL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a lookup cache.
+     *
+     * @param client      the API client to look up with
+     * @param negativeTtl the time to remember missing IDs
+     * @param unit        the unit of the time
+     */
+    public GitLabLookupCache(GitLabApiClient client, long negativeTtl, TimeUnit unit) {
+        this(client, negativeTtl, unit, Executors.newCachedThreadPool(new RefreshThreadFactory()));
+    }
+
+    /**
+     * Creates a lookup cache refreshing stale values with a specific executor.
+     *
+     * @param client      the API client to look up with
+     * @param negativeTtl the time to remember missing IDs
+     * @param unit        the unit of the time
+     * @param executor    the executor refreshing stale values in the background
+     */
+    public GitLabLookupCache(final GitLabApiClient client, long negativeTtl, TimeUnit unit, Executor executor) {
+        this.client = client;
+        // nobody is waiting for the refreshes
+        executor = backgroundExecutor(executor);
+        this.users = new LookupCache<GitLabUserInfo>(executor, "GET /users/:id") {
+            @Override
+            protected GitLabUserInfo fetch(Integer userId) throws GitLabApiException {
+                return client.findUser(userId);
+            }
+        };
+        this.groups = new LookupCache<GitLabGroupInfo>(executor, "GET /groups/:id") {
+            @Override
+            protected GitLabGroupInfo fetch(Integer groupId) throws GitLabApiException {
+                return client.findGroup(groupId);
+            }
+        };
+        this.groupMembers = new LookupCache<List<GitLabGroupMemberInfo>>(executor, "GET /groups/:id/members") {
+            @Override
+            protected List<GitLabGroupMemberInfo> fetch(Integer groupId) throws GitLabApiException {
+                return unmodifiableList(client.getGroupMembers(groupId));
+            }
+        };
+        this.missingUsers = new NegativeCache(unit.toMillis(negativeTtl), DEFAULT_NEGATIVE_CACHE_SIZE);
+        this.missingGroups = new NegativeCache(unit.toMillis(negativeTtl), DEFAULT_NEGATIVE_CACHE_SIZE);
+    }
+
+    /**
+     * Enables filtering lookups with the IDs known to exist at the last full sweep.
+     *
+     * @return this object for chaining
+     */
+    public GitLabLookupCache withExistenceFilter() {
+        existenceFilterEnabled = true;
+        return this;
+    }
+
+    /**
+     * Sets for how long cached values are served.
+     *
+     * @param ttl          the time a value is fresh
+     * @param maxStaleness the time a value may be served while it is refreshed after it stopped being fresh
+     * @param unit         the unit of the times
+     * @return this object for chaining
+     */
+    public GitLabLookupCache withTtl(long ttl, long maxStaleness, TimeUnit unit) {
+        users.setTtl(unit.toMillis(ttl), unit.toMillis(maxStaleness));
+        groups.setTtl(unit.toMillis(ttl), unit.toMillis(maxStaleness));
+        groupMembers.setTtl(unit.toMillis(ttl), unit.toMillis(maxStaleness));
+        return this;
+    }
+
+    /**
+     * Returns the API client used for lookups.
+     *
+     * @return the API client
+     */
+    public GitLabApiClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns a user if it exists.
+     *
+     * @param userId a user ID
+     * @return the user or null if the user is missing
+     * @throws GitLabApiException if the request failed
+     */
+    public GitLabUserInfo findUser(int userId)
+            throws GitLabApiException {
+        if (isKnownMissing(userId, existingUsers, missingUsers)) {
+            return null;
+        }
+
+        final GitLabUserInfo user = users.get(userId);
+        if (user == null) {
+            missingUsers.add(userId, currentTimeMillis());
+        }
+        return user;
+    }
+
+    /**
+     * Returns a user.
+     *
+     * @param userId a user ID
+     * @return the user
+     * @throws GitLabApiException if the request failed or if the user is missing
+     */
+    public GitLabUserInfo getUser(int userId)
+            throws GitLabApiException {
+        final GitLabUserInfo user = findUser(userId);
+        if (user == null) {
+            throw new UserNotFoundException("A user with user ID " + userId + " does not exist");
+        }
+        return user;
+    }
+
+    /**
+     * Returns a group if it exists.
+     *
+     * @param groupId a group ID
+     * @return the group or null if the group is missing
+     * @throws GitLabApiException if the request failed
+     */
+    public GitLabGroupInfo findGroup(int groupId)
+            throws GitLabApiException {
+        if (isKnownMissing(groupId, existingGroups, missingGroups)) {
+            return null;
+        }
+
+        final GitLabGroupInfo group = groups.get(groupId);
+        if (group == null) {
+            missingGroups.add(groupId, currentTimeMillis());
+        }
+        return group;
+    }
+
+    /**
+     * Returns a group.
+     *
+     * @param groupId a group ID
+     * @return the group
+     * @throws GitLabApiException if the request failed or if the group is missing
+     */
+    public GitLabGroupInfo getGroup(int groupId)
+            throws GitLabApiException {
+        final GitLabGroupInfo group = findGroup(groupId);
+        if (group == null) {
+            throw new GroupNotFoundException("A group with group ID " + groupId + " does not exist");
+        }
+        return group;
+    }
+
+    /**
+     * Returns the members of a group.
+     *
+     * @param groupId a group ID
+     * @return an unmodifiable list of the members of the group
+     * @throws GitLabApiException if the request failed or if the group is missing
+     */
+    public List<GitLabGroupMemberInfo> getGroupMembers(int groupId)
+            throws GitLabApiException {
+        if (isKnownMissing(groupId, existingGroups, missingGroups)) {
+            throw new GroupNotFoundException("A group with group ID " + groupId + " does not exist");
+        }
+
+        try {
+            return groupMembers.get(groupId);
+        } catch (GroupNotFoundException e) {
+            missingGroups.add(groupId, currentTimeMillis());
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches all users and refreshes the filter of existing users.
+     *
+     * The filter is only refreshed once every page of the users has been fetched.
+     *
+     * @return an unmodifiable list of all users
+     * @throws GitLabApiException if the request failed
+     */
+    public List<GitLabUserInfo> getUsers()
+            throws GitLabApiException {
+        final LazyJSONArrayList<GitLabUserInfo> users = client.getLazyUsers();
+        existingUsers = IdBloomFilter.of(users.getIds());
+        missingUsers.clear();
+        return users;
+    }
+
+    /**
+     * Fetches all groups and refreshes the filter of existing groups.
+     *
+     * The filter is only refreshed once every page of the groups has been fetched.
+     *
+     * @return an unmodifiable list of all groups
+     * @throws GitLabApiException if the request failed
+     */
+    public List<GitLabGroupInfo> getGroups()
+            throws GitLabApiException {
+        final LazyJSONArrayList<GitLabGroupInfo> groups = client.getLazyGroups();
+        existingGroups = IdBloomFilter.of(groups.getIds());
+        missingGroups.clear();
+        return groups;
+    }
+
+    /**
+     * Wraps an executor to run all tasks with background request priority.
+     *
+     * The requests of the tasks are marked as refreshes of cached values.
+     *
+     * @param executor the executor
+     * @return an executor running the tasks with the executor
+     */
+    private static Executor backgroundExecutor(final Executor executor) {
+        return new Executor() {
+            @Override
+            public void execute(final Runnable task) {
+                executor.execute(RequestContext.background(new Runnable() {
+                    @Override
+                    public void run() {
+                        CacheResult previous = RequestContext.setCacheResult(CacheResult.REFRESH);
+                        try {
+                            task.run();
+                        } finally {
+                            RequestContext.setCacheResult(previous);
+                        }
+                    }
+                }));
+            }
+        };
+    }
+
+    /**
+     * Forgets anything cached about a user.
+     *
+     * @param userId a user ID
+     */
+    public void invalidateUser(int userId) {
+        users.invalidate(userId);
+        missingUsers.remove(userId);
+    }
+
+    /**
+     * Forgets anything cached about a group.
+     *
+     * @param groupId a group ID
+     */
+    public void invalidateGroup(int groupId) {
+        groups.invalidate(groupId);
+        groupMembers.invalidate(groupId);
+        missingGroups.remove(groupId);
+    }
+
+    /**
+     * Forgets the cached members of a group.
+     *
+     * @param groupId a group ID
+     */
+    public void invalidateGroupMembers(int groupId) {
+        groupMembers.invalidate(groupId);
+    }
+
+    /**
+     * Forgets anything cached which is affected by a system hook event.
+     *
+     * Removing or renaming a user forgets the members of all groups, since the groups of the user aren't known.
+     *
+     * @param event a system hook event
+     */
+    public void invalidate(GitLabSystemHookEvent event) {
+        GitLabSystemHookEvent.Type type = event.getType();
+        if (type.isUserEvent()) {
+            invalidateUser(event.getUserId());
+            if (type != GitLabSystemHookEvent.Type.USER_CREATE) {
+                // the user may be listed as a member of any group
+                groupMembers.invalidateAll();
+            }
+        } else if (type.isGroupEvent()) {
+            invalidateGroup(event.getGroupId());
+        } else if (type.isMembershipEvent()) {
+            invalidateGroupMembers(event.getGroupId());
+        }
+    }
+
+    /**
+     * Forgets everything cached.
+     */
+    public void invalidateAll() {
+        users.invalidateAll();
+        groups.invalidateAll();
+        groupMembers.invalidateAll();
+        missingUsers.clear();
+        missingGroups.clear();
+        existingUsers = null;
+        existingGroups = null;
+    }
+
+    /**
+     * Returns the number of lookups of missing IDs answered without a request to the API.
+     *
+     * @return the number of lookups
+     */
+    public long getMissesAvoided() {
+        return missesAvoided.get();
+    }
+
+    /**
+     * Returns the cache of users for monitoring.
+     *
+     * @return the cache
+     */
+    public RefreshingCache<Integer, GitLabUserInfo> getUserCache() {
+        return users;
+    }
+
+    /**
+     * Returns the cache of groups for monitoring.
+     *
+     * @return the cache
+     */
+    public RefreshingCache<Integer, GitLabGroupInfo> getGroupCache() {
+        return groups;
+    }
+
+    /**
+     * Returns the cache of group members for monitoring.
+     *
+     * @return the cache
+     */
+    public RefreshingCache<Integer, List<GitLabGroupMemberInfo>> getGroupMembersCache() {
+        return groupMembers;
+    }
+
+    /**
+     * Returns the current time.
+     *
+     * @return the time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Checks whether an ID is known to be missing without a request to the API.
+     *
+     * @param id       the ID
+     * @param existing the filter of existing IDs (or null)
+     * @param missing  the IDs recently found to be missing
+     * @return true if the ID is missing
+     */
+    private boolean isKnownMissing(int id, IdBloomFilter existing, NegativeCache missing) {
+        if ((existenceFilterEnabled && existing != null && !existing.mightContain(id))
+                || missing.contains(id, currentTimeMillis())) {
+            missesAvoided.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A cache of values looked up by ID using the clock of the lookup cache.
+     *
+     * @param <V> the type of the values
+     */
+    private abstract class LookupCache<V> extends RefreshingCache<Integer, V> {
+        /** The endpoint template of the requests loading the values. */
+        private final String template;
+
+        /**
+         * Creates a cache with the default times to live.
+         *
+         * @param executor the executor refreshing stale values in the background
+         * @param template the endpoint template of the requests loading the values
+         */
+        private LookupCache(Executor executor, String template) {
+            super(executor, DEFAULT_TTL, DEFAULT_MAX_STALENESS, DEFAULT_CACHE_SIZE);
+            this.template = template;
+        }
+
+        /**
+         * Fetches the value for an ID from the API.
+         *
+         * @param id the ID
+         * @return the value or null if the value is missing
+         * @throws GitLabApiException if the request failed
+         */
+        protected abstract V fetch(Integer id) throws GitLabApiException;
+
+        @Override
+        protected final V loadValue(Integer id) throws GitLabApiException {
+            // refreshes are already marked by the background executor
+            CacheResult previous = RequestContext.setCacheResult(
+                    (RequestContext.getCacheResult() == CacheResult.REFRESH) ? CacheResult.REFRESH : CacheResult.MISS);
+            try {
+                return fetch(id);
+            } finally {
+                RequestContext.setCacheResult(previous);
+            }
+        }
+
+        @Override
+        protected void onHit(Integer id) {
+            final ApiCallListener listener = client.getCallListener();
+            if (listener != null) {
+                listener.callCompleted(new ApiCall(template, RequestContext.getConsumer(), false, CacheResult.HIT,
+                        EndpointMetrics.NO_RESPONSE, 0, 0, currentTimeMillis(), null, 0));
+            }
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return GitLabLookupCache.this.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Creates daemon threads for refreshing values in the background.
+     */
+    private static final class RefreshThreadFactory implements ThreadFactory {
+        /** The number of created threads. */
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "GitLab cache refresh " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+/**
+ * A Bloom filter of the IDs known to exist at a point in time.
+ *
+ * The filter never reports an existing ID as missing but may report a small share of missing IDs as existing. GitLab
+ * assigns IDs in increasing order, so IDs greater than the greatest ID in the filter belong to resources created after
+ * the filter was built and are always reported as possibly existing.
+ *
+ * The filter is immutable; build a new filter to reflect changes.
+ */
+public final class IdBloomFilter {
+    /** The default share of missing IDs reported as existing. */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /** The bits of the filter. */
+    private final long[] bits;
+
+    /** The number of bits of the filter. */
+    private final int numBits;
+
+    /** The number of bits set for each ID. */
+    private final int numHashes;
+
+    /** The greatest ID in the filter. */
+    private final int maxId;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param numBits   the number of bits
+     * @param numHashes the number of bits set for each ID
+     * @param maxId     the greatest ID in the filter
+     */
+    private IdBloomFilter(int numBits, int numHashes, int maxId) {
+        this.bits = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Creates a filter of existing IDs with the default false positive rate.
+     *
+     * @param ids the existing IDs
+     * @return a filter
+     */
+    public static IdBloomFilter of(int[] ids) {
+        return of(ids, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Creates a filter of existing IDs.
+     *
+     * @param ids               the existing IDs
+     * @param falsePositiveRate the share of missing IDs which may be reported as existing
+     * @return a filter
+     */
+    public static IdBloomFilter of(int[] ids, double falsePositiveRate) {
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("The false positive rate must be between 0 and 1");
+        }
+
+        // size the filter optimally for the number of IDs
+        final int numIds = Math.max(ids.length, 1);
+        final double ln2 = Math.log(2);
+        final int numBits = (int)Math.max(Long.SIZE, Math.ceil(-numIds * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        final int numHashes = (int)Math.max(1, Math.round((double)numBits / numIds * ln2));
+
+        int maxId = Integer.MIN_VALUE;
+        for (final int id : ids) {
+            maxId = Math.max(maxId, id);
+        }
+
+        final IdBloomFilter filter = new IdBloomFilter(numBits, numHashes, maxId);
+        for (final int id : ids) {
+            filter.add(id);
+        }
+        return filter;
+    }
+
+    /**
+     * Checks whether an ID might exist.
+     *
+     * @param id the ID
+     * @return false if the ID definitely doesn't exist
+     */
+    public boolean mightContain(int id) {
+        if (id > maxId) {
+            // created after the filter was built
+            return true;
+        }
+
+        final int hash1 = mix(id);
+        final int hash2 = mix(hash1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = index(hash1 + i * hash2);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the greatest ID in the filter.
+     *
+     * @return the ID
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Adds an ID while building the filter.
+     *
+     * @param id the ID
+     */
+    private void add(int id) {
+        final int hash1 = mix(id);
+        final int hash2 = mix(hash1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = index(hash1 + i * hash2);
+            bits[bit >>> 6] |= (1L << bit);
+        }
+    }
+
+    /**
+     * Maps a hash to a bit index.
+     *
+     * @param hash the hash
+     * @return an index in the range of the filter
+     */
+    private int index(int hash) {
+        return (hash & Integer.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * Scrambles the bits of a value since IDs are sequential.
+     *
+     * @param value the value
+     * @return a hash
+     */
+    private static int mix(int value) {
+        // the finalizer of MurmurHash3
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
+    }
+}
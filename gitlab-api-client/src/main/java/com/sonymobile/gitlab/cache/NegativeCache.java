@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of IDs recently found to be missing.
+ *
+ * Entries expire after a short time so resources created after being looked up are eventually found.
+ */
+public final class NegativeCache {
+    /** The time in milliseconds an entry is kept. */
+    private final long ttl;
+
+    /** The maximum number of entries. */
+    private final int maxSize;
+
+    /** The expiry times of the missing IDs. */
+    private final ConcurrentHashMap<Integer, Long> expiryTimes = new ConcurrentHashMap<Integer, Long>();
+
+    /**
+     * Creates a negative cache.
+     *
+     * @param ttl     the time in milliseconds an entry is kept
+     * @param maxSize the maximum number of entries
+     */
+    public NegativeCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks whether an ID has recently been found to be missing.
+     *
+     * @param id  the ID
+     * @param now the current time in milliseconds
+     * @return true if the ID is missing
+     */
+    public boolean contains(int id, long now) {
+        final Long expiryTime = expiryTimes.get(id);
+        if (expiryTime == null) {
+            return false;
+        }
+        if (expiryTime <= now) {
+            expiryTimes.remove(id, expiryTime);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that an ID is missing.
+     *
+     * @param id  the ID
+     * @param now the current time in milliseconds
+     */
+    public void add(int id, long now) {
+        if (ttl <= 0) {
+            return;
+        }
+        if (expiryTimes.size() >= maxSize) {
+            removeExpired(now);
+            if (expiryTimes.size() >= maxSize) {
+                // still full, start over rather than tracking the age of every entry
+                expiryTimes.clear();
+            }
+        }
+        expiryTimes.put(id, now + ttl);
+    }
+
+    /**
+     * Forgets that an ID is missing.
+     *
+     * @param id the ID
+     */
+    public void remove(int id) {
+        expiryTimes.remove(id);
+    }
+
+    /**
+     * Forgets all missing IDs.
+     */
+    public void clear() {
+        expiryTimes.clear();
+    }
+
+    /**
+     * Returns the number of entries (including expired entries not yet removed).
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return expiryTimes.size();
+    }
+
+    /**
+     * Removes all expired entries.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void removeExpired(long now) {
+        final Iterator<Map.Entry<Integer, Long>> iterator = expiryTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
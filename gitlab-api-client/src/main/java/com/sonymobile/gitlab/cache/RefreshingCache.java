@@ -0,0 +1,488 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import com.sonymobile.gitlab.exceptions.ApiConnectionFailureException;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache serving stale values while refreshing them in the background.
+ *
+ * A value is fresh for a time to live after being loaded. A stale value is still returned immediately while a refresh
+ * runs in the background, until the value reaches the maximum staleness after which callers wait for a new value.
+ * Values read often are refreshed ahead of expiry so hot entries rarely become stale at all.
+ *
+ * Callers waiting for the value of the same key share a single load. Loads and refreshes which started before a key
+ * was invalidated never store their value, so an invalidated value isn't restored.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public abstract class RefreshingCache<K, V> {
+    /** The share of the time to live after which frequently read values are refreshed ahead of expiry. */
+    private static final double REFRESH_AHEAD_FACTOR = 0.75;
+
+    /** The number of reads of a value since it was loaded for it to be refreshed ahead of expiry. */
+    private static final int REFRESH_AHEAD_READS = 3;
+
+    /** The number of entries sampled for a victim when the cache is full. */
+    private static final int EVICTION_SAMPLES = 16;
+
+    /** The executor running background refreshes. */
+    private final Executor executor;
+
+    /** The maximum number of entries. */
+    private final int maxSize;
+
+    /** The time in milliseconds a value is fresh. */
+    private volatile long ttl;
+
+    /** The time in milliseconds a value may be served after it stopped being fresh. */
+    private volatile long maxStaleness;
+
+    /** The entries. */
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+
+    /** The loads in flight that callers are waiting for by key. */
+    private final ConcurrentHashMap<K, FutureTask<V>> loading = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    /** The number of fresh values served. */
+    private final AtomicLong freshHits = new AtomicLong();
+
+    /** The number of stale values served. */
+    private final AtomicLong staleHits = new AtomicLong();
+
+    /** The number of values loaded while the caller waited. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The total staleness in milliseconds of the stale values served. */
+    private final AtomicLong totalStaleness = new AtomicLong();
+
+    /** The greatest staleness in milliseconds of a stale value served. */
+    private final AtomicLong maxServedStaleness = new AtomicLong();
+
+    /** The number of background refreshes that failed. */
+    private final AtomicLong failedRefreshes = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param executor     the executor running background refreshes
+     * @param ttl          the time in milliseconds a value is fresh
+     * @param maxStaleness the time in milliseconds a value may be served after it stopped being fresh
+     * @param maxSize      the maximum number of entries
+     */
+    protected RefreshingCache(Executor executor, long ttl, long maxStaleness, int maxSize) {
+        this.executor = executor;
+        this.maxSize = maxSize;
+        setTtl(ttl, maxStaleness);
+    }
+
+    /**
+     * Sets for how long values are served.
+     *
+     * @param ttl          the time in milliseconds a value is fresh
+     * @param maxStaleness the time in milliseconds a value may be served after it stopped being fresh
+     */
+    public final void setTtl(long ttl, long maxStaleness) {
+        if (ttl < 0 || maxStaleness < 0) {
+            throw new IllegalArgumentException("Times to live must not be negative");
+        }
+        this.ttl = ttl;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Returns the value for a key, loading it if needed.
+     *
+     * @param key the key
+     * @return the value or null if there is no value for the key
+     * @throws GitLabApiException if the value had to be loaded and that failed
+     */
+    public V get(K key) throws GitLabApiException {
+        final long now = currentTimeMillis();
+        final Entry<V> entry = entries.get(key);
+
+        if (entry != null) {
+            final long age = now - entry.loadedAt;
+            final int reads = entry.reads.incrementAndGet();
+            entry.readAt = now;
+
+            if (age < ttl) {
+                freshHits.incrementAndGet();
+                onHit(key);
+                // refresh hot values before they expire
+                if (reads >= REFRESH_AHEAD_READS && age >= (long)(ttl * REFRESH_AHEAD_FACTOR)) {
+                    refreshInBackground(key, entry);
+                }
+                return entry.value;
+            }
+
+            final long staleness = age - ttl;
+            if (staleness < maxStaleness) {
+                recordStaleHit(staleness);
+                onHit(key);
+                refreshInBackground(key, entry);
+                return entry.value;
+            }
+        }
+
+        // nothing to serve, wait for the value
+        misses.incrementAndGet();
+        return load(key);
+    }
+
+    /**
+     * Removes the value for a key.
+     *
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        // a load in flight must not store the value it loaded before the invalidation
+        loading.remove(key);
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void invalidateAll() {
+        loading.clear();
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of fresh values served.
+     *
+     * @return the number of values
+     */
+    public long getFreshHits() {
+        return freshHits.get();
+    }
+
+    /**
+     * Returns the number of stale values served while refreshing in the background.
+     *
+     * @return the number of values
+     */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    /**
+     * Returns the number of values loaded while the caller waited.
+     *
+     * @return the number of values
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the average time the stale values served had been stale.
+     *
+     * @return the time in milliseconds
+     */
+    public long getAverageStaleness() {
+        final long hits = staleHits.get();
+        return (hits > 0) ? totalStaleness.get() / hits : 0;
+    }
+
+    /**
+     * Returns the greatest time a stale value served had been stale.
+     *
+     * @return the time in milliseconds
+     */
+    public long getMaxStaleness() {
+        return maxServedStaleness.get();
+    }
+
+    /**
+     * Returns the number of background refreshes that failed.
+     *
+     * The stale value is kept when a refresh fails.
+     *
+     * @return the number of refreshes
+     */
+    public long getFailedRefreshes() {
+        return failedRefreshes.get();
+    }
+
+    /**
+     * Returns the current time.
+     *
+     * @return the time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Called when a value is served from the cache, fresh or stale.
+     *
+     * @param key the key
+     */
+    protected void onHit(K key) {
+        // nothing to do by default
+    }
+
+    /**
+     * Loads the value for a key.
+     *
+     * @param key the key
+     * @return the value or null if there is no value for the key
+     * @throws GitLabApiException if the value could not be loaded
+     */
+    protected abstract V loadValue(K key) throws GitLabApiException;
+
+    /**
+     * Loads and stores the value for a key, or waits for the load of the key already in flight.
+     *
+     * @param key the key
+     * @return the value or null if there is no value for the key
+     * @throws GitLabApiException if the value could not be loaded
+     */
+    private V load(final K key) throws GitLabApiException {
+        final FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+            @Override
+            public V call() throws GitLabApiException {
+                return loadValue(key);
+            }
+        });
+        final FutureTask<V> running = loading.putIfAbsent(key, task);
+        if (running != null) {
+            // share the load already in flight
+            return await(running);
+        }
+
+        try {
+            task.run();
+            final V value = await(task);
+            store(key, task, value);
+            return value;
+        } finally {
+            loading.remove(key, task);
+        }
+    }
+
+    /**
+     * Stores a loaded value unless the key was invalidated while it was loaded.
+     *
+     * @param key   the key
+     * @param task  the load of the value
+     * @param value the value or null if there is no value for the key
+     */
+    private void store(K key, FutureTask<V> task, V value) {
+        if (value == null) {
+            entries.remove(key);
+            return;
+        }
+
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        final Entry<V> entry = new Entry<V>(value, currentTimeMillis());
+        entries.put(key, entry);
+        // invalidations remove the load before the entry, so either the entry or the load is gone by now
+        if (loading.get(key) != task) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Waits for a load to complete.
+     *
+     * @param task the load
+     * @param <V>  the type of the value
+     * @return the value or null if there is no value for the key
+     * @throws GitLabApiException if the value could not be loaded or if interrupted while waiting
+     */
+    private static <V> V await(FutureTask<V> task) throws GitLabApiException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionFailureException("Interrupted while waiting for a value to be loaded", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof GitLabApiException) {
+                throw (GitLabApiException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else {
+                throw (Error)cause;
+            }
+        }
+    }
+
+    /**
+     * Loads the value for a key in the background and replaces the entry being refreshed with it.
+     *
+     * The value is dropped if the entry was invalidated or replaced while the value was loaded.
+     *
+     * @param key   the key
+     * @param entry the entry being refreshed
+     * @throws GitLabApiException if the value could not be loaded
+     */
+    private void refresh(K key, Entry<V> entry) throws GitLabApiException {
+        final V value = loadValue(key);
+        if (value == null) {
+            entries.remove(key, entry);
+        } else {
+            entries.replace(key, entry, new Entry<V>(value, currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Refreshes the value for a key in the background unless already being refreshed.
+     *
+     * @param key   the key
+     * @param entry the current entry for the key
+     */
+    private void refreshInBackground(final K key, final Entry<V> entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh(key, entry);
+                    } catch (GitLabApiException e) {
+                        // keep serving the stale value until it has been stale for too long
+                        failedRefreshes.incrementAndGet();
+                        entry.refreshing.set(false);
+                    } catch (RuntimeException e) {
+                        failedRefreshes.incrementAndGet();
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // try again on the next read
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Records that a stale value was served.
+     *
+     * @param staleness the time in milliseconds the value had been stale
+     */
+    private void recordStaleHit(long staleness) {
+        staleHits.incrementAndGet();
+        totalStaleness.addAndGet(staleness);
+
+        long max = maxServedStaleness.get();
+        while (staleness > max && !maxServedStaleness.compareAndSet(max, staleness)) {
+            max = maxServedStaleness.get();
+        }
+    }
+
+    /**
+     * Makes room for a new entry by removing the values which can no longer be served among a sample of the entries,
+     * or the least recently read value of the sample if none of them has expired.
+     *
+     * Only a bounded number of entries is looked at, so evicting stays cheap while the cache is full, and values read
+     * often are kept.
+     */
+    private void evict() {
+        final long oldest = currentTimeMillis() - ttl - maxStaleness;
+        final Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = null;
+        boolean isExpiredRemoved = false;
+        for (int i = 0; i < EVICTION_SAMPLES && iterator.hasNext(); i++) {
+            final Map.Entry<K, Entry<V>> candidate = iterator.next();
+            if (candidate.getValue().loadedAt <= oldest) {
+                iterator.remove();
+                isExpiredRemoved = true;
+            } else if (victim == null || candidate.getValue().readAt < victim.getValue().readAt) {
+                victim = candidate;
+            }
+        }
+        if (!isExpiredRemoved && victim != null) {
+            entries.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    /**
+     * A cached value.
+     *
+     * @param <V> the type of the value
+     */
+    private static final class Entry<V> {
+        /** The value. */
+        private final V value;
+
+        /** The time in milliseconds the value was loaded. */
+        private final long loadedAt;
+
+        /** The number of reads since the value was loaded. */
+        private final AtomicInteger reads = new AtomicInteger();
+
+        /** The time in milliseconds the value was last read (or loaded if never read). */
+        private volatile long readAt;
+
+        /** Whether the value is being refreshed. */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /**
+         * Creates an entry.
+         *
+         * @param value    the value
+         * @param loadedAt the time in milliseconds the value was loaded
+         */
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.readAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+/**
+ * A value in a directory with the version of the change which last set it.
+ *
+ * A version orders changes by their time and then by their phase, so a removal wins over a creation at the same time.
+ * Changes from system hook events are ordered among themselves by the times GitLab gave the events, so events
+ * delivered out of order are applied in the right order. Other changes are ordered by the local times the changes
+ * were received, since the clocks of GitLab and of this host may differ.
+ *
+ * @param <V> the type of value
+ */
+/* package */ final class DirectoryEntry<V> {
+    /** The phase of a change creating an object. */
+    /* package */ static final int PHASE_CREATE = 0;
+
+    /** The phase of a change updating an object. */
+    /* package */ static final int PHASE_UPDATE = 1;
+
+    /** The phase of a change removing an object. */
+    /* package */ static final int PHASE_REMOVE = 2;
+
+    /** The event time of a change which isn't a system hook event. */
+    /* package */ static final long NO_EVENT_TIME = -1;
+
+    /** The value (or null if removed). */
+    private final V value;
+
+    /** The local time of the change in milliseconds since the epoch. */
+    private final long time;
+
+    /** The time GitLab gave the event of the change (or {@link #NO_EVENT_TIME} if not changed by an event). */
+    private final long eventTime;
+
+    /** The phase of the change. */
+    private final int phase;
+
+    /**
+     * Creates an entry for a change which isn't a system hook event.
+     *
+     * @param value the value (or null if removed)
+     * @param time  the local time of the change
+     * @param phase the phase of the change
+     */
+    /* package */ DirectoryEntry(V value, long time, int phase) {
+        this(value, time, NO_EVENT_TIME, phase);
+    }
+
+    /**
+     * Creates an entry.
+     *
+     * @param value     the value (or null if removed)
+     * @param time      the local time of the change
+     * @param eventTime the time GitLab gave the event of the change (or {@link #NO_EVENT_TIME} if not an event)
+     * @param phase     the phase of the change
+     */
+    /* package */ DirectoryEntry(V value, long time, long eventTime, int phase) {
+        this.value = value;
+        this.time = time;
+        this.eventTime = eventTime;
+        this.phase = phase;
+    }
+
+    /**
+     * Creates an entry for a permanently removed object.
+     *
+     * @param <V> the type of value
+     * @return an entry newer than any other entry
+     */
+    /* package */ static <V> DirectoryEntry<V> removed() {
+        return new DirectoryEntry<V>(null, Long.MAX_VALUE, Long.MAX_VALUE, PHASE_REMOVE);
+    }
+
+    /**
+     * Gets the value of an entry.
+     *
+     * @param entry the entry (or null)
+     * @param <V>   the type of value
+     * @return the value or null if there is no entry or the entry has been removed
+     */
+    /* package */ static <V> V valueOf(DirectoryEntry<V> entry) {
+        return (entry != null) ? entry.value : null;
+    }
+
+    /**
+     * Checks whether an entry has been permanently removed.
+     *
+     * @param entry the entry (or null)
+     * @return true if the entry has been permanently removed
+     */
+    /* package */ static boolean isRemoved(DirectoryEntry<?> entry) {
+        return entry != null && entry.time == Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether an entry has been removed, permanently or by a synchronization.
+     *
+     * @param entry the entry (or null)
+     * @return true if there is an entry without a value
+     */
+    /* package */ static boolean isDeleted(DirectoryEntry<?> entry) {
+        return entry != null && entry.value == null;
+    }
+
+    /**
+     * Gets the value.
+     *
+     * @return the value (or null if removed)
+     */
+    /* package */ V getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the local time of the change.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    /* package */ long getTime() {
+        return time;
+    }
+
+    /**
+     * Checks whether the entry is newer than another entry.
+     *
+     * @param other the other entry
+     * @return true if newer
+     */
+    /* package */ boolean isNewerThan(DirectoryEntry<?> other) {
+        if (eventTime != NO_EVENT_TIME && other.eventTime != NO_EVENT_TIME) {
+            // both changes are events timed by the clock of GitLab
+            return eventTime > other.eventTime || eventTime == other.eventTime && phase > other.phase;
+        }
+        return time > other.time || time == other.time && phase > other.phase;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory of the users, groups and group memberships of a GitLab server kept up to date incrementally.
+ *
+ * Updates are applied as system hook events and as complete lists fetched from the API. Since hooks may be delivered
+ * more than once and out of order, every entry remembers the version of the change which last set it and older or
+ * repeated changes are ignored. A version orders changes by the time of the affected object and then by the kind of
+ * change, so the removal of an object wins over its creation even if the removal is delivered first. Since the clocks
+ * of GitLab and of this host may differ, system hook events are only ordered by the times GitLab gave them among
+ * themselves, and are ordered against the lists fetched from the API by the local times they were received. Users
+ * and groups removed by system hooks are never brought back since GitLab doesn't reuse IDs.
+ *
+ * The state is published as immutable {@link GitLabDirectorySnapshot}s. Each change builds a new snapshot off to the
+ * side, sharing everything it doesn't change with the previous snapshot, and swaps it in with a single atomic
+ * reference, so readers never block and never see half applied changes. Readers needing a consistent view across
+ * several lookups should use {@link #getSnapshot()} instead of the lookup methods of the directory, which each read
+ * the latest snapshot.
+ */
+public class GitLabDirectory {
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabDirectory.class.getName());
+
+    /** The latest snapshot. */
+    private final AtomicReference<GitLabDirectorySnapshot> snapshot =
+            new AtomicReference<GitLabDirectorySnapshot>(GitLabDirectorySnapshot.EMPTY);
+
+    /** The listeners notified of new snapshots. */
+    private final List<SnapshotListener> listeners = new CopyOnWriteArrayList<SnapshotListener>();
+
+    /**
+     * Adds a listener notified of new snapshots.
+     *
+     * @param listener the listener
+     */
+    public void addListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(SnapshotListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the latest snapshot.
+     *
+     * @return a snapshot
+     */
+    public GitLabDirectorySnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Applies a system hook event to the directory.
+     *
+     * @param event a system hook event
+     * @return true if the directory was changed, false if the event was outdated, repeated or not recognized
+     */
+    public synchronized boolean apply(GitLabSystemHookEvent event) {
+        SnapshotBuilder builder = new SnapshotBuilder(snapshot.get());
+        if (!builder.apply(event)) {
+            return false;
+        }
+        publish(builder);
+        return true;
+    }
+
+    /**
+     * Applies complete lists fetched from the API to the directory.
+     *
+     * Changes from system hooks received after the lists were fetched are kept. Users, groups and group members missing
+     * from the lists are removed. The numbers of changes are recorded in the update.
+     *
+     * @param update the lists
+     * @return true if the directory was changed
+     */
+    public synchronized boolean update(GitLabDirectoryUpdate update) {
+        SnapshotBuilder builder = new SnapshotBuilder(snapshot.get());
+        update.applyTo(builder);
+        if (!builder.isChanged()) {
+            return false;
+        }
+        publish(builder);
+        return true;
+    }
+
+    /**
+     * Gets a user from the latest snapshot.
+     *
+     * @param userId a user ID
+     * @return the user or null if not known
+     */
+    public GitLabUserInfo getUser(int userId) {
+        return getSnapshot().getUser(userId);
+    }
+
+    /**
+     * Gets a group from the latest snapshot.
+     *
+     * @param groupId a group ID
+     * @return the group or null if not known
+     */
+    public GitLabGroupInfo getGroup(int groupId) {
+        return getSnapshot().getGroup(groupId);
+    }
+
+    /**
+     * Gets the members of a group from the latest snapshot.
+     *
+     * @param groupId a group ID
+     * @return a list of group members sorted by user ID (empty if the group isn't known)
+     */
+    public List<GitLabGroupMemberInfo> getGroupMembers(int groupId) {
+        return getSnapshot().getGroupMembers(groupId);
+    }
+
+    /**
+     * Gets the access level of a user in a group from the latest snapshot.
+     *
+     * @param groupId a group ID
+     * @param userId  a user ID
+     * @return the access level ({@link GitLabAccessLevel#NONE} if the user isn't a member of the group)
+     */
+    public GitLabAccessLevel getAccessLevel(int groupId, int userId) {
+        return getSnapshot().getAccessLevel(groupId, userId);
+    }
+
+    /**
+     * Gets the IDs of the known users from the latest snapshot.
+     *
+     * @return the user IDs in ascending order (must not be changed)
+     */
+    public int[] getUserIds() {
+        return getSnapshot().getUserIds();
+    }
+
+    /**
+     * Gets the IDs of the known groups from the latest snapshot.
+     *
+     * @return the group IDs in ascending order (must not be changed)
+     */
+    public int[] getGroupIds() {
+        return getSnapshot().getGroupIds();
+    }
+
+    /**
+     * Returns the number of known users in the latest snapshot.
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return getSnapshot().getUserCount();
+    }
+
+    /**
+     * Returns the number of known groups in the latest snapshot.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return getSnapshot().getGroupCount();
+    }
+
+    /**
+     * Publishes the snapshot of a builder.
+     *
+     * Must be called while holding the lock of the directory.
+     *
+     * @param builder the builder with the changes
+     */
+    private void publish(SnapshotBuilder builder) {
+        GitLabDirectorySnapshot previous = snapshot.get();
+        GitLabDirectorySnapshot current = builder.build();
+        snapshot.set(current);
+
+        for (SnapshotListener listener : listeners) {
+            try {
+                listener.snapshotPublished(previous, current);
+            } catch (RuntimeException e) {
+                // a failing listener must not affect the directory or the other listeners
+                LOGGER.log(Level.WARNING, "Snapshot listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+/**
+ * A change between two snapshots of a {@link GitLabDirectory}.
+ *
+ * User changes refer to a user, group changes to a group and membership changes to both. The previous values are null
+ * for additions and the current values are null for removals.
+ */
+public final class GitLabDirectoryChange {
+    /**
+     * The types of changes.
+     */
+    public enum Type {
+        /** A user was added. */
+        USER_ADDED,
+        /** A user was removed. */
+        USER_REMOVED,
+        /** A user was blocked. */
+        USER_BLOCKED,
+        /** A blocked user was activated. */
+        USER_UNBLOCKED,
+        /** Any other attribute of a user changed. */
+        USER_CHANGED,
+        /** A group was added. */
+        GROUP_ADDED,
+        /** A group was removed. */
+        GROUP_REMOVED,
+        /** The name or path of a group changed. */
+        GROUP_CHANGED,
+        /** A user was added to a group. */
+        MEMBER_ADDED,
+        /** A user was removed from a group. */
+        MEMBER_REMOVED,
+        /** The access level of a group member changed. */
+        ACCESS_LEVEL_CHANGED
+    }
+
+    /** The type of change. */
+    private final Type type;
+
+    /** The user before the change. */
+    private final GitLabUserInfo previousUser;
+
+    /** The user after the change. */
+    private final GitLabUserInfo user;
+
+    /** The group before the change. */
+    private final GitLabGroupInfo previousGroup;
+
+    /** The group after the change. */
+    private final GitLabGroupInfo group;
+
+    /** The ID of the affected group of a membership change. */
+    private final int groupId;
+
+    /** The access level before the change. */
+    private final GitLabAccessLevel previousAccessLevel;
+
+    /** The access level after the change. */
+    private final GitLabAccessLevel accessLevel;
+
+    /**
+     * Creates a change.
+     *
+     * @param type                the type of change
+     * @param previousUser        the user before the change
+     * @param user                the user after the change
+     * @param previousGroup       the group before the change
+     * @param group               the group after the change
+     * @param groupId             the ID of the affected group (or -1)
+     * @param previousAccessLevel the access level before the change
+     * @param accessLevel         the access level after the change
+     */
+    private GitLabDirectoryChange(Type type, GitLabUserInfo previousUser, GitLabUserInfo user,
+                                  GitLabGroupInfo previousGroup, GitLabGroupInfo group, int groupId,
+                                  GitLabAccessLevel previousAccessLevel, GitLabAccessLevel accessLevel) {
+        this.type = type;
+        this.previousUser = previousUser;
+        this.user = user;
+        this.previousGroup = previousGroup;
+        this.group = group;
+        this.groupId = groupId;
+        this.previousAccessLevel = previousAccessLevel;
+        this.accessLevel = accessLevel;
+    }
+
+    /**
+     * Creates a change of a user.
+     *
+     * @param type         the type of change
+     * @param previousUser the user before the change (or null)
+     * @param user         the user after the change (or null)
+     * @return a change
+     */
+    /* package */ static GitLabDirectoryChange userChange(Type type, GitLabUserInfo previousUser,
+                                                          GitLabUserInfo user) {
+        return new GitLabDirectoryChange(type, previousUser, user, null, null, -1, null, null);
+    }
+
+    /**
+     * Creates a change of a group.
+     *
+     * @param type          the type of change
+     * @param previousGroup the group before the change (or null)
+     * @param group         the group after the change (or null)
+     * @return a change
+     */
+    /* package */ static GitLabDirectoryChange groupChange(Type type, GitLabGroupInfo previousGroup,
+                                                           GitLabGroupInfo group) {
+        int groupId = (group != null) ? group.getId() : previousGroup.getId();
+        return new GitLabDirectoryChange(type, null, null, previousGroup, group, groupId, null, null);
+    }
+
+    /**
+     * Creates a change of a group membership.
+     *
+     * @param type                the type of change
+     * @param user                the member (as known after the change if still known, otherwise before it)
+     * @param groupId             the group ID
+     * @param previousAccessLevel the access level before the change (or null)
+     * @param accessLevel         the access level after the change (or null)
+     * @return a change
+     */
+    /* package */ static GitLabDirectoryChange membershipChange(Type type, GitLabUserInfo user, int groupId,
+                                                                GitLabAccessLevel previousAccessLevel,
+                                                                GitLabAccessLevel accessLevel) {
+        return new GitLabDirectoryChange(type, user, user, null, null, groupId, previousAccessLevel, accessLevel);
+    }
+
+    /**
+     * Gets the type of change.
+     *
+     * @return a change type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the affected user.
+     *
+     * @return a user ID (or -1 for group changes)
+     */
+    public int getUserId() {
+        GitLabUserInfo anyUser = (user != null) ? user : previousUser;
+        return (anyUser != null) ? anyUser.getId() : -1;
+    }
+
+    /**
+     * Gets the ID of the affected group.
+     *
+     * @return a group ID (or -1 for user changes)
+     */
+    public int getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Gets the user before the change.
+     *
+     * @return a user (or null)
+     */
+    public GitLabUserInfo getPreviousUser() {
+        return previousUser;
+    }
+
+    /**
+     * Gets the user after the change.
+     *
+     * @return a user (or null)
+     */
+    public GitLabUserInfo getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the group before the change.
+     *
+     * @return a group (or null)
+     */
+    public GitLabGroupInfo getPreviousGroup() {
+        return previousGroup;
+    }
+
+    /**
+     * Gets the group after the change.
+     *
+     * @return a group (or null)
+     */
+    public GitLabGroupInfo getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the access level before the change.
+     *
+     * @return an access level (or null)
+     */
+    public GitLabAccessLevel getPreviousAccessLevel() {
+        return previousAccessLevel;
+    }
+
+    /**
+     * Gets the access level after the change.
+     *
+     * @return an access level (or null)
+     */
+    public GitLabAccessLevel getAccessLevel() {
+        return accessLevel;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case GROUP_ADDED:
+            case GROUP_REMOVED:
+            case GROUP_CHANGED:
+                return type + " " + groupId;
+            case MEMBER_ADDED:
+            case MEMBER_REMOVED:
+            case ACCESS_LEVEL_CHANGED:
+                return type + " " + getUserId() + " in " + groupId;
+            default:
+                return type + " " + getUserId();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.ACCESS_LEVEL_CHANGED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.GROUP_ADDED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.GROUP_CHANGED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.GROUP_REMOVED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.MEMBER_ADDED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.MEMBER_REMOVED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_ADDED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_BLOCKED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_CHANGED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_REMOVED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_UNBLOCKED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.membershipChange;
+
+/**
+ * Compares snapshots of a {@link GitLabDirectory}.
+ *
+ * The sorted IDs of the users, the groups and the members of each group are merged in linear time. Since snapshots
+ * share the maps which weren't changed between them, whole sets of users, groups or group members are skipped when
+ * both snapshots refer to the same map, so comparing consecutive snapshots costs little more than the change itself.
+ */
+public final class GitLabDirectoryDiff {
+    private GitLabDirectoryDiff() { /* empty */ }
+
+    /**
+     * Compares two snapshots.
+     *
+     * @param previous the earlier snapshot
+     * @param current  the later snapshot
+     * @return the changes, ordered as user changes, group changes and membership changes, each by ascending ID
+     */
+    public static List<GitLabDirectoryChange> compare(GitLabDirectorySnapshot previous,
+                                                      GitLabDirectorySnapshot current) {
+        List<GitLabDirectoryChange> changes = new ArrayList<GitLabDirectoryChange>();
+        if (previous == current) {
+            return changes;
+        }
+        compareUsers(previous, current, changes);
+        compareGroups(previous, current, changes);
+        compareMemberships(previous, current, changes);
+        return changes;
+    }
+
+    /**
+     * Compares the users of two snapshots.
+     *
+     * @param previous the earlier snapshot
+     * @param current  the later snapshot
+     * @param changes  the list to add the changes to
+     */
+    private static void compareUsers(GitLabDirectorySnapshot previous, GitLabDirectorySnapshot current,
+                                     List<GitLabDirectoryChange> changes) {
+        if (previous.getUserEntries() == current.getUserEntries()) {
+            // no user changed
+            return;
+        }
+
+        int[] previousIds = previous.getUserIds();
+        int[] ids = current.getUserIds();
+        int i = 0;
+        int j = 0;
+        while (i < previousIds.length || j < ids.length) {
+            if (j == ids.length || i < previousIds.length && previousIds[i] < ids[j]) {
+                changes.add(GitLabDirectoryChange.userChange(USER_REMOVED, previous.getUser(previousIds[i++]), null));
+            } else if (i == previousIds.length || ids[j] < previousIds[i]) {
+                changes.add(GitLabDirectoryChange.userChange(USER_ADDED, null, current.getUser(ids[j++])));
+            } else {
+                GitLabUserInfo previousUser = previous.getUser(previousIds[i++]);
+                GitLabUserInfo user = current.getUser(ids[j++]);
+                if (previousUser != user) {
+                    if (previousUser.isActive() && !user.isActive()) {
+                        changes.add(GitLabDirectoryChange.userChange(USER_BLOCKED, previousUser, user));
+                    } else if (!previousUser.isActive() && user.isActive()) {
+                        changes.add(GitLabDirectoryChange.userChange(USER_UNBLOCKED, previousUser, user));
+                    } else if (!previousUser.getIdentity().equals(user.getIdentity())
+                            || previousUser.isAdmin() != user.isAdmin()) {
+                        changes.add(GitLabDirectoryChange.userChange(USER_CHANGED, previousUser, user));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the groups of two snapshots.
+     *
+     * @param previous the earlier snapshot
+     * @param current  the later snapshot
+     * @param changes  the list to add the changes to
+     */
+    private static void compareGroups(GitLabDirectorySnapshot previous, GitLabDirectorySnapshot current,
+                                      List<GitLabDirectoryChange> changes) {
+        if (previous.getGroupEntries() == current.getGroupEntries()) {
+            // no group changed
+            return;
+        }
+
+        int[] previousIds = previous.getGroupIds();
+        int[] ids = current.getGroupIds();
+        int i = 0;
+        int j = 0;
+        while (i < previousIds.length || j < ids.length) {
+            if (j == ids.length || i < previousIds.length && previousIds[i] < ids[j]) {
+                changes.add(GitLabDirectoryChange.groupChange(GROUP_REMOVED, previous.getGroup(previousIds[i++]),
+                        null));
+            } else if (i == previousIds.length || ids[j] < previousIds[i]) {
+                changes.add(GitLabDirectoryChange.groupChange(GROUP_ADDED, null, current.getGroup(ids[j++])));
+            } else {
+                GitLabGroupInfo previousGroup = previous.getGroup(previousIds[i++]);
+                GitLabGroupInfo group = current.getGroup(ids[j++]);
+                if (!previousGroup.equals(group)) {
+                    changes.add(GitLabDirectoryChange.groupChange(GROUP_CHANGED, previousGroup, group));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the group memberships of two snapshots.
+     *
+     * @param previous the earlier snapshot
+     * @param current  the later snapshot
+     * @param changes  the list to add the changes to
+     */
+    private static void compareMemberships(GitLabDirectorySnapshot previous, GitLabDirectorySnapshot current,
+                                           List<GitLabDirectoryChange> changes) {
+        Map<Integer, ?> previousMemberships = previous.getMembershipEntries();
+        Map<Integer, ?> memberships = current.getMembershipEntries();
+        // the members of a group also depend on which users are known
+        boolean sameUsers = previous.getUserEntries() == current.getUserEntries();
+        if (previousMemberships == memberships && sameUsers) {
+            // no membership changed
+            return;
+        }
+
+        int[] previousGroupIds = sortedKeys(previousMemberships);
+        int[] groupIds = sortedKeys(memberships);
+        int i = 0;
+        int j = 0;
+        while (i < previousGroupIds.length || j < groupIds.length) {
+            int groupId;
+            if (j == groupIds.length || i < previousGroupIds.length && previousGroupIds[i] < groupIds[j]) {
+                groupId = previousGroupIds[i++];
+            } else if (i == previousGroupIds.length || groupIds[j] < previousGroupIds[i]) {
+                groupId = groupIds[j++];
+            } else {
+                groupId = groupIds[j++];
+                i++;
+                if (sameUsers && previousMemberships.get(groupId) == memberships.get(groupId)) {
+                    // the members of this group didn't change
+                    continue;
+                }
+            }
+            compareMembers(previous, current, groupId, changes);
+        }
+    }
+
+    /**
+     * Compares the members of a group in two snapshots.
+     *
+     * @param previous the earlier snapshot
+     * @param current  the later snapshot
+     * @param groupId  the group ID
+     * @param changes  the list to add the changes to
+     */
+    private static void compareMembers(GitLabDirectorySnapshot previous, GitLabDirectorySnapshot current,
+                                       int groupId, List<GitLabDirectoryChange> changes) {
+        int[] previousIds = previous.getMemberIds(groupId);
+        int[] ids = current.getMemberIds(groupId);
+        int i = 0;
+        int j = 0;
+        while (i < previousIds.length || j < ids.length) {
+            if (j == ids.length || i < previousIds.length && previousIds[i] < ids[j]) {
+                int userId = previousIds[i++];
+                GitLabUserInfo user = (current.getUser(userId) != null) ? current.getUser(userId)
+                        : previous.getUser(userId);
+                changes.add(membershipChange(MEMBER_REMOVED, user, groupId,
+                        previous.getAccessLevel(groupId, userId), null));
+            } else if (i == previousIds.length || ids[j] < previousIds[i]) {
+                int userId = ids[j++];
+                changes.add(membershipChange(MEMBER_ADDED, current.getUser(userId), groupId,
+                        null, current.getAccessLevel(groupId, userId)));
+            } else {
+                int userId = ids[j++];
+                i++;
+                GitLabAccessLevel previousAccessLevel = previous.getAccessLevel(groupId, userId);
+                GitLabAccessLevel accessLevel = current.getAccessLevel(groupId, userId);
+                if (previousAccessLevel != accessLevel) {
+                    changes.add(membershipChange(ACCESS_LEVEL_CHANGED, current.getUser(userId), groupId,
+                            previousAccessLevel, accessLevel));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the sorted keys of a map.
+     *
+     * @param map the map
+     * @return the keys in ascending order
+     */
+    private static int[] sortedKeys(Map<Integer, ?> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (Integer key : map.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.sonymobile.gitlab.directory.DirectoryEntry.valueOf;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * An immutable version of the users, groups and group memberships of a {@link GitLabDirectory}.
+ *
+ * A snapshot never changes once published, so a reader which holds on to a snapshot, e.g. for the length of a
+ * permission evaluation, sees a consistent state no matter how the directory is updated meanwhile. Derived data such as
+ * sorted IDs and lists of group members is computed on first use and shared by all readers of the snapshot.
+ */
+public final class GitLabDirectorySnapshot {
+    /** An empty snapshot. */
+    /* package */ static final GitLabDirectorySnapshot EMPTY = new GitLabDirectorySnapshot(0,
+            Collections.<Integer, DirectoryEntry<GitLabUserInfo>>emptyMap(),
+            Collections.<Integer, DirectoryEntry<GitLabGroupInfo>>emptyMap(),
+            Collections.<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>>emptyMap());
+
+    /** The version, increased by every published change. */
+    private final long version;
+
+    /** The users by ID. */
+    private final Map<Integer, DirectoryEntry<GitLabUserInfo>> users;
+
+    /** The groups by ID. */
+    private final Map<Integer, DirectoryEntry<GitLabGroupInfo>> groups;
+
+    /** The access levels of the group members by user ID, by group ID. */
+    private final Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> memberships;
+
+    /** The sorted IDs of the users (computed on first use). */
+    private volatile int[] userIds;
+
+    /** The sorted IDs of the groups (computed on first use). */
+    private volatile int[] groupIds;
+
+    /** The sorted user IDs of the members by group ID (computed on first use). */
+    private final ConcurrentMap<Integer, int[]> memberIds = new ConcurrentHashMap<Integer, int[]>();
+
+    /** The members by group ID (computed on first use). */
+    private final ConcurrentMap<Integer, List<GitLabGroupMemberInfo>> members =
+            new ConcurrentHashMap<Integer, List<GitLabGroupMemberInfo>>();
+
+    /**
+     * Creates a snapshot.
+     *
+     * The maps must never be changed after this.
+     *
+     * @param version     the version
+     * @param users       the users by ID
+     * @param groups      the groups by ID
+     * @param memberships the access levels of the group members by user ID, by group ID
+     */
+    /* package */ GitLabDirectorySnapshot(long version,
+                                          Map<Integer, DirectoryEntry<GitLabUserInfo>> users,
+                                          Map<Integer, DirectoryEntry<GitLabGroupInfo>> groups,
+                                          Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> memberships) {
+        this.version = version;
+        this.users = users;
+        this.groups = groups;
+        this.memberships = memberships;
+    }
+
+    /**
+     * Gets the version of the snapshot.
+     *
+     * @return a version, greater than the version of any snapshot published before it
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets a user.
+     *
+     * @param userId a user ID
+     * @return the user or null if not known
+     */
+    public GitLabUserInfo getUser(int userId) {
+        return valueOf(users.get(userId));
+    }
+
+    /**
+     * Gets a group.
+     *
+     * @param groupId a group ID
+     * @return the group or null if not known
+     */
+    public GitLabGroupInfo getGroup(int groupId) {
+        return valueOf(groups.get(groupId));
+    }
+
+    /**
+     * Gets the members of a group.
+     *
+     * Only members which are known users are included.
+     *
+     * @param groupId a group ID
+     * @return a list of group members sorted by user ID (empty if the group isn't known)
+     */
+    public List<GitLabGroupMemberInfo> getGroupMembers(int groupId) {
+        List<GitLabGroupMemberInfo> groupMembers = members.get(groupId);
+        if (groupMembers == null) {
+            int[] ids = getMemberIds(groupId);
+            if (ids.length == 0) {
+                return emptyList();
+            }
+
+            Map<Integer, DirectoryEntry<GitLabAccessLevel>> accessLevels = memberships.get(groupId);
+            List<GitLabGroupMemberInfo> list = new ArrayList<GitLabGroupMemberInfo>(ids.length);
+            for (int userId : ids) {
+                list.add(new GitLabGroupMemberInfo(getUser(userId).getIdentity(), groupId,
+                        valueOf(accessLevels.get(userId))));
+            }
+            groupMembers = unmodifiableList(list);
+            // any concurrently computed list is equal
+            members.put(groupId, groupMembers);
+        }
+        return groupMembers;
+    }
+
+    /**
+     * Gets the access level of a user in a group.
+     *
+     * @param groupId a group ID
+     * @param userId  a user ID
+     * @return the access level ({@link GitLabAccessLevel#NONE} if the user isn't a member of the group)
+     */
+    public GitLabAccessLevel getAccessLevel(int groupId, int userId) {
+        Map<Integer, DirectoryEntry<GitLabAccessLevel>> accessLevels = memberships.get(groupId);
+        GitLabAccessLevel accessLevel = (accessLevels != null) ? valueOf(accessLevels.get(userId)) : null;
+        return (accessLevel != null && getUser(userId) != null) ? accessLevel : GitLabAccessLevel.NONE;
+    }
+
+    /**
+     * Gets the IDs of the known users.
+     *
+     * @return the user IDs in ascending order (must not be changed)
+     */
+    public int[] getUserIds() {
+        int[] ids = userIds;
+        if (ids == null) {
+            ids = sortedIdsOf(users);
+            userIds = ids;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the IDs of the known groups.
+     *
+     * @return the group IDs in ascending order (must not be changed)
+     */
+    public int[] getGroupIds() {
+        int[] ids = groupIds;
+        if (ids == null) {
+            ids = sortedIdsOf(groups);
+            groupIds = ids;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the user IDs of the members of a group.
+     *
+     * Only members which are known users are included.
+     *
+     * @param groupId a group ID
+     * @return the user IDs in ascending order (must not be changed)
+     */
+    public int[] getMemberIds(int groupId) {
+        int[] ids = memberIds.get(groupId);
+        if (ids == null) {
+            Map<Integer, DirectoryEntry<GitLabAccessLevel>> accessLevels = memberships.get(groupId);
+            if (accessLevels == null) {
+                return new int[0];
+            }
+
+            ids = new int[accessLevels.size()];
+            int count = 0;
+            for (Map.Entry<Integer, DirectoryEntry<GitLabAccessLevel>> member : accessLevels.entrySet()) {
+                if (valueOf(member.getValue()) != null && getUser(member.getKey()) != null) {
+                    ids[count++] = member.getKey();
+                }
+            }
+            ids = Arrays.copyOf(ids, count);
+            Arrays.sort(ids);
+            memberIds.put(groupId, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of known users.
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return getUserIds().length;
+    }
+
+    /**
+     * Returns the number of known groups.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return getGroupIds().length;
+    }
+
+    @Override
+    public String toString() {
+        return "version " + version;
+    }
+
+    /**
+     * Gets the user entries.
+     *
+     * @return the users by ID (must not be changed)
+     */
+    /* package */ Map<Integer, DirectoryEntry<GitLabUserInfo>> getUserEntries() {
+        return users;
+    }
+
+    /**
+     * Gets the group entries.
+     *
+     * @return the groups by ID (must not be changed)
+     */
+    /* package */ Map<Integer, DirectoryEntry<GitLabGroupInfo>> getGroupEntries() {
+        return groups;
+    }
+
+    /**
+     * Gets the membership entries.
+     *
+     * @return the access levels of the group members by user ID, by group ID (must not be changed)
+     */
+    /* package */ Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> getMembershipEntries() {
+        return memberships;
+    }
+
+    /**
+     * Gets the sorted IDs of the entries with values.
+     *
+     * @param entries the entries
+     * @return the IDs in ascending order
+     */
+    /* package */ static int[] sortedIdsOf(Map<Integer, ? extends DirectoryEntry<?>> entries) {
+        int[] ids = new int[entries.size()];
+        int count = 0;
+        for (Map.Entry<Integer, ? extends DirectoryEntry<?>> entry : entries.entrySet()) {
+            if (valueOf(entry.getValue()) != null) {
+                ids[count++] = entry.getKey();
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+}
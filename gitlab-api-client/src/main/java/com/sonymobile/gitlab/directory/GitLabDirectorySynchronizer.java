@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.exceptions.GroupNotFoundException;
+import com.sonymobile.gitlab.http.RequestContext;
+import com.sonymobile.gitlab.http.RequestPriority;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronizes a {@link GitLabDirectory} with the API in passes.
+ *
+ * Since the API can't list what changed since a point in time, every pass fetches every page of the lists of users and
+ * groups and merges them into the directory by their sorted IDs. A pass which can't fetch a list completely fails
+ * without changing the directory, so items are never removed because of a page which wasn't fetched. The members of
+ * each group require a request of their own, so a pass only fetches the members of the groups which are new and of a
+ * limited number of other groups, continuing with the following groups in the next pass. The requests for group members
+ * can be spaced out to limit the load on the server. All requests of a pass are made with background priority.
+ *
+ * All lists fetched in a pass are applied to the directory as a single change once the pass is complete, and changes from
+ * system hooks made after the lists were fetched are never overwritten.
+ */
+public class GitLabDirectorySynchronizer {
+    /** The default number of groups, besides new groups, to fetch the members of in each pass. */
+    public static final int DEFAULT_GROUPS_PER_PASS = 200;
+
+    /** The API client to fetch with. */
+    private final GitLabApiClient client;
+
+    /** The directory to synchronize. */
+    private final GitLabDirectory directory;
+
+    /** The number of groups, besides new groups, to fetch the members of in each pass. */
+    private int groupsPerPass = DEFAULT_GROUPS_PER_PASS;
+
+    /** The delay in milliseconds between requests for group members. */
+    private long requestDelay = 0;
+
+    /** The ID of the group to continue fetching members from in the next pass. */
+    private int nextGroupId = 0;
+
+    /**
+     * Creates a synchronizer.
+     *
+     * @param client    the API client to fetch with
+     * @param directory the directory to synchronize
+     */
+    public GitLabDirectorySynchronizer(GitLabApiClient client, GitLabDirectory directory) {
+        this.client = client;
+        this.directory = directory;
+    }
+
+    /**
+     * Sets the number of groups, besides new groups, to fetch the members of in each pass.
+     *
+     * @param groupsPerPass the number of groups
+     * @return this object for chaining
+     */
+    public GitLabDirectorySynchronizer withGroupsPerPass(int groupsPerPass) {
+        if (groupsPerPass < 0) {
+            throw new IllegalArgumentException("Negative number of groups per pass");
+        }
+        this.groupsPerPass = groupsPerPass;
+        return this;
+    }
+
+    /**
+     * Sets the delay between requests for group members.
+     *
+     * @param delay the delay
+     * @param unit  the time unit of the delay
+     * @return this object for chaining
+     */
+    public GitLabDirectorySynchronizer withRequestDelay(long delay, TimeUnit unit) {
+        this.requestDelay = unit.toMillis(delay);
+        return this;
+    }
+
+    /**
+     * Gets the API client.
+     *
+     * @return the API client
+     */
+    public GitLabApiClient getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the synchronized directory.
+     *
+     * @return the directory
+     */
+    public GitLabDirectory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Runs a synchronization pass.
+     *
+     * @return the result of the pass
+     * @throws GitLabApiException   if the users or groups couldn't be fetched
+     * @throws InterruptedException if interrupted while waiting between requests
+     */
+    public synchronized GitLabSyncResult synchronize() throws GitLabApiException, InterruptedException {
+        // nobody is waiting for the pass, let interactive requests go first
+        RequestPriority previousPriority = RequestContext.setPriority(RequestPriority.BACKGROUND);
+        try {
+            return synchronizeInBackground();
+        } finally {
+            RequestContext.setPriority(previousPriority);
+        }
+    }
+
+    /**
+     * Runs a synchronization pass with the current request priority.
+     *
+     * @return the result of the pass
+     * @throws GitLabApiException   if the users or groups couldn't be fetched
+     * @throws InterruptedException if interrupted while waiting between requests
+     */
+    private GitLabSyncResult synchronizeInBackground() throws GitLabApiException, InterruptedException {
+        long startTime = currentTimeMillis();
+        GitLabDirectoryUpdate update = new GitLabDirectoryUpdate();
+
+        update.withUsers(client.getUsers(), startTime);
+
+        int[] previousGroupIds = directory.getGroupIds();
+        List<GitLabGroupInfo> groups = client.getGroups();
+        update.withGroups(groups, startTime);
+
+        int[] syncedGroupIds = selectGroups(previousGroupIds, sortedIdsOf(groups));
+        for (int i = 0; i < syncedGroupIds.length; i++) {
+            if (i > 0 && requestDelay > 0) {
+                // pace the requests
+                Thread.sleep(requestDelay);
+            }
+
+            long fetchTime = currentTimeMillis();
+            try {
+                update.withGroupMembers(syncedGroupIds[i], client.getGroupMembers(syncedGroupIds[i]), fetchTime);
+            } catch (GroupNotFoundException e) {
+                // removed since the groups were fetched
+            }
+        }
+
+        // publish all changes at once
+        directory.update(update);
+
+        return new GitLabSyncResult(currentTimeMillis() - startTime, update.getUsersChanged(),
+                update.getGroupsChanged(), update.getMembershipsChanged(), update.getMemberGroupCount());
+    }
+
+    /**
+     * Returns the current time.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the sorted IDs of groups.
+     *
+     * @param groups the groups
+     * @return the IDs in ascending order
+     */
+    private static int[] sortedIdsOf(List<GitLabGroupInfo> groups) {
+        int[] ids = new int[groups.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = groups.get(i).getId();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Selects the groups to fetch the members of and advances to the following groups.
+     *
+     * @param previousGroupIds the sorted IDs of the groups before the pass
+     * @param groupIds         the sorted IDs of the fetched groups
+     * @return the sorted IDs of the groups to fetch the members of
+     */
+    private int[] selectGroups(int[] previousGroupIds, int[] groupIds) {
+        int[] selected = new int[groupIds.length];
+        int count = 0;
+
+        // continue from where the last pass stopped, wrapping around at the end
+        int start = Arrays.binarySearch(groupIds, nextGroupId);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        int limit = Math.min(groupsPerPass, groupIds.length);
+        boolean[] isSelected = new boolean[groupIds.length];
+        for (int i = 0; i < limit; i++) {
+            isSelected[(start + i) % groupIds.length] = true;
+        }
+        if (groupIds.length > 0) {
+            int next = start + limit;
+            nextGroupId = (next < groupIds.length) ? groupIds[next] : groupIds[next % groupIds.length];
+        }
+
+        // merge the sorted ID arrays to find the new groups
+        int j = 0;
+        for (int i = 0; i < groupIds.length; i++) {
+            while (j < previousGroupIds.length && previousGroupIds[j] < groupIds[i]) {
+                j++;
+            }
+            boolean isNew = j == previousGroupIds.length || previousGroupIds[j] != groupIds[i];
+            if (isNew || isSelected[i]) {
+                selected[count++] = groupIds[i];
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+}
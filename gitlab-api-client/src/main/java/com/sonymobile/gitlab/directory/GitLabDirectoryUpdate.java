@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of complete lists fetched from the API to apply to a {@link GitLabDirectory} as a single change.
+ *
+ * The lists are collected without holding any lock on the directory and are then published as one new snapshot.
+ */
+public final class GitLabDirectoryUpdate {
+    /** The users (or null if not fetched). */
+    private List<? extends GitLabUserInfo> users;
+
+    /** The time the users were fetched. */
+    private long usersTime;
+
+    /** The groups (or null if not fetched). */
+    private List<? extends GitLabGroupInfo> groups;
+
+    /** The time the groups were fetched. */
+    private long groupsTime;
+
+    /** The IDs of the groups which have had their members fetched. */
+    private final List<Integer> memberGroupIds = new ArrayList<Integer>();
+
+    /** The fetched members of the groups. */
+    private final List<List<GitLabGroupMemberInfo>> members = new ArrayList<List<GitLabGroupMemberInfo>>();
+
+    /** The times the members of the groups were fetched. */
+    private final List<Long> membersTimes = new ArrayList<Long>();
+
+    /** The number of users changed when applied. */
+    private int usersChanged;
+
+    /** The number of groups changed when applied. */
+    private int groupsChanged;
+
+    /** The number of memberships changed when applied. */
+    private int membershipsChanged;
+
+    /**
+     * Sets the complete list of users.
+     *
+     * @param users the users
+     * @param time  the time the list was fetched in milliseconds since the epoch
+     * @return this object for chaining
+     */
+    public GitLabDirectoryUpdate withUsers(List<? extends GitLabUserInfo> users, long time) {
+        this.users = users;
+        this.usersTime = time;
+        return this;
+    }
+
+    /**
+     * Sets the complete list of groups.
+     *
+     * @param groups the groups
+     * @param time   the time the list was fetched in milliseconds since the epoch
+     * @return this object for chaining
+     */
+    public GitLabDirectoryUpdate withGroups(List<? extends GitLabGroupInfo> groups, long time) {
+        this.groups = groups;
+        this.groupsTime = time;
+        return this;
+    }
+
+    /**
+     * Adds the complete list of members of a group.
+     *
+     * @param groupId the group ID
+     * @param members the members of the group
+     * @param time    the time the list was fetched in milliseconds since the epoch
+     * @return this object for chaining
+     */
+    public GitLabDirectoryUpdate withGroupMembers(int groupId, List<GitLabGroupMemberInfo> members, long time) {
+        this.memberGroupIds.add(groupId);
+        this.members.add(members);
+        this.membersTimes.add(time);
+        return this;
+    }
+
+    /**
+     * Gets the number of groups which have had their members fetched.
+     *
+     * @return the number of groups
+     */
+    public int getMemberGroupCount() {
+        return memberGroupIds.size();
+    }
+
+    /**
+     * Gets the number of users changed when the update was applied.
+     *
+     * @return the number of users
+     */
+    public int getUsersChanged() {
+        return usersChanged;
+    }
+
+    /**
+     * Gets the number of groups changed when the update was applied.
+     *
+     * @return the number of groups
+     */
+    public int getGroupsChanged() {
+        return groupsChanged;
+    }
+
+    /**
+     * Gets the number of memberships changed when the update was applied.
+     *
+     * @return the number of memberships
+     */
+    public int getMembershipsChanged() {
+        return membershipsChanged;
+    }
+
+    /**
+     * Applies the lists to a snapshot builder and records the number of changes.
+     *
+     * @param builder the builder
+     */
+    /* package */ void applyTo(SnapshotBuilder builder) {
+        usersChanged = (users != null) ? builder.updateUsers(users, usersTime) : 0;
+        groupsChanged = (groups != null) ? builder.updateGroups(groups, groupsTime) : 0;
+        membershipsChanged = 0;
+        for (int i = 0; i < memberGroupIds.size(); i++) {
+            membershipsChanged += builder.updateGroupMembers(memberGroupIds.get(i), members.get(i),
+                    membersTimes.get(i));
+        }
+    }
+}
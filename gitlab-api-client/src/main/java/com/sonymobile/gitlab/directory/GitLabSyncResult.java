@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+/**
+ * The outcome of a synchronization pass of a {@link GitLabDirectory}.
+ */
+public final class GitLabSyncResult {
+    /** The duration of the pass in milliseconds. */
+    private final long duration;
+
+    /** The number of changed users. */
+    private final int usersChanged;
+
+    /** The number of changed groups. */
+    private final int groupsChanged;
+
+    /** The number of changed group memberships. */
+    private final int membershipsChanged;
+
+    /** The number of groups which had their members fetched. */
+    private final int groupsSynchronized;
+
+    /**
+     * Creates a synchronization result.
+     *
+     * @param duration           the duration of the pass in milliseconds
+     * @param usersChanged       the number of changed users
+     * @param groupsChanged      the number of changed groups
+     * @param membershipsChanged the number of changed group memberships
+     * @param groupsSynchronized the number of groups which had their members fetched
+     */
+    public GitLabSyncResult(long duration, int usersChanged, int groupsChanged, int membershipsChanged,
+                            int groupsSynchronized) {
+        this.duration = duration;
+        this.usersChanged = usersChanged;
+        this.groupsChanged = groupsChanged;
+        this.membershipsChanged = membershipsChanged;
+        this.groupsSynchronized = groupsSynchronized;
+    }
+
+    /**
+     * Gets the duration of the pass.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Gets the number of changed users.
+     *
+     * @return the number of users
+     */
+    public int getUsersChanged() {
+        return usersChanged;
+    }
+
+    /**
+     * Gets the number of changed groups.
+     *
+     * @return the number of groups
+     */
+    public int getGroupsChanged() {
+        return groupsChanged;
+    }
+
+    /**
+     * Gets the number of changed group memberships.
+     *
+     * @return the number of memberships
+     */
+    public int getMembershipsChanged() {
+        return membershipsChanged;
+    }
+
+    /**
+     * Gets the number of groups which had their members fetched.
+     *
+     * @return the number of groups
+     */
+    public int getGroupsSynchronized() {
+        return groupsSynchronized;
+    }
+
+    /**
+     * Gets the total number of changed items.
+     *
+     * @return the number of changed users, groups and memberships
+     */
+    public int getItemsChanged() {
+        return usersChanged + groupsChanged + membershipsChanged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d users, %d groups and %d memberships changed (members of %d groups fetched) in %d ms",
+                usersChanged, groupsChanged, membershipsChanged, groupsSynchronized, duration);
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.FullGitLabUserInfo;
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupInfo;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import com.sonymobile.gitlab.model.GitLabUserIdentity;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.sonymobile.gitlab.directory.DirectoryEntry.PHASE_CREATE;
+import static com.sonymobile.gitlab.directory.DirectoryEntry.PHASE_REMOVE;
+import static com.sonymobile.gitlab.directory.DirectoryEntry.PHASE_UPDATE;
+import static com.sonymobile.gitlab.directory.DirectoryEntry.isDeleted;
+import static com.sonymobile.gitlab.directory.DirectoryEntry.isRemoved;
+import static com.sonymobile.gitlab.directory.DirectoryEntry.valueOf;
+import static com.sonymobile.gitlab.directory.GitLabDirectorySnapshot.sortedIdsOf;
+
+/**
+ * Builds a new snapshot from changes to a published snapshot.
+ *
+ * The maps of the published snapshot are copied on the first change to them, so maps without changes, such as the
+ * members of groups not affected by a change, are shared between the snapshots.
+ */
+/* package */ final class SnapshotBuilder {
+    /** The snapshot the changes are made to. */
+    private final GitLabDirectorySnapshot base;
+
+    /** The users by ID. */
+    private Map<Integer, DirectoryEntry<GitLabUserInfo>> users;
+
+    /** The groups by ID. */
+    private Map<Integer, DirectoryEntry<GitLabGroupInfo>> groups;
+
+    /** The access levels of the group members by user ID, by group ID. */
+    private Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> memberships;
+
+    /** Whether the users have been copied from the base snapshot. */
+    private boolean usersCopied = false;
+
+    /** Whether the groups have been copied from the base snapshot. */
+    private boolean groupsCopied = false;
+
+    /** Whether the map of memberships has been copied from the base snapshot. */
+    private boolean membershipsCopied = false;
+
+    /** The IDs of the groups which have had their members copied from the base snapshot. */
+    private final Set<Integer> copiedGroupMembers = new HashSet<Integer>();
+
+    /**
+     * Creates a builder.
+     *
+     * @param base the snapshot to make the changes to
+     */
+    /* package */ SnapshotBuilder(GitLabDirectorySnapshot base) {
+        this.base = base;
+        this.users = base.getUserEntries();
+        this.groups = base.getGroupEntries();
+        this.memberships = base.getMembershipEntries();
+    }
+
+    /**
+     * Checks whether any changes have been made.
+     *
+     * @return true if changed
+     */
+    /* package */ boolean isChanged() {
+        return usersCopied || groupsCopied || membershipsCopied;
+    }
+
+    /**
+     * Builds the snapshot.
+     *
+     * @return a new snapshot with the changes (or the base snapshot if nothing was changed)
+     */
+    /* package */ GitLabDirectorySnapshot build() {
+        if (!isChanged()) {
+            return base;
+        }
+        return new GitLabDirectorySnapshot(base.getVersion() + 1, users, groups, memberships);
+    }
+
+    /**
+     * Applies a system hook event.
+     *
+     * @param event a system hook event
+     * @return true if the event changed anything
+     */
+    /* package */ boolean apply(GitLabSystemHookEvent event) {
+        switch (event.getType()) {
+            case USER_CREATE:
+            case USER_RENAME:
+                return applyUser(event);
+            case USER_DESTROY:
+                return removeUser(event.getUserId());
+            case GROUP_CREATE:
+            case GROUP_RENAME:
+                return applyGroup(event);
+            case GROUP_DESTROY:
+                return removeGroup(event.getGroupId());
+            case USER_ADD_TO_GROUP:
+            case USER_UPDATE_FOR_GROUP:
+            case USER_REMOVE_FROM_GROUP:
+                return applyMembership(event);
+            default:
+                // not an event affecting the directory
+                return false;
+        }
+    }
+
+    /**
+     * Updates the users with a complete list of users.
+     *
+     * @param userList the users
+     * @param time     the time the list was fetched in milliseconds since the epoch
+     * @return the number of changed users
+     */
+    /* package */ int updateUsers(Collection<? extends GitLabUserInfo> userList, long time) {
+        Map<Integer, GitLabUserInfo> values = new HashMap<Integer, GitLabUserInfo>(userList.size() * 2);
+        for (GitLabUserInfo user : userList) {
+            values.put(user.getId(), user);
+        }
+
+        Map<Integer, DirectoryEntry<GitLabUserInfo>> updated = merge(users, values, time);
+        if (updated == null) {
+            return 0;
+        }
+        int changed = updated.size();
+        mutableUsers().putAll(updated);
+
+        // drop the memberships of removed users
+        for (Map.Entry<Integer, DirectoryEntry<GitLabUserInfo>> entry : updated.entrySet()) {
+            if (isDeleted(entry.getValue())) {
+                removeMemberships(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Updates the groups with a complete list of groups.
+     *
+     * @param groupList the groups
+     * @param time      the time the list was fetched in milliseconds since the epoch
+     * @return the number of changed groups
+     */
+    /* package */ int updateGroups(Collection<? extends GitLabGroupInfo> groupList, long time) {
+        Map<Integer, GitLabGroupInfo> values = new HashMap<Integer, GitLabGroupInfo>(groupList.size() * 2);
+        for (GitLabGroupInfo group : groupList) {
+            values.put(group.getId(), group);
+        }
+
+        Map<Integer, DirectoryEntry<GitLabGroupInfo>> updated = merge(groups, values, time);
+        if (updated == null) {
+            return 0;
+        }
+        int changed = updated.size();
+        mutableGroups().putAll(updated);
+
+        // drop the memberships of removed groups
+        for (Map.Entry<Integer, DirectoryEntry<GitLabGroupInfo>> entry : updated.entrySet()) {
+            if (isDeleted(entry.getValue()) && memberships.containsKey(entry.getKey())) {
+                mutableMemberships().remove(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Updates the members of a group with a complete list of members.
+     *
+     * @param groupId    the group ID
+     * @param memberList the members of the group
+     * @param time       the time the list was fetched in milliseconds since the epoch
+     * @return the number of changed memberships
+     */
+    /* package */ int updateGroupMembers(int groupId, Collection<GitLabGroupMemberInfo> memberList, long time) {
+        if (isDeleted(groups.get(groupId))) {
+            // never bring back memberships of removed groups
+            return 0;
+        }
+
+        Map<Integer, GitLabAccessLevel> values = new HashMap<Integer, GitLabAccessLevel>(memberList.size() * 2);
+        for (GitLabGroupMemberInfo member : memberList) {
+            if (!isDeleted(users.get(member.getId()))) {
+                values.put(member.getId(), member.getAccessLevel());
+            }
+        }
+
+        Map<Integer, DirectoryEntry<GitLabAccessLevel>> current = memberships.get(groupId);
+        if (current == null) {
+            current = new HashMap<Integer, DirectoryEntry<GitLabAccessLevel>>();
+        }
+        Map<Integer, DirectoryEntry<GitLabAccessLevel>> updated = merge(current, values, time);
+        if (updated == null) {
+            return 0;
+        }
+        mutableMembers(groupId).putAll(updated);
+        return updated.size();
+    }
+
+    /**
+     * Applies an event creating or renaming a user.
+     *
+     * @param event a user event
+     * @return true if the user was changed
+     */
+    private boolean applyUser(GitLabSystemHookEvent event) {
+        DirectoryEntry<GitLabUserInfo> current = users.get(event.getUserId());
+        GitLabUserInfo user = newUser(event, valueOf(current));
+        DirectoryEntry<GitLabUserInfo> updated;
+        if (event.getType() == GitLabSystemHookEvent.Type.USER_CREATE) {
+            updated = new DirectoryEntry<GitLabUserInfo>(user, event.getReceivedAt(), event.getCreatedAt(),
+                    PHASE_CREATE);
+        } else {
+            updated = new DirectoryEntry<GitLabUserInfo>(user, event.getReceivedAt(), updateTimeOf(event),
+                    PHASE_UPDATE);
+        }
+        if (current != null && !updated.isNewerThan(current)) {
+            // outdated or repeated event
+            return false;
+        }
+        mutableUsers().put(event.getUserId(), updated);
+        return true;
+    }
+
+    /**
+     * Removes a user and all of its group memberships.
+     *
+     * @param userId the user ID
+     * @return true if the user was removed
+     */
+    private boolean removeUser(int userId) {
+        if (isRemoved(users.get(userId))) {
+            // already removed
+            return false;
+        }
+        mutableUsers().put(userId, DirectoryEntry.<GitLabUserInfo>removed());
+        removeMemberships(userId);
+        return true;
+    }
+
+    /**
+     * Applies an event creating or renaming a group.
+     *
+     * @param event a group event
+     * @return true if the group was changed
+     */
+    private boolean applyGroup(GitLabSystemHookEvent event) {
+        GitLabGroupInfo group = new GitLabGroupInfo(event.getGroupId(), event.getGroupName(), event.getGroupPath());
+        DirectoryEntry<GitLabGroupInfo> updated;
+        if (event.getType() == GitLabSystemHookEvent.Type.GROUP_CREATE) {
+            updated = new DirectoryEntry<GitLabGroupInfo>(group, event.getReceivedAt(), event.getCreatedAt(),
+                    PHASE_CREATE);
+        } else {
+            updated = new DirectoryEntry<GitLabGroupInfo>(group, event.getReceivedAt(), updateTimeOf(event),
+                    PHASE_UPDATE);
+        }
+        DirectoryEntry<GitLabGroupInfo> current = groups.get(event.getGroupId());
+        if (current != null && !updated.isNewerThan(current)) {
+            // outdated or repeated event
+            return false;
+        }
+        mutableGroups().put(event.getGroupId(), updated);
+        return true;
+    }
+
+    /**
+     * Removes a group and all of its memberships.
+     *
+     * @param groupId the group ID
+     * @return true if the group was removed
+     */
+    private boolean removeGroup(int groupId) {
+        if (isRemoved(groups.get(groupId))) {
+            // already removed
+            return false;
+        }
+        mutableGroups().put(groupId, DirectoryEntry.<GitLabGroupInfo>removed());
+        if (memberships.containsKey(groupId)) {
+            mutableMemberships().remove(groupId);
+        }
+        return true;
+    }
+
+    /**
+     * Applies an event adding, updating or removing a group membership.
+     *
+     * @param event a membership event
+     * @return true if the membership was changed
+     */
+    private boolean applyMembership(GitLabSystemHookEvent event) {
+        if (isRemoved(users.get(event.getUserId())) || isRemoved(groups.get(event.getGroupId()))) {
+            // never bring back memberships of removed users or groups
+            return false;
+        }
+
+        // the creation time identifies the membership, a user added again gets a newer one
+        DirectoryEntry<GitLabAccessLevel> updated;
+        switch (event.getType()) {
+            case USER_ADD_TO_GROUP:
+                updated = new DirectoryEntry<GitLabAccessLevel>(event.getAccessLevel(), event.getReceivedAt(),
+                        event.getCreatedAt(), PHASE_CREATE);
+                break;
+            case USER_UPDATE_FOR_GROUP:
+                updated = new DirectoryEntry<GitLabAccessLevel>(event.getAccessLevel(), event.getReceivedAt(),
+                        updateTimeOf(event), PHASE_UPDATE);
+                break;
+            default:
+                updated = new DirectoryEntry<GitLabAccessLevel>(null, event.getReceivedAt(), updateTimeOf(event),
+                        PHASE_REMOVE);
+                break;
+        }
+
+        Map<Integer, DirectoryEntry<GitLabAccessLevel>> members = memberships.get(event.getGroupId());
+        DirectoryEntry<GitLabAccessLevel> current = (members != null) ? members.get(event.getUserId()) : null;
+        if (current != null && !updated.isNewerThan(current)) {
+            // outdated or repeated event
+            return false;
+        }
+        mutableMembers(event.getGroupId()).put(event.getUserId(), updated);
+        return true;
+    }
+
+    /**
+     * Removes all memberships of a user.
+     *
+     * @param userId the user ID
+     */
+    private void removeMemberships(int userId) {
+        for (Map.Entry<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> group : memberships.entrySet()) {
+            if (group.getValue().containsKey(userId)) {
+                mutableMembers(group.getKey()).remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Gets the users for changing, copying them from the base snapshot on first use.
+     *
+     * @return the users by ID
+     */
+    private Map<Integer, DirectoryEntry<GitLabUserInfo>> mutableUsers() {
+        if (!usersCopied) {
+            users = new HashMap<Integer, DirectoryEntry<GitLabUserInfo>>(users);
+            usersCopied = true;
+        }
+        return users;
+    }
+
+    /**
+     * Gets the groups for changing, copying them from the base snapshot on first use.
+     *
+     * @return the groups by ID
+     */
+    private Map<Integer, DirectoryEntry<GitLabGroupInfo>> mutableGroups() {
+        if (!groupsCopied) {
+            groups = new HashMap<Integer, DirectoryEntry<GitLabGroupInfo>>(groups);
+            groupsCopied = true;
+        }
+        return groups;
+    }
+
+    /**
+     * Gets the map of memberships for changing, copying it from the base snapshot on first use.
+     *
+     * @return the access levels of the group members by user ID, by group ID
+     */
+    private Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> mutableMemberships() {
+        if (!membershipsCopied) {
+            memberships = new HashMap<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>>(memberships);
+            membershipsCopied = true;
+        }
+        return memberships;
+    }
+
+    /**
+     * Gets the members of a group for changing, copying them from the base snapshot on first use.
+     *
+     * @param groupId the group ID
+     * @return the access levels of the group members by user ID
+     */
+    private Map<Integer, DirectoryEntry<GitLabAccessLevel>> mutableMembers(int groupId) {
+        Map<Integer, Map<Integer, DirectoryEntry<GitLabAccessLevel>>> groupMemberships = mutableMemberships();
+        Map<Integer, DirectoryEntry<GitLabAccessLevel>> members = groupMemberships.get(groupId);
+        if (!copiedGroupMembers.contains(groupId)) {
+            members = (members != null)
+                    ? new HashMap<Integer, DirectoryEntry<GitLabAccessLevel>>(members)
+                    : new HashMap<Integer, DirectoryEntry<GitLabAccessLevel>>();
+            groupMemberships.put(groupId, members);
+            copiedGroupMembers.add(groupId);
+        }
+        return members;
+    }
+
+    /**
+     * Merges a complete set of values fetched at a point in time with entries.
+     *
+     * The sorted IDs of the entries and of the values are merged in a single pass. Values which are new or different
+     * replace entries older than the fetch and entries older than the fetch without a value are removed.
+     *
+     * @param entries the current entries
+     * @param values  the values by ID
+     * @param time    the time the values were fetched
+     * @param <V>     the type of value
+     * @return the changed entries by ID (or null if nothing changed)
+     */
+    private static <V> Map<Integer, DirectoryEntry<V>> merge(Map<Integer, DirectoryEntry<V>> entries,
+                                                            Map<Integer, V> values, long time) {
+        int[] currentIds = sortedIdsOf(entries);
+        int[] ids = new int[values.size()];
+        int count = 0;
+        for (Integer id : values.keySet()) {
+            ids[count++] = id;
+        }
+        Arrays.sort(ids);
+
+        Map<Integer, DirectoryEntry<V>> updated = null;
+        int i = 0;
+        int j = 0;
+        while (i < currentIds.length || j < ids.length) {
+            DirectoryEntry<V> replacement = null;
+            int id;
+            if (j == ids.length || i < currentIds.length && currentIds[i] < ids[j]) {
+                // no longer fetched
+                id = currentIds[i++];
+                if (entries.get(id).getTime() < time) {
+                    replacement = new DirectoryEntry<V>(null, time, PHASE_REMOVE);
+                }
+            } else {
+                id = ids[j++];
+                if (i < currentIds.length && currentIds[i] == id) {
+                    i++;
+                }
+
+                DirectoryEntry<V> current = entries.get(id);
+                V value = values.get(id);
+                if (current == null || !isRemoved(current) && current.getTime() < time
+                        && (current.getValue() == null || !isSame(current.getValue(), value))) {
+                    replacement = new DirectoryEntry<V>(value, time, PHASE_UPDATE);
+                }
+            }
+
+            if (replacement != null) {
+                if (updated == null) {
+                    updated = new HashMap<Integer, DirectoryEntry<V>>();
+                }
+                updated.put(id, replacement);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Checks whether two values describe the same state.
+     *
+     * @param value the value
+     * @param other the other value
+     * @return true if the values are the same
+     */
+    private static boolean isSame(Object value, Object other) {
+        if (value instanceof GitLabUserInfo && other instanceof GitLabUserInfo) {
+            // users are only different if their identities or privileges are
+            GitLabUserInfo user = (GitLabUserInfo)value;
+            GitLabUserInfo otherUser = (GitLabUserInfo)other;
+            return user.getIdentity().equals(otherUser.getIdentity()) && user.isAdmin() == otherUser.isAdmin();
+        }
+        return value.equals(other);
+    }
+
+    /**
+     * Gets the time of an event updating an object.
+     *
+     * @param event an event
+     * @return the time of the last update (or the time of creation if the event doesn't include it)
+     */
+    private static long updateTimeOf(GitLabSystemHookEvent event) {
+        return Math.max(event.getCreatedAt(), event.getUpdatedAt());
+    }
+
+    /**
+     * Creates a user from a user event.
+     *
+     * The attributes not included in the event are kept from the current user. A new user is active and not an
+     * administrator until a synchronization with the API tells otherwise.
+     *
+     * @param event   a user event
+     * @param current the current user (or null)
+     * @return a user
+     */
+    private static GitLabUserInfo newUser(GitLabSystemHookEvent event, GitLabUserInfo current) {
+        GitLabUserIdentity identity = new GitLabUserIdentity(event.getUserId(),
+                attribute(event.getUsername(), (current != null) ? current.getUsername() : null),
+                attribute(event.getEmail(), (current != null) ? current.getEmail() : null),
+                attribute(event.getName(), (current != null) ? current.getName() : null),
+                current == null || current.isActive(),
+                (event.getCreatedAt() == 0 && current != null) ? current.getCreatedAtDate()
+                        : new Date(event.getCreatedAt()));
+        return new FullGitLabUserInfo(identity, current != null && current.isAdmin());
+    }
+
+    /**
+     * Chooses the value of an attribute.
+     *
+     * @param value        the value from an event (or null)
+     * @param currentValue the current value (or null)
+     * @return the first value which isn't null (or an empty string)
+     */
+    private static String attribute(String value, String currentValue) {
+        if (value != null) {
+            return value;
+        }
+        return (currentValue != null) ? currentValue : "";
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.helpers;
+
+import com.sonymobile.gitlab.http.RequestContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes {@link JSONArray} arrays of {@link JSONObject}s into lists of model objects.
+ *
+ * Large arrays can be decoded in parallel by splitting the array into disjoint ranges which are decoded by the
+ * threads of an executor, while small arrays are always decoded sequentially on the calling thread.
+ */
+public final class JSONArrayDecoder {
+    /** The smallest number of elements worth decoding in parallel. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
+    /** The smallest number of elements decoded by a single task. */
+    private static final int MINIMUM_RANGE_SIZE = 256;
+
+    private JSONArrayDecoder() { /* empty */ }
+
+    /**
+     * Decodes all objects of a JSON array on the calling thread.
+     *
+     * @param array   the JSON array
+     * @param decoder the decoder creating the elements
+     * @param <T>     the type of the elements
+     * @return a list of the decoded elements
+     */
+    public static <T> List<T> decode(JSONArray array, JSONObjectDecoder<T> decoder) {
+        final List<T> elements = new ArrayList<T>(array.length());
+        for (final JSONObject jsonObject : JSONArrayIterator.iterator(array)) {
+            elements.add(decoder.decode(jsonObject));
+        }
+        return elements;
+    }
+
+    /**
+     * Decodes all objects of a JSON array, in parallel if the array is large enough.
+     *
+     * The array is split into one range per available processor, each decoded by a task submitted to the executor
+     * except for the last range which is decoded by the calling thread.
+     *
+     * @param array    the JSON array
+     * @param decoder  the decoder creating the elements
+     * @param executor the executor to decode with (or null to decode sequentially)
+     * @param <T>      the type of the elements
+     * @return a list of the decoded elements in array order
+     */
+    public static <T> List<T> decode(JSONArray array, JSONObjectDecoder<T> decoder, ExecutorService executor) {
+        return decode(array, decoder, executor, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Decodes all objects of a JSON array, in parallel if the array has at least a number of elements.
+     *
+     * @param array     the JSON array
+     * @param decoder   the decoder creating the elements
+     * @param executor  the executor to decode with (or null to decode sequentially)
+     * @param threshold the smallest number of elements to decode in parallel
+     * @param <T>       the type of the elements
+     * @return a list of the decoded elements in array order
+     */
+    public static <T> List<T> decode(JSONArray array, final JSONObjectDecoder<T> decoder, ExecutorService executor,
+                                     int threshold) {
+        final int length = array.length();
+        if (executor == null || length < Math.max(threshold, 2 * MINIMUM_RANGE_SIZE)) {
+            return decode(array, decoder);
+        }
+
+        // split the array into disjoint ranges, one for each processor
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final List<JSONArrayIterator> ranges = new ArrayList<JSONArrayIterator>(parallelism);
+        ranges.add(JSONArrayIterator.iterator(array));
+        while (ranges.size() < parallelism) {
+            // split the largest range
+            JSONArrayIterator largest = ranges.get(0);
+            for (final JSONArrayIterator range : ranges) {
+                if (range.getRemaining() > largest.getRemaining()) {
+                    largest = range;
+                }
+            }
+            if (largest.getRemaining() < 2 * MINIMUM_RANGE_SIZE) {
+                break;
+            }
+            ranges.add(largest.split());
+        }
+
+        // every range writes to its own part of the array so no synchronization is needed
+        final Object[] elements = new Object[length];
+        final List<Future<?>> futures = new ArrayList<Future<?>>(ranges.size() - 1);
+        try {
+            for (final JSONArrayIterator range : ranges.subList(1, ranges.size())) {
+                // carry the context of the caller, e.g. its span, to the decoding threads
+                futures.add(executor.submit(RequestContext.wrap(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        decodeRange(range, decoder, elements);
+                        return null;
+                    }
+                })));
+            }
+            decodeRange(ranges.get(0), decoder, elements);
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decoding", e);
+        } catch (ExecutionException e) {
+            // rethrow what the decoder threw
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException("Failed to decode", e.getCause());
+        } finally {
+            for (final Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        final List<T> list = new ArrayList<T>(length);
+        for (final Object element : elements) {
+            @SuppressWarnings("unchecked")
+            final T decoded = (T)element;
+            list.add(decoded);
+        }
+        return list;
+    }
+
+    /**
+     * Decodes a range of a JSON array.
+     *
+     * @param range    an iterator for the range
+     * @param decoder  the decoder creating the elements
+     * @param elements the array to store the decoded elements in at their position in the JSON array
+     * @param <T>      the type of the elements
+     */
+    private static <T> void decodeRange(JSONArrayIterator range, JSONObjectDecoder<T> decoder, Object[] elements) {
+        while (range.hasNext()) {
+            final int position = range.getPosition();
+            elements[position] = decoder.decode(range.next());
+        }
+    }
+}
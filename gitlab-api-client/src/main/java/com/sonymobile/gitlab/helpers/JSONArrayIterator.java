@@ -34,6 +34,9 @@ import java.util.NoSuchElementException;
 /**
  * An iterator for {@link JSONArray} arrays of {@link JSONObject}s.
  *
+ * The iterator can be split into iterators covering disjoint ranges of the array, which lets separate threads walk
+ * different parts of the same array. An iterator instance must only be used by one thread at a time.
+ *
  * Note: the behaviour is undefined if the array is changed during iteration as there is no way to detect or prevent
  * that during iteration.
  *
@@ -46,7 +49,10 @@ public class JSONArrayIterator implements Iterator<JSONObject>, Iterable<JSONObj
     private final JSONArray array;
 
     /** The current position in the array. */
-    private int position = 0;
+    private int position;
+
+    /** The position after the last element to iterate. */
+    private final int end;
 
     /**
      * Creates an iterator for a JSON array.
@@ -54,7 +60,23 @@ public class JSONArrayIterator implements Iterator<JSONObject>, Iterable<JSONObj
      * @param array the JSON array
      */
     public JSONArrayIterator(JSONArray array) {
+        this(array, 0, array.length());
+    }
+
+    /**
+     * Creates an iterator for a range of a JSON array.
+     *
+     * @param array the JSON array
+     * @param start the position of the first element to iterate
+     * @param end   the position after the last element to iterate
+     */
+    public JSONArrayIterator(JSONArray array, int start, int end) {
+        if (start < 0 || start > end || end > array.length()) {
+            throw new IndexOutOfBoundsException("Invalid range " + start + "-" + end);
+        }
         this.array = array;
+        this.position = start;
+        this.end = end;
     }
 
     /**
@@ -67,13 +89,49 @@ public class JSONArrayIterator implements Iterator<JSONObject>, Iterable<JSONObj
         return new JSONArrayIterator(array);
     }
 
+    /**
+     * Splits off the first half of the remaining elements to a new iterator.
+     *
+     * This iterator continues with the second half.
+     *
+     * @return an iterator for the first half or null if there are less than two remaining elements
+     */
+    public JSONArrayIterator split() {
+        final int remaining = getRemaining();
+        if (remaining < 2) {
+            return null;
+        }
+
+        final int start = position;
+        position += remaining / 2;
+        return new JSONArrayIterator(array, start, position);
+    }
+
+    /**
+     * Returns the number of remaining elements.
+     *
+     * @return the number of elements
+     */
+    public int getRemaining() {
+        return end - position;
+    }
+
+    /**
+     * Returns the position of the next element in the array.
+     *
+     * @return the position
+     */
+    public int getPosition() {
+        return position;
+    }
+
     @Override
-    public synchronized boolean hasNext() {
-        return position < array.length();
+    public boolean hasNext() {
+        return position < end;
     }
 
     @Override
-    public synchronized JSONObject next() {
+    public JSONObject next() {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
@@ -89,4 +147,4 @@ public class JSONArrayIterator implements Iterator<JSONObject>, Iterable<JSONObj
     public Iterator<JSONObject> iterator() {
         return this;
     }
-}
\ No newline at end of file
+}
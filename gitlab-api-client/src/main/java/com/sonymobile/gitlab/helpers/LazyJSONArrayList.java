@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.helpers;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An unmodifiable list backed by a {@link JSONArray} decoding each element the first time it is read.
+ *
+ * Callers only interested in the size, the first matching element or the IDs of the elements avoid building model
+ * objects for the whole array. Decoded elements are kept so every element is decoded at most once (or at most once
+ * per thread when racing, which is harmless since the model objects are immutable).
+ *
+ * Note: the behaviour is undefined if the array is changed after the list has been created.
+ *
+ * @param <T> the type of the elements
+ */
+public class LazyJSONArrayList<T> extends AbstractList<T> implements RandomAccess {
+    /** The name of the ID attribute of the JSON objects. */
+    private static final String ID_ATTRIBUTE = "id";
+
+    /** The JSON array backing the list. */
+    private final JSONArray array;
+
+    /** The decoder creating the elements. */
+    private final JSONObjectDecoder<T> decoder;
+
+    /** The decoded elements (null for elements not yet decoded). */
+    private final AtomicReferenceArray<T> elements;
+
+    /**
+     * Creates a list backed by a JSON array.
+     *
+     * @param array   the JSON array
+     * @param decoder the decoder creating the elements
+     */
+    public LazyJSONArrayList(JSONArray array, JSONObjectDecoder<T> decoder) {
+        this.array = array;
+        this.decoder = decoder;
+        this.elements = new AtomicReferenceArray<T>(array.length());
+    }
+
+    @Override
+    public T get(int index) {
+        T element = elements.get(index);
+        if (element == null) {
+            element = decoder.decode(array.getJSONObject(index));
+            elements.set(index, element);
+        }
+        return element;
+    }
+
+    @Override
+    public int size() {
+        return elements.length();
+    }
+
+    /**
+     * Returns the ID of an element without decoding it.
+     *
+     * @param index the index of the element
+     * @return the ID
+     */
+    public int getId(int index) {
+        try {
+            return array.getJSONObject(index).getInt(ID_ATTRIBUTE);
+        } catch (JSONException e) {
+            // failed to retrieve a value
+            throw new IllegalArgumentException("Malformed JSON object", e);
+        }
+    }
+
+    /**
+     * Returns the IDs of all elements without decoding them.
+     *
+     * @return the IDs in list order
+     */
+    public int[] getIds() {
+        final int[] ids = new int[size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = getId(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the index of the element with a specific ID without decoding any other elements.
+     *
+     * @param id the ID
+     * @return the index or -1 if no element has the ID
+     */
+    public int indexOfId(int id) {
+        for (int i = 0; i < size(); i++) {
+            if (getId(i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the element with a specific ID without decoding any other elements.
+     *
+     * @param id the ID
+     * @return the element or null if no element has the ID
+     */
+    public T getById(int id) {
+        final int index = indexOfId(id);
+        return (index >= 0) ? get(index) : null;
+    }
+
+    /**
+     * Returns the raw JSON object of an element.
+     *
+     * @param index the index of the element
+     * @return the JSON object
+     */
+    public JSONObject getJSONObject(int index) {
+        return array.getJSONObject(index);
+    }
+}
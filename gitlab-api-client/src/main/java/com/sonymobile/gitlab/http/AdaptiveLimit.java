@@ -0,0 +1,243 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A limit on the number of requests in flight adapting to the latency of the server.
+ *
+ * The limit compares the recent latency with the long-term latency of the server. While the recent latency stays within
+ * a tolerance of the long-term latency the server isn't queueing requests, and the limit grows by a fifth of its square
+ * root per request. When the recent latency rises above the tolerance the limit shrinks in proportion, and failed
+ * requests (timeouts and overload responses) cut the limit multiplicatively.
+ *
+ * The long-term latency only follows latencies within the tolerance, so queueing never becomes the norm. If the server
+ * has become slower for good, the limit shrinks to the lowest limit where the latency is taken as the new norm.
+ *
+ * Latencies of requests made while less than half of the limit is used are only recorded, since they say nothing
+ * about whether the limit is too high.
+ */
+public class AdaptiveLimit {
+    /** The default initial limit. */
+    public static final int DEFAULT_INITIAL_LIMIT = RequestScheduler.DEFAULT_LIMIT;
+
+    /** The default lowest limit. */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    /** The default highest limit. */
+    public static final int DEFAULT_MAX_LIMIT = 20;
+
+    /** HTTP status code 429 Too Many Requests. */
+    private static final int HTTP_429_TOO_MANY_REQUESTS = 429;
+
+    /** HTTP status code 503 Service Unavailable. */
+    private static final int HTTP_503_SERVICE_UNAVAILABLE = 503;
+
+    /** HTTP status code 504 Gateway Timeout. */
+    private static final int HTTP_504_GATEWAY_TIMEOUT = 504;
+
+    /** The number of requests the recent latency is averaged over. */
+    private static final int SHORT_WINDOW = 10;
+
+    /** The number of requests the long-term latency is averaged over. */
+    private static final int LONG_WINDOW = 500;
+
+    /** How much higher than the long-term latency the recent latency may be before the limit shrinks. */
+    private static final double TOLERANCE = 1.5;
+
+    /** The lowest gradient (the ratio between the tolerated and the recent latency) to shrink the limit by. */
+    private static final double MIN_GRADIENT = 0.5;
+
+    /** How much of the new limit is used for each request. */
+    private static final double SMOOTHING = 0.2;
+
+    /** The factor a failed request shrinks the limit by. */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /** How much the long-term latency is lowered when the recent latency has dropped far below it. */
+    private static final double DRIFT_RATIO = 0.95;
+
+    /** The lowest limit. */
+    private final int minLimit;
+
+    /** The highest limit. */
+    private final int maxLimit;
+
+    /** The current limit (kept as a fraction to allow growing in small steps). */
+    private double limit;
+
+    /** The recent latency in nanoseconds (exponential moving average). */
+    private double shortLatency = 0;
+
+    /** The long-term latency in nanoseconds (exponential moving average). */
+    private double longLatency = 0;
+
+    /** The number of recorded latencies. */
+    private long samples = 0;
+
+    /**
+     * Creates a limit with the default bounds.
+     */
+    public AdaptiveLimit() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Creates a limit.
+     *
+     * @param initialLimit the initial limit
+     * @param minLimit     the lowest limit (at least 1)
+     * @param maxLimit     the highest limit
+     */
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit bounds");
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Initial limit out of bounds");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Updates the limit with a completed request.
+     *
+     * @param latency   the latency of the request in nanoseconds
+     * @param inFlight  the number of requests in flight when the request completed (including the request)
+     * @param isDropped whether the request failed in a way indicating that the server is overloaded
+     * @return the new limit
+     */
+    public synchronized int update(long latency, int inFlight, boolean isDropped) {
+        if (isDropped) {
+            // the latency of a timeout says nothing about the server, just back off
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return getLimit();
+        }
+
+        samples++;
+        shortLatency = average(shortLatency, latency, SHORT_WINDOW);
+        if (samples == 1 || shortLatency <= TOLERANCE * longLatency || limit <= minLimit) {
+            longLatency = average(longLatency, latency, LONG_WINDOW);
+        }
+
+        if (inFlight * 2 < limit) {
+            // the limit isn't what is keeping the requests back
+            return getLimit();
+        }
+
+        if (longLatency > 2 * shortLatency) {
+            // let the long-term latency follow the server when it has become much faster
+            longLatency *= DRIFT_RATIO;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        // probe for more capacity only while the server isn't queueing
+        double newLimit = (gradient < 1.0) ? limit * gradient : limit + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        return getLimit();
+    }
+
+    /**
+     * Checks if an HTTP status code indicates that the server is overloaded.
+     *
+     * Requests with such responses should be reported as dropped.
+     *
+     * @param code the HTTP status code
+     * @return true if the server rejected the request or timed out behind a gateway
+     */
+    public static boolean isOverloaded(int code) {
+        return code == HTTP_429_TOO_MANY_REQUESTS || code == HTTP_503_SERVICE_UNAVAILABLE
+                || code == HTTP_504_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the limit
+     */
+    public synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    /**
+     * Gets the lowest limit.
+     *
+     * @return the lowest limit
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Gets the highest limit.
+     *
+     * @return the highest limit
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Gets the recent latency.
+     *
+     * @param unit the time unit to return the latency in
+     * @return the average latency of the recent requests
+     */
+    public synchronized long getShortLatency(TimeUnit unit) {
+        return unit.convert((long)shortLatency, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the long-term latency.
+     *
+     * @param unit the time unit to return the latency in
+     * @return the average latency of the requests over a longer time
+     */
+    public synchronized long getLongLatency(TimeUnit unit) {
+        return unit.convert((long)longLatency, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds a latency to an exponential moving average.
+     *
+     * Must be called while holding the lock after counting the latency.
+     *
+     * @param average the average
+     * @param latency the latency
+     * @param window  the number of requests to average over
+     * @return the new average
+     */
+    private double average(double average, long latency, int window) {
+        if (samples == 1) {
+            // start from the first latency
+            return latency;
+        }
+        return average + (latency - average) * 2 / (window + 1);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+/**
+ * The quota of a consumer of the API client.
+ *
+ * A quota limits both the number of requests the consumer has in flight at once (a bulkhead keeping a single consumer
+ * from taking all connections) and the rate of its requests. Instances are immutable.
+ */
+public final class ConsumerQuota {
+    /** A quota without any limits. */
+    public static final ConsumerQuota UNLIMITED = new ConsumerQuota(0, 0);
+
+    /** The maximum number of requests in flight (0 for no limit). */
+    private final int maxConcurrent;
+
+    /** The maximum number of requests per second (0 for no limit). */
+    private final double requestsPerSecond;
+
+    /**
+     * Creates a quota.
+     *
+     * @param maxConcurrent     the maximum number of requests in flight (0 for no limit)
+     * @param requestsPerSecond the maximum number of requests per second (0 for no limit)
+     */
+    public ConsumerQuota(int maxConcurrent, double requestsPerSecond) {
+        if (maxConcurrent < 0 || requestsPerSecond < 0) {
+            throw new IllegalArgumentException("Quota must not be negative");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Gets the maximum number of requests in flight.
+     *
+     * @return the maximum number of requests (0 for no limit)
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Gets the maximum number of requests per second.
+     *
+     * @return the maximum rate (0 for no limit)
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * Gets the number of requests that can be made at once without waiting for the rate.
+     *
+     * @return the burst size (at least one request)
+     */
+    public double getBurst() {
+        return Math.max(1.0, requestsPerSecond);
+    }
+
+    /**
+     * Checks whether the number of requests in flight is limited.
+     *
+     * @return true if limited
+     */
+    public boolean isConcurrencyLimited() {
+        return maxConcurrent > 0;
+    }
+
+    /**
+     * Checks whether the rate of requests is limited.
+     *
+     * @return true if limited
+     */
+    public boolean isRateLimited() {
+        return requestsPerSecond > 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ConsumerQuota)) {
+            return false;
+        }
+
+        ConsumerQuota quota = (ConsumerQuota)other;
+        return maxConcurrent == quota.maxConcurrent
+                && Double.compare(requestsPerSecond, quota.requestsPerSecond) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(requestsPerSecond);
+        return 31 * maxConcurrent + (int)(bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return (isConcurrencyLimited() ? String.valueOf(maxConcurrent) : "unlimited") + " in flight, "
+                + (isRateLimited() ? requestsPerSecond + " requests/s" : "unlimited rate");
+    }
+}
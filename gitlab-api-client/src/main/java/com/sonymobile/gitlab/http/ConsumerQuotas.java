@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.exceptions.QuotaExceededException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The quotas of the consumers sharing an API client and their usage.
+ *
+ * The consumer of a request is the one set for the thread with {@link RequestContext#setConsumer(String)}, otherwise
+ * the one identified by the {@link ConsumerResolver} if set, otherwise {@link #UNIDENTIFIED}. Consumers without a
+ * quota of their own share the default quota, each with a bulkhead and a rate of its own.
+ */
+public class ConsumerQuotas {
+    /** The name of the consumer of requests that couldn't be identified. */
+    public static final String UNIDENTIFIED = "unidentified";
+
+    /** The default longest time to wait for a quota in seconds. */
+    public static final long DEFAULT_MAX_WAIT = 30;
+
+    /** The quotas of specific consumers. */
+    private volatile Map<String, ConsumerQuota> quotas = Collections.emptyMap();
+
+    /** The quota of consumers without a quota of their own. */
+    private volatile ConsumerQuota defaultQuota = ConsumerQuota.UNLIMITED;
+
+    /** The longest time to wait for a quota in nanoseconds. */
+    private volatile long maxWait = TimeUnit.SECONDS.toNanos(DEFAULT_MAX_WAIT);
+
+    /** The identifier of consumers not set for the thread (or null). */
+    private volatile ConsumerResolver resolver = null;
+
+    /** The usage of each consumer. */
+    private final ConcurrentMap<String, ConsumerUsage> usages = new ConcurrentHashMap<String, ConsumerUsage>();
+
+    /**
+     * Sets the quota of consumers without a quota of their own.
+     *
+     * @param quota the quota
+     * @return this object for chaining
+     */
+    public ConsumerQuotas withDefaultQuota(ConsumerQuota quota) {
+        this.defaultQuota = quota;
+        return this;
+    }
+
+    /**
+     * Sets the quotas of specific consumers, replacing any previous quotas of specific consumers.
+     *
+     * @param quotas the quotas by consumer
+     * @return this object for chaining
+     */
+    public ConsumerQuotas withQuotas(Map<String, ConsumerQuota> quotas) {
+        this.quotas = Collections.unmodifiableMap(new HashMap<String, ConsumerQuota>(quotas));
+        return this;
+    }
+
+    /**
+     * Sets the longest time to wait for a quota before rejecting a request.
+     *
+     * @param maxWait the longest time
+     * @param unit    the time unit of the time
+     * @return this object for chaining
+     */
+    public ConsumerQuotas withMaxWait(long maxWait, TimeUnit unit) {
+        this.maxWait = unit.toNanos(maxWait);
+        return this;
+    }
+
+    /**
+     * Sets the identifier of consumers not set for the thread.
+     *
+     * @param resolver the identifier (or null to treat all such requests as {@link #UNIDENTIFIED})
+     * @return this object for chaining
+     */
+    public ConsumerQuotas withResolver(ConsumerResolver resolver) {
+        this.resolver = resolver;
+        return this;
+    }
+
+    /**
+     * Gets the quota of a consumer.
+     *
+     * @param consumer the name of the consumer
+     * @return the quota of the consumer or the default quota
+     */
+    public ConsumerQuota getQuota(String consumer) {
+        ConsumerQuota quota = quotas.get(consumer);
+        return (quota != null) ? quota : defaultQuota;
+    }
+
+    /**
+     * Gets the quota of consumers without a quota of their own.
+     *
+     * @return the default quota
+     */
+    public ConsumerQuota getDefaultQuota() {
+        return defaultQuota;
+    }
+
+    /**
+     * Identifies the consumer of the current thread.
+     *
+     * @return the name of the consumer
+     */
+    public String resolveConsumer() {
+        String consumer = RequestContext.getConsumer();
+        if (consumer == null && resolver != null) {
+            consumer = resolver.resolveConsumer();
+        }
+        return (consumer != null) ? consumer : UNIDENTIFIED;
+    }
+
+    /**
+     * Waits until the quota of the consumer of the current thread lets a request through.
+     *
+     * Every call must be followed by a call to {@link #release(ConsumerUsage, long)} once the request has completed.
+     *
+     * @return the usage of the consumer
+     * @throws QuotaExceededException if the request would have to wait longer than the maximum wait
+     * @throws InterruptedException   if interrupted while waiting
+     */
+    public ConsumerUsage acquire() throws QuotaExceededException, InterruptedException {
+        ConsumerUsage usage = getUsage(resolveConsumer());
+        usage.acquire(maxWait);
+        return usage;
+    }
+
+    /**
+     * Releases a completed request.
+     *
+     * @param usage the usage returned when acquiring the quota
+     * @param time  the time of the request in nanoseconds
+     */
+    public void release(ConsumerUsage usage, long time) {
+        usage.release(time);
+    }
+
+    /**
+     * Gets the usage of a consumer.
+     *
+     * @param consumer the name of the consumer
+     * @return the usage
+     */
+    public ConsumerUsage getUsage(String consumer) {
+        ConsumerUsage usage = usages.get(consumer);
+        if (usage == null) {
+            ConsumerUsage newUsage = new ConsumerUsage(consumer, this);
+            usage = usages.putIfAbsent(consumer, newUsage);
+            if (usage == null) {
+                usage = newUsage;
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Gets the usage of all consumers which have made requests.
+     *
+     * @return the usages sorted by consumer
+     */
+    public List<ConsumerUsage> getUsages() {
+        List<ConsumerUsage> list = new ArrayList<ConsumerUsage>(usages.values());
+        Collections.sort(list, new Comparator<ConsumerUsage>() {
+            @Override
+            public int compare(ConsumerUsage usage1, ConsumerUsage usage2) {
+                return usage1.getConsumer().compareTo(usage2.getConsumer());
+            }
+        });
+        return list;
+    }
+}
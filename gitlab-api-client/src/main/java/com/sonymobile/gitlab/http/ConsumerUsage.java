@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.exceptions.QuotaExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The usage of the API client by a consumer, enforcing the quota of the consumer.
+ *
+ * The rate is enforced with a token bucket holding up to a second worth of requests, and requests over the concurrency
+ * limit wait for one of the requests in flight to complete. A request is rejected if it would have to wait longer
+ * than the maximum wait of the quotas.
+ */
+public final class ConsumerUsage {
+    /** The number of nanoseconds per second. */
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** The name of the consumer. */
+    private final String consumer;
+
+    /** The quotas holding the quota of the consumer. */
+    private final ConsumerQuotas quotas;
+
+    /** The number of requests in flight. */
+    private int inFlight = 0;
+
+    /** The highest number of requests in flight at once. */
+    private int peakInFlight = 0;
+
+    /** The number of requests let through. */
+    private long requests = 0;
+
+    /** The number of rejected requests. */
+    private long rejected = 0;
+
+    /** The total time of the completed requests in nanoseconds. */
+    private long totalTime = 0;
+
+    /** The number of completed requests. */
+    private long completed = 0;
+
+    /** The number of requests which can be made without waiting (negative when requests are waiting). */
+    private double tokens;
+
+    /** The time the tokens were last refilled in nanoseconds. */
+    private long refilledAt;
+
+    /**
+     * Creates the usage of a consumer.
+     *
+     * @param consumer the name of the consumer
+     * @param quotas   the quotas holding the quota of the consumer
+     */
+    /* package */ ConsumerUsage(String consumer, ConsumerQuotas quotas) {
+        this.consumer = consumer;
+        this.quotas = quotas;
+        this.tokens = quotas.getQuota(consumer).getBurst();
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Waits until the quota lets a request through.
+     *
+     * Every call must be followed by a call to {@link #release(long)} once the request has completed.
+     *
+     * @param maxWait the longest time to wait in nanoseconds
+     * @throws QuotaExceededException if the request would have to wait longer than the maximum wait
+     * @throws InterruptedException   if interrupted while waiting
+     */
+    /* package */ void acquire(long maxWait) throws QuotaExceededException, InterruptedException {
+        final long deadline = System.nanoTime() + maxWait;
+        final ConsumerQuota quota = quotas.getQuota(consumer);
+
+        if (quota.isRateLimited()) {
+            long delay = reserve(quota, maxWait);
+            if (delay > 0) {
+                // wait outside the lock for the reserved request
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+
+        synchronized (this) {
+            while (isFull()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new QuotaExceededException(
+                            "Too many requests in flight for " + consumer + " (" + getQuota() + ")", consumer);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+            requests++;
+        }
+    }
+
+    /**
+     * Releases a completed request.
+     *
+     * @param time the time of the request in nanoseconds
+     */
+    /* package */ synchronized void release(long time) {
+        inFlight--;
+        completed++;
+        totalTime += time;
+        notifyAll();
+    }
+
+    /**
+     * Checks whether the consumer has as many requests in flight as its quota allows.
+     *
+     * Must be called while holding the lock.
+     *
+     * @return true if a request has to wait
+     */
+    private boolean isFull() {
+        // the quota may have been changed while waiting
+        ConsumerQuota quota = getQuota();
+        return quota.isConcurrencyLimited() && inFlight >= quota.getMaxConcurrent();
+    }
+
+    /**
+     * Reserves a request from the token bucket.
+     *
+     * @param quota   the quota of the consumer
+     * @param maxWait the longest time to wait in nanoseconds
+     * @return the time to wait for the reserved request in nanoseconds
+     * @throws QuotaExceededException if the request would have to wait longer than the maximum wait
+     */
+    private synchronized long reserve(ConsumerQuota quota, long maxWait) throws QuotaExceededException {
+        final long now = System.nanoTime();
+        final double rate = quota.getRequestsPerSecond();
+        tokens = Math.min(quota.getBurst(), tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+        refilledAt = now;
+
+        final long delay = (tokens >= 1) ? 0 : (long)((1 - tokens) * NANOS_PER_SECOND / rate);
+        if (delay > maxWait) {
+            rejected++;
+            throw new QuotaExceededException("Request rate exceeded for " + consumer + " (" + quota + ")", consumer);
+        }
+        tokens--;
+        return delay;
+    }
+
+    /**
+     * Gets the name of the consumer.
+     *
+     * @return the name
+     */
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Gets the quota of the consumer.
+     *
+     * @return the quota
+     */
+    public ConsumerQuota getQuota() {
+        return quotas.getQuota(consumer);
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     *
+     * @return the number of requests
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the highest number of requests in flight at once.
+     *
+     * @return the number of requests
+     */
+    public synchronized int getPeakInFlight() {
+        return peakInFlight;
+    }
+
+    /**
+     * Gets the number of requests let through.
+     *
+     * @return the number of requests
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of rejected requests.
+     *
+     * @return the number of requests
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the number of requests the rate limit of the quota lets through right away.
+     *
+     * @return the number of requests (negative while requests are waiting for the rate limit), or
+     * {@link Double#POSITIVE_INFINITY} if the rate isn't limited
+     */
+    public synchronized double getAvailableRequests() {
+        final ConsumerQuota quota = getQuota();
+        if (!quota.isRateLimited()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // refill without consuming, as the next request would
+        return Math.min(quota.getBurst(),
+                tokens + (System.nanoTime() - refilledAt) * quota.getRequestsPerSecond() / NANOS_PER_SECOND);
+    }
+
+    /**
+     * Gets the average time of the completed requests.
+     *
+     * @param unit the time unit to return the time in
+     * @return the average time (including waiting for the scheduler)
+     */
+    public synchronized long getAverageTime(TimeUnit unit) {
+        return (completed > 0) ? unit.convert(totalTime / completed, TimeUnit.NANOSECONDS) : 0;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.JsonNode;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.mashape.unirest.request.HttpRequest;
+import com.sonymobile.gitlab.metrics.Span;
+import com.sonymobile.gitlab.metrics.Tracer;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A GET request which is sent a second time if the first attempt is slow.
+ *
+ * The first attempt is made right away. If it hasn't completed within the delay of the {@link HedgingPolicy}, a hedge
+ * is sent if the budget allows it and the scheduler has a free slot, so hedges are never queued behind other requests.
+ * The first successful response wins and the other attempt is aborted, closing its connection. Only the latencies of
+ * completed attempts are fed back to the policy and the scheduler.
+ *
+ * The requests are made directly with the HTTP client of the API client, since requests made through Unirest can't be
+ * aborted.
+ */
+public final class HedgedRequest {
+    /** The HTTP client making the requests. */
+    private final HttpClient httpClient;
+
+    /** The request to make. */
+    private final HttpRequest request;
+
+    /** The scheduler of the requests. */
+    private final RequestScheduler scheduler;
+
+    /** The hedging policy. */
+    private final HedgingPolicy policy;
+
+    /** The tracer starting the span of each attempt. */
+    private Tracer tracer = Tracer.NOOP;
+
+    /** Whether the context of the span of each attempt is passed to the server. */
+    private boolean isTraceHeaderAdded = false;
+
+    /**
+     * Creates a hedged request.
+     *
+     * @param httpClient the HTTP client making the requests
+     * @param request    the GET request to make
+     * @param scheduler  the scheduler of the requests
+     * @param policy     the hedging policy
+     */
+    public HedgedRequest(HttpClient httpClient, HttpRequest request, RequestScheduler scheduler,
+                         HedgingPolicy policy) {
+        this.httpClient = httpClient;
+        this.request = request;
+        this.scheduler = scheduler;
+        this.policy = policy;
+    }
+
+    /**
+     * Sets the tracer starting the span of each attempt, as a child of the span of the thread making the request.
+     *
+     * @param tracer             the tracer
+     * @param isTraceHeaderAdded whether to pass the context of the span of each attempt to the server
+     * @return this object for chaining
+     */
+    public HedgedRequest withTracer(Tracer tracer, boolean isTraceHeaderAdded) {
+        this.tracer = tracer;
+        this.isTraceHeaderAdded = isTraceHeaderAdded;
+        return this;
+    }
+
+    /**
+     * Makes the request.
+     *
+     * A slot of the scheduler must have been acquired for the first attempt. The slot is released by this method, as is
+     * the slot of a hedge.
+     *
+     * @return the first successful response
+     * @throws UnirestException     if all attempts failed
+     * @throws InterruptedException if interrupted while waiting for a response
+     */
+    public HttpResponse<JsonNode> execute() throws UnirestException, InterruptedException {
+        final CompletionService<Attempt> completionService = new ExecutorCompletionService<Attempt>(
+                policy.getExecutor());
+        final RequestPriority priority = RequestContext.getPriority();
+        policy.recordRequest();
+
+        final Attempt first = new Attempt(false);
+        Attempt hedge = null;
+        // the attempts run with the context of this thread
+        completionService.submit(RequestContext.wrap(first));
+        try {
+            Future<Attempt> completed = null;
+            final long delay = policy.getDelay(TimeUnit.NANOSECONDS);
+            if (delay >= 0) {
+                completed = completionService.poll(delay, TimeUnit.NANOSECONDS);
+                if (completed == null && scheduler.tryAcquire(priority)) {
+                    if (policy.tryHedge()) {
+                        hedge = new Attempt(true);
+                        completionService.submit(RequestContext.wrap(hedge));
+                    } else {
+                        scheduler.release();
+                    }
+                }
+            }
+
+            Attempt winner = getResult((completed != null) ? completed : completionService.take());
+            if (winner.response == null && hedge != null) {
+                // the other attempt may still succeed
+                winner = getResult(completionService.take());
+            }
+
+            if (winner.response == null) {
+                throw winner.failure;
+            }
+            if (winner.isHedge) {
+                policy.recordHedgeWin();
+            }
+            return winner.response;
+        } finally {
+            // stop whichever attempt is still running
+            first.abort();
+            if (hedge != null) {
+                hedge.abort();
+            }
+        }
+    }
+
+    /**
+     * Gets the attempt of a completed future.
+     *
+     * @param future the future
+     * @return the attempt
+     */
+    private static Attempt getResult(Future<Attempt> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // attempts catch all exceptions
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            // the future has completed, no waiting involved
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * An attempt to make the request.
+     */
+    private final class Attempt implements Callable<Attempt> {
+        /** The HTTP request of the attempt. */
+        private final HttpRequestBase httpRequest;
+
+        /** Whether the attempt is a hedge. */
+        private final boolean isHedge;
+
+        /** Whether the attempt has lost and was aborted. */
+        private volatile boolean isAborted = false;
+
+        /** The response (or null if the attempt failed). */
+        private HttpResponse<JsonNode> response = null;
+
+        /** The reason the attempt failed (or null if it succeeded). */
+        private UnirestException failure = null;
+
+        /**
+         * Creates an attempt.
+         *
+         * @param isHedge whether the attempt is a hedge
+         */
+        private Attempt(boolean isHedge) {
+            this.isHedge = isHedge;
+            this.httpRequest = HttpRequests.create(request);
+        }
+
+        @Override
+        public Attempt call() {
+            final Span span = HttpRequests.startSpan(tracer, httpRequest, isTraceHeaderAdded);
+            final long start = System.nanoTime();
+            boolean isDropped = false;
+            try {
+                response = new HttpResponse<JsonNode>(httpClient.execute(httpRequest), JsonNode.class);
+                isDropped = AdaptiveLimit.isOverloaded(response.getCode());
+            } catch (Exception e) {
+                failure = new UnirestException(e);
+                isDropped = true;
+            } finally {
+                if (response != null) {
+                    span.setAttribute("http.status_code", response.getCode());
+                }
+                span.setAttribute("gitlab.attempt", isHedge ? "hedge" : "first");
+                if (isAborted) {
+                    span.setAttribute("gitlab.aborted", 1);
+                }
+                span.end();
+                final long latency = System.nanoTime() - start;
+                if (isAborted) {
+                    // the latency of an aborted request says nothing about the server
+                    scheduler.release();
+                } else {
+                    scheduler.release(latency, isDropped);
+                    if (response != null) {
+                        policy.recordLatency(latency);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Aborts the attempt if still running.
+         */
+        private void abort() {
+            isAborted = true;
+            httpRequest.abort();
+        }
+    }
+}
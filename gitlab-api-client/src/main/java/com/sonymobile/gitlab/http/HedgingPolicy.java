@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * When and how often to hedge idempotent requests.
+ *
+ * A hedged request is sent a second time if no response has arrived within a percentile of the recent latencies, and
+ * the first response wins. Hedges are paid for from a budget: each request adds a fraction of a hedge to the budget, so
+ * hedges never add more than a set percentage of extra requests, and at most a few hedges can be saved up for a burst
+ * of slow requests. No requests are hedged until enough latencies have been recorded.
+ */
+public class HedgingPolicy {
+    /** The default percentile of the latencies to wait for before hedging. */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+
+    /** The default percentage of extra requests allowed for hedges. */
+    public static final double DEFAULT_BUDGET_PERCENT = 5;
+
+    /** The default shortest time to wait before hedging in milliseconds. */
+    public static final long DEFAULT_MIN_DELAY = 10;
+
+    /** The number of recent latencies the percentile is computed from. */
+    private static final int WINDOW = 1024;
+
+    /** The number of latencies to record before hedging. */
+    private static final int MIN_SAMPLES = 20;
+
+    /** The number of latencies recorded between computing the percentile. */
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    /** The highest number of hedges saved up in the budget. */
+    private static final double MAX_SAVED_HEDGES = 10;
+
+    /** The executor making the requests. */
+    private final ExecutorService executor;
+
+    /** The recent latencies in nanoseconds (a ring buffer). */
+    private final long[] latencies = new long[WINDOW];
+
+    /** The number of recorded latencies (including those overwritten). */
+    private long samples = 0;
+
+    /** The percentile of the latencies to wait for before hedging. */
+    private double percentile = DEFAULT_PERCENTILE;
+
+    /** The fraction of a hedge each request adds to the budget. */
+    private double budgetRatio = DEFAULT_BUDGET_PERCENT / 100;
+
+    /** The shortest time to wait before hedging in nanoseconds. */
+    private long minDelay = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_DELAY);
+
+    /** The time to wait before hedging in nanoseconds (or -1 if not hedging yet). */
+    private long delay = -1;
+
+    /** The number of hedges which can be made. */
+    private double budget = 0;
+
+    /** The number of hedged requests. */
+    private long requests = 0;
+
+    /** The number of hedges sent. */
+    private long hedges = 0;
+
+    /** The number of hedges responding before the original request. */
+    private long hedgeWins = 0;
+
+    /**
+     * Creates a policy making the requests with daemon threads.
+     */
+    public HedgingPolicy() {
+        this(Executors.newCachedThreadPool(new HedgeThreadFactory()));
+    }
+
+    /**
+     * Creates a policy.
+     *
+     * @param executor the executor making the requests (needs a thread for both the request and the hedge)
+     */
+    public HedgingPolicy(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the percentile of the recent latencies to wait for before hedging.
+     *
+     * @param percentile the percentile (between 0 and 1, exclusive)
+     * @return this object for chaining
+     */
+    public synchronized HedgingPolicy withPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        this.percentile = percentile;
+        computeDelay();
+        return this;
+    }
+
+    /**
+     * Sets the percentage of extra requests allowed for hedges.
+     *
+     * @param percent the percentage
+     * @return this object for chaining
+     */
+    public synchronized HedgingPolicy withBudget(double percent) {
+        if (percent < 0) {
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+        this.budgetRatio = percent / 100;
+        return this;
+    }
+
+    /**
+     * Sets the shortest time to wait before hedging.
+     *
+     * @param minDelay the shortest time
+     * @param unit     the time unit of the time
+     * @return this object for chaining
+     */
+    public synchronized HedgingPolicy withMinDelay(long minDelay, TimeUnit unit) {
+        this.minDelay = unit.toNanos(minDelay);
+        computeDelay();
+        return this;
+    }
+
+    /**
+     * Gets the executor making the requests.
+     *
+     * @return the executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Records the latency of a completed request.
+     *
+     * @param latency the latency in nanoseconds
+     */
+    public synchronized void recordLatency(long latency) {
+        latencies[(int)(samples % WINDOW)] = latency;
+        samples++;
+        if (samples == MIN_SAMPLES || (samples > MIN_SAMPLES && samples % RECOMPUTE_INTERVAL == 0)) {
+            computeDelay();
+        }
+    }
+
+    /**
+     * Records a request which may be hedged, adding to the budget.
+     */
+    public synchronized void recordRequest() {
+        requests++;
+        budget = Math.min(MAX_SAVED_HEDGES, budget + budgetRatio);
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if the budget allows a hedge
+     */
+    public synchronized boolean tryHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        hedges++;
+        return true;
+    }
+
+    /**
+     * Records that a hedge responded before the original request.
+     */
+    public synchronized void recordHedgeWin() {
+        hedgeWins++;
+    }
+
+    /**
+     * Gets the time to wait for a response before hedging.
+     *
+     * @param unit the time unit to return the time in
+     * @return the time or -1 if not enough latencies have been recorded to hedge
+     */
+    public synchronized long getDelay(TimeUnit unit) {
+        return (delay >= 0) ? unit.convert(delay, TimeUnit.NANOSECONDS) : -1;
+    }
+
+    /**
+     * Gets the number of requests which could have been hedged.
+     *
+     * @return the number of requests
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of hedges sent.
+     *
+     * @return the number of hedges
+     */
+    public synchronized long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * Gets the number of hedges responding before the original request.
+     *
+     * @return the number of hedges
+     */
+    public synchronized long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    /**
+     * Computes the time to wait before hedging from the recent latencies.
+     *
+     * Must be called while holding the lock.
+     */
+    private void computeDelay() {
+        if (samples < MIN_SAMPLES) {
+            return;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, (int)Math.min(samples, WINDOW));
+        Arrays.sort(sorted);
+        final int index = Math.min(sorted.length - 1, (int)Math.ceil(percentile * sorted.length) - 1);
+        delay = Math.max(minDelay, sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * Creates daemon threads for making hedged requests.
+     */
+    private static final class HedgeThreadFactory implements ThreadFactory {
+        /** The number of created threads. */
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "GitLab hedged request " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
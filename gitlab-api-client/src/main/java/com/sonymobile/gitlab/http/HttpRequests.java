@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.request.HttpRequest;
+import com.sonymobile.gitlab.metrics.Span;
+import com.sonymobile.gitlab.metrics.Tracer;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts requests built with Unirest into requests for an HTTP client.
+ *
+ * Lets a request be made with the connection pool of a specific API client rather than the global HTTP client of
+ * Unirest, and lets it be aborted.
+ */
+public final class HttpRequests {
+    /** The header carrying the trace context of a request to the server. */
+    public static final String TRACEPARENT_HEADER = "traceparent";
+
+    private HttpRequests() { /* empty */ }
+
+    /**
+     * Creates a request for an HTTP client.
+     *
+     * @param request the request built with Unirest
+     * @return the request for the HTTP client
+     * @throws IllegalArgumentException if the method of the request isn't GET or POST
+     */
+    public static HttpRequestBase create(HttpRequest request) {
+        final HttpRequestBase httpRequest;
+        if (request.getHttpMethod() == HttpMethod.GET) {
+            httpRequest = new HttpGet(request.getUrl());
+        } else if (request.getHttpMethod() == HttpMethod.POST) {
+            HttpPost httpPost = new HttpPost(request.getUrl());
+            if (request.getBody() != null) {
+                httpPost.setEntity(request.getBody().getEntity());
+            }
+            httpRequest = httpPost;
+        } else {
+            throw new IllegalArgumentException("Unsupported method " + request.getHttpMethod());
+        }
+
+        for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                httpRequest.addHeader(header.getKey(), value);
+            }
+        }
+        return httpRequest;
+    }
+
+    /**
+     * Starts the span of a request as a child of the span of the current thread.
+     *
+     * @param tracer             the tracer
+     * @param httpRequest        the request
+     * @param isTraceHeaderAdded whether to pass the context of the span to the server in a
+     *                           {@value #TRACEPARENT_HEADER} header
+     * @return the span
+     */
+    public static Span startSpan(Tracer tracer, HttpRequestBase httpRequest, boolean isTraceHeaderAdded) {
+        if (tracer == Tracer.NOOP) {
+            // nothing is recorded, don't build the attributes
+            return Span.NOOP;
+        }
+        final Span span = tracer.startSpan("HTTP " + httpRequest.getMethod(), RequestContext.getSpan());
+        final URI uri = httpRequest.getURI();
+        span.setAttribute("http.method", httpRequest.getMethod());
+        // leave out the query, which may contain the private token
+        span.setAttribute("http.url", uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath());
+        if (isTraceHeaderAdded) {
+            final String traceParent = span.getTraceParent();
+            if (traceParent != null) {
+                httpRequest.setHeader(TRACEPARENT_HEADER, traceParent);
+            }
+        }
+        return span;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server serving read requests in place of the primary server, e.g. a GitLab Geo secondary.
+ *
+ * The latency of the endpoint is an exponentially weighted moving average of its requests. An endpoint failing a
+ * request is taken out of rotation for a cooldown doubling with each consecutive failure, after which a single request
+ * is let through to probe it.
+ */
+public final class ReadEndpoint {
+    /** The weight of the latest latency in the moving average. */
+    private static final double DECAY = 0.3;
+
+    /** The highest number of times the cooldown is doubled. */
+    private static final int MAX_BACKOFF = 6;
+
+    /** The URL of the host server (excluding the path). */
+    private final String host;
+
+    /** The average latency in nanoseconds (or 0 if not measured yet). */
+    private double latency = 0;
+
+    /** The number of requests in flight. */
+    private int inFlight = 0;
+
+    /** The number of consecutive failures. */
+    private int failures = 0;
+
+    /** The time the endpoint may be probed again in nanoseconds (if failing). */
+    private long downUntil = 0;
+
+    /** Whether a request probing the failing endpoint is in flight. */
+    private boolean isProbing = false;
+
+    /** The number of requests made. */
+    private long requests = 0;
+
+    /** The number of failed requests. */
+    private long errors = 0;
+
+    /**
+     * Creates an endpoint.
+     *
+     * @param host the URL of the host server (excluding the path)
+     */
+    /* package */ ReadEndpoint(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Gets the URL of the host server.
+     *
+     * @return the URL (excluding the path)
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Gets the average latency.
+     *
+     * @param unit the time unit to return the latency in
+     * @return the latency (or 0 if not measured yet)
+     */
+    public synchronized long getLatency(TimeUnit unit) {
+        return unit.convert((long)latency, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     *
+     * @return the number of requests
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Checks whether the last request to the endpoint succeeded.
+     *
+     * @return true if healthy
+     */
+    public synchronized boolean isHealthy() {
+        return failures == 0;
+    }
+
+    /**
+     * Gets the number of requests made.
+     *
+     * @return the number of requests
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of failed requests.
+     *
+     * @return the number of requests
+     */
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Checks whether a request may be sent to the endpoint.
+     *
+     * @param now the current time in nanoseconds
+     * @return true if healthy or if a failing endpoint may be probed
+     */
+    /* package */ synchronized boolean isAvailable(long now) {
+        return failures == 0 || (!isProbing && now - downUntil >= 0);
+    }
+
+    /**
+     * Gets the score of the endpoint, the lower the better.
+     *
+     * The score is the latency weighted by the requests in flight, spreading concurrent requests over endpoints
+     * with similar latencies. Endpoints not measured yet are tried first.
+     *
+     * @return the score
+     */
+    /* package */ synchronized double getScore() {
+        return latency * (inFlight + 1);
+    }
+
+    /**
+     * Records that a request was sent to the endpoint.
+     */
+    /* package */ synchronized void start() {
+        inFlight++;
+        requests++;
+        if (failures > 0) {
+            isProbing = true;
+        }
+    }
+
+    /**
+     * Records that a request to the endpoint completed.
+     *
+     * @param latency   the latency of the request in nanoseconds
+     * @param isHealthy whether the request succeeded
+     * @param now       the current time in nanoseconds
+     * @param cooldown  the time to take a failing endpoint out of rotation in nanoseconds
+     */
+    /* package */ synchronized void complete(long latency, boolean isHealthy, long now, long cooldown) {
+        inFlight--;
+        record(latency, isHealthy, now, cooldown);
+    }
+
+    /**
+     * Records the result of a request or a health check.
+     *
+     * @param latency   the latency of the request in nanoseconds
+     * @param isHealthy whether the request succeeded
+     * @param now       the current time in nanoseconds
+     * @param cooldown  the time to take a failing endpoint out of rotation in nanoseconds
+     */
+    /* package */ synchronized void record(long latency, boolean isHealthy, long now, long cooldown) {
+        isProbing = false;
+        if (isHealthy) {
+            failures = 0;
+            this.latency = (this.latency > 0) ? this.latency + DECAY * (latency - this.latency) : latency;
+        } else {
+            errors++;
+            failures++;
+            downUntil = now + (cooldown << Math.min(failures - 1, MAX_BACKOFF));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return host;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes read requests to the healthiest read endpoint with the lowest latency.
+ *
+ * Requests are only routed to endpoints which are healthy or may be probed. If no endpoint is available the request
+ * goes to the primary server.
+ */
+public class ReadEndpointRouter {
+    /** The default time to take a failing endpoint out of rotation in seconds. */
+    public static final long DEFAULT_COOLDOWN = 10;
+
+    /** The read endpoints. */
+    private final List<ReadEndpoint> endpoints;
+
+    /** The time to take a failing endpoint out of rotation in nanoseconds. */
+    private volatile long cooldown = TimeUnit.SECONDS.toNanos(DEFAULT_COOLDOWN);
+
+    /**
+     * Creates a router.
+     *
+     * @param hosts the URLs of the read endpoints (excluding the path)
+     */
+    public ReadEndpointRouter(List<String> hosts) {
+        List<ReadEndpoint> list = new ArrayList<ReadEndpoint>(hosts.size());
+        for (String host : hosts) {
+            list.add(new ReadEndpoint(host));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Sets the time to take a failing endpoint out of rotation.
+     *
+     * The time is doubled for each consecutive failure.
+     *
+     * @param cooldown the time
+     * @param unit     the time unit of the time
+     * @return this object for chaining
+     */
+    public ReadEndpointRouter withCooldown(long cooldown, TimeUnit unit) {
+        this.cooldown = unit.toNanos(cooldown);
+        return this;
+    }
+
+    /**
+     * Gets the read endpoints.
+     *
+     * @return the endpoints
+     */
+    public List<ReadEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Chooses the endpoint for a read request.
+     *
+     * Every returned endpoint must be released with {@link #release(ReadEndpoint, long, boolean)}.
+     *
+     * @return the endpoint or null to use the primary server
+     */
+    public synchronized ReadEndpoint acquire() {
+        final long now = System.nanoTime();
+        ReadEndpoint best = null;
+        double bestScore = 0;
+        for (ReadEndpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now)) {
+                double score = endpoint.getScore();
+                if (best == null || score < bestScore) {
+                    best = endpoint;
+                    bestScore = score;
+                }
+            }
+        }
+        if (best != null) {
+            best.start();
+        }
+        return best;
+    }
+
+    /**
+     * Releases an endpoint after a completed request.
+     *
+     * @param endpoint  the endpoint
+     * @param latency   the latency of the request in nanoseconds
+     * @param isHealthy whether the endpoint handled the request
+     */
+    public void release(ReadEndpoint endpoint, long latency, boolean isHealthy) {
+        endpoint.complete(latency, isHealthy, System.nanoTime(), cooldown);
+    }
+
+    /**
+     * Records the result of a health check of an endpoint.
+     *
+     * @param endpoint  the endpoint
+     * @param latency   the latency of the health check in nanoseconds
+     * @param isHealthy whether the endpoint passed the health check
+     */
+    public void recordHealthCheck(ReadEndpoint endpoint, long latency, boolean isHealthy) {
+        endpoint.record(latency, isHealthy, System.nanoTime(), cooldown);
+    }
+}
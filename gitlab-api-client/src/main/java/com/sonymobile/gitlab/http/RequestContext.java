@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.metrics.CacheResult;
+import com.sonymobile.gitlab.metrics.Span;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The context of the requests made by the current thread.
+ *
+ * The context is set by the code calling the API client and read by the client when a request is made, so attributes
+ * of requests don't have to be passed through every method of the client. Always restore the previous value:
+ *
+ * <pre>
+ * RequestPriority previous = RequestContext.setPriority(RequestPriority.BACKGROUND);
+ * try {
+ *     client.getGroupMembers(groupId);
+ * } finally {
+ *     RequestContext.setPriority(previous);
+ * }
+ * </pre>
+ */
+public final class RequestContext {
+    /** The priority of the requests of each thread. */
+    private static final ThreadLocal<RequestPriority> PRIORITY = new ThreadLocal<RequestPriority>();
+
+    /** The consumer of the requests of each thread. */
+    private static final ThreadLocal<String> CONSUMER = new ThreadLocal<String>();
+
+    /** How a lookup cache is involved in the requests of each thread. */
+    private static final ThreadLocal<CacheResult> CACHE_RESULT = new ThreadLocal<CacheResult>();
+
+    /** The span of the requests of each thread. */
+    private static final ThreadLocal<Span> SPAN = new ThreadLocal<Span>();
+
+    private RequestContext() { /* empty */ }
+
+    /**
+     * Gets the priority of the requests made by the current thread.
+     *
+     * @return a priority ({@link RequestPriority#INTERACTIVE} if not set)
+     */
+    public static RequestPriority getPriority() {
+        RequestPriority priority = PRIORITY.get();
+        return (priority != null) ? priority : RequestPriority.INTERACTIVE;
+    }
+
+    /**
+     * Sets the priority of the requests made by the current thread.
+     *
+     * @param priority the priority (or null to use the default)
+     * @return the previous priority (or null if not set)
+     */
+    public static RequestPriority setPriority(RequestPriority priority) {
+        RequestPriority previous = PRIORITY.get();
+        if (priority != null) {
+            PRIORITY.set(priority);
+        } else {
+            PRIORITY.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the consumer making the requests of the current thread.
+     *
+     * @return the name of the consumer (or null if not set)
+     */
+    public static String getConsumer() {
+        return CONSUMER.get();
+    }
+
+    /**
+     * Sets the consumer making the requests of the current thread.
+     *
+     * The consumer is used to enforce the quota of the consumer and to account for its usage, see
+     * {@link ConsumerQuotas}.
+     *
+     * @param consumer the name of the consumer (or null to let the consumer be identified)
+     * @return the previous consumer (or null if not set)
+     */
+    public static String setConsumer(String consumer) {
+        String previous = CONSUMER.get();
+        if (consumer != null) {
+            CONSUMER.set(consumer);
+        } else {
+            CONSUMER.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Gets how a lookup cache is involved in the requests made by the current thread.
+     *
+     * @return the cache result ({@link CacheResult#NONE} if not set)
+     */
+    public static CacheResult getCacheResult() {
+        CacheResult cacheResult = CACHE_RESULT.get();
+        return (cacheResult != null) ? cacheResult : CacheResult.NONE;
+    }
+
+    /**
+     * Sets how a lookup cache is involved in the requests made by the current thread.
+     *
+     * Set by lookup caches while loading values, to tell their requests apart in {@link
+     * com.sonymobile.gitlab.metrics.ApiCall}s.
+     *
+     * @param cacheResult the cache result (or null to use the default)
+     * @return the previous cache result (or null if not set)
+     */
+    public static CacheResult setCacheResult(CacheResult cacheResult) {
+        CacheResult previous = CACHE_RESULT.get();
+        if (cacheResult != null) {
+            CACHE_RESULT.set(cacheResult);
+        } else {
+            CACHE_RESULT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the span of the requests made by the current thread.
+     *
+     * @return the span (or null if not set)
+     */
+    public static Span getSpan() {
+        return SPAN.get();
+    }
+
+    /**
+     * Sets the span of the requests made by the current thread.
+     *
+     * The spans of the API calls of the thread are started as children of the span, see
+     * {@link com.sonymobile.gitlab.metrics.Tracer}.
+     *
+     * @param span the span (or null to start new traces)
+     * @return the previous span (or null if not set)
+     */
+    public static Span setSpan(Span span) {
+        Span previous = SPAN.get();
+        if (span != null) {
+            SPAN.set(span);
+        } else {
+            SPAN.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Wraps a task to make its requests with background priority.
+     *
+     * The requests are made on behalf of the consumer and within the span of the thread wrapping the task.
+     *
+     * @param task the task
+     * @return a task running the task with background priority
+     */
+    public static Runnable background(final Runnable task) {
+        final String consumer = getConsumer();
+        final Span span = getSpan();
+        return new Runnable() {
+            @Override
+            public void run() {
+                RequestPriority previousPriority = setPriority(RequestPriority.BACKGROUND);
+                String previousConsumer = setConsumer(consumer);
+                Span previousSpan = setSpan(span);
+                try {
+                    task.run();
+                } finally {
+                    setSpan(previousSpan);
+                    setConsumer(previousConsumer);
+                    setPriority(previousPriority);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a task to run it with the context of the thread wrapping the task, e.g. to carry the context to the
+     * threads of an executor fanning out requests.
+     *
+     * @param task the task
+     * @return a task running the task with the context of the current thread
+     */
+    public static Runnable wrap(final Runnable task) {
+        final Snapshot context = new Snapshot();
+        return new Runnable() {
+            @Override
+            public void run() {
+                Snapshot previous = context.apply();
+                try {
+                    task.run();
+                } finally {
+                    previous.apply();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a task to run it with the context of the thread wrapping the task, e.g. to carry the context to the
+     * threads of an executor fanning out requests.
+     *
+     * @param task the task
+     * @param <T>  the type of the result of the task
+     * @return a task running the task with the context of the current thread
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final Snapshot context = new Snapshot();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Snapshot previous = context.apply();
+                try {
+                    return task.call();
+                } finally {
+                    previous.apply();
+                }
+            }
+        };
+    }
+
+    /**
+     * The context of a thread, captured to be applied to another thread.
+     */
+    private static final class Snapshot {
+        /** The priority (or null if not set). */
+        private final RequestPriority priority = PRIORITY.get();
+
+        /** The consumer (or null if not set). */
+        private final String consumer = CONSUMER.get();
+
+        /** How a lookup cache is involved (or null if not set). */
+        private final CacheResult cacheResult = CACHE_RESULT.get();
+
+        /** The span (or null if not set). */
+        private final Span span = SPAN.get();
+
+        /**
+         * Applies the context to the current thread.
+         *
+         * @return the previous context of the thread
+         */
+        private Snapshot apply() {
+            Snapshot previous = new Snapshot();
+            setPriority(priority);
+            setConsumer(consumer);
+            setCacheResult(cacheResult);
+            setSpan(span);
+            return previous;
+        }
+    }
+}
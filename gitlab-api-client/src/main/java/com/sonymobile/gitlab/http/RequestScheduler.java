@@ -0,0 +1,468 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules requests to the API by priority class with weighted fair queuing.
+ *
+ * At most a limited number of requests are in flight at once. When the limit is reached, requests wait in one queue
+ * per priority class and each freed slot goes to the class that has received the least service relative to its weight.
+ * Every class with waiting requests is therefore guaranteed its share of the slots, e.g. background requests get one
+ * slot in five with the default weights, while a class without waiting requests doesn't bank any credit.
+ *
+ * A slot is held for a single HTTP request, so a sweep over many pages or many groups goes back to the queue between
+ * each request and interactive requests can get ahead of it at every page boundary.
+ *
+ * The limit is either fixed or an {@link AdaptiveLimit} following the latency of the server.
+ */
+public class RequestScheduler {
+    /** The default maximum number of requests in flight. */
+    public static final int DEFAULT_LIMIT = 5;
+
+    /** The virtual time a request of a class with weight 1 advances the class by. */
+    private static final long STRIDE = 1 << 20;
+
+    /** The lock protecting the state. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The queue of each priority class. */
+    private final ClassQueue[] queues;
+
+    /** The maximum number of requests in flight. */
+    private int limit;
+
+    /** The limit adapting to the latency of the requests (or null for a fixed limit). */
+    private AdaptiveLimit adaptiveLimit = null;
+
+    /** The number of requests in flight. */
+    private int inFlight = 0;
+
+    /** The virtual time of the last request dispatched from a queue. */
+    private long virtualTime = 0;
+
+    /**
+     * Creates a scheduler with the default limit.
+     */
+    public RequestScheduler() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param limit the maximum number of requests in flight
+     */
+    public RequestScheduler(int limit) {
+        RequestPriority[] priorities = RequestPriority.values();
+        queues = new ClassQueue[priorities.length];
+        for (RequestPriority priority : priorities) {
+            queues[priority.ordinal()] = new ClassQueue(priority.getDefaultWeight());
+        }
+        setLimit(limit);
+    }
+
+    /**
+     * Waits for a slot for a request.
+     *
+     * Every call must be followed by a call to {@link #release()} once the request has completed.
+     *
+     * @param priority the priority of the request
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(RequestPriority priority) throws InterruptedException {
+        ClassQueue queue = queues[priority.ordinal()];
+        lock.lock();
+        try {
+            if (inFlight < limit && isEmpty()) {
+                // no need to queue
+                inFlight++;
+                queue.recordDispatch(0);
+                return;
+            }
+
+            if (queue.waiters.isEmpty()) {
+                // don't let a class bank credit while it had nothing waiting
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.waiters.addLast(waiter);
+            try {
+                while (!waiter.isGranted) {
+                    waiter.condition.await();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.isGranted) {
+                    // give away the slot granted while being interrupted
+                    inFlight--;
+                    dispatch();
+                } else {
+                    queue.waiters.remove(waiter);
+                }
+                throw e;
+            }
+            queue.recordDispatch(System.nanoTime() - waiter.enqueuedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot for a request if one is free without waiting.
+     *
+     * A successful call must be followed by a call to {@link #release()} once the request has completed.
+     *
+     * @param priority the priority of the request
+     * @return true if a slot was taken
+     */
+    public boolean tryAcquire(RequestPriority priority) {
+        lock.lock();
+        try {
+            if (inFlight < limit && isEmpty()) {
+                inFlight++;
+                queues[priority.ordinal()].recordDispatch(0);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a completed request.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a completed request, updating the adaptive limit with the latency of the request.
+     *
+     * @param latency   the latency of the request in nanoseconds
+     * @param isDropped whether the request failed in a way indicating that the server is overloaded
+     */
+    public void release(long latency, boolean isDropped) {
+        lock.lock();
+        try {
+            if (adaptiveLimit != null) {
+                limit = adaptiveLimit.update(latency, inFlight, isDropped);
+            }
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets a fixed maximum number of requests in flight.
+     *
+     * Replaces the adaptive limit if set.
+     *
+     * @param limit the limit (at least 1)
+     */
+    public void setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        lock.lock();
+        try {
+            this.limit = limit;
+            this.adaptiveLimit = null;
+            // the limit may have been raised
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the maximum number of requests in flight adapt to the latency of the requests.
+     *
+     * The limit is updated when slots are released with {@link #release(long, boolean)}.
+     *
+     * @param adaptiveLimit the adaptive limit
+     * @return this object for chaining
+     */
+    public RequestScheduler withAdaptiveLimit(AdaptiveLimit adaptiveLimit) {
+        lock.lock();
+        try {
+            this.adaptiveLimit = adaptiveLimit;
+            this.limit = adaptiveLimit.getLimit();
+            // the limit may have been raised
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Gets the adaptive limit.
+     *
+     * @return the adaptive limit (or null if the limit is fixed)
+     */
+    public AdaptiveLimit getAdaptiveLimit() {
+        lock.lock();
+        try {
+            return adaptiveLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the weight of a priority class.
+     *
+     * @param priority the priority class
+     * @param weight   the share of the requests when all classes are waiting (at least 1)
+     * @return this object for chaining
+     */
+    public RequestScheduler withWeight(RequestPriority priority, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1");
+        }
+        lock.lock();
+        try {
+            queues[priority.ordinal()].weight = weight;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of requests in flight.
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     *
+     * @return the number of requests
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting in a priority class.
+     *
+     * @param priority the priority class
+     * @return the number of requests
+     */
+    public int getQueueDepth(RequestPriority priority) {
+        lock.lock();
+        try {
+            return queues[priority.ordinal()].waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests dispatched in a priority class.
+     *
+     * @param priority the priority class
+     * @return the number of requests
+     */
+    public long getDispatched(RequestPriority priority) {
+        lock.lock();
+        try {
+            return queues[priority.ordinal()].dispatched;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the average time requests in a priority class waited for a slot.
+     *
+     * @param priority the priority class
+     * @param unit     the time unit to return the time in
+     * @return the average time
+     */
+    public long getAverageWait(RequestPriority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            ClassQueue queue = queues[priority.ordinal()];
+            return (queue.dispatched > 0) ? unit.convert(queue.totalWait / queue.dispatched, TimeUnit.NANOSECONDS) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the longest time a request in a priority class waited for a slot.
+     *
+     * @param priority the priority class
+     * @param unit     the time unit to return the time in
+     * @return the longest time
+     */
+    public long getMaxWait(RequestPriority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            return unit.convert(queues[priority.ordinal()].maxWait, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether all queues are empty.
+     *
+     * Must be called while holding the lock.
+     *
+     * @return true if no request is waiting
+     */
+    private boolean isEmpty() {
+        for (ClassQueue queue : queues) {
+            if (!queue.waiters.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Grants free slots to the waiting requests.
+     *
+     * Must be called while holding the lock.
+     */
+    private void dispatch() {
+        while (inFlight < limit) {
+            // choose the class which has received the least service relative to its weight
+            ClassQueue next = null;
+            for (ClassQueue queue : queues) {
+                if (!queue.waiters.isEmpty() && (next == null || queue.pass < next.pass)) {
+                    next = queue;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            virtualTime = next.pass;
+            next.pass += STRIDE / next.weight;
+            Waiter waiter = next.waiters.removeFirst();
+            waiter.isGranted = true;
+            inFlight++;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * The queue and statistics of a priority class.
+     */
+    private static final class ClassQueue {
+        /** The waiting requests. */
+        private final Deque<Waiter> waiters = new ArrayDeque<Waiter>();
+
+        /** The share of the requests when all classes are waiting. */
+        private int weight;
+
+        /** The virtual time of the next request of the class. */
+        private long pass = 0;
+
+        /** The number of dispatched requests. */
+        private long dispatched = 0;
+
+        /** The total time dispatched requests waited in nanoseconds. */
+        private long totalWait = 0;
+
+        /** The longest time a dispatched request waited in nanoseconds. */
+        private long maxWait = 0;
+
+        /**
+         * Creates a queue.
+         *
+         * @param weight the share of the requests when all classes are waiting
+         */
+        private ClassQueue(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Records a dispatched request.
+         *
+         * @param wait the time the request waited in nanoseconds
+         */
+        private void recordDispatch(long wait) {
+            dispatched++;
+            totalWait += wait;
+            maxWait = Math.max(maxWait, wait);
+        }
+    }
+
+    /**
+     * A request waiting for a slot.
+     */
+    private static final class Waiter {
+        /** The condition signalled when the slot is granted. */
+        private final Condition condition;
+
+        /** The time the request started waiting in nanoseconds. */
+        private final long enqueuedAt = System.nanoTime();
+
+        /** Whether a slot has been granted. */
+        private boolean isGranted = false;
+
+        /**
+         * Creates a waiting request.
+         *
+         * @param condition the condition signalled when the slot is granted
+         */
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identifies the consumer making a request from the classes on the stack of the current thread.
+ *
+ * The consumer is the one of the innermost class on the stack belonging to a consumer. The stack is walked for every
+ * request, since a thread may serve many consumers one after another, but the consumer of a bounded number of classes
+ * is remembered so that each class is usually only looked up once.
+ */
+public abstract class StackConsumerResolver implements ConsumerResolver {
+    /** The maximum number of classes to remember the consumer of. */
+    private static final int MAX_CLASSES = 4096;
+
+    /** The placeholder for classes not belonging to a consumer (since the map can't hold null). */
+    private static final String NO_CONSUMER = "";
+
+    /** The prefixes of classes never making requests on their own behalf. */
+    private final String[] skippedPrefixes;
+
+    /** The consumer of each class by class name. */
+    private final ConcurrentMap<String, String> consumersByClass = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Creates a resolver.
+     *
+     * @param skippedPrefixes the prefixes of classes never making requests on their own behalf, skipped without being
+     *                        looked up
+     */
+    protected StackConsumerResolver(String... skippedPrefixes) {
+        this.skippedPrefixes = skippedPrefixes.clone();
+    }
+
+    @Override
+    public String resolveConsumer() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (isSkipped(className)) {
+                continue;
+            }
+            String consumer = consumerOf(className);
+            if (consumer != null) {
+                return consumer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the consumer of a class.
+     *
+     * @param className the name of the class
+     * @return the name of the consumer (or null if the class doesn't belong to a consumer)
+     */
+    public final String consumerOf(String className) {
+        String consumer = consumersByClass.get(className);
+        if (consumer == null) {
+            consumer = lookUpConsumer(className);
+            consumer = (consumer != null) ? consumer : NO_CONSUMER;
+            if (consumersByClass.size() >= MAX_CLASSES) {
+                // generated classes (e.g. of scripts) would otherwise grow the map without bound
+                consumersByClass.clear();
+            }
+            consumersByClass.putIfAbsent(className, consumer);
+        }
+        return NO_CONSUMER.equals(consumer) ? null : consumer;
+    }
+
+    /**
+     * Looks up the consumer of a class.
+     *
+     * Called at most once per class as long as the class is remembered.
+     *
+     * @param className the name of the class
+     * @return the name of the consumer (or null if the class doesn't belong to a consumer)
+     */
+    protected abstract String lookUpConsumer(String className);
+
+    /**
+     * Checks whether a class is skipped when looking for the caller.
+     *
+     * @param className the name of the class
+     * @return true if skipped
+     */
+    private boolean isSkipped(String className) {
+        for (String prefix : skippedPrefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.metrics.PhaseTimer;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pooling connection manager timing the wait for a connection and the DNS lookups of new connections.
+ *
+ * The times are added to the {@link PhaseTimer} of the calling thread, if any. Register the socket factories wrapped
+ * in {@link TimedSocketFactory}s to time the connects and TLS handshakes as well. The routes connections have been
+ * requested for are kept, so the pool can be inspected per route.
+ */
+public class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+    /** The routes connections have been requested for. */
+    private final Set<HttpRoute> routes = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+
+    /**
+     * Creates a connection manager.
+     *
+     * @param socketFactoryRegistry the socket factories by scheme
+     */
+    public TimedConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+        super(socketFactoryRegistry, new TimedDnsResolver(SystemDefaultDnsResolver.INSTANCE));
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        if (!routes.contains(route)) {
+            routes.add(route);
+        }
+        final ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                final long start = System.nanoTime();
+                try {
+                    return request.get(timeout, unit);
+                } finally {
+                    PhaseTimer.record(RequestPhase.LEASE, System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    /**
+     * Gets the state of the pool of each route connections have been requested for.
+     *
+     * @return the state of the pool by route, sorted by route
+     */
+    public SortedMap<String, PoolStats> getRouteStats() {
+        final SortedMap<String, PoolStats> stats = new TreeMap<String, PoolStats>();
+        for (HttpRoute route : routes) {
+            stats.put(route.toString(), getStats(route));
+        }
+        return stats;
+    }
+
+    /**
+     * A DNS resolver timing the lookups of another resolver.
+     */
+    private static class TimedDnsResolver implements DnsResolver {
+        /** The resolver making the lookups. */
+        private final DnsResolver resolver;
+
+        /**
+         * Creates a timed DNS resolver.
+         *
+         * @param resolver the resolver making the lookups
+         */
+        private TimedDnsResolver(DnsResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            final long start = System.nanoTime();
+            try {
+                return resolver.resolve(host);
+            } finally {
+                PhaseTimer.record(RequestPhase.DNS, System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.metrics.PhaseTimer;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A socket factory timing the connects and TLS handshakes of another socket factory.
+ *
+ * A layered factory, e.g. for HTTPS, connects with a plain socket which is then layered by the factory, so the connect
+ * and the handshake are timed apart. The times are added to the {@link PhaseTimer} of the calling thread, if any.
+ */
+public class TimedSocketFactory implements LayeredConnectionSocketFactory {
+    /** The factory connecting the plain sockets of layered sockets. */
+    private static final ConnectionSocketFactory PLAIN_FACTORY = PlainConnectionSocketFactory.getSocketFactory();
+
+    /** The socket factory creating the sockets. */
+    private final ConnectionSocketFactory socketFactory;
+
+    /**
+     * Creates a timed socket factory.
+     *
+     * @param socketFactory the socket factory creating the sockets
+     */
+    public TimedSocketFactory(ConnectionSocketFactory socketFactory) {
+        this.socketFactory = socketFactory;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return socketFactory.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, HttpContext context) throws IOException {
+        final long start = System.nanoTime();
+        if (!(socketFactory instanceof LayeredConnectionSocketFactory) || socket instanceof SSLSocket) {
+            // nothing to layer
+            try {
+                return socketFactory.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                PhaseTimer.record(RequestPhase.CONNECT, System.nanoTime() - start);
+            }
+        }
+
+        final Socket plainSocket;
+        try {
+            plainSocket = PLAIN_FACTORY.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress,
+                    context);
+        } finally {
+            PhaseTimer.record(RequestPhase.CONNECT, System.nanoTime() - start);
+        }
+        try {
+            return createLayeredSocket(plainSocket, host.getHostName(), remoteAddress.getPort(), context);
+        } catch (IOException e) {
+            plainSocket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+            throws IOException {
+        if (!(socketFactory instanceof LayeredConnectionSocketFactory)) {
+            // the same as when the socket factory isn't wrapped
+            throw new UnsupportedSchemeException("Socket factory " + socketFactory + " can't layer sockets");
+        }
+        final long start = System.nanoTime();
+        try {
+            return ((LayeredConnectionSocketFactory)socketFactory).createLayeredSocket(socket, target, port, context);
+        } finally {
+            PhaseTimer.record(RequestPhase.TLS, System.nanoTime() - start);
+        }
+    }
+}
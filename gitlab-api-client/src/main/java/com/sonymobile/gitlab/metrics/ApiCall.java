@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completed API call, passed to an {@link ApiCallListener}.
+ *
+ * Calls are only created when a listener is set. The time of the call is broken down into {@link RequestPhase}s.
+ * The network phases of hedged requests aren't broken down since the attempts run in parallel.
+ */
+public final class ApiCall {
+    /** The endpoint template. */
+    private final String template;
+
+    /** The consumer making the call (or null if not identified). */
+    private final String consumer;
+
+    /** Whether the call impersonated another user. */
+    private final boolean isImpersonated;
+
+    /** How a lookup cache was involved in the call. */
+    private final CacheResult cacheResult;
+
+    /** The status code of the response (or {@link EndpointMetrics#NO_RESPONSE}). */
+    private final int status;
+
+    /** The number of bytes received in the response body. */
+    private final long bytesIn;
+
+    /** The number of bytes sent in the request body. */
+    private final long bytesOut;
+
+    /** The time the call started in milliseconds since the epoch. */
+    private final long startTime;
+
+    /** The time spent in each phase in nanoseconds, by the ordinals of the phases. */
+    private final long[] phaseTimes;
+
+    /** The duration of the call in nanoseconds. */
+    private final long duration;
+
+    /**
+     * Creates a completed API call.
+     *
+     * @param template       the endpoint template
+     * @param consumer       the consumer making the call (or null if not identified)
+     * @param isImpersonated whether the call impersonated another user
+     * @param cacheResult    how a lookup cache was involved in the call
+     * @param status         the status code of the response (or {@link EndpointMetrics#NO_RESPONSE})
+     * @param bytesIn        the number of bytes received in the response body
+     * @param bytesOut       the number of bytes sent in the request body
+     * @param startTime      the time the call started in milliseconds since the epoch
+     * @param phaseTimes     the time spent in each phase in nanoseconds, by the ordinals of the phases (or null if
+     *                       the call didn't reach the API)
+     * @param duration       the duration of the call in nanoseconds
+     */
+    public ApiCall(String template, String consumer, boolean isImpersonated, CacheResult cacheResult,
+                   int status, long bytesIn, long bytesOut,
+                   long startTime, long[] phaseTimes, long duration) {
+        this.template = template;
+        this.consumer = consumer;
+        this.isImpersonated = isImpersonated;
+        this.cacheResult = cacheResult;
+        this.status = status;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.startTime = startTime;
+        this.phaseTimes = (phaseTimes != null) ? phaseTimes.clone() : new long[RequestPhase.values().length];
+        this.duration = duration;
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the consumer making the call.
+     *
+     * @return the name of the consumer (or null if not identified)
+     */
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Checks whether the call impersonated another user.
+     *
+     * @return true if made with the sudo parameter
+     */
+    public boolean isImpersonated() {
+        return isImpersonated;
+    }
+
+    /**
+     * Gets how a lookup cache was involved in the call.
+     *
+     * @return the cache result
+     */
+    public CacheResult getCacheResult() {
+        return cacheResult;
+    }
+
+    /**
+     * Gets the status code of the response.
+     *
+     * @return the status code (or {@link EndpointMetrics#NO_RESPONSE} if there was no response)
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of bytes received in the response body.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Gets the number of bytes sent in the request body.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Gets the time the call started.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase the phase
+     * @param unit  the time unit to return the time in
+     * @return the time (or 0 if the call never was in the phase)
+     */
+    public long getPhaseTime(RequestPhase phase, TimeUnit unit) {
+        return unit.convert(phaseTimes[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the duration of the call.
+     *
+     * @param unit the time unit to return the duration in
+     * @return the duration
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return template + " " + status + " in " + getDuration(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+/**
+ * A failed request recorded by {@link ApiMetrics}.
+ *
+ * Instances are immutable.
+ */
+public final class ApiError {
+    /** The endpoint template. */
+    private final String template;
+
+    /** The status code of the response (or {@link EndpointMetrics#NO_RESPONSE}). */
+    private final int status;
+
+    /** The reason the request failed (or null if only the status is known). */
+    private final String message;
+
+    /** The time of the failure in milliseconds since the epoch. */
+    private final long time;
+
+    /**
+     * Creates a failed request.
+     *
+     * @param template the endpoint template
+     * @param status   the status code of the response (or {@link EndpointMetrics#NO_RESPONSE})
+     * @param message  the reason the request failed (or null if only the status is known)
+     * @param time     the time of the failure in milliseconds since the epoch
+     */
+    public ApiError(String template, int status, String message, long time) {
+        this.template = template;
+        this.status = status;
+        this.message = message;
+        this.time = time;
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the status code of the response.
+     *
+     * @return the status code or {@link EndpointMetrics#NO_RESPONSE} if no response was received
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the reason the request failed.
+     *
+     * @return the reason or null if only the status is known
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the time of the failure.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return template + " " + ((status != EndpointMetrics.NO_RESPONSE) ? status : "failed")
+                + ((message != null) ? ": " + message : "");
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The metrics of the requests of an API client by endpoint template.
+ *
+ * Paths are turned into templates by replacing every numeric path segment with <code>:id</code>, so
+ * <code>/users/1</code> and <code>/users/2</code> are both counted as <code>GET /users/:id</code>. Looking up the
+ * metrics of a template which has been seen before neither locks nor allocates. The number of templates is limited,
+ * and paths beyond the limit are counted as {@link #OTHER_TEMPLATE}.
+ */
+public class ApiMetrics implements ApiMetricsMXBean {
+    /** The template of the requests beyond the limit of templates. */
+    public static final String OTHER_TEMPLATE = "other";
+
+    /** The domain of the object names of the metrics registered with JMX. */
+    public static final String JMX_DOMAIN = "com.sonymobile.gitlab";
+
+    /** The number of recent errors kept. */
+    public static final int RECENT_ERRORS = 50;
+
+    /** The most templates tracked separately. */
+    private static final int MAX_TEMPLATES = 128;
+
+    /** The size of the hash table of the templates (a power of two well above the most templates). */
+    private static final int TABLE_SIZE = 512;
+
+    /** The placeholder for numeric path segments. */
+    private static final String ID_PLACEHOLDER = ":id";
+
+    /** Comparator sorting metrics by template. */
+    private static final Comparator<EndpointMetrics> BY_TEMPLATE = new Comparator<EndpointMetrics>() {
+        @Override
+        public int compare(EndpointMetrics a, EndpointMetrics b) {
+            return a.getTemplate().compareTo(b.getTemplate());
+        }
+    };
+
+    /** The metrics of the templates in an open addressed hash table, replaced when a template is added. */
+    private volatile EndpointMetrics[] table = new EndpointMetrics[TABLE_SIZE];
+
+    /** The hashes of the templates of the metrics in the table. */
+    private volatile int[] hashes = new int[TABLE_SIZE];
+
+    /** The metrics of all templates. */
+    private volatile List<EndpointMetrics> endpoints = Collections.emptyList();
+
+    /** The metrics of the requests beyond the limit of templates. */
+    private final EndpointMetrics other = new EndpointMetrics(OTHER_TEMPLATE);
+
+    /** The most recent errors, overwritten in order (guards the index and count of the errors as well). */
+    private final ApiError[] recentErrors = new ApiError[RECENT_ERRORS];
+
+    /** The index of the next error to write. */
+    private int nextError = 0;
+
+    /** The number of errors recorded. */
+    private long errorCount = 0;
+
+    /** The most recent requests. */
+    private final RequestTrace trace = new RequestTrace();
+
+    /**
+     * Gets the metrics of the template of a request.
+     *
+     * @param method the HTTP method of the request
+     * @param path   the path of the request relative to the API
+     * @return the metrics of the template
+     */
+    public EndpointMetrics getEndpoint(String method, String path) {
+        final int hash = templateHash(method, path);
+        final EndpointMetrics[] currentTable = table;
+        final int[] currentHashes = hashes;
+        for (int i = hash & (TABLE_SIZE - 1); currentTable[i] != null; i = (i + 1) & (TABLE_SIZE - 1)) {
+            if (currentHashes[i] == hash && matchesTemplate(currentTable[i].getTemplate(), method, path)) {
+                return currentTable[i];
+            }
+        }
+        return addEndpoint(hash, method, path);
+    }
+
+    /**
+     * Gets the metrics of all templates which have been requested.
+     *
+     * @return the metrics sorted by template
+     */
+    public List<EndpointMetrics> getEndpoints() {
+        List<EndpointMetrics> sorted = new ArrayList<EndpointMetrics>(endpoints);
+        Collections.sort(sorted, BY_TEMPLATE);
+        if (other.getRequests() > 0) {
+            sorted.add(other);
+        }
+        return sorted;
+    }
+
+    @Override
+    public List<EndpointStatistics> getStatistics() {
+        List<EndpointStatistics> statistics = new ArrayList<EndpointStatistics>();
+        for (EndpointMetrics endpoint : getEndpoints()) {
+            statistics.add(endpoint.getStatistics());
+        }
+        return statistics;
+    }
+
+    @Override
+    public long getRequests() {
+        long requests = other.getRequests();
+        for (EndpointMetrics endpoint : endpoints) {
+            requests += endpoint.getRequests();
+        }
+        return requests;
+    }
+
+    /**
+     * Records a failed request, keeping the most recent errors.
+     *
+     * @param template the endpoint template
+     * @param status   the status code of the response (or {@link EndpointMetrics#NO_RESPONSE})
+     * @param message  the reason the request failed (or null if only the status is known)
+     */
+    public void recordError(String template, int status, String message) {
+        final ApiError error = new ApiError(template, status, message, System.currentTimeMillis());
+        synchronized (recentErrors) {
+            recentErrors[nextError] = error;
+            nextError = (nextError + 1) % RECENT_ERRORS;
+            errorCount++;
+        }
+    }
+
+    /**
+     * Gets the most recent errors.
+     *
+     * @return at most {@value #RECENT_ERRORS} errors, the most recent first
+     */
+    public List<ApiError> getRecentErrors() {
+        List<ApiError> errors = new ArrayList<ApiError>(RECENT_ERRORS);
+        synchronized (recentErrors) {
+            for (int i = 1; i <= RECENT_ERRORS; i++) {
+                ApiError error = recentErrors[(nextError - i + RECENT_ERRORS) % RECENT_ERRORS];
+                if (error == null) {
+                    break;
+                }
+                errors.add(error);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Gets the number of errors recorded, including errors no longer kept.
+     *
+     * @return the number of errors
+     */
+    public long getErrorCount() {
+        synchronized (recentErrors) {
+            return errorCount;
+        }
+    }
+
+    /**
+     * Gets the trace of the most recent requests.
+     *
+     * @return the trace
+     */
+    public RequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * Metrics previously registered with the same name are replaced.
+     *
+     * @param name the name telling the metrics apart from those of other clients, e.g. the name of the server
+     * @return the object name of the registered metrics
+     * @throws JMException if the metrics couldn't be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = objectNameOf(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters metrics from the platform MBean server.
+     *
+     * @param name the name the metrics were registered with
+     * @throws JMException if the metrics couldn't be unregistered
+     */
+    public static void unregister(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = objectNameOf(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * Gets the object name of metrics registered with a name.
+     *
+     * @param name the name
+     * @return the object name
+     * @throws JMException if the name can't be part of an object name
+     */
+    public static ObjectName objectNameOf(String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=ApiMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Adds the metrics of a template which hasn't been seen before.
+     *
+     * @param hash   the hash of the template
+     * @param method the HTTP method of the request
+     * @param path   the path of the request relative to the API
+     * @return the metrics of the template
+     */
+    private synchronized EndpointMetrics addEndpoint(int hash, String method, String path) {
+        // another thread may have added the template
+        int i = hash & (TABLE_SIZE - 1);
+        for (; table[i] != null; i = (i + 1) & (TABLE_SIZE - 1)) {
+            if (hashes[i] == hash && matchesTemplate(table[i].getTemplate(), method, path)) {
+                return table[i];
+            }
+        }
+        if (endpoints.size() >= MAX_TEMPLATES) {
+            return other;
+        }
+
+        EndpointMetrics endpoint = new EndpointMetrics(templateOf(method, path));
+        EndpointMetrics[] newTable = table.clone();
+        int[] newHashes = hashes.clone();
+        newTable[i] = endpoint;
+        newHashes[i] = hash;
+        List<EndpointMetrics> newEndpoints = new ArrayList<EndpointMetrics>(endpoints);
+        newEndpoints.add(endpoint);
+
+        // publish the hashes before the table referring to them
+        hashes = newHashes;
+        table = newTable;
+        endpoints = Collections.unmodifiableList(newEndpoints);
+        return endpoint;
+    }
+
+    /**
+     * Creates the template of a request.
+     *
+     * @param method the HTTP method of the request
+     * @param path   the path of the request relative to the API
+     * @return the template
+     */
+    /* package */ static String templateOf(String method, String path) {
+        StringBuilder builder = new StringBuilder(method.length() + path.length() + 1);
+        builder.append(method).append(' ');
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (isNumeric(path, start, end)) {
+                builder.append(ID_PLACEHOLDER);
+            } else {
+                builder.append(path, start, end);
+            }
+            if (end < path.length()) {
+                builder.append('/');
+            }
+            start = end + 1;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Computes the hash of the template of a request without creating the template.
+     *
+     * @param method the HTTP method of the request
+     * @param path   the path of the request relative to the API
+     * @return the hash
+     */
+    private static int templateHash(String method, String path) {
+        int hash = method.hashCode() * 31 + ' ';
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (isNumeric(path, start, end)) {
+                for (int i = 0; i < ID_PLACEHOLDER.length(); i++) {
+                    hash = 31 * hash + ID_PLACEHOLDER.charAt(i);
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    hash = 31 * hash + path.charAt(i);
+                }
+            }
+            if (end < path.length()) {
+                hash = 31 * hash + '/';
+            }
+            start = end + 1;
+        }
+        // spread the bits over the low bits used by the table
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Checks whether a request matches a template without creating the template of the request.
+     *
+     * @param template the template
+     * @param method   the HTTP method of the request
+     * @param path     the path of the request relative to the API
+     * @return true if the template of the request equals the template
+     */
+    private static boolean matchesTemplate(String template, String method, String path) {
+        if (!template.startsWith(method) || template.length() <= method.length()
+                || template.charAt(method.length()) != ' ') {
+            return false;
+        }
+        int t = method.length() + 1;
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (isNumeric(path, start, end)) {
+                if (!template.startsWith(ID_PLACEHOLDER, t)) {
+                    return false;
+                }
+                t += ID_PLACEHOLDER.length();
+            } else {
+                if (!template.regionMatches(t, path, start, end - start)) {
+                    return false;
+                }
+                t += end - start;
+            }
+            if (end < path.length()) {
+                if (t >= template.length() || template.charAt(t) != '/') {
+                    return false;
+                }
+                t++;
+            }
+            start = end + 1;
+        }
+        return t == template.length();
+    }
+
+    /**
+     * Finds the end of a path segment.
+     *
+     * @param path  the path
+     * @param start the index of the first character of the segment
+     * @return the index of the slash after the segment or the length of the path
+     */
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return (end >= 0) ? end : path.length();
+    }
+
+    /**
+     * Checks whether a path segment is a number.
+     *
+     * @param path  the path
+     * @param start the index of the first character of the segment
+     * @param end   the index after the last character of the segment
+     * @return true if the segment is made of digits only
+     */
+    private static boolean isNumeric(String path, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(path.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call, or a pattern of calls, flagged by a {@link CallPatternDetector}.
+ *
+ * Instances are immutable.
+ */
+public final class CallOffender {
+    /**
+     * The kinds of offenders.
+     */
+    public enum Kind {
+        /** A single call slower than the threshold. */
+        SLOW,
+
+        /** The same endpoint template called repeatedly within one scope, e.g. once per item of a list. */
+        REPEATED
+    }
+
+    /** The kind of offender. */
+    private final Kind kind;
+
+    /** The endpoint template. */
+    private final String template;
+
+    /** The consumer making the calls (or null if not identified). */
+    private final String consumer;
+
+    /** The name of the scope the calls were made in. */
+    private final String scope;
+
+    /** The number of calls. */
+    private final int calls;
+
+    /** The total duration of the calls in nanoseconds. */
+    private final long duration;
+
+    /** The time the offender was flagged in milliseconds since the epoch. */
+    private final long time;
+
+    /** The stack of the caller, starting at the first frame outside the client. */
+    private final StackTraceElement[] stackTrace;
+
+    /**
+     * Creates an offender.
+     *
+     * @param kind       the kind of offender
+     * @param template   the endpoint template
+     * @param consumer   the consumer making the calls (or null if not identified)
+     * @param scope      the name of the scope the calls were made in
+     * @param calls      the number of calls
+     * @param duration   the total duration of the calls in nanoseconds
+     * @param time       the time the offender was flagged in milliseconds since the epoch
+     * @param stackTrace the stack of the caller
+     */
+    public CallOffender(Kind kind, String template, String consumer, String scope, int calls, long duration,
+                        long time, StackTraceElement[] stackTrace) {
+        this.kind = kind;
+        this.template = template;
+        this.consumer = consumer;
+        this.scope = scope;
+        this.calls = calls;
+        this.duration = duration;
+        this.time = time;
+        this.stackTrace = stackTrace.clone();
+    }
+
+    /**
+     * Gets the kind of offender.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the consumer making the calls.
+     *
+     * @return the consumer or null if not identified
+     */
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Gets the name of the scope the calls were made in.
+     *
+     * @return the name of the scope, by default the name of the thread
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * Gets the number of calls.
+     *
+     * @return 1 for a slow call, otherwise the number of repeated calls
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    /**
+     * Gets the total duration of the calls.
+     *
+     * @param unit the time unit of the duration
+     * @return the duration
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the time the offender was flagged.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the stack of the caller.
+     *
+     * @return the stack trace, starting at the first frame outside the client
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace.clone();
+    }
+
+    /**
+     * Gets the frame calling the client.
+     *
+     * @return the frame or null if the stack is unknown
+     */
+    public StackTraceElement getCaller() {
+        return (stackTrace.length > 0) ? stackTrace[0] : null;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + template + " (" + calls + " calls, "
+                + TimeUnit.NANOSECONDS.toMillis(duration) + " ms) in " + scope + " at " + getCaller();
+    }
+}
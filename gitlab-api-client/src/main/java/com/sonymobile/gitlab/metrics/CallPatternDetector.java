@@ -0,0 +1,389 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects slow calls and calls repeated within one scope, e.g. <code>getUser(id)</code> called once per item of a list.
+ *
+ * Install the detector as the call listener of a client. Calls are grouped into scopes per thread: either explicit
+ * scopes entered with {@link #enterScope(String)}, e.g. one per build or per web request, or implicit scopes of the
+ * calls a thread makes without pausing longer than the idle time. Calls answered by a lookup cache aren't counted.
+ *
+ * Offenders are logged with the stack of the caller and the most recent offenders are kept in a bounded ring buffer.
+ * The stack is only captured for offenders, so the detector costs a map lookup per call otherwise.
+ */
+public class CallPatternDetector implements ApiCallListener {
+    /** The default duration of a slow call in milliseconds. */
+    public static final long DEFAULT_SLOW_THRESHOLD = TimeUnit.SECONDS.toMillis(2);
+
+    /** The default number of calls to the same endpoint template in a scope flagged as repeated. */
+    public static final int DEFAULT_REPEAT_THRESHOLD = 20;
+
+    /** The default pause in milliseconds ending an implicit scope. */
+    public static final long DEFAULT_SCOPE_IDLE_TIME = TimeUnit.SECONDS.toMillis(1);
+
+    /** The default number of offenders kept. */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /** The package of the client, whose frames are left out of the stack of the caller. */
+    private static final String CLIENT_PACKAGE = "com.sonymobile.gitlab.";
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(CallPatternDetector.class.getName());
+
+    /** Orders offenders by the time spent in the calls, the longest first. */
+    private static final Comparator<CallOffender> BY_DURATION = new Comparator<CallOffender>() {
+        @Override
+        public int compare(CallOffender offender1, CallOffender offender2) {
+            long duration1 = offender1.getDuration(TimeUnit.NANOSECONDS);
+            long duration2 = offender2.getDuration(TimeUnit.NANOSECONDS);
+            return (duration1 > duration2) ? -1 : ((duration1 == duration2) ? 0 : 1);
+        }
+    };
+
+    /** The scope of each thread. */
+    private final ThreadLocal<Scope> scopes = new ThreadLocal<Scope>();
+
+    /** The most recent offenders, overwritten in order. */
+    private final CallOffender[] offenders;
+
+    /** The index of the next offender to write. */
+    private int nextOffender = 0;
+
+    /** The number of offenders flagged since the detector was created. */
+    private long offenderCount = 0;
+
+    /** The duration of a slow call in nanoseconds (0 to not flag slow calls). */
+    private volatile long slowThreshold = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD);
+
+    /** The number of calls to the same endpoint template in a scope flagged as repeated (0 to not flag any). */
+    private volatile int repeatThreshold = DEFAULT_REPEAT_THRESHOLD;
+
+    /** The pause in nanoseconds ending an implicit scope. */
+    private volatile long scopeIdleTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCOPE_IDLE_TIME);
+
+    /** The package prefixes, besides the client, whose frames are left out of the stack of the caller. */
+    private volatile String[] ignoredPackages = { CLIENT_PACKAGE };
+
+    /**
+     * Creates a detector keeping the default number of offenders.
+     */
+    public CallPatternDetector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a detector.
+     *
+     * @param capacity the number of offenders kept
+     */
+    public CallPatternDetector(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Non-positive capacity");
+        }
+        offenders = new CallOffender[capacity];
+    }
+
+    /**
+     * Sets the duration of a slow call.
+     *
+     * @param threshold the duration (0 to not flag slow calls)
+     * @param unit      the time unit of the duration
+     * @return this object for chaining
+     */
+    public CallPatternDetector withSlowThreshold(long threshold, TimeUnit unit) {
+        this.slowThreshold = unit.toNanos(Math.max(0, threshold));
+        return this;
+    }
+
+    /**
+     * Sets the number of calls to the same endpoint template in a scope flagged as repeated.
+     *
+     * @param threshold the number of calls (0 to not flag repeated calls)
+     * @return this object for chaining
+     */
+    public CallPatternDetector withRepeatThreshold(int threshold) {
+        this.repeatThreshold = Math.max(0, threshold);
+        return this;
+    }
+
+    /**
+     * Sets the pause ending an implicit scope.
+     *
+     * @param idleTime the pause
+     * @param unit     the time unit of the pause
+     * @return this object for chaining
+     */
+    public CallPatternDetector withScopeIdleTime(long idleTime, TimeUnit unit) {
+        this.scopeIdleTime = unit.toNanos(Math.max(0, idleTime));
+        return this;
+    }
+
+    /**
+     * Leaves the frames of a package out of the stack of the caller, e.g. a plugin wrapping the client.
+     *
+     * @param prefix the package prefix, e.g. <code>com.example.</code>
+     * @return this object for chaining
+     */
+    public synchronized CallPatternDetector withIgnoredPackage(String prefix) {
+        String[] packages = Arrays.copyOf(ignoredPackages, ignoredPackages.length + 1);
+        packages[packages.length - 1] = prefix;
+        ignoredPackages = packages;
+        return this;
+    }
+
+    /**
+     * Enters an explicit scope on the current thread, e.g. for a build or a web request.
+     *
+     * The scope lasts until the previous scope is restored with {@link #exitScope(Scope)}.
+     *
+     * @param name the name of the scope
+     * @return the previous scope of the thread (or null if none)
+     */
+    public Scope enterScope(String name) {
+        Scope previous = scopes.get();
+        scopes.set(new Scope(name, false));
+        return previous;
+    }
+
+    /**
+     * Exits the current scope and restores the previous scope.
+     *
+     * @param previous the previous scope returned by {@link #enterScope(String)}
+     */
+    public void exitScope(Scope previous) {
+        if (previous != null) {
+            scopes.set(previous);
+        } else {
+            scopes.remove();
+        }
+    }
+
+    @Override
+    public void callCompleted(ApiCall call) {
+        long duration = call.getDuration(TimeUnit.NANOSECONDS);
+        long threshold = slowThreshold;
+        if (threshold > 0 && duration >= threshold) {
+            flag(CallOffender.Kind.SLOW, call, currentScope().name, 1, duration);
+        }
+
+        if (call.getCacheResult() == CacheResult.HIT || call.getCacheResult() == CacheResult.REFRESH) {
+            // no request made for the caller
+            return;
+        }
+        int repeats = repeatThreshold;
+        if (repeats > 0) {
+            Scope scope = currentScope();
+            long[] counter = scope.count(call.getTemplate(), duration, nanoTime());
+            if (counter[0] == repeats) {
+                // flag once per scope
+                flag(CallOffender.Kind.REPEATED, call, scope.name, repeats, counter[1]);
+            }
+        }
+    }
+
+    /**
+     * Gets the most recent offenders.
+     *
+     * @return the offenders, the longest time spent in calls first
+     */
+    public List<CallOffender> getOffenders() {
+        List<CallOffender> list = new ArrayList<CallOffender>(offenders.length);
+        synchronized (this) {
+            for (CallOffender offender : offenders) {
+                if (offender != null) {
+                    list.add(offender);
+                }
+            }
+        }
+        Collections.sort(list, BY_DURATION);
+        return list;
+    }
+
+    /**
+     * Gets the number of offenders flagged since the detector was created, including offenders no longer kept.
+     *
+     * @return the number of offenders
+     */
+    public synchronized long getOffenderCount() {
+        return offenderCount;
+    }
+
+    /**
+     * Forgets all offenders.
+     */
+    public synchronized void clear() {
+        Arrays.fill(offenders, null);
+        nextOffender = 0;
+    }
+
+    /**
+     * Returns the current time of a monotonic clock.
+     *
+     * @return the time in nanoseconds
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Gets the scope of the current thread, starting a new implicit scope after a pause.
+     *
+     * @return the scope
+     */
+    private Scope currentScope() {
+        Scope scope = scopes.get();
+        long now = nanoTime();
+        if (scope == null || (scope.isImplicit && now - scope.lastCall > scopeIdleTime)) {
+            scope = new Scope(Thread.currentThread().getName(), true);
+            scope.lastCall = now;
+            scopes.set(scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Records and logs an offender with the stack of the caller.
+     *
+     * @param kind     the kind of offender
+     * @param call     the call flagging the offender
+     * @param scope    the name of the scope
+     * @param calls    the number of calls
+     * @param duration the total duration of the calls in nanoseconds
+     */
+    private void flag(CallOffender.Kind kind, ApiCall call, String scope, int calls, long duration) {
+        Throwable trace = new Throwable("Called from");
+        trace.setStackTrace(callerStackOf(trace.getStackTrace()));
+        CallOffender offender = new CallOffender(kind, call.getTemplate(), call.getConsumer(), scope, calls, duration,
+                System.currentTimeMillis(), trace.getStackTrace());
+        synchronized (this) {
+            offenders[nextOffender] = offender;
+            nextOffender = (nextOffender + 1) % offenders.length;
+            offenderCount++;
+        }
+        LOGGER.log(Level.WARNING, "GitLab API offender: " + offender, trace);
+    }
+
+    /**
+     * Leaves the frames of the client and the ignored packages out of a stack.
+     *
+     * @param stack the stack of the current thread
+     * @return the stack starting at the first frame outside the ignored packages (or the whole stack if none)
+     */
+    private StackTraceElement[] callerStackOf(StackTraceElement[] stack) {
+        String[] packages = ignoredPackages;
+        for (int i = 0; i < stack.length; i++) {
+            if (!isIgnored(stack[i].getClassName(), packages)) {
+                return Arrays.copyOfRange(stack, i, stack.length);
+            }
+        }
+        return stack;
+    }
+
+    /**
+     * Checks whether a class is in any of the ignored packages.
+     *
+     * @param className the name of the class
+     * @param packages  the package prefixes
+     * @return true if ignored
+     */
+    private static boolean isIgnored(String className, String[] packages) {
+        for (String prefix : packages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The calls of a thread within a scope, only accessed by that thread.
+     */
+    public static final class Scope {
+        /** The name of the scope. */
+        private final String name;
+
+        /** Whether the scope ends after a pause. */
+        private final boolean isImplicit;
+
+        /** The number of calls and total duration in nanoseconds by endpoint template. */
+        private final Map<String, long[]> counters = new HashMap<String, long[]>();
+
+        /** The time of the most recent call in nanoseconds. */
+        private long lastCall;
+
+        /**
+         * Creates a scope.
+         *
+         * @param name       the name of the scope
+         * @param isImplicit whether the scope ends after a pause
+         */
+        private Scope(String name, boolean isImplicit) {
+            this.name = name;
+            this.isImplicit = isImplicit;
+        }
+
+        /**
+         * Gets the name of the scope.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Counts a call.
+         *
+         * @param template the endpoint template
+         * @param duration the duration of the call in nanoseconds
+         * @param now      the current time in nanoseconds
+         * @return the number of calls and total duration of the template in the scope
+         */
+        private long[] count(String template, long duration, long now) {
+            long[] counter = counters.get(template);
+            if (counter == null) {
+                counter = new long[2];
+                counters.put(template, counter);
+            }
+            counter[0]++;
+            counter[1] += duration;
+            lastCall = now;
+            return counter;
+        }
+    }
+}
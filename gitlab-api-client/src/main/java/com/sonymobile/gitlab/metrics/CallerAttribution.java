@@ -0,0 +1,283 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Attributes the requests of a client to their callers, e.g. to tell which component causes which part of the load.
+ *
+ * Install the attribution as the call listener of a client. A call made with a consumer set for the thread with
+ * {@link com.sonymobile.gitlab.http.RequestContext#setConsumer(String)} is attributed to that tag. Other calls are
+ * attributed to the class of the innermost caller outside the ignored packages, found from the stack of one call out
+ * of every sample interval. Each sample then stands for the calls made since the previous one, so the requests and
+ * bytes of sampled callers are estimates. Calls answered by a lookup cache aren't counted.
+ *
+ * Capturing a stack costs in the order of tens of microseconds, so with the default interval the attribution of
+ * a thousand requests per second takes well below one percent of a processor. Calls not sampled cost an atomic
+ * increment.
+ */
+public class CallerAttribution implements ApiCallListener {
+    /** The default number of untagged calls per captured stack. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+    /** The caller of calls made from the ignored packages only. */
+    public static final String UNIDENTIFIED = "unidentified";
+
+    /** The package prefixes whose frames are never the caller, e.g. the client, its libraries and the runtime. */
+    private static final String[] DEFAULT_IGNORED_PACKAGES = {
+        "com.sonymobile.gitlab.", "com.mashape.unirest.", "org.apache.http.",
+        "java.", "javax.", "jdk.", "sun.", "com.sun.",
+    };
+
+    /** Orders statistics by the number of requests, the most first. */
+    private static final Comparator<CallerStatistics> BY_REQUESTS = new Comparator<CallerStatistics>() {
+        @Override
+        public int compare(CallerStatistics statistics1, CallerStatistics statistics2) {
+            long requests1 = statistics1.getRequests();
+            long requests2 = statistics2.getRequests();
+            return (requests1 > requests2) ? -1 : ((requests1 == requests2) ? 0 : 1);
+        }
+    };
+
+    /** The counters of each caller by endpoint template. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Counters>> callers =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Counters>>();
+
+    /** The number of untagged calls, deciding which ones are sampled. */
+    private final AtomicLong untaggedCalls = new AtomicLong();
+
+    /** The number of untagged calls per captured stack. */
+    private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    /** The package prefixes whose frames are never the caller. */
+    private volatile String[] ignoredPackages = DEFAULT_IGNORED_PACKAGES;
+
+    /**
+     * Sets the number of untagged calls per captured stack.
+     *
+     * @param interval the number of calls (1 to capture the stack of every call)
+     * @return this object for chaining
+     */
+    public CallerAttribution withSampleInterval(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Non-positive sample interval");
+        }
+        this.sampleInterval = interval;
+        return this;
+    }
+
+    /**
+     * Leaves the frames of a package out when looking for the caller, e.g. a framework calling components.
+     *
+     * @param prefix the package prefix, e.g. <code>com.example.</code>
+     * @return this object for chaining
+     */
+    public synchronized CallerAttribution withIgnoredPackage(String prefix) {
+        String[] packages = Arrays.copyOf(ignoredPackages, ignoredPackages.length + 1);
+        packages[packages.length - 1] = prefix;
+        ignoredPackages = packages;
+        return this;
+    }
+
+    /**
+     * Gets the number of untagged calls per captured stack.
+     *
+     * @return the number of calls
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    @Override
+    public void callCompleted(ApiCall call) {
+        if (call.getCacheResult() == CacheResult.HIT) {
+            // no request made
+            return;
+        }
+
+        String caller = call.getConsumer();
+        boolean isSampled = caller == null;
+        long weight = 1;
+        if (isSampled) {
+            int interval = sampleInterval;
+            if (untaggedCalls.incrementAndGet() % interval != 0) {
+                return;
+            }
+            caller = callerOf(new Throwable().getStackTrace());
+            weight = interval;
+        }
+        countersOf(caller, call.getTemplate(), isSampled).record(call, weight);
+    }
+
+    /**
+     * Takes a snapshot of the requests of all callers.
+     *
+     * @return the statistics of each caller and endpoint template, the most requests first
+     */
+    public List<CallerStatistics> getStatistics() {
+        List<CallerStatistics> list = new ArrayList<CallerStatistics>();
+        for (Map.Entry<String, ConcurrentMap<String, Counters>> caller : callers.entrySet()) {
+            for (Map.Entry<String, Counters> template : caller.getValue().entrySet()) {
+                list.add(template.getValue().toStatistics(caller.getKey(), template.getKey()));
+            }
+        }
+        Collections.sort(list, BY_REQUESTS);
+        return list;
+    }
+
+    /**
+     * Forgets all callers.
+     */
+    public void clear() {
+        callers.clear();
+    }
+
+    /**
+     * Finds the caller in a stack.
+     *
+     * @param stack the stack of the current thread
+     * @return the name of the class of the first frame outside the ignored packages (or {@link #UNIDENTIFIED})
+     */
+    private String callerOf(StackTraceElement[] stack) {
+        String[] packages = ignoredPackages;
+        for (StackTraceElement element : stack) {
+            String className = element.getClassName();
+            if (!isIgnored(className, packages)) {
+                return className;
+            }
+        }
+        return UNIDENTIFIED;
+    }
+
+    /**
+     * Checks whether a class is in any of the ignored packages.
+     *
+     * @param className the name of the class
+     * @param packages  the package prefixes
+     * @return true if ignored
+     */
+    private static boolean isIgnored(String className, String[] packages) {
+        for (String prefix : packages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the counters of a caller and an endpoint template, creating them if missing.
+     *
+     * @param caller    the caller
+     * @param template  the endpoint template
+     * @param isSampled whether the caller was identified from a sample of the stacks
+     * @return the counters
+     */
+    private Counters countersOf(String caller, String template, boolean isSampled) {
+        ConcurrentMap<String, Counters> templates = callers.get(caller);
+        if (templates == null) {
+            ConcurrentMap<String, Counters> newTemplates = new ConcurrentHashMap<String, Counters>();
+            templates = callers.putIfAbsent(caller, newTemplates);
+            if (templates == null) {
+                templates = newTemplates;
+            }
+        }
+        Counters counters = templates.get(template);
+        if (counters == null) {
+            Counters newCounters = new Counters(isSampled);
+            counters = templates.putIfAbsent(template, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * The requests of a caller to an endpoint template.
+     */
+    private static final class Counters {
+        /** Whether the caller was identified from a sample of the stacks. */
+        private final boolean isSampled;
+
+        /** The number of requests (estimated if sampled). */
+        private final AtomicLong requests = new AtomicLong();
+
+        /** The number of bytes received in response bodies (estimated if sampled). */
+        private final AtomicLong bytesIn = new AtomicLong();
+
+        /** The number of bytes sent in request bodies (estimated if sampled). */
+        private final AtomicLong bytesOut = new AtomicLong();
+
+        /** The latency of the recorded requests. */
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * Creates counters.
+         *
+         * @param isSampled whether the caller was identified from a sample of the stacks
+         */
+        private Counters(boolean isSampled) {
+            this.isSampled = isSampled;
+        }
+
+        /**
+         * Records a call.
+         *
+         * @param call   the call
+         * @param weight the number of calls the call stands for
+         */
+        private void record(ApiCall call, long weight) {
+            requests.addAndGet(weight);
+            bytesIn.addAndGet(call.getBytesIn() * weight);
+            bytesOut.addAndGet(call.getBytesOut() * weight);
+            latency.record(call.getDuration(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Takes a snapshot of the counters.
+         *
+         * @param caller   the caller
+         * @param template the endpoint template
+         * @return the statistics
+         */
+        private CallerStatistics toStatistics(String caller, String template) {
+            return new CallerStatistics(caller, template, isSampled, requests.get(), latency.getCount(),
+                    bytesIn.get(), bytesOut.get(), latency.getMean(TimeUnit.MILLISECONDS),
+                    latency.getPercentile(0.95, TimeUnit.MILLISECONDS));
+        }
+    }
+}
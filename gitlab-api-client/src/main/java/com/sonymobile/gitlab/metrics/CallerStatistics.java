@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+/**
+ * A snapshot of the requests of a caller to an endpoint template.
+ *
+ * The requests of callers identified from a sample of the stacks are estimates: each sampled request stands for the
+ * requests made between two samples.
+ */
+public final class CallerStatistics {
+    /** The caller, either the tag of the consumer or the class of the caller. */
+    private final String caller;
+
+    /** The endpoint template. */
+    private final String template;
+
+    /** Whether the caller was identified from a sample of the stacks. */
+    private final boolean isSampled;
+
+    /** The number of requests (estimated if sampled). */
+    private final long requests;
+
+    /** The number of requests recorded. */
+    private final long samples;
+
+    /** The number of bytes received in response bodies (estimated if sampled). */
+    private final long bytesIn;
+
+    /** The number of bytes sent in request bodies (estimated if sampled). */
+    private final long bytesOut;
+
+    /** The mean latency in milliseconds. */
+    private final double meanLatency;
+
+    /** The 95th percentile of the latency in milliseconds. */
+    private final double latency95;
+
+    /**
+     * Creates a snapshot of the requests of a caller to an endpoint template.
+     *
+     * @param caller      the caller
+     * @param template    the endpoint template
+     * @param isSampled   whether the caller was identified from a sample of the stacks
+     * @param requests    the number of requests (estimated if sampled)
+     * @param samples     the number of requests recorded
+     * @param bytesIn     the number of bytes received in response bodies (estimated if sampled)
+     * @param bytesOut    the number of bytes sent in request bodies (estimated if sampled)
+     * @param meanLatency the mean latency in milliseconds
+     * @param latency95   the 95th percentile of the latency in milliseconds
+     */
+    /* package */ CallerStatistics(String caller, String template, boolean isSampled, long requests, long samples,
+                                   long bytesIn, long bytesOut, double meanLatency, double latency95) {
+        this.caller = caller;
+        this.template = template;
+        this.isSampled = isSampled;
+        this.requests = requests;
+        this.samples = samples;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.meanLatency = meanLatency;
+        this.latency95 = latency95;
+    }
+
+    /**
+     * Gets the caller.
+     *
+     * @return the tag of the consumer or the name of the class of the caller
+     */
+    public String getCaller() {
+        return caller;
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Checks whether the caller was identified from a sample of the stacks.
+     *
+     * @return true if the requests and bytes are estimates
+     */
+    public boolean isSampled() {
+        return isSampled;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return the number of requests (estimated if sampled)
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of requests recorded.
+     *
+     * @return the number of requests sampled, or all requests if the caller was tagged
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the number of bytes received in response bodies.
+     *
+     * @return the number of bytes (estimated if sampled)
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Gets the number of bytes sent in request bodies.
+     *
+     * @return the number of bytes (estimated if sampled)
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    /**
+     * Gets the 95th percentile of the latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getLatency95() {
+        return latency95;
+    }
+
+    @Override
+    public String toString() {
+        return caller + " " + template + ": " + requests + " requests";
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of the requests to an endpoint template, e.g. <code>GET /users/:id</code>.
+ *
+ * Recording is lock-free and never allocates.
+ */
+public final class EndpointMetrics {
+    /** The status recorded for requests which failed without a response. */
+    public static final int NO_RESPONSE = 0;
+
+    /** The number of HTTP status codes counted separately. */
+    private static final int STATUS_CODES = 600;
+
+    /** All phases (cached since values() returns a new array on every call). */
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    /** The endpoint template. */
+    private final String template;
+
+    /** The latencies of the requests, from sending to having parsed the response. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /** The times spent in each phase of the requests, by the ordinals of the phases. */
+    private final LatencyHistogram[] phaseTimes = new LatencyHistogram[PHASES.length];
+
+    /** The number of responses by status code (or {@link #NO_RESPONSE} for failed requests). */
+    private final AtomicLongArray statusCounts = new AtomicLongArray(STATUS_CODES);
+
+    /** The number of bytes received in response bodies. */
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    /** The number of bytes sent in request bodies. */
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /** The number of responses with a compressed body. */
+    private final AtomicLong compressedResponses = new AtomicLong();
+
+    /**
+     * Creates the metrics of an endpoint template.
+     *
+     * @param template the endpoint template
+     */
+    /* package */ EndpointMetrics(String template) {
+        this.template = template;
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param latency the latency of the request in nanoseconds
+     * @param status  the status code of the response (or {@link #NO_RESPONSE} if the request failed)
+     * @param bytesIn the number of bytes received in the response body
+     */
+    public void record(long latency, int status, long bytesIn) {
+        this.latency.record(latency);
+        statusCounts.incrementAndGet((status > 0 && status < STATUS_CODES) ? status : NO_RESPONSE);
+        if (bytesIn > 0) {
+            this.bytesIn.addAndGet(bytesIn);
+        }
+    }
+
+    /**
+     * Records the bytes sent in a request body.
+     *
+     * @param bytes the number of bytes
+     */
+    public void recordBytesOut(long bytes) {
+        if (bytes > 0) {
+            bytesOut.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Records a response with a compressed body.
+     */
+    public void recordCompressedResponse() {
+        compressedResponses.incrementAndGet();
+    }
+
+    /**
+     * Records the time spent in a phase of a request.
+     *
+     * @param phase the phase
+     * @param time  the time in nanoseconds
+     */
+    public void recordPhaseTime(RequestPhase phase, long time) {
+        phaseTimes[phase.ordinal()].record(time);
+    }
+
+    /**
+     * Records the phases of a request.
+     *
+     * Phases the request never was in, e.g. connecting when a connection was reused, aren't recorded.
+     *
+     * @param timer the timer of the phases
+     */
+    public void recordPhases(PhaseTimer timer) {
+        for (int i = 0; i < phaseTimes.length; i++) {
+            final long time = timer.get(PHASES[i]);
+            if (time > 0) {
+                phaseTimes[i].record(time);
+            }
+        }
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return latency.getCount();
+    }
+
+    /**
+     * Gets the histogram of the latencies of the requests.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the histogram of the times spent in a phase of the requests.
+     *
+     * @param phase the phase
+     * @return the phase time histogram
+     */
+    public LatencyHistogram getPhaseTime(RequestPhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Gets the number of responses with a status code.
+     *
+     * @param status the status code (or {@link #NO_RESPONSE} for failed requests)
+     * @return the number of responses
+     */
+    public long getStatusCount(int status) {
+        return (status >= 0 && status < STATUS_CODES) ? statusCounts.get(status) : 0;
+    }
+
+    /**
+     * Gets the number of responses with a status code in a class, e.g. all 4xx responses.
+     *
+     * @param statusClass the first digit of the status codes
+     * @return the number of responses
+     */
+    public long getStatusClassCount(int statusClass) {
+        long total = 0;
+        int first = Math.max(1, statusClass * 100);
+        int last = Math.min(STATUS_CODES, (statusClass + 1) * 100);
+        for (int status = first; status < last; status++) {
+            total += statusCounts.get(status);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of responses of every status code which has been recorded.
+     *
+     * @return the numbers of responses by status code (including {@link #NO_RESPONSE})
+     */
+    public SortedMap<Integer, Long> getStatusCounts() {
+        SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (int status = 0; status < STATUS_CODES; status++) {
+            long statusCount = statusCounts.get(status);
+            if (statusCount > 0) {
+                counts.put(status, statusCount);
+            }
+        }
+        return Collections.unmodifiableSortedMap(counts);
+    }
+
+    /**
+     * Gets the number of bytes received in response bodies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * Gets the number of bytes sent in request bodies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * Gets the number of responses with a compressed body.
+     *
+     * @return the number of responses
+     */
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    /**
+     * Takes a snapshot of the metrics.
+     *
+     * @return the statistics
+     */
+    public EndpointStatistics getStatistics() {
+        return new EndpointStatistics(this);
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
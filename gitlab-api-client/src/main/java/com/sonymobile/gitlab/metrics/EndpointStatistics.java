@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the metrics of an endpoint template.
+ *
+ * Only made of simple values so it can be exposed through JMX and shown as is.
+ */
+public final class EndpointStatistics {
+    /** The endpoint template. */
+    private final String template;
+
+    /** The number of requests. */
+    private final long requests;
+
+    /** The number of requests which failed without a response. */
+    private final long failures;
+
+    /** The number of 2xx responses. */
+    private final long successes;
+
+    /** The number of 4xx responses. */
+    private final long clientErrors;
+
+    /** The number of 5xx responses. */
+    private final long serverErrors;
+
+    /** The number of bytes received in response bodies. */
+    private final long bytesIn;
+
+    /** The number of bytes sent in request bodies. */
+    private final long bytesOut;
+
+    /** The mean latency in milliseconds. */
+    private final double meanLatency;
+
+    /** The median latency in milliseconds. */
+    private final double latency50;
+
+    /** The 95th percentile of the latency in milliseconds. */
+    private final double latency95;
+
+    /** The 99th percentile of the latency in milliseconds. */
+    private final double latency99;
+
+    /** The highest latency in milliseconds. */
+    private final double maxLatency;
+
+    /** The mean time spent in each phase in milliseconds, by the name of the phase in order. */
+    private final Map<String, Double> meanPhaseTimes;
+
+    /**
+     * Takes a snapshot of the metrics of an endpoint template.
+     *
+     * @param metrics the metrics
+     */
+    /* package */ EndpointStatistics(EndpointMetrics metrics) {
+        LatencyHistogram latency = metrics.getLatency();
+        template = metrics.getTemplate();
+        requests = metrics.getRequests();
+        failures = metrics.getStatusCount(EndpointMetrics.NO_RESPONSE);
+        successes = metrics.getStatusClassCount(2);
+        clientErrors = metrics.getStatusClassCount(4);
+        serverErrors = metrics.getStatusClassCount(5);
+        bytesIn = metrics.getBytesIn();
+        bytesOut = metrics.getBytesOut();
+        meanLatency = latency.getMean(TimeUnit.MILLISECONDS);
+        latency50 = latency.getPercentile(0.5, TimeUnit.MILLISECONDS);
+        latency95 = latency.getPercentile(0.95, TimeUnit.MILLISECONDS);
+        latency99 = latency.getPercentile(0.99, TimeUnit.MILLISECONDS);
+        maxLatency = latency.getMax(TimeUnit.MILLISECONDS);
+        Map<String, Double> phaseTimes = new LinkedHashMap<String, Double>();
+        for (RequestPhase phase : RequestPhase.values()) {
+            phaseTimes.put(phase.name(), metrics.getPhaseTime(phase).getMean(TimeUnit.MILLISECONDS));
+        }
+        meanPhaseTimes = Collections.unmodifiableMap(phaseTimes);
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of requests which failed without a response.
+     *
+     * @return the number of requests
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the number of 2xx responses.
+     *
+     * @return the number of responses
+     */
+    public long getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * Gets the number of 4xx responses.
+     *
+     * @return the number of responses
+     */
+    public long getClientErrors() {
+        return clientErrors;
+    }
+
+    /**
+     * Gets the number of 5xx responses.
+     *
+     * @return the number of responses
+     */
+    public long getServerErrors() {
+        return serverErrors;
+    }
+
+    /**
+     * Gets the number of bytes received in response bodies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Gets the number of bytes sent in request bodies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    /**
+     * Gets the median latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getLatency50() {
+        return latency50;
+    }
+
+    /**
+     * Gets the 95th percentile of the latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getLatency95() {
+        return latency95;
+    }
+
+    /**
+     * Gets the 99th percentile of the latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getLatency99() {
+        return latency99;
+    }
+
+    /**
+     * Gets the highest latency.
+     *
+     * @return the latency in milliseconds
+     */
+    public double getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Gets the mean time spent in each phase of the requests which were in the phase.
+     *
+     * @return the times in milliseconds by the names of the phases, in the order the phases happen
+     */
+    public Map<String, Double> getMeanPhaseTimes() {
+        return meanPhaseTimes;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with a fixed relative precision.
+ *
+ * Latencies are counted in microsecond buckets which are linear below 8 µs and split every power of two into 8
+ * buckets above, so every recorded value is known within 12.5 % up to half an hour (longer values are counted in the
+ * last bucket). Recording is lock-free and never allocates, while reading the histogram while recording may give
+ * slightly inconsistent counts.
+ */
+public final class LatencyHistogram {
+    /** The number of bits of a value kept by its bucket. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The number of buckets every power of two is split into. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** The highest power of two of a value in microseconds with buckets of its own. */
+    private static final int MAX_MAGNITUDE = 30;
+
+    /** The number of buckets. */
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /** The counts of the buckets. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /** The number of recorded values. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The sum of the recorded values in nanoseconds. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The highest recorded value in nanoseconds. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param latency the latency in nanoseconds
+     */
+    public void record(long latency) {
+        long value = Math.max(0, latency);
+        buckets.incrementAndGet(indexOf(TimeUnit.NANOSECONDS.toMicros(value)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @param unit the time unit to return the latency in
+     * @return the mean latency (or 0 if nothing was recorded)
+     */
+    public double getMean(TimeUnit unit) {
+        long currentCount = count.get();
+        return (currentCount > 0) ? toUnit((double)sum.get() / currentCount, unit) : 0;
+    }
+
+    /**
+     * Gets the highest recorded latency.
+     *
+     * @param unit the time unit to return the latency in
+     * @return the highest latency (or 0 if nothing was recorded)
+     */
+    public double getMax(TimeUnit unit) {
+        return toUnit(max.get(), unit);
+    }
+
+    /**
+     * Gets the latency which a share of the recorded latencies are lower than or equal to.
+     *
+     * The returned latency is the highest latency of its bucket, but never higher than the highest recorded latency.
+     *
+     * @param percentile the share of the latencies (between 0 and 1)
+     * @param unit       the time unit to return the latency in
+     * @return the latency (or 0 if nothing was recorded)
+     */
+    public double getPercentile(double percentile, TimeUnit unit) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(Math.min(1, Math.max(0, percentile)) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long highest = TimeUnit.MICROSECONDS.toNanos(highestValueOf(i) + 1) - 1;
+                return toUnit(Math.min(highest, max.get()), unit);
+            }
+        }
+        return toUnit(max.get(), unit);
+    }
+
+    /**
+     * Gets the latencies which shares of the recorded latencies are lower than or equal to, without allocating.
+     *
+     * Works like {@link #getPercentile(double, TimeUnit)} for every percentile, reading the buckets in place, so
+     * latencies recorded meanwhile may or may not be counted.
+     *
+     * @param percentiles the shares of the latencies in ascending order (between 0 and 1)
+     * @param latencies   the array to store the latencies in nanoseconds in, at the indices of the percentiles
+     */
+    public void getPercentiles(double[] percentiles, long[] latencies) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        long currentMax = max.get();
+        long seen = 0;
+        int bucket = 0;
+        for (int j = 0; j < percentiles.length; j++) {
+            if (total == 0) {
+                latencies[j] = 0;
+                continue;
+            }
+            long rank = Math.max(1, (long)Math.ceil(Math.min(1, Math.max(0, percentiles[j])) * total));
+            while (seen < rank && bucket < BUCKET_COUNT) {
+                seen += buckets.get(bucket++);
+            }
+            latencies[j] = (seen >= rank)
+                    ? Math.min(TimeUnit.MICROSECONDS.toNanos(highestValueOf(bucket - 1) + 1) - 1, currentMax)
+                    : currentMax;
+        }
+    }
+
+    /**
+     * Gets the sum of the recorded latencies.
+     *
+     * @param unit the time unit to return the sum in
+     * @return the sum
+     */
+    public long getSum(TimeUnit unit) {
+        return unit.convert(sum.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the index of the bucket of a value.
+     *
+     * @param value the value in microseconds
+     * @return the index of the bucket
+     */
+    /* package */ static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+                + (int)((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the highest value in microseconds
+     */
+    /* package */ static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Converts a time in nanoseconds to another unit without rounding.
+     *
+     * @param nanos the time in nanoseconds
+     * @param unit  the time unit
+     * @return the time in the unit
+     */
+    private static double toUnit(double nanos, TimeUnit unit) {
+        return nanos / unit.toNanos(1);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The time spent in each phase of a single API call.
+ *
+ * The timer of the call in progress on a thread is current while the request is made, letting the connection pool,
+ * DNS resolver and socket factories record the phases they are timing with {@link #record(RequestPhase, long)}. A
+ * timer is only used by one thread at a time.
+ */
+public final class PhaseTimer {
+    /** All phases (cached since values() returns a new array on every call). */
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    /** The timer of the call in progress on each thread. */
+    private static final ThreadLocal<PhaseTimer> CURRENT = new ThreadLocal<PhaseTimer>();
+
+    /** The time spent in each phase in nanoseconds, by ordinal. */
+    private final long[] times = new long[PHASES.length];
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase the phase
+     * @param time  the time in nanoseconds
+     */
+    public void add(RequestPhase phase, long time) {
+        times[phase.ordinal()] += time;
+    }
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase the phase
+     * @return the time in nanoseconds (or 0 if the call never was in the phase)
+     */
+    public long get(RequestPhase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * Clears the time spent in every phase, letting the timer time another call.
+     */
+    public void clear() {
+        Arrays.fill(times, 0);
+    }
+
+    /**
+     * Gets the time spent in each phase.
+     *
+     * @return a copy of the times in nanoseconds, by the ordinals of the phases
+     */
+    public long[] toArray() {
+        return times.clone();
+    }
+
+    /**
+     * Gets the timer of the call in progress on the current thread.
+     *
+     * @return the timer (or null if no call is in progress)
+     */
+    public static PhaseTimer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the timer of the call in progress on the current thread.
+     *
+     * @param timer the timer (or null when the call is done)
+     * @return the previous timer so it can be restored
+     */
+    public static PhaseTimer setCurrent(PhaseTimer timer) {
+        final PhaseTimer previous = CURRENT.get();
+        if (timer != null) {
+            CURRENT.set(timer);
+        } else {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Adds time spent in a phase to the timer of the call in progress on the current thread, if any.
+     *
+     * @param phase the phase
+     * @param time  the time in nanoseconds
+     */
+    public static void record(RequestPhase phase, long time) {
+        final PhaseTimer timer = CURRENT.get();
+        if (timer != null) {
+            timer.add(phase, time);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+/**
+ * A phase of an API call, in the order the phases happen.
+ *
+ * A new connection goes through the DNS, connect and TLS phases, while a reused connection skips them.
+ */
+public enum RequestPhase {
+    /** Waiting for the quota of the consumer and the scheduler to let the request through. */
+    QUEUE,
+
+    /** Waiting for a connection to be leased from the connection pool. */
+    LEASE,
+
+    /** Resolving the address of the server. */
+    DNS,
+
+    /** Opening a TCP connection to the server. */
+    CONNECT,
+
+    /** The TLS handshake with the server. */
+    TLS,
+
+    /** Sending the request and waiting for the first byte of the response. */
+    FIRST_BYTE,
+
+    /** Receiving the response body. */
+    BODY,
+
+    /** Parsing the response body as JSON. */
+    PARSE,
+
+    /** Decoding the JSON into model objects. */
+    DECODE
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request read from a {@link RequestTrace}.
+ */
+public final class RequestRecord {
+    /** The time the request completed in milliseconds since the epoch. */
+    private final long time;
+
+    /** The endpoint template. */
+    private final String template;
+
+    /** The status code of the response (or {@link EndpointMetrics#NO_RESPONSE}). */
+    private final int status;
+
+    /** The duration of the request in nanoseconds. */
+    private final long duration;
+
+    /** The number of bytes received in the response body. */
+    private final long bytes;
+
+    /** The ID of the thread which made the request. */
+    private final long threadId;
+
+    /**
+     * Creates a request record.
+     *
+     * @param time     the time the request completed in milliseconds since the epoch
+     * @param template the endpoint template
+     * @param status   the status code of the response (or {@link EndpointMetrics#NO_RESPONSE})
+     * @param duration the duration of the request in nanoseconds
+     * @param bytes    the number of bytes received in the response body
+     * @param threadId the ID of the thread which made the request
+     */
+    /* package */ RequestRecord(long time, String template, int status, long duration, long bytes, long threadId) {
+        this.time = time;
+        this.template = template;
+        this.status = status;
+        this.duration = duration;
+        this.bytes = bytes;
+        this.threadId = threadId;
+    }
+
+    /**
+     * Gets the time the request completed.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the endpoint template.
+     *
+     * @return the template, e.g. <code>GET /users/:id</code>
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the status code of the response.
+     *
+     * @return the status code (or {@link EndpointMetrics#NO_RESPONSE} if there was no response)
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the duration of the request.
+     *
+     * @param unit the time unit to return the duration in
+     * @return the duration
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of bytes received in the response body.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the ID of the thread which made the request.
+     *
+     * @return the thread ID
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+
+    @Override
+    public String toString() {
+        return template + " " + status + " in " + getDuration(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
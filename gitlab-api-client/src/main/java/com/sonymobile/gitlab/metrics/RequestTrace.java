@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size ring buffer of the most recent requests, cheap enough to always keep, e.g. to see what happened during an
+ * incident without debug logging.
+ *
+ * Each request is stored as a few numbers and a reference to its endpoint template in parallel arrays, so recording
+ * neither locks nor allocates. Writers claim slots in order and overwrite the oldest records. Readers skip records
+ * overwritten while they were read, but a record overwritten by two writers at once, i.e. while as many requests as
+ * the capacity completed, may mix their fields.
+ */
+public final class RequestTrace {
+    /** The default number of requests kept. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The format of the times of the dumped requests. */
+    private static final String TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+    /** The mask of the index of the slot of a sequence number. */
+    private final int mask;
+
+    /** The sequence number of the next request. */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /** The sequence number plus one of the request in each slot (or 0 if empty or being written). */
+    private final AtomicLongArray sequences;
+
+    /** The time each request completed in milliseconds since the epoch. */
+    private final AtomicLongArray times;
+
+    /** The endpoint template of each request. */
+    private final AtomicReferenceArray<String> templates;
+
+    /** The status code of the response of each request. */
+    private final AtomicIntegerArray statuses;
+
+    /** The duration of each request in nanoseconds. */
+    private final AtomicLongArray durations;
+
+    /** The number of bytes received in the response body of each request. */
+    private final AtomicLongArray bytes;
+
+    /** The ID of the thread which made each request. */
+    private final AtomicLongArray threadIds;
+
+    /**
+     * Creates a trace keeping the default number of requests.
+     */
+    public RequestTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a trace.
+     *
+     * @param capacity the number of requests kept, rounded up to a power of two
+     */
+    public RequestTrace(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity out of range");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        times = new AtomicLongArray(size);
+        templates = new AtomicReferenceArray<String>(size);
+        statuses = new AtomicIntegerArray(size);
+        durations = new AtomicLongArray(size);
+        bytes = new AtomicLongArray(size);
+        threadIds = new AtomicLongArray(size);
+    }
+
+    /**
+     * Gets the number of requests kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the number of requests recorded, including requests no longer kept.
+     *
+     * @return the number of requests
+     */
+    public long getRecordCount() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Records a completed request on the thread which made it.
+     *
+     * @param template the endpoint template
+     * @param status   the status code of the response (or {@link EndpointMetrics#NO_RESPONSE})
+     * @param duration the duration of the request in nanoseconds
+     * @param bytesIn  the number of bytes received in the response body
+     */
+    public void record(String template, int status, long duration, long bytesIn) {
+        final long sequence = nextSequence.getAndIncrement();
+        final int slot = (int)sequence & mask;
+        // readers skip the slot until it is complete
+        sequences.set(slot, 0);
+        times.set(slot, System.currentTimeMillis());
+        templates.set(slot, template);
+        statuses.set(slot, status);
+        durations.set(slot, duration);
+        bytes.set(slot, bytesIn);
+        threadIds.set(slot, Thread.currentThread().getId());
+        sequences.set(slot, sequence + 1);
+    }
+
+    /**
+     * Reads the requests kept.
+     *
+     * @return the requests, the oldest first
+     */
+    public List<RequestRecord> getRecords() {
+        final long end = nextSequence.get();
+        final long start = Math.max(0, end - getCapacity());
+        List<RequestRecord> records = new ArrayList<RequestRecord>((int)(end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final int slot = (int)sequence & mask;
+            final long version = sequences.get(slot);
+            if (version != sequence + 1) {
+                // still being written or already overwritten
+                continue;
+            }
+            RequestRecord record = new RequestRecord(times.get(slot), templates.get(slot), statuses.get(slot),
+                    durations.get(slot), bytes.get(slot), threadIds.get(slot));
+            if (sequences.get(slot) == version) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes the requests kept as text, one request per line with the time, the thread, the status, the duration in
+     * milliseconds, the bytes received and the endpoint template.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if writing failed
+     */
+    public void writeTo(Writer writer) throws IOException {
+        List<RequestRecord> records = getRecords();
+        Map<Long, String> threadNames = threadNamesOf(records);
+        DateFormat dateFormatter = new SimpleDateFormat(TIME_FORMAT);
+        dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (RequestRecord record : records) {
+            String status = (record.getStatus() != EndpointMetrics.NO_RESPONSE)
+                    ? Integer.toString(record.getStatus())
+                    : "-";
+            writer.write(String.format("%s %-24s %3s %9.1f ms %10d B %s%n",
+                    dateFormatter.format(new Date(record.getTime())),
+                    threadNames.get(record.getThreadId()),
+                    status,
+                    record.getDuration(TimeUnit.MICROSECONDS) / 1000.0,
+                    record.getBytes(),
+                    record.getTemplate()));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Names the threads which made requests, falling back to the thread ID for threads which have ended.
+     *
+     * @param records the requests
+     * @return the names by thread ID
+     */
+    private static Map<Long, String> threadNamesOf(List<RequestRecord> records) {
+        Map<Long, String> names = new HashMap<Long, String>();
+        for (RequestRecord record : records) {
+            names.put(record.getThreadId(), "thread-" + record.getThreadId());
+        }
+        long[] threadIds = new long[names.size()];
+        int i = 0;
+        for (Long threadId : names.keySet()) {
+            threadIds[i++] = threadId;
+        }
+        for (ThreadInfo info : ManagementFactory.getThreadMXBean().getThreadInfo(threadIds)) {
+            if (info != null) {
+                names.put(info.getThreadId(), info.getThreadName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+/**
+ * A span of a trace, started by a {@link Tracer}.
+ *
+ * A span is ended exactly once, possibly on another thread than the one which started it. Implementations must be
+ * thread safe and must not throw.
+ */
+public interface Span {
+    /** A span recording nothing. */
+    Span NOOP = new Span() {
+        @Override
+        public void setAttribute(String key, String value) {
+            // nothing to record
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+            // nothing to record
+        }
+
+        @Override
+        public String getTraceParent() {
+            return null;
+        }
+
+        @Override
+        public void end() {
+            // nothing to record
+        }
+    };
+
+    /**
+     * Sets a string attribute of the span.
+     *
+     * @param key   the key, e.g. <code>http.method</code>
+     * @param value the value
+     */
+    void setAttribute(String key, String value);
+
+    /**
+     * Sets a numeric attribute of the span.
+     *
+     * @param key   the key, e.g. <code>http.status_code</code>
+     * @param value the value
+     */
+    void setAttribute(String key, long value);
+
+    /**
+     * Gets the context of the span in the format of the W3C <code>traceparent</code> header.
+     *
+     * @return the header value, e.g. <code>00-&lt;trace ID&gt;-&lt;span ID&gt;-01</code> (or null to not pass the
+     * context on)
+     */
+    String getTraceParent();
+
+    /**
+     * Ends the span.
+     */
+    void end();
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+/**
+ * Starts the spans of the calls of an API client, e.g. to show the calls in a tracing backend.
+ *
+ * The client starts a span for every API call, from waiting for the quota of the consumer to decoding the response,
+ * and a span for every HTTP request of the call, e.g. each attempt of a hedged request. The parent of a call is the
+ * span of the calling thread set with {@link com.sonymobile.gitlab.http.RequestContext#setSpan(Span)}. The client
+ * carries the span across its own executors, and tasks submitted to other executors can carry it with
+ * {@link com.sonymobile.gitlab.http.RequestContext#wrap(Runnable)}.
+ *
+ * The tracer is called on the threads making the requests, so it must be quick and must not throw.
+ */
+public interface Tracer {
+    /** A tracer starting spans which record nothing. */
+    Tracer NOOP = new Tracer() {
+        @Override
+        public Span startSpan(String name, Span parent) {
+            return Span.NOOP;
+        }
+    };
+
+    /**
+     * Starts a span.
+     *
+     * @param name   the name of the span, e.g. the endpoint template of an API call
+     * @param parent the parent span (or null to start a new trace)
+     * @return the span
+     */
+    Span startSpan(String name, Span parent);
+}
@@ -25,14 +25,9 @@
 
 package com.sonymobile.gitlab.model;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 
 /**
  * The most basic information about a GitLab user.
@@ -40,32 +35,8 @@ import java.util.TimeZone;
  * @author Emil Nilsson
  */
 public abstract class BasicGitLabUserInfo {
-    /** A date formatter for parsing the date of creation. */
-    private static final DateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-
-    static {
-        // interpret all dates as UTC dates
-        DATE_FORMATTER.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
-    /** The user ID. */
-    private final int id;
-
-    /** The username. */
-    private final String username;
-
-    /** The email address. */
-    private final String email;
-
-    /** The name. */
-    private final String name;
-
-
-    /** Whether the user account is active. */
-    private final boolean isActive;
-
-    /** The date of creation. */
-    private final Date createdAt;
+    /** The identity of the user. */
+    private final GitLabUserIdentity identity;
 
     /**
      * Creates a user info object from a JSON object.
@@ -73,20 +44,25 @@ public abstract class BasicGitLabUserInfo {
      * @param jsonObject a JSON object to derive the information from
      */
     public BasicGitLabUserInfo(JSONObject jsonObject) {
-        try {
-            id = jsonObject.getInt("id");
-            username = jsonObject.getString("username");
-            email = jsonObject.getString("email");
-            name = jsonObject.getString("name");
-            isActive = jsonObject.getString("state").equals("active");
-            createdAt = DATE_FORMATTER.parse(jsonObject.getString("created_at"));
-        } catch (JSONException e) {
-            // failed to retrieve a value
-            throw new IllegalArgumentException("Malformed JSON object", e);
-        } catch (ParseException e) {
-            // failed to parse the date of creation
-            throw new IllegalArgumentException("Malformed date");
-        }
+        this(new GitLabUserIdentity(jsonObject));
+    }
+
+    /**
+     * Creates a user info object for a user identity.
+     *
+     * @param identity the identity of the user
+     */
+    protected BasicGitLabUserInfo(GitLabUserIdentity identity) {
+        this.identity = identity;
+    }
+
+    /**
+     * Gets the identity of the user.
+     *
+     * @return a user identity
+     */
+    public final GitLabUserIdentity getIdentity() {
+        return identity;
     }
 
     /**
@@ -95,7 +71,7 @@ public abstract class BasicGitLabUserInfo {
      * @return a user ID
      */
     public final int getId() {
-        return id;
+        return identity.getId();
     }
 
     /**
@@ -104,7 +80,7 @@ public abstract class BasicGitLabUserInfo {
      * @return a username
      */
     public final String getUsername() {
-        return username;
+        return identity.getUsername();
     }
 
     /**
@@ -113,7 +89,7 @@ public abstract class BasicGitLabUserInfo {
      * @return an email address
      */
     public final String getEmail() {
-        return email;
+        return identity.getEmail();
     }
 
     /**
@@ -122,7 +98,7 @@ public abstract class BasicGitLabUserInfo {
      * @return a name
      */
     public final String getName() {
-        return name;
+        return identity.getName();
     }
 
     /**
@@ -131,7 +107,7 @@ public abstract class BasicGitLabUserInfo {
      * @return a date
      */
     public final Date getCreatedAtDate() {
-        return createdAt;
+        return identity.getCreatedAtDate();
     }
 
     /**
@@ -140,7 +116,7 @@ public abstract class BasicGitLabUserInfo {
      * @return true if active
      */
     public final boolean isActive() {
-        return isActive;
+        return identity.isActive();
     }
 
     /**
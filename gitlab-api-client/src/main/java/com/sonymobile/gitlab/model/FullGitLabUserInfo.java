@@ -44,4 +44,14 @@ public class FullGitLabUserInfo extends GitLabUserInfo {
     public FullGitLabUserInfo(JSONObject jsonObject) {
         super(jsonObject);
     }
+
+    /**
+     * Creates user information for a user identity.
+     *
+     * @param identity the identity of the user
+     * @param isAdmin  whether the user is an administrator
+     */
+    public FullGitLabUserInfo(GitLabUserIdentity identity, boolean isAdmin) {
+        super(identity, isAdmin);
+    }
 }
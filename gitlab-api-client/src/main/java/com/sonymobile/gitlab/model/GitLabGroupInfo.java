@@ -59,6 +59,19 @@ public class GitLabGroupInfo {
         }
     }
 
+    /**
+     * Creates a group info object.
+     *
+     * @param id   the group ID
+     * @param name the full group name
+     * @param path the group path
+     */
+    public GitLabGroupInfo(int id, String name, String path) {
+        this.id = id;
+        this.name = name;
+        this.path = path;
+    }
+
     /**
      * Gets the group ID.
      *
@@ -86,6 +99,29 @@ public class GitLabGroupInfo {
         return path;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GitLabGroupInfo)) {
+            return false;
+        }
+
+        GitLabGroupInfo group = (GitLabGroupInfo)other;
+        return id == group.id
+                && (name == null ? group.name == null : name.equals(group.name))
+                && (path == null ? group.path == null : path.equals(group.path));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = id;
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + (path != null ? path.hashCode() : 0);
+        return result;
+    }
+
     @Override
     public String toString() {
         return getName();
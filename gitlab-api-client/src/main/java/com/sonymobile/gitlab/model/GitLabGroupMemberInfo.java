@@ -31,7 +31,8 @@ import org.json.JSONObject;
 /**
  * Information of a member in a GitLab group.
  *
- * A member is basically a user but with additional information about the group and the group membership.
+ * A member is basically a user but with additional information about the group and the group membership. The
+ * membership only refers to the identity of the user, which can be shared with other memberships of the same user.
  */
 public final class GitLabGroupMemberInfo extends BasicGitLabUserInfo {
     /** The ID of the group. */
@@ -40,6 +41,9 @@ public final class GitLabGroupMemberInfo extends BasicGitLabUserInfo {
     /** The access level of the group member. */
     private final GitLabAccessLevel accessLevel;
 
+    /** The hash code (computed once since the object is immutable). */
+    private final int hashCode;
+
     /**
      * Creates group membership information with JSON data.
      *
@@ -47,15 +51,32 @@ public final class GitLabGroupMemberInfo extends BasicGitLabUserInfo {
      * @param groupId    the ID of the group
      */
     public GitLabGroupMemberInfo(JSONObject jsonObject, int groupId) {
-        super(jsonObject);
-        try {
-            accessLevel = GitLabAccessLevel.accessLevelForId(jsonObject.getInt("access_level"));
-        } catch (JSONException e) {
-            // failed to retrieve a value
-            throw new IllegalArgumentException("Malformed JSON object", e);
-        }
+        this(new GitLabUserIdentity(jsonObject), groupId, accessLevelOf(jsonObject));
+    }
+
+    /**
+     * Creates group membership information with JSON data sharing the user identity through a pool.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     * @param groupId    the ID of the group
+     * @param pool       the pool providing the canonical user identity
+     */
+    public GitLabGroupMemberInfo(JSONObject jsonObject, int groupId, GitLabUserPool pool) {
+        this(pool.identityOf(jsonObject), groupId, accessLevelOf(jsonObject));
+    }
 
+    /**
+     * Creates group membership information for a user identity.
+     *
+     * @param identity    the identity of the user
+     * @param groupId     the ID of the group
+     * @param accessLevel the access level of the member
+     */
+    public GitLabGroupMemberInfo(GitLabUserIdentity identity, int groupId, GitLabAccessLevel accessLevel) {
+        super(identity);
         this.groupId = groupId;
+        this.accessLevel = accessLevel;
+        this.hashCode = 31 * (31 * identity.hashCode() + groupId) + accessLevel.ordinal();
     }
 
     /**
@@ -75,4 +96,40 @@ public final class GitLabGroupMemberInfo extends BasicGitLabUserInfo {
     public int getGroupId() {
         return groupId;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GitLabGroupMemberInfo)) {
+            return false;
+        }
+
+        GitLabGroupMemberInfo member = (GitLabGroupMemberInfo)other;
+        return hashCode == member.hashCode
+                && groupId == member.groupId
+                && accessLevel == member.accessLevel
+                && getIdentity().equals(member.getIdentity());
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Gets the access level from a JSON object.
+     *
+     * @param jsonObject a JSON object with a member access level
+     * @return an access level
+     */
+    private static GitLabAccessLevel accessLevelOf(JSONObject jsonObject) {
+        try {
+            return GitLabAccessLevel.accessLevelForId(jsonObject.getInt("access_level"));
+        } catch (JSONException e) {
+            // failed to retrieve a value
+            throw new IllegalArgumentException("Malformed JSON object", e);
+        }
+    }
 }
@@ -0,0 +1,409 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+/**
+ * An event sent by a GitLab system hook.
+ *
+ * Only the events affecting users, groups and group memberships are recognized, all other events have the type
+ * {@link Type#UNKNOWN}. Attributes which aren't part of an event are null (or -1 for IDs and 0 for dates).
+ */
+public final class GitLabSystemHookEvent {
+    /** The date formats used by different versions of GitLab (one set per thread since they aren't thread safe). */
+    private static final ThreadLocal<DateFormat[]> DATE_FORMATTERS = new ThreadLocal<DateFormat[]>() {
+        @Override
+        protected DateFormat[] initialValue() {
+            DateFormat[] dateFormatters = {
+                    new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"),
+                    new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'")
+            };
+            for (DateFormat dateFormatter : dateFormatters) {
+                // interpret all dates as UTC dates
+                dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+                dateFormatter.setLenient(false);
+            }
+            return dateFormatters;
+        }
+    };
+
+    /**
+     * The types of system hook events.
+     */
+    public enum Type {
+        /** A user was created. */
+        USER_CREATE             ("user_create"),
+        /** A user was removed. */
+        USER_DESTROY            ("user_destroy"),
+        /** A user changed username. */
+        USER_RENAME             ("user_rename"),
+        /** A group was created. */
+        GROUP_CREATE            ("group_create"),
+        /** A group was removed. */
+        GROUP_DESTROY           ("group_destroy"),
+        /** A group changed name or path. */
+        GROUP_RENAME            ("group_rename"),
+        /** A user was added to a group. */
+        USER_ADD_TO_GROUP       ("user_add_to_group"),
+        /** A user was removed from a group. */
+        USER_REMOVE_FROM_GROUP  ("user_remove_from_group"),
+        /** The access level of a group member was changed. */
+        USER_UPDATE_FOR_GROUP   ("user_update_for_group"),
+        /** Any other event. */
+        UNKNOWN                 (null);
+
+        /** The event name used by GitLab. */
+        private final String eventName;
+
+        /**
+         * Creates an event type.
+         *
+         * @param eventName the event name used by GitLab
+         */
+        private Type(String eventName) {
+            this.eventName = eventName;
+        }
+
+        /**
+         * Checks whether events of this type affect a user.
+         *
+         * @return true if the events affect a user
+         */
+        public boolean isUserEvent() {
+            return this == USER_CREATE || this == USER_DESTROY || this == USER_RENAME;
+        }
+
+        /**
+         * Checks whether events of this type affect a group.
+         *
+         * @return true if the events affect a group
+         */
+        public boolean isGroupEvent() {
+            return this == GROUP_CREATE || this == GROUP_DESTROY || this == GROUP_RENAME;
+        }
+
+        /**
+         * Checks whether events of this type affect a group membership.
+         *
+         * @return true if the events affect a group membership
+         */
+        public boolean isMembershipEvent() {
+            return this == USER_ADD_TO_GROUP || this == USER_REMOVE_FROM_GROUP || this == USER_UPDATE_FOR_GROUP;
+        }
+
+        /**
+         * Returns the type for an event name.
+         *
+         * @param eventName the event name used by GitLab
+         * @return an event type ({@link #UNKNOWN} if the event isn't recognized)
+         */
+        public static Type forEventName(String eventName) {
+            for (Type type : values()) {
+                if (type.eventName != null && type.eventName.equals(eventName)) {
+                    return type;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
+
+    /** The type of event. */
+    private final Type type;
+
+    /** The event name used by GitLab. */
+    private final String eventName;
+
+    /** The ID of the affected user. */
+    private final int userId;
+
+    /** The username of the affected user. */
+    private final String username;
+
+    /** The email address of the affected user. */
+    private final String email;
+
+    /** The name of the affected user. */
+    private final String name;
+
+    /** The ID of the affected group. */
+    private final int groupId;
+
+    /** The name of the affected group. */
+    private final String groupName;
+
+    /** The path of the affected group. */
+    private final String groupPath;
+
+    /** The access level of the affected group membership. */
+    private final GitLabAccessLevel accessLevel;
+
+    /** The time of creation of the affected object in milliseconds since the epoch. */
+    private final long createdAt;
+
+    /** The time of the last update of the affected object in milliseconds since the epoch. */
+    private final long updatedAt;
+
+    /** The local time the event was received in milliseconds since the epoch. */
+    private final long receivedAt;
+
+    /**
+     * Creates a system hook event from a JSON object received now.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     */
+    public GitLabSystemHookEvent(JSONObject jsonObject) {
+        this(jsonObject, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a system hook event from a JSON object.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     * @param receivedAt the local time the event was received in milliseconds since the epoch
+     */
+    public GitLabSystemHookEvent(JSONObject jsonObject, long receivedAt) {
+        this.receivedAt = receivedAt;
+        try {
+            eventName = jsonObject.getString("event_name");
+        } catch (JSONException e) {
+            // failed to retrieve a value
+            throw new IllegalArgumentException("Malformed JSON object", e);
+        }
+        type = Type.forEventName(eventName);
+
+        userId = jsonObject.optInt("user_id", -1);
+        groupId = jsonObject.optInt("group_id", -1);
+
+        if (type.isMembershipEvent()) {
+            // membership events prefix the user attributes and the group attributes
+            username = optString(jsonObject, "user_username");
+            email = optString(jsonObject, "user_email");
+            name = optString(jsonObject, "user_name");
+            groupName = optString(jsonObject, "group_name");
+            groupPath = optString(jsonObject, "group_path");
+            accessLevel = accessLevelOf(jsonObject);
+        } else if (type.isGroupEvent()) {
+            username = null;
+            email = null;
+            name = null;
+            groupName = optString(jsonObject, "name");
+            groupPath = optString(jsonObject, "path");
+            accessLevel = null;
+        } else {
+            username = optString(jsonObject, "username");
+            email = optString(jsonObject, "email");
+            name = optString(jsonObject, "name");
+            groupName = null;
+            groupPath = null;
+            accessLevel = null;
+        }
+
+        createdAt = parseDate(optString(jsonObject, "created_at"));
+        updatedAt = parseDate(optString(jsonObject, "updated_at"));
+
+        if (type.isUserEvent() && userId < 0 || type.isGroupEvent() && groupId < 0
+                || type.isMembershipEvent() && (userId < 0 || groupId < 0)) {
+            // the event doesn't identify the affected object
+            throw new IllegalArgumentException("Malformed JSON object");
+        }
+    }
+
+    /**
+     * Gets the type of event.
+     *
+     * @return an event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the event name used by GitLab.
+     *
+     * @return an event name
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * Gets the ID of the affected user.
+     *
+     * @return a user ID (or -1 if no user is affected)
+     */
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the username of the affected user.
+     *
+     * @return a username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the email address of the affected user.
+     *
+     * @return an email address
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Gets the name of the affected user.
+     *
+     * @return a name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the ID of the affected group.
+     *
+     * @return a group ID (or -1 if no group is affected)
+     */
+    public int getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Gets the name of the affected group.
+     *
+     * @return a group name
+     */
+    public String getGroupName() {
+        return groupName;
+    }
+
+    /**
+     * Gets the path of the affected group.
+     *
+     * @return a group path
+     */
+    public String getGroupPath() {
+        return groupPath;
+    }
+
+    /**
+     * Gets the access level of the affected group membership.
+     *
+     * @return an access level
+     */
+    public GitLabAccessLevel getAccessLevel() {
+        return accessLevel;
+    }
+
+    /**
+     * Gets the time of creation of the affected object.
+     *
+     * For membership events this is the time the user was added to the group.
+     *
+     * @return the time in milliseconds since the epoch (or 0 if not known)
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Gets the time of the last update of the affected object.
+     *
+     * @return the time in milliseconds since the epoch (or 0 if not known)
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Gets the local time the event was received.
+     *
+     * Unlike the times of the affected object this is measured by the local clock, so it can be compared with the
+     * local times of other changes.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    @Override
+    public String toString() {
+        return eventName;
+    }
+
+    /**
+     * Gets an optional string from a JSON object.
+     *
+     * @param jsonObject the JSON object
+     * @param key        the key
+     * @return the string or null if missing
+     */
+    private static String optString(JSONObject jsonObject, String key) {
+        return jsonObject.isNull(key) ? null : jsonObject.optString(key);
+    }
+
+    /**
+     * Gets the access level of a membership event.
+     *
+     * @param jsonObject a JSON object with a group access level name
+     * @return an access level (or null if the event doesn't include one)
+     */
+    private static GitLabAccessLevel accessLevelOf(JSONObject jsonObject) {
+        String accessLevelName = optString(jsonObject, "group_access");
+        return (accessLevelName != null) ? GitLabAccessLevel.getAccessLevelWithName(accessLevelName) : null;
+    }
+
+    /**
+     * Parses a date in any of the formats used by system hooks.
+     *
+     * @param date the date string (or null)
+     * @return the date in milliseconds since the epoch (or 0 if no date is given)
+     */
+    private static long parseDate(String date) {
+        if (date == null) {
+            return 0;
+        }
+        for (DateFormat dateFormatter : DATE_FORMATTERS.get()) {
+            try {
+                return dateFormatter.parse(date).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        throw new IllegalArgumentException("Malformed date");
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The identity of a GitLab user.
+ *
+ * Instances are immutable and can be shared between all objects referring to the same user, e.g. the memberships of
+ * a user in different groups. Use a {@link GitLabUserPool} to get canonical instances.
+ */
+public final class GitLabUserIdentity {
+    /** Date formatters for parsing the date of creation (one per thread since they aren't thread safe). */
+    private static final ThreadLocal<DateFormat> DATE_FORMATTER = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            // interpret all dates as UTC dates
+            dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return dateFormatter;
+        }
+    };
+
+    /** The user ID. */
+    private final int id;
+
+    /** The username. */
+    private final String username;
+
+    /** The email address. */
+    private final String email;
+
+    /** The name. */
+    private final String name;
+
+    /** Whether the user account is active. */
+    private final boolean isActive;
+
+    /** The date of creation in milliseconds since the epoch. */
+    private final long createdAt;
+
+    /** The hash code (computed once since the object is immutable). */
+    private final int hashCode;
+
+    /**
+     * Creates a user identity.
+     *
+     * @param id        the user ID
+     * @param username  the username
+     * @param email     the email address
+     * @param name      the name
+     * @param isActive  whether the user account is active
+     * @param createdAt the date of creation
+     */
+    public GitLabUserIdentity(int id, String username, String email, String name, boolean isActive, Date createdAt) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.name = name;
+        this.isActive = isActive;
+        this.createdAt = createdAt.getTime();
+        this.hashCode = computeHashCode();
+    }
+
+    /**
+     * Creates a user identity from a JSON object.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     */
+    public GitLabUserIdentity(JSONObject jsonObject) {
+        this(jsonObject, null);
+    }
+
+    /**
+     * Creates a user identity from a JSON object with the strings deduplicated through a pool.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     * @param pool       the pool to deduplicate strings with (or null to keep the strings as they are)
+     */
+    /* package */ GitLabUserIdentity(JSONObject jsonObject, GitLabUserPool pool) {
+        try {
+            id = jsonObject.getInt("id");
+            username = intern(pool, jsonObject.getString("username"));
+            email = intern(pool, jsonObject.getString("email"));
+            name = intern(pool, jsonObject.getString("name"));
+            isActive = jsonObject.getString("state").equals("active");
+            createdAt = parseDate(jsonObject.getString("created_at"));
+        } catch (JSONException e) {
+            // failed to retrieve a value
+            throw new IllegalArgumentException("Malformed JSON object", e);
+        }
+        hashCode = computeHashCode();
+    }
+
+    /**
+     * Gets the user ID.
+     *
+     * @return a user ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the username.
+     *
+     * @return a username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the email address.
+     *
+     * @return an email address
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return a name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the date of the creation of the user account.
+     *
+     * @return a date
+     */
+    public Date getCreatedAtDate() {
+        // dates are mutable so never hand out a shared instance
+        return new Date(createdAt);
+    }
+
+    /**
+     * Checks whether the user account is active.
+     *
+     * @return true if active
+     */
+    public boolean isActive() {
+        return isActive;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GitLabUserIdentity)) {
+            return false;
+        }
+
+        GitLabUserIdentity identity = (GitLabUserIdentity)other;
+        return hashCode == identity.hashCode
+                && id == identity.id
+                && isActive == identity.isActive
+                && createdAt == identity.createdAt
+                && username.equals(identity.username)
+                && email.equals(identity.email)
+                && name.equals(identity.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+
+    /**
+     * Computes the hash code from all fields.
+     *
+     * @return a hash code
+     */
+    private int computeHashCode() {
+        int result = id;
+        result = 31 * result + username.hashCode();
+        result = 31 * result + email.hashCode();
+        result = 31 * result + name.hashCode();
+        result = 31 * result + (isActive ? 1 : 0);
+        result = 31 * result + (int)(createdAt ^ (createdAt >>> 32));
+        return result;
+    }
+
+    /**
+     * Deduplicates a string through a pool if a pool is used.
+     *
+     * @param pool   the pool (or null)
+     * @param string the string
+     * @return the pooled string or the string itself if no pool is used
+     */
+    private static String intern(GitLabUserPool pool, String string) {
+        return (pool != null) ? pool.intern(string) : string;
+    }
+
+    /**
+     * Parses a date in the format used by the API.
+     *
+     * @param date the date string
+     * @return the date in milliseconds since the epoch
+     */
+    private static long parseDate(String date) {
+        try {
+            return DATE_FORMATTER.get().parse(date).getTime();
+        } catch (ParseException e) {
+            // failed to parse the date of creation
+            throw new IllegalArgumentException("Malformed date");
+        }
+    }
+}
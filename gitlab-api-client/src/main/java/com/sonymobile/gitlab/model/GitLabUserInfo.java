@@ -52,6 +52,17 @@ public abstract class GitLabUserInfo extends BasicGitLabUserInfo {
         }
     }
 
+    /**
+     * Creates a user info object for a user identity.
+     *
+     * @param identity the identity of the user
+     * @param isAdmin  whether the user is an administrator
+     */
+    protected GitLabUserInfo(GitLabUserIdentity identity, boolean isAdmin) {
+        super(identity);
+        this.isAdmin = isAdmin;
+    }
+
     /**
      * Checks whether the user is an administrator.
      *
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.model;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of canonical user identities and the strings they consist of.
+ *
+ * The same user appears once for every group the user is a member of. Decoding the group members through a pool
+ * makes all memberships of a user share the same {@link GitLabUserIdentity}, so the memory used grows with the number
+ * of unique users instead of the number of memberships.
+ *
+ * The pool is a fixed size table where every value has exactly one slot. A value evicts whatever occupied its slot
+ * before, which keeps the pool bounded and lock free at the cost of sometimes missing a duplicate.
+ */
+public final class GitLabUserPool {
+    /** The default number of pooled strings. */
+    public static final int DEFAULT_STRING_CAPACITY = 16384;
+
+    /** The default number of pooled user identities. */
+    public static final int DEFAULT_IDENTITY_CAPACITY = 8192;
+
+    /** The pooled strings. */
+    private final AtomicReferenceArray<String> strings;
+
+    /** The pooled user identities. */
+    private final AtomicReferenceArray<GitLabUserIdentity> identities;
+
+    /**
+     * Creates a pool with the default capacities.
+     */
+    public GitLabUserPool() {
+        this(DEFAULT_STRING_CAPACITY, DEFAULT_IDENTITY_CAPACITY);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * The capacities are rounded up to the nearest power of two.
+     *
+     * @param stringCapacity   the maximum number of pooled strings
+     * @param identityCapacity the maximum number of pooled user identities
+     */
+    public GitLabUserPool(int stringCapacity, int identityCapacity) {
+        if (stringCapacity <= 0 || identityCapacity <= 0) {
+            throw new IllegalArgumentException("Pool capacities must be positive");
+        }
+        strings = new AtomicReferenceArray<String>(powerOfTwo(stringCapacity));
+        identities = new AtomicReferenceArray<GitLabUserIdentity>(powerOfTwo(identityCapacity));
+    }
+
+    /**
+     * Returns the canonical user identity for a JSON object.
+     *
+     * @param jsonObject a JSON object to derive the information from
+     * @return a pooled user identity
+     */
+    public GitLabUserIdentity identityOf(JSONObject jsonObject) {
+        return intern(new GitLabUserIdentity(jsonObject, this));
+    }
+
+    /**
+     * Returns the canonical instance of a user identity.
+     *
+     * If the pool holds an equal identity that instance is returned, otherwise the identity replaces any previous
+     * identity for the same user.
+     *
+     * @param identity a user identity
+     * @return the pooled user identity
+     */
+    public GitLabUserIdentity intern(GitLabUserIdentity identity) {
+        final int slot = slot(identity.getId(), identities.length());
+        final GitLabUserIdentity pooled = identities.get(slot);
+
+        if (identity.equals(pooled)) {
+            return pooled;
+        }
+        identities.set(slot, identity);
+        return identity;
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param string a string
+     * @return the pooled string
+     */
+    public String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+
+        final int slot = slot(string.hashCode(), strings.length());
+        final String pooled = strings.get(slot);
+
+        if (string.equals(pooled)) {
+            return pooled;
+        }
+        strings.set(slot, string);
+        return string;
+    }
+
+    /**
+     * Removes all pooled values.
+     */
+    public void clear() {
+        for (int i = 0; i < strings.length(); i++) {
+            strings.set(i, null);
+        }
+        for (int i = 0; i < identities.length(); i++) {
+            identities.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the slot for a hash in a table.
+     *
+     * @param hash   the hash
+     * @param length the length of the table (a power of two)
+     * @return the slot index
+     */
+    private static int slot(int hash, int length) {
+        // mix the high bits into the low bits used for the slot
+        hash ^= (hash >>> 16);
+        return hash & (length - 1);
+    }
+
+    /**
+     * Rounds a capacity up to the nearest power of two.
+     *
+     * @param capacity the capacity
+     * @return a power of two
+     */
+    private static int powerOfTwo(int capacity) {
+        final int highestBit = Integer.highestOneBit(capacity);
+        return (highestBit == capacity) ? capacity : highestBit << 1;
+    }
+}
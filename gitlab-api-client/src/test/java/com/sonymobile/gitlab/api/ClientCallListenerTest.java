@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
+import com.sonymobile.gitlab.http.RequestContext;
+import com.sonymobile.gitlab.metrics.ApiCall;
+import com.sonymobile.gitlab.metrics.ApiCallListener;
+import com.sonymobile.gitlab.metrics.CacheResult;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests notifying a call listener of the API calls of the GitLab API client.
+ */
+public class ClientCallListenerTest extends AbstractClientTest {
+    /** The calls reported to the listener. */
+    private final List<ApiCall> calls = new ArrayList<ApiCall>();
+
+    /**
+     * Sets up a client with a listener collecting the calls.
+     */
+    @Before
+    public void setUp() {
+        super.setUp();
+
+        client.setCallListener(new ApiCallListener() {
+            @Override
+            public void callCompleted(ApiCall call) {
+                calls.add(call);
+            }
+        });
+    }
+
+    /**
+     * Tests that a GET request is reported with its template, status and phases.
+     */
+    @Test
+    public void reportGetRequest() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        String previousConsumer = RequestContext.setConsumer("test");
+        try {
+            client.getUser(1);
+        } finally {
+            RequestContext.setConsumer(previousConsumer);
+        }
+
+        assertThat(calls, hasSize(1));
+        ApiCall call = calls.get(0);
+        assertThat(call.getTemplate(), is("GET /users/:id"));
+        assertThat(call.getConsumer(), is("test"));
+        assertThat(call.isImpersonated(), is(false));
+        assertThat(call.getCacheResult(), is(CacheResult.NONE));
+        assertThat(call.getStatus(), is(200));
+        assertThat(call.getBytesIn(), is(greaterThan(0L)));
+        long total = 0;
+        for (RequestPhase phase : RequestPhase.values()) {
+            total += call.getPhaseTime(phase, TimeUnit.NANOSECONDS);
+        }
+        assertThat(call.getPhaseTime(RequestPhase.FIRST_BYTE, TimeUnit.NANOSECONDS), is(greaterThan(0L)));
+        assertThat(call.getPhaseTime(RequestPhase.DECODE, TimeUnit.NANOSECONDS), is(greaterThan(0L)));
+        assertThat(call.getDuration(TimeUnit.NANOSECONDS), is(greaterThanOrEqualTo(total)));
+    }
+
+    /**
+     * Tests that calls are reported before returning even if their responses aren't decoded.
+     */
+    @Test
+    public void reportUndecodedCalls() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/user?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users.json")));
+
+        try {
+            client.getCurrentUser();
+            fail("A response without content should be rejected");
+        } catch (AuthenticationFailedException e) {
+            // expected
+        }
+        assertThat(calls, hasSize(1));
+        assertThat(calls.get(0).getStatus(), is(204));
+
+        client.getLazyUsers();
+        assertThat(calls, hasSize(2));
+        assertThat(calls.get(1).getTemplate(), is("GET /users"));
+    }
+
+    /**
+     * Tests that the bytes of a request body are reported.
+     */
+    @Test
+    public void reportBytesOut() throws Exception {
+        stubFor(post(urlEqualTo("/api/v3/session"))
+                .willReturn(aResponse()
+                        .withStatus(201)
+                        .withBodyFile("/api/v3/session.json")));
+
+        client.getSession("username", "password");
+
+        assertThat(calls, hasSize(1));
+        assertThat(calls.get(0).getTemplate(), is("POST /session"));
+        assertThat(calls.get(0).getBytesOut(), is(greaterThan(0L)));
+    }
+
+    /**
+     * Tests that requests impersonating a user are reported as impersonated.
+     */
+    @Test
+    public void reportImpersonation() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/user?sudo=1&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/user.json")));
+
+        client.asUser(1).getCurrentUser();
+
+        assertThat(calls, hasSize(1));
+        assertThat(calls.get(0).isImpersonated(), is(true));
+    }
+
+    /**
+     * Tests that lookups through a cache are reported as misses and hits.
+     */
+    @Test
+    public void reportCacheLookups() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        GitLabLookupCache cache = new GitLabLookupCache(client);
+        cache.getUser(1);
+        cache.getUser(1);
+
+        assertThat(calls, hasSize(2));
+        assertThat(calls.get(0).getCacheResult(), is(CacheResult.MISS));
+        assertThat(calls.get(0).getStatus(), is(200));
+        assertThat(calls.get(1).getTemplate(), is("GET /users/:id"));
+        assertThat(calls.get(1).getCacheResult(), is(CacheResult.HIT));
+        // the cache result shouldn't leak into later requests
+        assertThat(RequestContext.getCacheResult(), is(CacheResult.NONE));
+    }
+}
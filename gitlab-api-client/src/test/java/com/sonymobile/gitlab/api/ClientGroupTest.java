@@ -27,6 +27,7 @@ package com.sonymobile.gitlab.api;
 
 import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
 import com.sonymobile.gitlab.exceptions.GroupNotFoundException;
+import com.sonymobile.gitlab.helpers.LazyJSONArrayList;
 import com.sonymobile.gitlab.model.GitLabAccessLevel;
 import com.sonymobile.gitlab.model.GitLabGroupInfo;
 import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
@@ -39,6 +40,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 
@@ -54,7 +56,7 @@ public class ClientGroupTest extends AbstractClientTest {
     @Test
     public void getAllGroups() throws Exception {
         // stub for expected request to get all groups
-        stubFor(get(urlEqualTo("/api/v3/groups?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/groups?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBodyFile("/api/v3/groups.json")));
@@ -69,13 +71,34 @@ public class ClientGroupTest extends AbstractClientTest {
         assertThat(group.getPath(), is("groupname"));
     }
 
+    /**
+     * Gets all groups for the authenticated user without decoding them up front.
+     */
+    @Test
+    public void getLazyGroups() throws Exception {
+        // stub for expected request to get all groups
+        stubFor(get(urlEqualTo("/api/v3/groups?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups.json")));
+
+        LazyJSONArrayList<GitLabGroupInfo> groups = client.getLazyGroups();
+
+        assertThat(groups, hasSize(1));
+        assertThat(groups.getId(0), is(1));
+
+        GitLabGroupInfo group = groups.get(0);
+        assertThat(group.getName(), is("Group Name"));
+        assertThat(group.getPath(), is("groupname"));
+    }
+
     /**
      * Attempts to get groups for the authenticated user with invalid token.
      */
     @Test
     public void getAllGroupsWithInvalidPrivateToken() throws Exception {
         // stub for expected request to get all groups
-        stubFor(get(urlEqualTo("/api/v3/groups?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/groups?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(401)
                         .withBodyFile("/401.json")));
@@ -145,7 +168,7 @@ public class ClientGroupTest extends AbstractClientTest {
     @Test
     public void getGroupMembers() throws Exception {
         // stub for expected request to get groups group nenbers
-        stubFor(get(urlEqualTo("/api/v3/groups/1/members?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBodyFile("/api/v3/groups/1/members.json")));
@@ -177,7 +200,7 @@ public class ClientGroupTest extends AbstractClientTest {
     @Test
     public void getGroupMembersFromNonexistentGroup() throws Exception {
         // stub for expected request to get the group
-        stubFor(get(urlEqualTo("/api/v3/groups/1/members?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(404)
                         .withBodyFile("/404.json")));
@@ -194,7 +217,7 @@ public class ClientGroupTest extends AbstractClientTest {
     @Test
     public void getGroupMembersWithInvalidPrivateToken() throws Exception {
         // stub for expected request to get group members
-        stubFor(get(urlEqualTo("/api/v3/groups/1/members?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(401)
                         .withBodyFile("/401.json")));
@@ -205,4 +228,33 @@ public class ClientGroupTest extends AbstractClientTest {
         // try to get the groups members from the API and expect it to throw and exception
         client.getGroupMembers(1);
     }
+
+    /**
+     * Finds a group.
+     */
+    @Test
+    public void findGroup() throws Exception {
+        // stub for expected request to get the group
+        stubFor(get(urlEqualTo("/api/v3/groups/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1.json")));
+
+        GitLabGroupInfo group = client.findGroup(1);
+        assertThat(group.getId(), is(1));
+    }
+
+    /**
+     * Attempts to find a group that doesn't exist, which should not be an error.
+     */
+    @Test
+    public void findNonexistentGroup() throws Exception {
+        // stub for expected request to get the group
+        stubFor(get(urlEqualTo("/api/v3/groups/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        assertThat(client.findGroup(1), is(nullValue()));
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.http.HedgingPolicy;
+import com.sonymobile.gitlab.model.GitLabUserInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests hedging GET requests with the GitLab API client.
+ */
+public class ClientHedgingTest extends AbstractClientTest {
+    /** The URL of the user to get. */
+    private static final String USER_URL = "/api/v3/users/1?private_token=" + PRIVATE_TOKEN;
+
+    /** The hedging policy of the client. */
+    private HedgingPolicy policy;
+
+    /**
+     * Sets up the client to hedge requests slower than 50 ms.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        super.setUp();
+        policy = new HedgingPolicy().withMinDelay(50, TimeUnit.MILLISECONDS).withBudget(100);
+        for (int i = 0; i < 20; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        client.setHedgingPolicy(policy);
+    }
+
+    /**
+     * Tests that a hedge wins over a slow request.
+     */
+    @Test
+    public void hedgeSlowRequest() throws Exception {
+        // the first request is stuck on a slow node
+        stubFor(get(urlEqualTo(USER_URL))
+                .inScenario("slow node")
+                .whenScenarioStateIs(STARTED)
+                .willSetStateTo("hedged")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(5000)
+                        .withBodyFile("api/v3/users/1.json")));
+        stubFor(get(urlEqualTo(USER_URL))
+                .inScenario("slow node")
+                .whenScenarioStateIs("hedged")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        long start = System.nanoTime();
+        GitLabUserInfo user = client.getUser(1);
+
+        assertThat(user.getId(), is(1));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(2000L)));
+        assertThat(policy.getHedges(), is(1L));
+        assertThat(policy.getHedgeWins(), is(1L));
+        verify(2, getRequestedFor(urlEqualTo(USER_URL)));
+    }
+
+    /**
+     * Tests that a fast request isn't hedged.
+     */
+    @Test
+    public void skipHedgeForFastRequest() throws Exception {
+        stubFor(get(urlEqualTo(USER_URL))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        assertThat(client.getUser(1).getId(), is(1));
+        assertThat(policy.getRequests(), is(1L));
+        assertThat(policy.getHedges(), is(0L));
+        verify(1, getRequestedFor(urlEqualTo(USER_URL)));
+    }
+
+    /**
+     * Tests that no hedge is sent when the budget is spent.
+     */
+    @Test
+    public void skipHedgeWithoutBudget() throws Exception {
+        policy.withBudget(0);
+        stubFor(get(urlEqualTo(USER_URL))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        assertThat(client.getUser(1).getId(), is(1));
+        assertThat(policy.getHedges(), is(0L));
+        verify(1, getRequestedFor(urlEqualTo(USER_URL)));
+    }
+}
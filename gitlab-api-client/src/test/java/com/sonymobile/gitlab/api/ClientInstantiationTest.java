@@ -31,6 +31,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.hasToString;
@@ -118,4 +122,20 @@ public class ClientInstantiationTest extends AbstractClientTest {
         assertThat(newClient.getPrivateToken(), is("0123456789abcdef"));
         assertThat(newClient.getProxyHost(), is(nullValue()));
     }
+
+    /**
+     * Tests that creating another instance leaves the connections of an existing instance untouched.
+     */
+    @Test
+    public void keepConnectionsOfExistingInstance() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        // a proxy nobody is listening on
+        new GitLabApiClient("http://gitlab.example.org", "0123456789abcdef", "localhost", 1);
+
+        assertThat(client.getUser(1).getId(), is(1));
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.metrics.ApiError;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.metrics.RequestPhase;
+import com.sonymobile.gitlab.metrics.RequestRecord;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests recording the metrics of requests with the GitLab API client.
+ */
+public class ClientMetricsTest extends AbstractClientTest {
+    /**
+     * Tests that requests for different users are recorded under one template.
+     */
+    @Test
+    public void recordPerTemplate() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+        stubFor(get(urlEqualTo("/api/v3/users/2?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("api/v3/user_missing.json")));
+
+        client.getUser(1);
+        client.findUser(2);
+
+        EndpointMetrics endpoint = client.getMetrics().getEndpoint("GET", "/users/:id");
+        assertThat(client.getMetrics().getEndpoints().size(), is(1));
+        assertThat(endpoint.getRequests(), is(2L));
+        assertThat(endpoint.getStatusCount(200), is(1L));
+        assertThat(endpoint.getStatusCount(404), is(1L));
+        assertThat(endpoint.getBytesIn(), is(greaterThan(0L)));
+        assertThat(endpoint.getPhaseTime(RequestPhase.PARSE).getCount(), is(2L));
+    }
+
+    /**
+     * Tests that the phases of requests are recorded, setting up the connection only once.
+     */
+    @Test
+    public void recordPhases() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        client.getUser(1);
+        client.getUser(1);
+
+        EndpointMetrics endpoint = client.getMetrics().getEndpoint("GET", "/users/:id");
+        assertThat(endpoint.getPhaseTime(RequestPhase.QUEUE).getCount(), is(2L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.LEASE).getCount(), is(2L));
+        // the connection is kept alive
+        assertThat(endpoint.getPhaseTime(RequestPhase.DNS).getCount(), is(1L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.CONNECT).getCount(), is(1L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.TLS).getCount(), is(0L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.FIRST_BYTE).getCount(), is(2L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.BODY).getCount(), is(2L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.PARSE).getCount(), is(2L));
+        assertThat(endpoint.getPhaseTime(RequestPhase.DECODE).getCount(), is(2L));
+        // the connection is back in the pool
+        assertThat(client.getPoolStats().getLeased(), is(0));
+        assertThat(client.getPoolStats().getAvailable(), is(1));
+        Map<String, PoolStats> routeStats = client.getRoutePoolStats();
+        assertThat(routeStats.size(), is(1));
+        assertThat(routeStats.values().iterator().next().getAvailable(), is(1));
+    }
+
+    /**
+     * Tests that failed requests are recorded as recent errors, but not missing resources.
+     */
+    @Test
+    public void recordErrors() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(500)));
+        stubFor(get(urlEqualTo("/api/v3/users/2?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("api/v3/user_missing.json")));
+
+        try {
+            client.getUser(1);
+        } catch (GitLabApiException e) {
+            // expected
+        }
+        client.findUser(2);
+
+        List<ApiError> errors = client.getMetrics().getRecentErrors();
+        assertThat(errors.size(), is(1));
+        assertThat(errors.get(0).getTemplate(), is("GET /users/:id"));
+        assertThat(errors.get(0).getStatus(), is(500));
+        assertThat(client.getMetrics().getErrorCount(), is(1L));
+
+        List<RequestRecord> records = client.getMetrics().getTrace().getRecords();
+        assertThat(records.size(), is(2));
+        assertThat(records.get(0).getStatus(), is(500));
+        assertThat(records.get(1).getStatus(), is(404));
+        assertThat(records.get(1).getTemplate(), is("GET /users/:id"));
+    }
+
+    /**
+     * Tests that the bytes of a request body are recorded.
+     */
+    @Test
+    public void recordBytesOut() throws Exception {
+        stubFor(post(urlEqualTo("/api/v3/session"))
+                .willReturn(aResponse()
+                        .withStatus(201)
+                        .withBodyFile("/api/v3/session.json")));
+
+        client.getSession("username", "password");
+
+        EndpointMetrics endpoint = client.getMetrics().getEndpoint("POST", "/session");
+        assertThat(endpoint.getStatusCount(201), is(1L));
+        assertThat(endpoint.getBytesOut(), is(greaterThan(0L)));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.http.ReadEndpoint;
+import com.sonymobile.gitlab.http.ReadEndpointRouter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests routing GET requests to read endpoints with the GitLab API client.
+ */
+public class ClientReadEndpointTest extends AbstractClientTest {
+    /** The URL of a read endpoint served by the same mock server under another path. */
+    private static final String REPLICA_URL = SERVER_URL + "/replica";
+
+    /** The URL of a read endpoint nothing is listening on. */
+    private static final String UNREACHABLE_URL = "http://localhost:1";
+
+    /** The path of the user to get. */
+    private static final String USER_PATH = "/api/v3/users/1?private_token=" + PRIVATE_TOKEN;
+
+    /**
+     * Stubs the user on the host.
+     */
+    @Before
+    public void stubHost() {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+    }
+
+    /**
+     * Tests that a GET request is sent to the read endpoint.
+     */
+    @Test
+    public void readFromEndpoint() throws Exception {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList(REPLICA_URL));
+        client.setReadEndpointRouter(router);
+        stubFor(get(urlEqualTo("/replica" + USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        assertThat(client.getUser(1).getId(), is(1));
+
+        verify(1, getRequestedFor(urlEqualTo("/replica" + USER_PATH)));
+        verify(0, getRequestedFor(urlEqualTo(USER_PATH)));
+        assertThat(router.getEndpoints().get(0).isHealthy(), is(true));
+    }
+
+    /**
+     * Tests that a GET request falls back to the host when the read endpoint has a server error.
+     */
+    @Test
+    public void fallBackOnServerError() throws Exception {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList(REPLICA_URL));
+        client.setReadEndpointRouter(router);
+        stubFor(get(urlEqualTo("/replica" + USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(503)));
+
+        assertThat(client.getUser(1).getId(), is(1));
+        // the failing endpoint is out of rotation for the next request
+        assertThat(client.getUser(1).getId(), is(1));
+
+        verify(1, getRequestedFor(urlEqualTo("/replica" + USER_PATH)));
+        verify(2, getRequestedFor(urlEqualTo(USER_PATH)));
+        assertThat(router.getEndpoints().get(0).isHealthy(), is(false));
+    }
+
+    /**
+     * Tests that a GET request falls back to the host when the read endpoint is unreachable.
+     */
+    @Test
+    public void fallBackOnUnreachableEndpoint() throws Exception {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList(UNREACHABLE_URL));
+        client.setReadEndpointRouter(router);
+
+        assertThat(client.getUser(1).getId(), is(1));
+
+        verify(1, getRequestedFor(urlEqualTo(USER_PATH)));
+        assertThat(router.getEndpoints().get(0).getErrors(), is(1L));
+    }
+
+    /**
+     * Tests that creating a session is never sent to a read endpoint.
+     */
+    @Test
+    public void postToHost() throws Exception {
+        client.setReadEndpointRouter(new ReadEndpointRouter(Arrays.asList(REPLICA_URL)));
+        stubFor(post(urlEqualTo("/api/v3/session"))
+                .willReturn(aResponse()
+                        .withStatus(201)
+                        .withBodyFile("/api/v3/session.json")));
+
+        assertThat(client.getSession("username", "password").getId(), is(1));
+
+        verify(1, postRequestedFor(urlEqualTo("/api/v3/session")));
+        verify(0, postRequestedFor(urlEqualTo("/replica/api/v3/session")));
+    }
+
+    /**
+     * Tests that a health check takes a failing endpoint back into rotation.
+     */
+    @Test
+    public void checkEndpointHealth() throws Exception {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList(REPLICA_URL, UNREACHABLE_URL));
+        client.setReadEndpointRouter(router);
+        stubFor(get(urlEqualTo("/replica/api/v3/user?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/user.json")));
+
+        client.checkReadEndpoints();
+
+        ReadEndpoint replica = router.getEndpoints().get(0);
+        ReadEndpoint unreachable = router.getEndpoints().get(1);
+        assertThat(replica.isHealthy(), is(true));
+        assertThat(unreachable.isHealthy(), is(false));
+        // health checks aren't counted as routed requests
+        assertThat(replica.getRequests(), is(0L));
+    }
+}
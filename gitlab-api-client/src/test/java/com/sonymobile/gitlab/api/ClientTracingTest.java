@@ -0,0 +1,271 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.http.HedgingPolicy;
+import com.sonymobile.gitlab.http.RequestContext;
+import com.sonymobile.gitlab.metrics.Span;
+import com.sonymobile.gitlab.metrics.Tracer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests tracing the calls of the GitLab API client.
+ */
+public class ClientTracingTest extends AbstractClientTest {
+    /** The URL of the user to get. */
+    private static final String USER_URL = "/api/v3/users/1?private_token=" + PRIVATE_TOKEN;
+
+    /** The spans started by the tracer, in order. */
+    private final List<RecordedSpan> spans = Collections.synchronizedList(new ArrayList<RecordedSpan>());
+
+    /**
+     * Sets up a client with a tracer recording the spans.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        super.setUp();
+
+        client.setTracer(new Tracer() {
+            @Override
+            public Span startSpan(String name, Span parent) {
+                RecordedSpan span = new RecordedSpan(name, parent, spans.size());
+                spans.add(span);
+                return span;
+            }
+        });
+    }
+
+    /**
+     * Tests that a call and its request get spans of their own within the span of the calling thread.
+     */
+    @Test
+    public void callAndRequestSpans() throws Exception {
+        stubFor(get(urlEqualTo(USER_URL))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        RecordedSpan root = new RecordedSpan("permission check", null, -1);
+        Span previous = RequestContext.setSpan(root);
+        try {
+            client.getUser(1);
+        } finally {
+            RequestContext.setSpan(previous);
+        }
+
+        assertThat(spans, hasSize(2));
+        RecordedSpan call = spans.get(0);
+        assertThat(call.name, is("GET /users/:id"));
+        assertThat(call.parent, is(sameInstance((Span)root)));
+        assertThat(call.isEnded, is(true));
+        assertThat(call.attributes.get("http.status_code"), is((Object)200L));
+        RecordedSpan request = spans.get(1);
+        assertThat(request.name, is("HTTP GET"));
+        assertThat(request.parent, is(sameInstance((Span)call)));
+        assertThat(request.isEnded, is(true));
+        assertThat((String)request.attributes.get("http.url"), containsString("/api/v3/users/1"));
+        assertThat((String)request.attributes.get("http.url"), not(containsString(PRIVATE_TOKEN)));
+        verify(getRequestedFor(urlEqualTo(USER_URL)).withoutHeader("traceparent"));
+    }
+
+    /**
+     * Tests that the context of the span of a request is passed to the server if enabled.
+     */
+    @Test
+    public void traceHeader() throws Exception {
+        stubFor(get(urlEqualTo(USER_URL))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        client.setTraceHeaderAdded(true);
+        client.getUser(1);
+
+        verify(getRequestedFor(urlEqualTo(USER_URL)).withHeader("traceparent", equalTo(spans.get(1).getTraceParent())));
+    }
+
+    /**
+     * Tests that calls fanned out to an executor with the context of the caller are children of its span.
+     */
+    @Test
+    public void fanOut() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            stubFor(get(urlEqualTo("/api/v3/users/" + i + "?private_token=" + PRIVATE_TOKEN))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withBodyFile("api/v3/users/1.json")));
+        }
+
+        RecordedSpan root = new RecordedSpan("permission check", null, -1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Span previous = RequestContext.setSpan(root);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 1; i <= 4; i++) {
+                final int userId = i;
+                futures.add(executor.submit(RequestContext.wrap(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return client.getUser(userId);
+                    }
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            RequestContext.setSpan(previous);
+            executor.shutdown();
+        }
+
+        assertThat(spans, hasSize(8));
+        int calls = 0;
+        for (RecordedSpan span : spans) {
+            if (span.name.equals("GET /users/:id")) {
+                assertThat(span.parent, is(sameInstance((Span)root)));
+                calls++;
+            } else {
+                assertThat(((RecordedSpan)span.parent).name, is("GET /users/:id"));
+            }
+        }
+        assertThat(calls, is(4));
+    }
+
+    /**
+     * Tests that each attempt of a hedged request gets a span within the span of the call.
+     */
+    @Test
+    public void hedgedAttempts() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy().withMinDelay(50, TimeUnit.MILLISECONDS).withBudget(100);
+        for (int i = 0; i < 20; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        client.setHedgingPolicy(policy);
+        stubFor(get(urlEqualTo(USER_URL))
+                .inScenario("slow node")
+                .whenScenarioStateIs(STARTED)
+                .willSetStateTo("hedged")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(2000)
+                        .withBodyFile("api/v3/users/1.json")));
+        stubFor(get(urlEqualTo(USER_URL))
+                .inScenario("slow node")
+                .whenScenarioStateIs("hedged")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        client.getUser(1);
+
+        assertThat(spans, hasSize(3));
+        RecordedSpan call = spans.get(0);
+        assertThat(spans.get(1).parent, is(sameInstance((Span)call)));
+        assertThat(spans.get(2).parent, is(sameInstance((Span)call)));
+        assertThat(spans.get(2).attributes.get("gitlab.attempt"), is((Object)"hedge"));
+    }
+
+    /**
+     * A span recording its attributes.
+     */
+    private static final class RecordedSpan implements Span {
+        /** The name of the span. */
+        private final String name;
+
+        /** The parent span (or null if a root span). */
+        private final Span parent;
+
+        /** The ID of the span. */
+        private final int id;
+
+        /** The attributes of the span. */
+        private final Map<String, Object> attributes = Collections.synchronizedMap(new HashMap<String, Object>());
+
+        /** Whether the span has ended. */
+        private volatile boolean isEnded = false;
+
+        /**
+         * Creates a span.
+         *
+         * @param name   the name of the span
+         * @param parent the parent span (or null if a root span)
+         * @param id     the ID of the span
+         */
+        private RecordedSpan(String name, Span parent, int id) {
+            this.name = name;
+            this.parent = parent;
+            this.id = id;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public String getTraceParent() {
+            return String.format("00-%032x-%016x-01", 1, id + 1);
+        }
+
+        @Override
+        public void end() {
+            isEnded = true;
+        }
+    }
+}
@@ -27,6 +27,7 @@ package com.sonymobile.gitlab.api;
 
 import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
 import com.sonymobile.gitlab.exceptions.UserNotFoundException;
+import com.sonymobile.gitlab.helpers.LazyJSONArrayList;
 import com.sonymobile.gitlab.model.GitLabUserInfo;
 import org.junit.Test;
 
@@ -37,6 +38,8 @@ import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 
@@ -52,7 +55,7 @@ public class ClientUserTest extends AbstractClientTest {
     @Test
     public void getUsers() throws Exception {
         // stub for expected request to get the all users
-        stubFor(get(urlEqualTo("/api/v3/users?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBodyFile("api/v3/users.json")));
@@ -70,13 +73,39 @@ public class ClientUserTest extends AbstractClientTest {
         assertThat(user.isBlocked(), is(false));
     }
 
+    /**
+     * Gets all users without decoding them up front.
+     */
+    @Test
+    public void getLazyUsers() throws Exception {
+        // stub for expected request to get the all users
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users.json")));
+
+        // get all users
+        LazyJSONArrayList<GitLabUserInfo> users = client.getLazyUsers();
+
+        assertThat(users, hasSize(3));
+        assertThat(users.getIds(), is(new int[] {1, 2, 3}));
+
+        GitLabUserInfo user = users.getById(3);
+        assertThat(user.getUsername(), is("admin"));
+        assertThat(user.isAdmin(), is(true));
+        // the user should only be decoded once
+        assertThat(users.get(2), is(sameInstance(user)));
+
+        assertThat(users.getById(4), is(nullValue()));
+    }
+
     /**
      * Attempts to get all users with an invalid token.
      */
     @Test
     public void getUsersWithInvalidPrivateToken() throws Exception {
         // stub for expected request to get the all users
-        stubFor(get(urlEqualTo("/api/v3/users?private_token=" + PRIVATE_TOKEN))
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
                 .willReturn(aResponse()
                         .withStatus(401)
                         .withBodyFile("/401.json")));
@@ -178,4 +207,33 @@ public class ClientUserTest extends AbstractClientTest {
         // try to get the current user from the API and expect it to throw and exception
         client.getCurrentUser();
     }
+
+    /**
+     * Finds a user.
+     */
+    @Test
+    public void findUser() throws Exception {
+        // stub for expected request to get the user
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        GitLabUserInfo user = client.findUser(1);
+        assertThat(user.getId(), is(1));
+    }
+
+    /**
+     * Attempts to find a user that doesn't exist, which should not be an error.
+     */
+    @Test
+    public void findNonexistentUser() throws Exception {
+        // stub for expected request to get the user
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        assertThat(client.findUser(1), is(nullValue()));
+    }
 }
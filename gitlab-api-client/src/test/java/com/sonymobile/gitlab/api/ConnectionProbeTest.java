@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.api;
+
+import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
+import com.sonymobile.gitlab.http.RequestScheduler;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests probing the connection of the GitLab API client.
+ */
+public class ConnectionProbeTest extends AbstractClientTest {
+    /** The path of the current user. */
+    private static final String USER_PATH = "/api/v3/user?private_token=" + PRIVATE_TOKEN;
+
+    /**
+     * Tests probing with sequential and concurrent requests.
+     */
+    @Test
+    public void probe() throws Exception {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/user.json")));
+
+        ConnectionProbeResult result = new ConnectionProbe(client)
+                .withSequentialRequests(5)
+                .withConcurrentRequests(4)
+                .run();
+
+        assertThat(result.getRequests(), is(9));
+        assertThat(result.getFailures(), is(0));
+        assertThat(result.isTimedOut(), is(false));
+        assertThat(result.isKeepAlive(), is(true));
+        assertThat(result.isCompressed(), is(false));
+        assertThat(result.getConnections(), is(greaterThan(0L)));
+        assertThat(result.getConnections(), is(lessThanOrEqualTo(5L)));
+        assertThat(result.getP50(TimeUnit.NANOSECONDS), is(lessThanOrEqualTo(result.getP99(TimeUnit.NANOSECONDS))));
+        assertThat(result.getThroughput(), is(greaterThan(0.0)));
+    }
+
+    /**
+     * Tests that the concurrent requests are in flight at once even if more than the limit of the scheduler.
+     */
+    @Test
+    public void concurrentRequestsInFlightAtOnce() throws Exception {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(1000)
+                        .withBodyFile("api/v3/user.json")));
+
+        long start = System.nanoTime();
+        ConnectionProbeResult result = new ConnectionProbe(client)
+                .withSequentialRequests(1)
+                .withConcurrentRequests(RequestScheduler.DEFAULT_LIMIT * 2)
+                .run();
+
+        assertThat(result.getRequests(), is(RequestScheduler.DEFAULT_LIMIT * 2 + 1));
+        // the probed client keeps its adaptive limit
+        assertThat(client.getScheduler().getLimit(), is(RequestScheduler.DEFAULT_LIMIT));
+        assertThat(client.getScheduler().getAdaptiveLimit(), is(notNullValue()));
+        assertThat(client.getMetrics().getEndpoint("GET", "/user").getRequests(), is(0L));
+        // a second wave of concurrent requests would take another second
+        assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.MILLISECONDS.toNanos(2800))));
+    }
+
+    /**
+     * Tests that compressed responses are detected.
+     */
+    @Test
+    public void compressedResponses() throws Exception {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBodyFile("api/v3/user.json.gz")));
+
+        ConnectionProbeResult result = new ConnectionProbe(client)
+                .withSequentialRequests(2)
+                .withConcurrentRequests(0)
+                .run();
+
+        assertThat(result.getRequests(), is(2));
+        assertThat(result.isCompressed(), is(true));
+    }
+
+    /**
+     * Tests that a probe stops at its timeout.
+     */
+    @Test
+    public void timeout() throws Exception {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(5000)
+                        .withBodyFile("api/v3/user.json")));
+
+        long start = System.nanoTime();
+        ConnectionProbeResult result = new ConnectionProbe(client)
+                .withTimeout(500, TimeUnit.MILLISECONDS)
+                .run();
+
+        assertThat(result.isTimedOut(), is(true));
+        assertThat(result.getRequests(), is(0));
+        assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.SECONDS.toNanos(3))));
+
+        // the probed client isn't shut down
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+        assertThat(client.getUser(1).getId(), is(1));
+    }
+
+    /**
+     * Tests that an incorrect private token fails the probe.
+     */
+    @Test
+    public void incorrectToken() throws Exception {
+        stubFor(get(urlEqualTo(USER_PATH))
+                .willReturn(aResponse()
+                        .withStatus(401)));
+
+        thrown.expect(AuthenticationFailedException.class);
+
+        new ConnectionProbe(client).run();
+    }
+}
@@ -26,6 +26,7 @@
 package com.sonymobile.gitlab.api;
 
 import com.sonymobile.gitlab.exceptions.UserNotFoundException;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
 import com.sonymobile.gitlab.model.GitLabSessionInfo;
 import com.sonymobile.gitlab.model.GitLabUserInfo;
 import org.junit.Before;
@@ -39,6 +40,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -90,6 +92,27 @@ public class UserImpersonationTest extends AbstractClientTest {
         assertThat(newClient.getProxyPort(), is(1234));
     }
 
+    /**
+     * Checks that the impersonating client shares the user identities of the client creating it.
+     */
+    @Test
+    public void sharesUserIdentities() throws Exception {
+        // stub for expected requests to get the members of a group as both clients
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1/members.json")));
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&sudo=1&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1/members.json")));
+
+        GitLabGroupMemberInfo member = client.getGroupMembers(1).get(0);
+        GitLabGroupMemberInfo impersonatedMember = newClient.getGroupMembers(1).get(0);
+
+        assertThat(impersonatedMember.getIdentity(), is(sameInstance(member.getIdentity())));
+    }
+
     /**
      * Tests making a GET request impersonating a user.
      */
@@ -121,6 +144,22 @@ public class UserImpersonationTest extends AbstractClientTest {
         newClient.getCurrentUser();
     }
 
+    /**
+     * Tests finding a resource impersonating a user which doesn't exist, which should be an error.
+     */
+    @Test
+    public void findUserForMissingUser() throws Exception {
+        // stub for expected request to get a user
+        stubFor(get(urlEqualTo("/api/v3/users/1?sudo=1&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("api/v3/user_missing.json")));
+
+        thrown.expect(UserNotFoundException.class);
+
+        newClient.findUser(1);
+    }
+
     /**
      * Tests making a POST request impersonating a user.
      */
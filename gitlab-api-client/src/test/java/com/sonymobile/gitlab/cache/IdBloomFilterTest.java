@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests filtering IDs with an {@link IdBloomFilter}.
+ */
+public class IdBloomFilterTest {
+    /**
+     * Every ID added to the filter should be reported as existing.
+     */
+    @Test
+    public void containsAllIds() {
+        IdBloomFilter filter = IdBloomFilter.of(evenIds(10000));
+
+        for (int id = 0; id < 20000; id += 2) {
+            assertThat(filter.mightContain(id), is(true));
+        }
+    }
+
+    /**
+     * Only a small share of missing IDs should be reported as existing.
+     */
+    @Test
+    public void fewFalsePositives() {
+        IdBloomFilter filter = IdBloomFilter.of(evenIds(10000));
+
+        int falsePositives = 0;
+        for (int id = 1; id < 20000; id += 2) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        // allow twice the expected rate
+        assertThat(falsePositives, is(lessThan(200)));
+    }
+
+    /**
+     * IDs greater than any ID in the filter should be reported as existing.
+     */
+    @Test
+    public void containsNewIds() {
+        IdBloomFilter filter = IdBloomFilter.of(new int[] {1, 2, 3});
+
+        assertThat(filter.getMaxId(), is(3));
+        assertThat(filter.mightContain(4), is(true));
+    }
+
+    /**
+     * Creates an array of even IDs.
+     *
+     * @param count the number of IDs
+     * @return the IDs
+     */
+    private static int[] evenIds(int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = 2 * i;
+        }
+        return ids;
+    }
+}
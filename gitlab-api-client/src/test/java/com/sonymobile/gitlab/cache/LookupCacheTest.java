@@ -0,0 +1,249 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import com.sonymobile.gitlab.api.AbstractClientTest;
+import com.sonymobile.gitlab.exceptions.UserNotFoundException;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests looking up users and groups with a {@link GitLabLookupCache}.
+ */
+public class LookupCacheTest extends AbstractClientTest {
+    /** The current time of the cache. */
+    private long now;
+
+    /** The cache to test. */
+    private GitLabLookupCache cache;
+
+    /**
+     * Sets up a cache with a controlled clock.
+     */
+    @Before
+    public void setUp() {
+        super.setUp();
+
+        now = 0;
+        cache = new GitLabLookupCache(client) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    /**
+     * A missing user should only be requested once until the entry expires.
+     */
+    @Test
+    public void rememberMissingUser() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        assertThat(cache.findUser(4), is(nullValue()));
+        assertThat(cache.findUser(4), is(nullValue()));
+        verify(1, getRequestedFor(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN)));
+        assertThat(cache.getMissesAvoided(), is(1L));
+
+        // the entry should expire
+        now += GitLabLookupCache.DEFAULT_NEGATIVE_TTL;
+        assertThat(cache.findUser(4), is(nullValue()));
+        verify(2, getRequestedFor(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * A user should only be requested once while it is fresh.
+     */
+    @Test
+    public void cacheUser() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        assertThat(cache.getUser(1).getId(), is(1));
+        now += GitLabLookupCache.DEFAULT_TTL / 2;
+        assertThat(cache.getUser(1).getId(), is(1));
+
+        verify(1, getRequestedFor(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * Group members should only be requested once while they are fresh.
+     */
+    @Test
+    public void cacheGroupMembers() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1/members.json")));
+
+        assertThat(cache.getGroupMembers(1), hasSize(3));
+        assertThat(cache.getGroupMembers(1), hasSize(3));
+
+        verify(1, getRequestedFor(
+                urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN)));
+        assertThat(cache.getGroupMembersCache().getFreshHits(), is(1L));
+    }
+
+    /**
+     * Group members should be requested again after a user is removed or a group is removed.
+     */
+    @Test
+    public void invalidateGroupMembersOnEvents() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1/members.json")));
+
+        cache.getGroupMembers(1);
+        cache.invalidate(new GitLabSystemHookEvent(jsonFile("systemhooks/user_create").loadAsObject()
+                .put("event_name", "user_destroy")));
+        cache.getGroupMembers(1);
+        cache.invalidate(new GitLabSystemHookEvent(jsonFile("systemhooks/group_create").loadAsObject()
+                .put("event_name", "group_destroy")
+                .put("group_id", 1)));
+        cache.getGroupMembers(1);
+
+        verify(3, getRequestedFor(
+                urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * Getting a missing user should still throw an exception.
+     */
+    @Test
+    public void getMissingUser() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        thrown.expect(UserNotFoundException.class);
+
+        cache.getUser(4);
+    }
+
+    /**
+     * Users missing in the last full sweep should not be requested when the existence filter is enabled.
+     */
+    @Test
+    public void filterMissingUsers() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users.json")));
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        cache.withExistenceFilter().getUsers();
+
+        // users 1 to 3 exist and user 0 doesn't
+        assertThat(cache.findUser(0), is(nullValue()));
+        verify(0, getRequestedFor(urlEqualTo("/api/v3/users/0?private_token=" + PRIVATE_TOKEN)));
+
+        // existing users are still requested
+        assertThat(cache.findUser(1).getId(), is(1));
+        verify(1, getRequestedFor(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * Users on later pages of the last full sweep should not be filtered as missing.
+     */
+    @Test
+    public void filterWithAllPages() throws Exception {
+        // the first page links to a second page with lower IDs
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Link", "<http://localhost/api/v3/users?page=2&per_page=100>; rel=\"next\"")
+                        .withBodyFile("api/v3/users_page2.json")));
+        stubFor(get(urlEqualTo("/api/v3/users?page=2&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users.json")));
+        stubFor(get(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("api/v3/users/1.json")));
+
+        assertThat(cache.withExistenceFilter().getUsers(), hasSize(4));
+
+        // user 1 is only on the second page
+        assertThat(cache.findUser(1).getId(), is(1));
+        verify(1, getRequestedFor(urlEqualTo("/api/v3/users/1?private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * An invalidated user should be requested again.
+     */
+    @Test
+    public void invalidateMissingUser() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        cache.findUser(4);
+        cache.invalidateUser(4);
+        cache.findUser(4);
+
+        verify(2, getRequestedFor(urlEqualTo("/api/v3/users/4?private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * A missing group should only be requested once until the entry expires.
+     */
+    @Test
+    public void rememberMissingGroup() throws Exception {
+        stubFor(get(urlEqualTo("/api/v3/groups/2?private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBodyFile("/404.json")));
+
+        assertThat(cache.findGroup(2), is(nullValue()));
+        assertThat(cache.findGroup(2), is(nullValue()));
+        verify(1, getRequestedFor(urlEqualTo("/api/v3/groups/2?private_token=" + PRIVATE_TOKEN)));
+    }
+}
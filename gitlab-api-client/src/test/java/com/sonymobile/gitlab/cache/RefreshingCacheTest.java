@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.cache;
+
+import com.sonymobile.gitlab.exceptions.ApiConnectionFailureException;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests serving stale values and refreshing them with a {@link RefreshingCache}.
+ */
+public class RefreshingCacheTest {
+    /** The time in milliseconds a value is fresh. */
+    private static final long TTL = 1000;
+
+    /** The time in milliseconds a value may be stale. */
+    private static final long MAX_STALENESS = 5000;
+
+    /** The current time of the cache. */
+    private long now;
+
+    /** The number of loaded values. */
+    private int loads;
+
+    /** Whether loading values should fail. */
+    private boolean failLoads;
+
+    /** The background refreshes waiting to run. */
+    private List<Runnable> refreshes;
+
+    /** The cache to test. */
+    private RefreshingCache<String, String> cache;
+
+    /**
+     * Creates a cache loading numbered values with background refreshes run by the test.
+     */
+    @Before
+    public void setUp() {
+        now = 0;
+        loads = 0;
+        failLoads = false;
+        refreshes = new ArrayList<Runnable>();
+
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                refreshes.add(runnable);
+            }
+        };
+        cache = new RefreshingCache<String, String>(executor, TTL, MAX_STALENESS, 10) {
+            @Override
+            protected String loadValue(String key) throws GitLabApiException {
+                if (failLoads) {
+                    throw new ApiConnectionFailureException("Could not connect to API");
+                }
+                return key + ++loads;
+            }
+
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    /**
+     * A fresh value should be served without loading it again.
+     */
+    @Test
+    public void serveFreshValue() throws Exception {
+        assertThat(cache.get("a"), is("a1"));
+        now += TTL / 2;
+        assertThat(cache.get("a"), is("a1"));
+
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getFreshHits(), is(1L));
+        assertThat(refreshes.size(), is(0));
+    }
+
+    /**
+     * A value read often should be kept when the cache is full, while only making room for one value at a time.
+     */
+    @Test
+    public void keepHotValueWhenFull() throws Exception {
+        cache.get("hot");
+        for (int i = 0; i < 30; i++) {
+            now++;
+            cache.get("cold" + i);
+            assertThat(cache.get("hot"), is("hot1"));
+        }
+
+        assertThat(cache.size(), is(10));
+        // the most recently loaded values weren't thrown away with the rest
+        assertThat(cache.get("cold29"), is("cold2931"));
+        assertThat(cache.get("cold28"), is("cold2830"));
+        assertThat(cache.getMisses(), is(31L));
+    }
+
+    /**
+     * A stale value should be served while being refreshed in the background.
+     */
+    @Test
+    public void serveStaleValueWhileRefreshing() throws Exception {
+        cache.get("a");
+        now += TTL + 100;
+
+        assertThat(cache.get("a"), is("a1"));
+        // only a single refresh should be started
+        assertThat(cache.get("a"), is("a1"));
+        assertThat(refreshes.size(), is(1));
+
+        refreshes.get(0).run();
+        assertThat(cache.get("a"), is("a2"));
+
+        assertThat(cache.getStaleHits(), is(2L));
+        assertThat(cache.getAverageStaleness(), is(100L));
+        assertThat(cache.getMaxStaleness(), is(100L));
+    }
+
+    /**
+     * A value stale for too long should not be served.
+     */
+    @Test
+    public void reloadValueStaleForTooLong() throws Exception {
+        cache.get("a");
+        now += TTL + MAX_STALENESS;
+
+        assertThat(cache.get("a"), is("a2"));
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(refreshes.size(), is(0));
+    }
+
+    /**
+     * A frequently read value should be refreshed before it becomes stale.
+     */
+    @Test
+    public void refreshHotValueAhead() throws Exception {
+        cache.get("a");
+        now += TTL - 1;
+
+        cache.get("a");
+        cache.get("a");
+        assertThat(refreshes.size(), is(0));
+        cache.get("a");
+        assertThat(refreshes.size(), is(1));
+
+        refreshes.get(0).run();
+        now += TTL / 2;
+        assertThat(cache.get("a"), is("a2"));
+        assertThat(cache.getStaleHits(), is(0L));
+    }
+
+    /**
+     * The stale value should be kept when a refresh fails.
+     */
+    @Test
+    public void keepStaleValueWhenRefreshFails() throws Exception {
+        cache.get("a");
+        now += TTL;
+        failLoads = true;
+
+        cache.get("a");
+        refreshes.get(0).run();
+
+        assertThat(cache.getFailedRefreshes(), is(1L));
+        assertThat(cache.get("a"), is("a1"));
+        // a new refresh should be started after the failure
+        assertThat(refreshes.size(), is(2));
+    }
+
+    /**
+     * A refresh running when the value is invalidated should not restore the value.
+     */
+    @Test
+    public void dropRefreshOfInvalidatedValue() throws Exception {
+        cache.get("a");
+        now += TTL + 100;
+        cache.get("a");
+
+        cache.invalidate("a");
+        refreshes.get(0).run();
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.get("a"), is("a3"));
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    /**
+     * Callers missing the same key should share a single load.
+     */
+    @Test
+    public void shareLoadInFlight() throws Exception {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch finishLoad = new CountDownLatch(1);
+        final AtomicInteger slowLoads = new AtomicInteger();
+        final RefreshingCache<String, String> slowCache =
+                new RefreshingCache<String, String>(null, TTL, MAX_STALENESS, 10) {
+                    @Override
+                    protected String loadValue(String key) throws GitLabApiException {
+                        loadStarted.countDown();
+                        try {
+                            finishLoad.await();
+                        } catch (InterruptedException e) {
+                            throw new ApiConnectionFailureException("Interrupted", e);
+                        }
+                        return key + slowLoads.incrementAndGet();
+                    }
+                };
+
+        final List<String> values = new ArrayList<String>();
+        Thread first = readInThread(slowCache, values);
+        loadStarted.await();
+        Thread second = readInThread(slowCache, values);
+        // wait for the second caller to wait for the load of the first one
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+        finishLoad.countDown();
+        first.join();
+        second.join();
+
+        assertThat(slowLoads.get(), is(1));
+        assertThat(values.get(0), is("b1"));
+        assertThat(values.get(1), is("b1"));
+        assertThat(slowCache.getMisses(), is(2L));
+    }
+
+    /**
+     * Reads the value of a key from a cache in a thread of its own.
+     *
+     * @param cache  the cache
+     * @param values the list to add the value to
+     * @return the started thread
+     */
+    private static Thread readInThread(final RefreshingCache<String, String> cache, final List<String> values) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String value = cache.get("b");
+                    synchronized (values) {
+                        values.add(value);
+                    }
+                } catch (GitLabApiException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
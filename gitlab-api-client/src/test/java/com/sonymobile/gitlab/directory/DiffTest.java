@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.FullGitLabUserInfo;
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.ACCESS_LEVEL_CHANGED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.GROUP_CHANGED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.MEMBER_ADDED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.MEMBER_REMOVED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_BLOCKED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryChange.Type.USER_REMOVED;
+import static com.sonymobile.gitlab.directory.GitLabDirectoryDiff.compare;
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests comparing snapshots of a {@link GitLabDirectory} with {@link GitLabDirectoryDiff}.
+ */
+public class DiffTest {
+    /** The directory to take snapshots of. */
+    private GitLabDirectory directory;
+
+    /**
+     * Creates a directory with a user.
+     */
+    @Before
+    public void setUp() throws Exception {
+        directory = new GitLabDirectory();
+        apply(event("user_create"));
+    }
+
+    /**
+     * Compares a snapshot with itself.
+     */
+    @Test
+    public void compareSameSnapshot() {
+        GitLabDirectorySnapshot snapshot = directory.getSnapshot();
+
+        assertThat(compare(snapshot, snapshot), hasSize(0));
+    }
+
+    /**
+     * Adds a user to a group.
+     */
+    @Test
+    public void addMember() throws Exception {
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        apply(event("user_add_to_group"));
+
+        List<GitLabDirectoryChange> changes = compare(previous, directory.getSnapshot());
+        assertThat(changes, hasSize(1));
+        assertThat(changes.get(0).getType(), is(MEMBER_ADDED));
+        assertThat(changes.get(0).getUserId(), is(4));
+        assertThat(changes.get(0).getGroupId(), is(1));
+        assertThat(changes.get(0).getAccessLevel(), is(GitLabAccessLevel.MASTER));
+    }
+
+    /**
+     * Changes the access level of a group member.
+     */
+    @Test
+    public void changeAccessLevel() throws Exception {
+        apply(event("user_add_to_group"));
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        apply(event("user_add_to_group", "user_update_for_group")
+                .put("group_access", "Guest")
+                .put("updated_at", "2014-07-22T07:30:56Z"));
+
+        List<GitLabDirectoryChange> changes = compare(previous, directory.getSnapshot());
+        assertThat(changes, hasSize(1));
+        assertThat(changes.get(0).getType(), is(ACCESS_LEVEL_CHANGED));
+        assertThat(changes.get(0).getPreviousAccessLevel(), is(GitLabAccessLevel.MASTER));
+        assertThat(changes.get(0).getAccessLevel(), is(GitLabAccessLevel.GUEST));
+    }
+
+    /**
+     * Removes a user which is a member of a group.
+     */
+    @Test
+    public void removeUserWithMembership() throws Exception {
+        apply(event("user_add_to_group"));
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        apply(event("user_create", "user_destroy"));
+
+        List<GitLabDirectoryChange> changes = compare(previous, directory.getSnapshot());
+        assertThat(changes, hasSize(2));
+        assertThat(changes.get(0).getType(), is(USER_REMOVED));
+        assertThat(changes.get(0).getPreviousUser().getUsername(), is("username"));
+        assertThat(changes.get(1).getType(), is(MEMBER_REMOVED));
+        assertThat(changes.get(1).getPreviousAccessLevel(), is(GitLabAccessLevel.MASTER));
+    }
+
+    /**
+     * Blocks a user through a synchronization.
+     */
+    @Test
+    public void blockUser() throws Exception {
+        FullGitLabUserInfo user = jsonFile("api/v3/users/1").withType(FullGitLabUserInfo.class).loadAsObject();
+        FullGitLabUserInfo blockedUser = jsonFile("api/v3/users/1").withVariant("blocked")
+                .withType(FullGitLabUserInfo.class).loadAsObject();
+        directory.update(new GitLabDirectoryUpdate().withUsers(Collections.singletonList(user), 1000));
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        directory.update(new GitLabDirectoryUpdate().withUsers(Collections.singletonList(blockedUser), 2000));
+
+        List<GitLabDirectoryChange> changes = compare(previous, directory.getSnapshot());
+        assertThat(changes, hasSize(1));
+        assertThat(changes.get(0).getType(), is(USER_BLOCKED));
+        assertThat(changes.get(0).getUserId(), is(1));
+    }
+
+    /**
+     * Renames a group.
+     */
+    @Test
+    public void renameGroup() throws Exception {
+        apply(event("group_create"));
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        apply(event("group_create", "group_rename")
+                .put("path", "newpath")
+                .put("updated_at", "2014-07-22T07:30:54Z"));
+
+        List<GitLabDirectoryChange> changes = compare(previous, directory.getSnapshot());
+        assertThat(changes, hasSize(1));
+        assertThat(changes.get(0).getType(), is(GROUP_CHANGED));
+        assertThat(changes.get(0).getGroup().getPath(), is("newpath"));
+    }
+
+    /**
+     * Listeners should be notified of new snapshots.
+     */
+    @Test
+    public void notifyListener() throws Exception {
+        final GitLabDirectorySnapshot[] published = new GitLabDirectorySnapshot[2];
+        directory.addListener(new SnapshotListener() {
+            public void snapshotPublished(GitLabDirectorySnapshot previous, GitLabDirectorySnapshot current) {
+                published[0] = previous;
+                published[1] = current;
+            }
+        });
+        GitLabDirectorySnapshot previous = directory.getSnapshot();
+        apply(event("group_create"));
+
+        assertThat(published[0], is(sameInstance(previous)));
+        assertThat(published[1], is(sameInstance(directory.getSnapshot())));
+    }
+
+    /**
+     * Applies an event to the directory.
+     *
+     * @param jsonObject the JSON object of the event
+     */
+    private void apply(JSONObject jsonObject) {
+        directory.apply(new GitLabSystemHookEvent(jsonObject));
+    }
+
+    /**
+     * Loads an event from a JSON file.
+     *
+     * @param name the event name
+     * @return the JSON object of the event
+     */
+    private static JSONObject event(String name) throws Exception {
+        return jsonFile("systemhooks/" + name).loadAsObject();
+    }
+
+    /**
+     * Loads an event from a JSON file as another kind of event for the same object.
+     *
+     * @param name      the name of the event to load
+     * @param eventName the new event name
+     * @return the JSON object of the event
+     */
+    private static JSONObject event(String name, String eventName) throws Exception {
+        return event(name).put("event_name", eventName);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabGroupMemberInfo;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests applying system hook events to a {@link GitLabDirectory}.
+ */
+public class DirectoryTest {
+    /** The directory to test against. */
+    private GitLabDirectory directory;
+
+    /**
+     * Creates an empty directory.
+     */
+    @Before
+    public void setUp() {
+        directory = new GitLabDirectory();
+    }
+
+    /**
+     * Creates a user.
+     */
+    @Test
+    public void createUser() throws Exception {
+        assertThat(apply(event("user_create")), is(true));
+
+        assertThat(directory.getUser(4).getUsername(), is("username"));
+        assertThat(directory.getUser(4).isAdmin(), is(false));
+        assertThat(directory.getUserCount(), is(1));
+    }
+
+    /**
+     * Ignores a repeated event.
+     */
+    @Test
+    public void ignoreRepeatedEvent() throws Exception {
+        apply(event("user_create"));
+
+        assertThat(apply(event("user_create")), is(false));
+        assertThat(directory.getUserCount(), is(1));
+    }
+
+    /**
+     * Removes a user before the event creating it is delivered.
+     */
+    @Test
+    public void destroyUserBeforeCreate() throws Exception {
+        assertThat(apply(event("user_create", "user_destroy")), is(true));
+
+        assertThat(apply(event("user_create")), is(false));
+        assertThat(directory.getUser(4), is(nullValue()));
+    }
+
+    /**
+     * Renames a user before the event creating it is delivered.
+     */
+    @Test
+    public void renameUserBeforeCreate() throws Exception {
+        apply(event("user_create", "user_rename")
+                .put("username", "newname")
+                .put("updated_at", "2014-07-22T07:44:07Z"));
+
+        assertThat(apply(event("user_create")), is(false));
+        assertThat(directory.getUser(4).getUsername(), is("newname"));
+    }
+
+    /**
+     * Adds a user to a group.
+     */
+    @Test
+    public void addUserToGroup() throws Exception {
+        apply(event("user_create"));
+        apply(event("user_add_to_group"));
+
+        List<GitLabGroupMemberInfo> members = directory.getGroupMembers(1);
+        assertThat(members.size(), is(1));
+        assertThat(members.get(0).getUsername(), is("username"));
+        assertThat(members.get(0).getAccessLevel(), is(GitLabAccessLevel.MASTER));
+    }
+
+    /**
+     * Removes a user from a group before the event adding the user is delivered.
+     */
+    @Test
+    public void removeUserFromGroupBeforeAdd() throws Exception {
+        apply(event("user_create"));
+        apply(event("user_add_to_group", "user_remove_from_group"));
+
+        assertThat(apply(event("user_add_to_group")), is(false));
+        assertThat(directory.getAccessLevel(1, 4), is(GitLabAccessLevel.NONE));
+    }
+
+    /**
+     * Adds a user to a group again after being removed.
+     */
+    @Test
+    public void addUserToGroupAgain() throws Exception {
+        apply(event("user_create"));
+        apply(event("user_add_to_group"));
+        apply(event("user_add_to_group", "user_remove_from_group"));
+
+        assertThat(apply(event("user_add_to_group")
+                .put("created_at", "2014-07-22T07:30:56Z")
+                .put("group_access", "Developer")), is(true));
+        assertThat(directory.getAccessLevel(1, 4), is(GitLabAccessLevel.DEVELOPER));
+    }
+
+    /**
+     * Removes the memberships of a removed user.
+     */
+    @Test
+    public void destroyUserRemovesMemberships() throws Exception {
+        apply(event("user_create"));
+        apply(event("user_add_to_group"));
+        apply(event("user_create", "user_destroy"));
+
+        assertThat(directory.getAccessLevel(1, 4), is(GitLabAccessLevel.NONE));
+        assertThat(apply(event("user_add_to_group")), is(false));
+    }
+
+    /**
+     * Creates and removes a group.
+     */
+    @Test
+    public void createAndDestroyGroup() throws Exception {
+        apply(event("group_create"));
+        assertThat(directory.getGroup(2), is(notNullValue()));
+
+        apply(event("group_create", "group_destroy"));
+        assertThat(directory.getGroup(2), is(nullValue()));
+        assertThat(apply(event("group_create")), is(false));
+    }
+
+    /**
+     * A pinned snapshot shouldn't see later changes.
+     */
+    @Test
+    public void pinSnapshot() throws Exception {
+        apply(event("user_create"));
+        GitLabDirectorySnapshot snapshot = directory.getSnapshot();
+
+        apply(event("user_add_to_group"));
+        apply(event("user_create", "user_destroy"));
+
+        assertThat(snapshot.getUser(4).getUsername(), is("username"));
+        assertThat(snapshot.getGroupMembers(1), hasSize(0));
+        assertThat(directory.getSnapshot().getVersion(), is(snapshot.getVersion() + 2));
+    }
+
+    /**
+     * An event not changing anything shouldn't publish a new snapshot.
+     */
+    @Test
+    public void keepSnapshotForRepeatedEvent() throws Exception {
+        apply(event("user_create"));
+        GitLabDirectorySnapshot snapshot = directory.getSnapshot();
+
+        apply(event("user_create"));
+
+        assertThat(directory.getSnapshot(), is(sameInstance(snapshot)));
+    }
+
+    /**
+     * Ignores events not affecting the directory.
+     */
+    @Test
+    public void ignoreUnknownEvent() throws Exception {
+        assertThat(apply(event("project_create")), is(false));
+    }
+
+    /**
+     * Applies an event to the directory.
+     *
+     * @param jsonObject the JSON object of the event
+     * @return true if the directory was changed
+     */
+    private boolean apply(JSONObject jsonObject) {
+        return directory.apply(new GitLabSystemHookEvent(jsonObject));
+    }
+
+    /**
+     * Loads an event from a JSON file.
+     *
+     * @param name the event name
+     * @return the JSON object of the event
+     */
+    private static JSONObject event(String name) throws Exception {
+        return jsonFile("systemhooks/" + name).loadAsObject();
+    }
+
+    /**
+     * Loads an event from a JSON file as another kind of event for the same object.
+     *
+     * @param name      the name of the event to load
+     * @param eventName the new event name
+     * @return the JSON object of the event
+     */
+    private static JSONObject event(String name, String eventName) throws Exception {
+        return event(name).put("event_name", eventName);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.directory;
+
+import com.sonymobile.gitlab.api.AbstractClientTest;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.model.GitLabAccessLevel;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests synchronizing a {@link GitLabDirectory} with a {@link GitLabDirectorySynchronizer}.
+ */
+public class SynchronizerTest extends AbstractClientTest {
+    /** The current time of the synchronizer. */
+    private long now;
+
+    /** The directory to synchronize. */
+    private GitLabDirectory directory;
+
+    /** The synchronizer to test. */
+    private GitLabDirectorySynchronizer synchronizer;
+
+    /**
+     * Sets up a synchronizer with a controlled clock and stubs for the users, groups and group members.
+     */
+    @Before
+    public void setUp() {
+        super.setUp();
+
+        now = 1000;
+        directory = new GitLabDirectory();
+        synchronizer = new GitLabDirectorySynchronizer(client, directory) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/users.json")));
+        stubFor(get(urlEqualTo("/api/v3/groups?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups.json")));
+        stubFor(get(urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/groups/1/members.json")));
+    }
+
+    /**
+     * The first pass should fill the directory.
+     */
+    @Test
+    public void initialPass() throws Exception {
+        GitLabSyncResult result = synchronizer.synchronize();
+
+        assertThat(result.getUsersChanged(), is(3));
+        assertThat(result.getGroupsChanged(), is(1));
+        assertThat(result.getMembershipsChanged(), is(3));
+        assertThat(result.getGroupsSynchronized(), is(1));
+
+        assertThat(directory.getUser(3).isAdmin(), is(true));
+        assertThat(directory.getGroupMembers(1), hasSize(3));
+        assertThat(directory.getAccessLevel(1, 3), is(GitLabAccessLevel.OWNER));
+    }
+
+    /**
+     * A pass without changes on the server shouldn't change anything.
+     */
+    @Test
+    public void passWithoutChanges() throws Exception {
+        synchronizer.synchronize();
+        now = 2000;
+        GitLabSyncResult result = synchronizer.synchronize();
+
+        assertThat(result.getItemsChanged(), is(0));
+        assertThat(directory.getUserCount(), is(3));
+    }
+
+    /**
+     * Only new groups should have their members fetched when no other groups are fetched per pass.
+     */
+    @Test
+    public void onlyFetchMembersOfNewGroups() throws Exception {
+        synchronizer.withGroupsPerPass(0);
+        synchronizer.synchronize();
+        now = 2000;
+        GitLabSyncResult result = synchronizer.synchronize();
+
+        assertThat(result.getGroupsSynchronized(), is(0));
+        verify(1, getRequestedFor(
+                urlEqualTo("/api/v3/groups/1/members?page=1&per_page=100&private_token=" + PRIVATE_TOKEN)));
+    }
+
+    /**
+     * Users on later pages of the listing should be synchronized and kept by following passes.
+     */
+    @Test
+    public void fetchAllPages() throws Exception {
+        // the first page links to a second page
+        stubFor(get(urlEqualTo("/api/v3/users?page=1&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Link", "<http://localhost/api/v3/users?page=2&per_page=100>; rel=\"next\"")
+                        .withBodyFile("/api/v3/users.json")));
+        stubFor(get(urlEqualTo("/api/v3/users?page=2&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBodyFile("/api/v3/users_page2.json")));
+
+        synchronizer.synchronize();
+        now = 2000;
+        GitLabSyncResult result = synchronizer.synchronize();
+
+        assertThat(directory.getUserCount(), is(4));
+        assertThat(directory.getUser(4).getUsername(), is("otheruser"));
+        assertThat(result.getItemsChanged(), is(0));
+    }
+
+    /**
+     * A pass failing to fetch a later page of the listing shouldn't remove the users of that page.
+     */
+    @Test
+    public void keepUsersOfFailedPage() throws Exception {
+        fetchAllPages();
+        stubFor(get(urlEqualTo("/api/v3/users?page=2&per_page=100&private_token=" + PRIVATE_TOKEN))
+                .willReturn(aResponse()
+                        .withStatus(500)));
+        now = 3000;
+        try {
+            synchronizer.synchronize();
+            fail("The pass should fail");
+        } catch (GitLabApiException e) {
+            // the listing was incomplete
+        }
+
+        assertThat(directory.getUserCount(), is(4));
+    }
+
+    /**
+     * Changes from system hooks newer than a pass should be kept.
+     */
+    @Test
+    public void keepNewerHookChanges() throws Exception {
+        synchronizer.synchronize();
+        directory.apply(new GitLabSystemHookEvent(jsonFile("systemhooks/user_create").loadAsObject()
+                .put("event_name", "user_rename")
+                .put("user_id", 1)
+                .put("username", "newname")
+                .put("updated_at", "2030-01-01T00:00:00Z")));
+        now = 2000;
+        synchronizer.synchronize();
+
+        assertThat(directory.getUser(1).getUsername(), is("newname"));
+    }
+
+    /**
+     * A pass should override changes from system hooks received before it, whatever the clock of GitLab says.
+     */
+    @Test
+    public void orderHookChangesByReceiveTime() throws Exception {
+        synchronizer.synchronize();
+        // the clock of GitLab is ahead of the local clock
+        directory.apply(new GitLabSystemHookEvent(jsonFile("systemhooks/user_create").loadAsObject()
+                .put("event_name", "user_rename")
+                .put("user_id", 1)
+                .put("username", "newname")
+                .put("updated_at", "2030-01-01T00:00:00Z"), 1500));
+        now = 2000;
+        synchronizer.synchronize();
+
+        assertThat(directory.getUser(1).getUsername(), is("username"));
+    }
+}
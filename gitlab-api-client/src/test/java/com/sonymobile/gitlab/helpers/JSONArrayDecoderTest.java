@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.helpers;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests decoding JSON arrays with {@link JSONArrayDecoder} and splitting {@link JSONArrayIterator}s.
+ */
+public class JSONArrayDecoderTest {
+    /** A decoder reading the ID of the objects. */
+    private static final JSONObjectDecoder<Integer> ID_DECODER = new JSONObjectDecoder<Integer>() {
+        @Override
+        public Integer decode(JSONObject jsonObject) {
+            return jsonObject.getInt("id");
+        }
+    };
+
+    /** The executor to decode in parallel with. */
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Splitting an iterator should give two iterators covering disjoint halves of the array.
+     */
+    @Test
+    public void splitIterator() {
+        JSONArrayIterator secondHalf = JSONArrayIterator.iterator(createArray(5));
+        JSONArrayIterator firstHalf = secondHalf.split();
+
+        assertThat(firstHalf.getRemaining(), is(2));
+        assertThat(secondHalf.getRemaining(), is(3));
+        assertThat(firstHalf.next().getInt("id"), is(0));
+        assertThat(secondHalf.next().getInt("id"), is(2));
+    }
+
+    /**
+     * An iterator with a single remaining element can't be split.
+     */
+    @Test
+    public void splitSingleElementIterator() {
+        assertThat(JSONArrayIterator.iterator(createArray(1)).split(), is(nullValue()));
+    }
+
+    /**
+     * Decoding a large array in parallel should give the same result as decoding it sequentially.
+     */
+    @Test
+    public void decodeInParallel() {
+        JSONArray array = createArray(10000);
+
+        List<Integer> elements = JSONArrayDecoder.decode(array, ID_DECODER, executor, 0);
+
+        assertThat(elements, hasSize(10000));
+        assertThat(elements, is(JSONArrayDecoder.decode(array, ID_DECODER)));
+    }
+
+    /**
+     * Decoding a small array should work without an executor.
+     */
+    @Test
+    public void decodeWithoutExecutor() {
+        List<Integer> elements = JSONArrayDecoder.decode(createArray(3), ID_DECODER, null);
+
+        assertThat(elements, hasSize(3));
+        assertThat(elements.get(2), is(2));
+    }
+
+    /**
+     * Exceptions thrown by the decoder on another thread should be rethrown.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rethrowDecoderException() {
+        JSONArray array = createArray(10000);
+        array.getJSONObject(9999).remove("id");
+
+        JSONArrayDecoder.decode(array, new JSONObjectDecoder<Integer>() {
+            @Override
+            public Integer decode(JSONObject jsonObject) {
+                if (!jsonObject.has("id")) {
+                    throw new IllegalArgumentException("Malformed JSON object");
+                }
+                return jsonObject.getInt("id");
+            }
+        }, executor, 0);
+    }
+
+    /**
+     * Creates a JSON array of objects with increasing IDs.
+     *
+     * @param length the length of the array
+     * @return a JSON array
+     */
+    private static JSONArray createArray(int length) {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < length; i++) {
+            array.put(new JSONObject().put("id", i));
+        }
+        return array;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests adapting the number of requests in flight with an {@link AdaptiveLimit}.
+ */
+public class AdaptiveLimitTest {
+    /** The latency of a server without queueing. */
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** The limit to test. */
+    private AdaptiveLimit limit;
+
+    /**
+     * Creates a limit starting at 5 requests in flight.
+     */
+    @Before
+    public void setUp() {
+        limit = new AdaptiveLimit(5, 1, 20);
+    }
+
+    /**
+     * Tests that the limit grows to the highest limit while the latency is flat.
+     */
+    @Test
+    public void growWithFlatLatency() {
+        for (int i = 0; i < 100; i++) {
+            limit.update(LATENCY, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit(), is(20));
+        assertThat(limit.getShortLatency(TimeUnit.MILLISECONDS), is(100L));
+        assertThat(limit.getLongLatency(TimeUnit.MILLISECONDS), is(100L));
+    }
+
+    /**
+     * Tests that the limit doesn't grow while most of it is unused.
+     */
+    @Test
+    public void keepLimitWhenUnused() {
+        for (int i = 0; i < 100; i++) {
+            limit.update(LATENCY, 1, false);
+        }
+
+        assertThat(limit.getLimit(), is(5));
+    }
+
+    /**
+     * Tests that the limit shrinks when the server starts queueing requests.
+     */
+    @Test
+    public void shrinkWhenQueueing() {
+        for (int i = 0; i < 100; i++) {
+            limit.update(LATENCY, limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit(), is(20));
+
+        // the server can only handle 5 requests at once
+        for (int i = 0; i < 200; i++) {
+            int inFlight = limit.getLimit();
+            limit.update(LATENCY * Math.max(inFlight, 5) / 5, inFlight, false);
+        }
+        assertThat(limit.getLimit(), is(lessThan(10)));
+        assertThat(limit.getLimit(), is(greaterThan(4)));
+        assertThat(limit.getLongLatency(TimeUnit.MILLISECONDS), is(lessThan(110L)));
+    }
+
+    /**
+     * Tests that the long-term latency follows a server which has become slower for good.
+     */
+    @Test
+    public void followSlowerServer() {
+        for (int i = 0; i < 100; i++) {
+            limit.update(LATENCY, limit.getLimit(), false);
+        }
+        for (int i = 0; i < 2000; i++) {
+            limit.update(4 * LATENCY, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLongLatency(TimeUnit.MILLISECONDS), is(greaterThan(300L)));
+        assertThat(limit.getLimit(), is(20));
+    }
+
+    /**
+     * Tests that dropped requests cut the limit down to the lowest limit.
+     */
+    @Test
+    public void backOffWhenDropped() {
+        limit.update(LATENCY, 5, true);
+        assertThat(limit.getLimit(), is(4));
+
+        for (int i = 0; i < 100; i++) {
+            limit.update(LATENCY, limit.getLimit(), true);
+        }
+        assertThat(limit.getLimit(), is(1));
+    }
+
+    /**
+     * Tests that invalid bounds are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInitialLimitOutOfBounds() {
+        new AdaptiveLimit(30, 1, 20);
+    }
+
+    /**
+     * Tests that the scheduler follows the adaptive limit.
+     */
+    @Test
+    public void adaptSchedulerLimit() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler().withAdaptiveLimit(limit);
+        assertThat(scheduler.getLimit(), is(5));
+
+        scheduler.acquire(RequestPriority.INTERACTIVE);
+        scheduler.release(LATENCY, true);
+        assertThat(scheduler.getLimit(), is(4));
+
+        scheduler.setLimit(3);
+        assertThat(scheduler.getAdaptiveLimit() == null, is(true));
+    }
+}
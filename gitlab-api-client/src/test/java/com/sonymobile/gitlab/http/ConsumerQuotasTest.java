@@ -0,0 +1,210 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import com.sonymobile.gitlab.exceptions.QuotaExceededException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests enforcing the quotas of consumers with {@link ConsumerQuotas}.
+ */
+public class ConsumerQuotasTest {
+    /** A rule for testing exceptions. */
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /** The quotas to test. */
+    private ConsumerQuotas quotas;
+
+    /**
+     * Creates quotas allowing two requests in flight per consumer without waiting.
+     */
+    @Before
+    public void setUp() {
+        quotas = new ConsumerQuotas()
+                .withDefaultQuota(new ConsumerQuota(2, 0))
+                .withMaxWait(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Clears the consumer of the thread.
+     */
+    @After
+    public void tearDown() {
+        RequestContext.setConsumer(null);
+    }
+
+    /**
+     * Tests identifying the consumer of a request.
+     */
+    @Test
+    public void resolveConsumer() {
+        assertThat(quotas.resolveConsumer(), is(ConsumerQuotas.UNIDENTIFIED));
+
+        quotas.withResolver(new ConsumerResolver() {
+            @Override
+            public String resolveConsumer() {
+                return "resolved";
+            }
+        });
+        assertThat(quotas.resolveConsumer(), is("resolved"));
+
+        // an explicit consumer wins
+        RequestContext.setConsumer("tagged");
+        assertThat(quotas.resolveConsumer(), is("tagged"));
+    }
+
+    /**
+     * Tests that a consumer is rejected when it has too many requests in flight.
+     */
+    @Test
+    public void rejectOverConcurrency() throws Exception {
+        RequestContext.setConsumer("scanner");
+        quotas.acquire();
+        quotas.acquire();
+
+        thrown.expect(QuotaExceededException.class);
+        try {
+            quotas.acquire();
+        } finally {
+            ConsumerUsage usage = quotas.getUsage("scanner");
+            assertThat(usage.getInFlight(), is(2));
+            assertThat(usage.getRequests(), is(2L));
+            assertThat(usage.getRejected(), is(1L));
+        }
+    }
+
+    /**
+     * Tests that consumers have bulkheads of their own.
+     */
+    @Test
+    public void isolateConsumers() throws Exception {
+        RequestContext.setConsumer("scanner");
+        quotas.acquire();
+        quotas.acquire();
+
+        RequestContext.setConsumer("other");
+        quotas.acquire();
+
+        assertThat(quotas.getUsages().size(), is(2));
+        assertThat(quotas.getUsages().get(0).getConsumer(), is("other"));
+        assertThat(quotas.getUsages().get(0).getInFlight(), is(1));
+    }
+
+    /**
+     * Tests that a released request lets the next request through.
+     */
+    @Test
+    public void releaseRequest() throws Exception {
+        RequestContext.setConsumer("scanner");
+        ConsumerUsage usage = quotas.acquire();
+        quotas.acquire();
+        quotas.release(usage, TimeUnit.MILLISECONDS.toNanos(10));
+        quotas.acquire();
+
+        assertThat(usage.getInFlight(), is(2));
+        assertThat(usage.getPeakInFlight(), is(2));
+        assertThat(usage.getAverageTime(TimeUnit.MILLISECONDS), is(10L));
+    }
+
+    /**
+     * Tests that a consumer is rejected when exceeding its rate.
+     */
+    @Test
+    public void rejectOverRate() throws Exception {
+        quotas.withQuotas(Collections.singletonMap("scanner", new ConsumerQuota(0, 2)));
+        RequestContext.setConsumer("scanner");
+        // the burst is a second worth of requests
+        quotas.release(quotas.acquire(), 0);
+        quotas.release(quotas.acquire(), 0);
+
+        thrown.expect(QuotaExceededException.class);
+        quotas.acquire();
+    }
+
+    /**
+     * Tests that the requests left in the burst of a rate limited consumer are available.
+     */
+    @Test
+    public void availableRequests() throws Exception {
+        quotas.withQuotas(Collections.singletonMap("scanner", new ConsumerQuota(0, 2)));
+        RequestContext.setConsumer("scanner");
+        quotas.release(quotas.acquire(), 0);
+
+        assertThat(quotas.getUsage("scanner").getAvailableRequests(), is(closeTo(1, 0.1)));
+        assertThat(quotas.getUsage("other").getAvailableRequests(), is(Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * Tests that a request waits for the rate when the wait is short enough.
+     */
+    @Test
+    public void waitForRate() throws Exception {
+        quotas.withQuotas(Collections.singletonMap("scanner", new ConsumerQuota(0, 100)))
+                .withMaxWait(1, TimeUnit.SECONDS);
+        RequestContext.setConsumer("scanner");
+
+        for (int i = 0; i < 105; i++) {
+            quotas.release(quotas.acquire(), 0);
+        }
+
+        assertThat(quotas.getUsage("scanner").getRequests(), is(105L));
+        assertThat(quotas.getUsage("scanner").getRejected(), is(0L));
+        assertThat(quotas.getQuota("scanner"), is(new ConsumerQuota(0, 100)));
+        assertThat(quotas.getQuota("other"), is(new ConsumerQuota(2, 0)));
+    }
+
+    /**
+     * Tests that background tasks keep the consumer of the thread creating them.
+     */
+    @Test
+    public void keepConsumerInBackground() {
+        RequestContext.setConsumer("scanner");
+        final String[] consumer = new String[1];
+        Runnable task = RequestContext.background(new Runnable() {
+            @Override
+            public void run() {
+                consumer[0] = RequestContext.getConsumer();
+            }
+        });
+        RequestContext.setConsumer(null);
+        task.run();
+
+        assertThat(consumer[0], is("scanner"));
+        assertThat(RequestContext.getConsumer() == null, is(true));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests deciding when and how often to hedge with a {@link HedgingPolicy}.
+ */
+public class HedgingPolicyTest {
+    /** The policy to test. */
+    private HedgingPolicy policy;
+
+    /**
+     * Creates a policy hedging after the 95th percentile with a 10 % budget.
+     */
+    @Before
+    public void setUp() {
+        policy = new HedgingPolicy().withBudget(10).withMinDelay(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tests that requests aren't hedged before enough latencies have been recorded.
+     */
+    @Test
+    public void waitForLatencies() {
+        for (int i = 0; i < 19; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(policy.getDelay(TimeUnit.MILLISECONDS), is(-1L));
+
+        policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(policy.getDelay(TimeUnit.MILLISECONDS), is(10L));
+    }
+
+    /**
+     * Tests that the delay is the percentile of the recent latencies.
+     */
+    @Test
+    public void delayByPercentile() {
+        // latencies of 1 to 96 ms
+        for (int i = 1; i <= 96; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertThat(policy.getDelay(TimeUnit.MILLISECONDS), is(92L));
+
+        policy.withPercentile(0.5);
+        assertThat(policy.getDelay(TimeUnit.MILLISECONDS), is(48L));
+
+        policy.withMinDelay(60, TimeUnit.MILLISECONDS);
+        assertThat(policy.getDelay(TimeUnit.MILLISECONDS), is(60L));
+    }
+
+    /**
+     * Tests that hedges are limited by the budget.
+     */
+    @Test
+    public void limitHedgesByBudget() {
+        int hedges = 0;
+        for (int i = 0; i < 1000; i++) {
+            policy.recordRequest();
+            if (policy.tryHedge()) {
+                hedges++;
+            }
+        }
+
+        // at most one hedge per ten requests
+        assertThat(hedges, is(lessThan(101)));
+        assertThat(hedges, is(greaterThan(98)));
+        assertThat(policy.getHedges(), is((long)hedges));
+        assertThat(policy.getRequests(), is(1000L));
+    }
+
+    /**
+     * Tests that only a few hedges can be saved up.
+     */
+    @Test
+    public void capSavedHedges() {
+        for (int i = 0; i < 1000; i++) {
+            policy.recordRequest();
+        }
+
+        int hedges = 0;
+        while (policy.tryHedge()) {
+            hedges++;
+        }
+        assertThat(hedges, is(10));
+    }
+}
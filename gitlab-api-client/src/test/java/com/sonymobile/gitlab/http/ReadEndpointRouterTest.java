@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests routing read requests to read endpoints.
+ */
+public class ReadEndpointRouterTest {
+    /** One millisecond in nanoseconds. */
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Tests that the endpoint with the lowest latency is chosen.
+     */
+    @Test
+    public void chooseLowestLatency() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a", "http://b"));
+        ReadEndpoint a = router.getEndpoints().get(0);
+        ReadEndpoint b = router.getEndpoints().get(1);
+        router.release(router.acquire(), 50 * MILLISECOND, true);
+        router.release(router.acquire(), 10 * MILLISECOND, true);
+
+        assertThat(a.getLatency(TimeUnit.MILLISECONDS), is(50L));
+        assertThat(b.getLatency(TimeUnit.MILLISECONDS), is(10L));
+        assertThat(router.acquire(), is(sameInstance(b)));
+    }
+
+    /**
+     * Tests that requests in flight spread the load over endpoints.
+     */
+    @Test
+    public void spreadRequestsInFlight() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a", "http://b"));
+        ReadEndpoint a = router.getEndpoints().get(0);
+        ReadEndpoint b = router.getEndpoints().get(1);
+        router.release(router.acquire(), 20 * MILLISECOND, true);
+        router.release(router.acquire(), 30 * MILLISECOND, true);
+
+        assertThat(router.acquire(), is(sameInstance(a)));
+        // a scores 40 ms with one request in flight
+        assertThat(router.acquire(), is(sameInstance(b)));
+        assertThat(a.getInFlight(), is(1));
+        assertThat(b.getInFlight(), is(1));
+    }
+
+    /**
+     * Tests that the latency is a moving average.
+     */
+    @Test
+    public void averageLatency() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a"));
+        router.release(router.acquire(), 100 * MILLISECOND, true);
+        router.release(router.acquire(), 200 * MILLISECOND, true);
+
+        assertThat(router.getEndpoints().get(0).getLatency(TimeUnit.MILLISECONDS), is(130L));
+    }
+
+    /**
+     * Tests that a failing endpoint is taken out of rotation.
+     */
+    @Test
+    public void skipFailingEndpoint() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a", "http://b"));
+        ReadEndpoint a = router.getEndpoints().get(0);
+        ReadEndpoint b = router.getEndpoints().get(1);
+        router.release(router.acquire(), MILLISECOND, false);
+
+        assertThat(a.isHealthy(), is(false));
+        assertThat(router.acquire(), is(sameInstance(b)));
+        assertThat(router.acquire(), is(sameInstance(b)));
+    }
+
+    /**
+     * Tests that the host is used when all endpoints are failing.
+     */
+    @Test
+    public void useHostWhenAllFailing() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a"));
+        router.release(router.acquire(), MILLISECOND, false);
+
+        assertThat(router.acquire(), is(nullValue()));
+    }
+
+    /**
+     * Tests that a single request probes a failing endpoint after the cooldown.
+     */
+    @Test
+    public void probeAfterCooldown() throws Exception {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a"))
+                .withCooldown(10, TimeUnit.MILLISECONDS);
+        ReadEndpoint a = router.getEndpoints().get(0);
+        router.release(router.acquire(), MILLISECOND, false);
+        Thread.sleep(20);
+
+        ReadEndpoint probe = router.acquire();
+        assertThat(probe, is(sameInstance(a)));
+        assertThat(router.acquire(), is(nullValue()));
+
+        router.release(probe, MILLISECOND, true);
+        assertThat(a.isHealthy(), is(true));
+        assertThat(router.acquire(), is(sameInstance(a)));
+    }
+
+    /**
+     * Tests that a passed health check takes a failing endpoint back into rotation.
+     */
+    @Test
+    public void recoverOnHealthCheck() {
+        ReadEndpointRouter router = new ReadEndpointRouter(Arrays.asList("http://a"));
+        ReadEndpoint a = router.getEndpoints().get(0);
+        router.release(router.acquire(), MILLISECOND, false);
+        router.recordHealthCheck(a, MILLISECOND, true);
+
+        assertThat(router.acquire(), is(sameInstance(a)));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.sonymobile.gitlab.http.RequestPriority.BACKGROUND;
+import static com.sonymobile.gitlab.http.RequestPriority.INTERACTIVE;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests scheduling requests by priority with a {@link RequestScheduler}.
+ */
+public class RequestSchedulerTest {
+    /** The scheduler to test. */
+    private RequestScheduler scheduler;
+
+    /** The priorities of the requests in the order they were granted a slot. */
+    private List<RequestPriority> granted;
+
+    /** The threads making requests. */
+    private List<Thread> threads;
+
+    /**
+     * Creates a scheduler allowing a single request in flight.
+     */
+    @Before
+    public void setUp() {
+        scheduler = new RequestScheduler(1);
+        granted = Collections.synchronizedList(new ArrayList<RequestPriority>());
+        threads = new ArrayList<Thread>();
+    }
+
+    /**
+     * Stops any threads still waiting.
+     */
+    @After
+    public void tearDown() throws Exception {
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Tests that interactive requests get ahead of background requests while background requests get their share.
+     */
+    @Test
+    public void shareSlotsByWeight() throws Exception {
+        scheduler.acquire(INTERACTIVE);
+        startRequests(BACKGROUND, 5);
+        startRequests(INTERACTIVE, 5);
+        awaitQueueDepth(BACKGROUND, 5);
+        awaitQueueDepth(INTERACTIVE, 5);
+
+        scheduler.release();
+        joinRequests();
+
+        // one background request in five while both classes are waiting
+        assertThat(granted, is(Arrays.asList(INTERACTIVE, BACKGROUND, INTERACTIVE, INTERACTIVE, INTERACTIVE,
+                INTERACTIVE, BACKGROUND, BACKGROUND, BACKGROUND, BACKGROUND)));
+        assertThat(scheduler.getDispatched(INTERACTIVE), is(6L));
+        assertThat(scheduler.getDispatched(BACKGROUND), is(5L));
+    }
+
+    /**
+     * Tests that requests waiting alone are served in order of arrival.
+     */
+    @Test
+    public void serveSingleClass() throws Exception {
+        scheduler.acquire(INTERACTIVE);
+        startRequests(BACKGROUND, 3);
+        awaitQueueDepth(BACKGROUND, 3);
+
+        scheduler.release();
+        joinRequests();
+
+        assertThat(granted, is(Collections.nCopies(3, BACKGROUND)));
+        assertThat(scheduler.getDispatched(BACKGROUND), is(3L));
+        assertThat(scheduler.getQueueDepth(BACKGROUND), is(0));
+        assertThat(scheduler.getInFlight(), is(0));
+    }
+
+    /**
+     * Tests that raising the limit grants slots to waiting requests.
+     */
+    @Test
+    public void raiseLimit() throws Exception {
+        scheduler.acquire(INTERACTIVE);
+        startRequests(INTERACTIVE, 2);
+        awaitQueueDepth(INTERACTIVE, 2);
+
+        scheduler.setLimit(3);
+        joinRequests();
+
+        assertThat(granted.size(), is(2));
+        assertThat(scheduler.getLimit(), is(3));
+        assertThat(scheduler.getInFlight(), is(1));
+    }
+
+    /**
+     * Tests that an interrupted request leaves the queue without taking a slot.
+     */
+    @Test
+    public void interruptWaitingRequest() throws Exception {
+        scheduler.acquire(INTERACTIVE);
+        startRequests(BACKGROUND, 1);
+        awaitQueueDepth(BACKGROUND, 1);
+
+        threads.get(0).interrupt();
+        joinRequests();
+
+        assertThat(granted.isEmpty(), is(true));
+        assertThat(scheduler.getQueueDepth(BACKGROUND), is(0));
+        assertThat(scheduler.getInFlight(), is(1));
+        assertThat(scheduler.getDispatched(BACKGROUND), is(0L));
+    }
+
+    /**
+     * Tests that wrapped tasks run with background priority.
+     */
+    @Test
+    public void runInBackground() {
+        final List<RequestPriority> priorities = new ArrayList<RequestPriority>();
+        RequestContext.background(new Runnable() {
+            @Override
+            public void run() {
+                priorities.add(RequestContext.getPriority());
+            }
+        }).run();
+
+        assertThat(priorities, is(Collections.singletonList(BACKGROUND)));
+        assertThat(RequestContext.getPriority(), is(INTERACTIVE));
+    }
+
+    /**
+     * Starts threads each making a request and releasing the slot as soon as it is granted.
+     *
+     * @param priority the priority of the requests
+     * @param count    the number of requests
+     */
+    private void startRequests(final RequestPriority priority, int count) {
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        scheduler.acquire(priority);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    granted.add(priority);
+                    scheduler.release();
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits until a number of requests are waiting in a priority class.
+     *
+     * @param priority the priority class
+     * @param depth    the number of requests
+     */
+    private void awaitQueueDepth(RequestPriority priority, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scheduler.getQueueDepth(priority) < depth) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Requests never started waiting");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits for all requests to finish.
+     */
+    private void joinRequests() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests identifying the consumer of a request from the stack with {@link StackConsumerResolver}.
+ */
+public class StackConsumerResolverTest {
+    /** The classes looked up by the resolver. */
+    private final List<String> lookedUp = new ArrayList<String>();
+
+    /** The resolver to test. */
+    private StackConsumerResolver resolver;
+
+    /** The quotas identifying consumers with the resolver. */
+    private ConsumerQuotas quotas;
+
+    /**
+     * Creates a resolver telling the consumer of each caller class, and quotas allowing one request in flight per
+     * consumer without waiting.
+     */
+    @Before
+    public void setUp() {
+        resolver = new StackConsumerResolver("java.", "sun.", "org.junit.") {
+            @Override
+            protected String lookUpConsumer(String className) {
+                lookedUp.add(className);
+                if (className.equals(FirstCaller.class.getName())) {
+                    return "first";
+                } else if (className.equals(SecondCaller.class.getName())) {
+                    return "second";
+                }
+                return null;
+            }
+        };
+        quotas = new ConsumerQuotas()
+                .withDefaultQuota(new ConsumerQuota(1, 0))
+                .withMaxWait(0, TimeUnit.MILLISECONDS)
+                .withResolver(resolver);
+    }
+
+    /**
+     * Clears the consumer of the thread.
+     */
+    @After
+    public void tearDown() {
+        RequestContext.setConsumer(null);
+    }
+
+    /**
+     * Tests that callers of different consumers on the same thread are charged to their own quotas.
+     */
+    @Test
+    public void chargeCallersOnSameThreadToOwnQuotas() throws Exception {
+        ConsumerUsage first = FirstCaller.acquire(quotas);
+        ConsumerUsage second = SecondCaller.acquire(quotas);
+
+        assertThat(first.getConsumer(), is("first"));
+        assertThat(second.getConsumer(), is("second"));
+        assertThat(first.getInFlight(), is(1));
+        assertThat(second.getInFlight(), is(1));
+        assertThat(first.getRejected(), is(0L));
+    }
+
+    /**
+     * Tests that each class is only looked up once.
+     */
+    @Test
+    public void lookUpClassesOnce() throws Exception {
+        assertThat(FirstCaller.resolve(resolver), is("first"));
+        int lookups = lookedUp.size();
+
+        assertThat(FirstCaller.resolve(resolver), is("first"));
+        assertThat(lookedUp.size(), is(lookups));
+        assertThat(resolver.consumerOf(StackConsumerResolverTest.class.getName()), is(nullValue()));
+    }
+
+    /**
+     * A caller belonging to the first consumer.
+     */
+    private static final class FirstCaller {
+        /**
+         * Acquires a request of the caller.
+         *
+         * @param quotas the quotas
+         * @return the usage of the consumer charged
+         * @throws Exception if the request was rejected
+         */
+        private static ConsumerUsage acquire(ConsumerQuotas quotas) throws Exception {
+            return quotas.acquire();
+        }
+
+        /**
+         * Resolves the consumer of the caller.
+         *
+         * @param resolver the resolver
+         * @return the consumer
+         */
+        private static String resolve(ConsumerResolver resolver) {
+            return resolver.resolveConsumer();
+        }
+    }
+
+    /**
+     * A caller belonging to the second consumer.
+     */
+    private static final class SecondCaller {
+        /**
+         * Acquires a request of the caller.
+         *
+         * @param quotas the quotas
+         * @return the usage of the consumer charged
+         * @throws Exception if the request was rejected
+         */
+        private static ConsumerUsage acquire(ConsumerQuotas quotas) throws Exception {
+            return quotas.acquire();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests recording the metrics of requests by endpoint template.
+ */
+public class ApiMetricsTest {
+    /**
+     * Tests creating templates from paths.
+     */
+    @Test
+    public void createTemplates() {
+        assertThat(ApiMetrics.templateOf("GET", "/users"), is("GET /users"));
+        assertThat(ApiMetrics.templateOf("GET", "/users/12"), is("GET /users/:id"));
+        assertThat(ApiMetrics.templateOf("GET", "/groups/3/members"), is("GET /groups/:id/members"));
+        assertThat(ApiMetrics.templateOf("GET", "/groups/3a/members"), is("GET /groups/3a/members"));
+        assertThat(ApiMetrics.templateOf("POST", "/session"), is("POST /session"));
+    }
+
+    /**
+     * Tests that paths with the same template share metrics.
+     */
+    @Test
+    public void sharePerTemplate() {
+        ApiMetrics metrics = new ApiMetrics();
+        EndpointMetrics user = metrics.getEndpoint("GET", "/users/1");
+
+        assertThat(metrics.getEndpoint("GET", "/users/2"), is(sameInstance(user)));
+        assertThat(metrics.getEndpoint("GET", "/users/123456"), is(sameInstance(user)));
+        assertThat(metrics.getEndpoint("GET", "/users").getTemplate(), is("GET /users"));
+        assertThat(metrics.getEndpoint("POST", "/users/1").getTemplate(), is("POST /users/:id"));
+        assertThat(metrics.getEndpoints().size(), is(3));
+    }
+
+    /**
+     * Tests that templates beyond the limit are counted together.
+     */
+    @Test
+    public void limitTemplates() {
+        ApiMetrics metrics = new ApiMetrics();
+        for (int i = 0; i < 200; i++) {
+            metrics.getEndpoint("GET", "/projects/p" + i).record(1000, 200, 0);
+        }
+
+        assertThat(metrics.getEndpoint("GET", "/projects/p199").getTemplate(), is(ApiMetrics.OTHER_TEMPLATE));
+        assertThat(metrics.getEndpoints().size(), is(129));
+        assertThat(metrics.getRequests(), is(200L));
+    }
+
+    /**
+     * Tests counting status codes and bytes.
+     */
+    @Test
+    public void countStatusesAndBytes() {
+        EndpointMetrics endpoint = new ApiMetrics().getEndpoint("GET", "/users/1");
+        endpoint.record(1000, 200, 100);
+        endpoint.record(1000, 404, 10);
+        endpoint.record(1000, EndpointMetrics.NO_RESPONSE, 0);
+        endpoint.recordBytesOut(5);
+
+        assertThat(endpoint.getRequests(), is(3L));
+        assertThat(endpoint.getStatusCount(404), is(1L));
+        assertThat(endpoint.getStatusClassCount(2), is(1L));
+        assertThat(endpoint.getStatusCounts().size(), is(3));
+        assertThat(endpoint.getBytesIn(), is(110L));
+        assertThat(endpoint.getBytesOut(), is(5L));
+        assertThat(endpoint.getStatistics().getFailures(), is(1L));
+    }
+
+    /**
+     * Tests that only the most recent errors are kept, the most recent first.
+     */
+    @Test
+    public void recentErrors() {
+        ApiMetrics metrics = new ApiMetrics();
+        for (int i = 0; i < ApiMetrics.RECENT_ERRORS + 10; i++) {
+            metrics.recordError("GET /users/:id", 500 + (i % 10), "error " + i);
+        }
+
+        List<ApiError> errors = metrics.getRecentErrors();
+        assertThat(errors.size(), is(ApiMetrics.RECENT_ERRORS));
+        assertThat(errors.get(0).getMessage(), is("error " + (ApiMetrics.RECENT_ERRORS + 9)));
+        assertThat(errors.get(ApiMetrics.RECENT_ERRORS - 1).getMessage(), is("error 10"));
+        assertThat(metrics.getErrorCount(), is(ApiMetrics.RECENT_ERRORS + 10L));
+    }
+
+    /**
+     * Tests exposing the metrics through JMX.
+     */
+    @Test
+    public void registerWithJmx() throws Exception {
+        ApiMetrics metrics = new ApiMetrics();
+        metrics.getEndpoint("GET", "/users/1").record(1000, 200, 100);
+        ObjectName name = metrics.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            CompositeData[] statistics = (CompositeData[])server.getAttribute(name, "Statistics");
+
+            assertThat(statistics.length, is(1));
+            assertThat((String)statistics[0].get("template"), is("GET /users/:id"));
+            assertThat((Long)statistics[0].get("bytesIn"), is(100L));
+        } finally {
+            ApiMetrics.unregister("test");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests detecting slow and repeated calls.
+ */
+public class CallPatternDetectorTest {
+    /** The current time of the clock of the detector in nanoseconds. */
+    private long now;
+
+    /** The detector. */
+    private CallPatternDetector detector;
+
+    /**
+     * Creates a detector with a manual clock.
+     */
+    @Before
+    public void setUp() {
+        now = 0;
+        detector = new CallPatternDetector(3) {
+            @Override
+            protected long nanoTime() {
+                return now;
+            }
+        }.withSlowThreshold(1, TimeUnit.SECONDS).withRepeatThreshold(3)
+                .withScopeIdleTime(100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tests that calls slower than the threshold are flagged with the stack of the caller.
+     */
+    @Test
+    public void slowCall() {
+        detector.callCompleted(callOf("GET /users", CacheResult.NONE, 999));
+        detector.callCompleted(callOf("GET /groups", CacheResult.NONE, 1500));
+
+        List<CallOffender> offenders = detector.getOffenders();
+        assertThat(offenders.size(), is(1));
+        assertThat(offenders.get(0).getKind(), is(CallOffender.Kind.SLOW));
+        assertThat(offenders.get(0).getTemplate(), is("GET /groups"));
+        assertThat(offenders.get(0).getCalls(), is(1));
+        assertThat(offenders.get(0).getDuration(TimeUnit.MILLISECONDS), is(1500L));
+        assertThat(offenders.get(0).getScope(), is(Thread.currentThread().getName()));
+        assertThat(offenders.get(0).getStackTrace().length > 0, is(true));
+    }
+
+    /**
+     * Tests that calls to the same template in an implicit scope are flagged once.
+     */
+    @Test
+    public void repeatedCalls() {
+        for (int i = 0; i < 5; i++) {
+            detector.callCompleted(callOf("GET /users/:id", CacheResult.NONE, 10));
+            detector.callCompleted(callOf("GET /groups/:id", CacheResult.NONE, 10));
+            now += TimeUnit.MILLISECONDS.toNanos(50);
+        }
+
+        List<CallOffender> offenders = detector.getOffenders();
+        assertThat(offenders.size(), is(2));
+        assertThat(offenders.get(0).getKind(), is(CallOffender.Kind.REPEATED));
+        assertThat(offenders.get(0).getCalls(), is(3));
+        assertThat(offenders.get(0).getDuration(TimeUnit.MILLISECONDS), is(30L));
+    }
+
+    /**
+     * Tests that an implicit scope ends after a pause and that cache hits aren't counted.
+     */
+    @Test
+    public void implicitScopeEnds() {
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.MISS, 10));
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.HIT, 0));
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.HIT, 0));
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.MISS, 10));
+        now += TimeUnit.MILLISECONDS.toNanos(200);
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.MISS, 10));
+
+        assertThat(detector.getOffenders().size(), is(0));
+    }
+
+    /**
+     * Tests that explicit scopes count calls on their own and don't end after a pause.
+     */
+    @Test
+    public void explicitScopes() {
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.NONE, 10));
+        detector.callCompleted(callOf("GET /users/:id", CacheResult.NONE, 10));
+
+        CallPatternDetector.Scope previous = detector.enterScope("build #1");
+        try {
+            for (int i = 0; i < 3; i++) {
+                detector.callCompleted(callOf("GET /users/:id", CacheResult.NONE, 10));
+                now += TimeUnit.SECONDS.toNanos(1);
+            }
+        } finally {
+            detector.exitScope(previous);
+        }
+
+        List<CallOffender> offenders = detector.getOffenders();
+        assertThat(offenders.size(), is(1));
+        assertThat(offenders.get(0).getScope(), is("build #1"));
+    }
+
+    /**
+     * Tests that only the most recent offenders are kept.
+     */
+    @Test
+    public void boundedOffenders() {
+        for (int i = 1; i <= 5; i++) {
+            detector.callCompleted(callOf("GET /users/" + i, CacheResult.NONE, 1000 * i));
+        }
+
+        List<CallOffender> offenders = detector.getOffenders();
+        assertThat(offenders.size(), is(3));
+        assertThat(offenders.get(0).getTemplate(), is("GET /users/5"));
+        assertThat(offenders.get(2).getTemplate(), is("GET /users/3"));
+        assertThat(detector.getOffenderCount(), is(5L));
+    }
+
+    /**
+     * Creates a completed call.
+     *
+     * @param template    the endpoint template
+     * @param cacheResult how a lookup cache was involved
+     * @param duration    the duration in milliseconds
+     * @return the call
+     */
+    private static ApiCall callOf(String template, CacheResult cacheResult, long duration) {
+        return new ApiCall(template, null, false, cacheResult, 200, 0, 0, 0, null,
+                TimeUnit.MILLISECONDS.toNanos(duration));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests attributing calls to their callers.
+ */
+public class CallerAttributionTest {
+    /**
+     * Tests that tagged calls are counted exactly by tag and endpoint template.
+     */
+    @Test
+    public void taggedCalls() {
+        CallerAttribution attribution = new CallerAttribution();
+        attribution.callCompleted(callOf("scanner", "GET /groups", CacheResult.NONE, 100, 20));
+        attribution.callCompleted(callOf("scanner", "GET /groups", CacheResult.MISS, 300, 40));
+        attribution.callCompleted(callOf("scanner", "GET /users", CacheResult.NONE, 50, 10));
+        attribution.callCompleted(callOf("scanner", "GET /users", CacheResult.HIT, 50, 0));
+
+        List<CallerStatistics> statistics = attribution.getStatistics();
+        assertThat(statistics.size(), is(2));
+        assertThat(statistics.get(0).getCaller(), is("scanner"));
+        assertThat(statistics.get(0).getTemplate(), is("GET /groups"));
+        assertThat(statistics.get(0).isSampled(), is(false));
+        assertThat(statistics.get(0).getRequests(), is(2L));
+        assertThat(statistics.get(0).getSamples(), is(2L));
+        assertThat(statistics.get(0).getBytesIn(), is(400L));
+        assertThat(statistics.get(0).getMeanLatency() > 25 && statistics.get(0).getMeanLatency() < 35, is(true));
+        assertThat(statistics.get(1).getTemplate(), is("GET /users"));
+        assertThat(statistics.get(1).getRequests(), is(1L));
+    }
+
+    /**
+     * Tests that untagged calls are sampled and attributed to the first class outside the ignored packages.
+     */
+    @Test
+    public void sampledCalls() {
+        CallerAttribution attribution = new CallerAttribution().withSampleInterval(4);
+        for (int i = 0; i < 10; i++) {
+            attribution.callCompleted(callOf(null, "GET /users/:id", CacheResult.NONE, 100, 10));
+        }
+
+        List<CallerStatistics> statistics = attribution.getStatistics();
+        assertThat(statistics.size(), is(1));
+        // the frames of the test itself are in the ignored package of the client
+        assertThat(statistics.get(0).getCaller().startsWith("org.junit."), is(true));
+        assertThat(statistics.get(0).isSampled(), is(true));
+        assertThat(statistics.get(0).getSamples(), is(2L));
+        assertThat(statistics.get(0).getRequests(), is(8L));
+        assertThat(statistics.get(0).getBytesIn(), is(800L));
+    }
+
+    /**
+     * Tests that untagged calls made from the ignored packages only are unidentified.
+     */
+    @Test
+    public void unidentifiedCaller() {
+        CallerAttribution attribution = new CallerAttribution().withSampleInterval(1)
+                .withIgnoredPackage("org.").withIgnoredPackage("com.intellij.");
+        attribution.callCompleted(callOf(null, "GET /users", CacheResult.NONE, 100, 10));
+
+        assertThat(attribution.getStatistics().get(0).getCaller(), is(CallerAttribution.UNIDENTIFIED));
+
+        attribution.clear();
+        assertThat(attribution.getStatistics().size(), is(0));
+    }
+
+    /**
+     * Creates a completed call.
+     *
+     * @param consumer    the tag of the consumer (or null if untagged)
+     * @param template    the endpoint template
+     * @param cacheResult how a lookup cache was involved
+     * @param bytesIn     the number of bytes received
+     * @param duration    the duration in milliseconds
+     * @return the call
+     */
+    private static ApiCall callOf(String consumer, String template, CacheResult cacheResult, long bytesIn,
+                                  long duration) {
+        return new ApiCall(template, consumer, false, cacheResult, 200, bytesIn, 0, 0, null,
+                TimeUnit.MILLISECONDS.toNanos(duration));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests recording latencies in a histogram.
+ */
+public class LatencyHistogramTest {
+    /**
+     * Tests that the buckets cover every value exactly once.
+     */
+    @Test
+    public void contiguousBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueOf(index), is(greaterThanOrEqualTo(value)));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueOf(index - 1), is(lessThanOrEqualTo(value - 1)));
+            }
+        }
+    }
+
+    /**
+     * Tests that percentiles are within the precision of the buckets.
+     */
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getPercentile(0.5, TimeUnit.MILLISECONDS), is(closeTo(500, 500 * 0.125)));
+        assertThat(histogram.getPercentile(0.99, TimeUnit.MILLISECONDS), is(closeTo(990, 990 * 0.125)));
+        assertThat(histogram.getPercentile(1, TimeUnit.MILLISECONDS), is(closeTo(1000, 0.001)));
+        assertThat(histogram.getMean(TimeUnit.MILLISECONDS), is(closeTo(500.5, 0.001)));
+        assertThat(histogram.getMax(TimeUnit.MILLISECONDS), is(closeTo(1000, 0.001)));
+    }
+
+    /**
+     * Tests that percentiles computed together match the percentiles computed one by one.
+     */
+    @Test
+    public void percentilesAtOnce() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        double[] percentiles = { 0.5, 0.95, 0.99, 1 };
+        long[] latencies = new long[percentiles.length];
+        histogram.getPercentiles(percentiles, latencies);
+
+        for (int i = 0; i < percentiles.length; i++) {
+            assertThat((double)latencies[i], is(histogram.getPercentile(percentiles[i], TimeUnit.NANOSECONDS)));
+        }
+        assertThat(histogram.getSum(TimeUnit.MILLISECONDS), is(500500L));
+    }
+
+    /**
+     * Tests that an empty histogram returns zeros.
+     */
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getPercentile(0.99, TimeUnit.MILLISECONDS), is(0.0));
+        assertThat(histogram.getMean(TimeUnit.MILLISECONDS), is(0.0));
+    }
+
+    /**
+     * Tests that values beyond the highest bucket are counted in the last bucket.
+     */
+    @Test
+    public void clampHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+
+        assertThat(histogram.getCount(), is(1L));
+        assertThat(histogram.getPercentile(0.5, TimeUnit.DAYS), is(lessThanOrEqualTo(1.0)));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the trace of the most recent requests.
+ */
+public class RequestTraceTest {
+    /**
+     * Tests that the requests are read back in order.
+     */
+    @Test
+    public void records() {
+        RequestTrace trace = new RequestTrace(8);
+        trace.record("GET /users", 200, TimeUnit.MILLISECONDS.toNanos(12), 1024);
+        trace.record("GET /users/:id", EndpointMetrics.NO_RESPONSE, TimeUnit.MILLISECONDS.toNanos(30), 0);
+
+        List<RequestRecord> records = trace.getRecords();
+        assertThat(records.size(), is(2));
+        assertThat(records.get(0).getTemplate(), is("GET /users"));
+        assertThat(records.get(0).getStatus(), is(200));
+        assertThat(records.get(0).getDuration(TimeUnit.MILLISECONDS), is(12L));
+        assertThat(records.get(0).getBytes(), is(1024L));
+        assertThat(records.get(0).getThreadId(), is(Thread.currentThread().getId()));
+        assertThat(records.get(1).getStatus(), is(EndpointMetrics.NO_RESPONSE));
+    }
+
+    /**
+     * Tests that the capacity is rounded up to a power of two and that the oldest requests are overwritten.
+     */
+    @Test
+    public void overwritesOldest() {
+        RequestTrace trace = new RequestTrace(3);
+        assertThat(trace.getCapacity(), is(4));
+        for (int i = 0; i < 10; i++) {
+            trace.record("GET /groups/" + i, 200, i, i);
+        }
+
+        List<RequestRecord> records = trace.getRecords();
+        assertThat(records.size(), is(4));
+        assertThat(records.get(0).getTemplate(), is("GET /groups/6"));
+        assertThat(records.get(3).getTemplate(), is("GET /groups/9"));
+        assertThat(trace.getRecordCount(), is(10L));
+    }
+
+    /**
+     * Tests that the requests are written as text with the name of the thread.
+     */
+    @Test
+    public void writeTo() throws Exception {
+        RequestTrace trace = new RequestTrace();
+        trace.record("GET /users", 200, TimeUnit.MILLISECONDS.toNanos(12), 1024);
+        trace.record("GET /users/:id", EndpointMetrics.NO_RESPONSE, TimeUnit.MILLISECONDS.toNanos(30), 0);
+
+        StringWriter writer = new StringWriter();
+        trace.writeTo(writer);
+        String[] lines = writer.toString().split("\n");
+        assertThat(lines.length, is(2));
+        assertThat(lines[0], containsString(Thread.currentThread().getName()));
+        assertThat(lines[0], containsString(" 200 "));
+        assertThat(lines[0], containsString("1024 B GET /users"));
+        assertThat(lines[1], containsString(" - "));
+    }
+}
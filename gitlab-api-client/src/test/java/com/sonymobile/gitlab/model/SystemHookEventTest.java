@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.model;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static com.sonymobile.gitlab.helpers.DateHelpers.utcDate;
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static java.util.Calendar.JULY;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests parsing {@link GitLabSystemHookEvent} objects.
+ */
+public class SystemHookEventTest {
+    /** A rule for catching expected exceptions. */
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Parses an event creating a user.
+     */
+    @Test
+    public void parseUserCreate() throws Exception {
+        GitLabSystemHookEvent event = loadEvent("user_create");
+
+        assertThat(event.getType(), is(GitLabSystemHookEvent.Type.USER_CREATE));
+        assertThat(event.getUserId(), is(4));
+        assertThat(event.getUsername(), is("username"));
+        assertThat(event.getEmail(), is("user@example.com"));
+        assertThat(event.getName(), is("User Name"));
+        assertThat(event.getGroupId(), is(-1));
+        assertThat(event.getCreatedAt(), is(utcDate(2014, JULY, 21, 7, 44, 7).getTime()));
+        assertThat(event.getUpdatedAt(), is(0L));
+    }
+
+    /**
+     * Parses an event adding a user to a group.
+     */
+    @Test
+    public void parseUserAddToGroup() throws Exception {
+        GitLabSystemHookEvent event = loadEvent("user_add_to_group");
+
+        assertThat(event.getType(), is(GitLabSystemHookEvent.Type.USER_ADD_TO_GROUP));
+        assertThat(event.getUserId(), is(4));
+        assertThat(event.getUsername(), is("username"));
+        assertThat(event.getGroupId(), is(1));
+        assertThat(event.getGroupName(), is("Group Name"));
+        assertThat(event.getGroupPath(), is("groupname"));
+        assertThat(event.getAccessLevel(), is(GitLabAccessLevel.MASTER));
+    }
+
+    /**
+     * Parses an event creating a group.
+     */
+    @Test
+    public void parseGroupCreate() throws Exception {
+        GitLabSystemHookEvent event = loadEvent("group_create");
+
+        assertThat(event.getType(), is(GitLabSystemHookEvent.Type.GROUP_CREATE));
+        assertThat(event.getGroupId(), is(2));
+        assertThat(event.getGroupName(), is("Group Name"));
+        assertThat(event.getGroupPath(), is("groupname"));
+        assertThat(event.getUsername(), is(nullValue()));
+    }
+
+    /**
+     * Parses an event not affecting users or groups.
+     */
+    @Test
+    public void parseUnknownEvent() throws Exception {
+        GitLabSystemHookEvent event = loadEvent("project_create");
+
+        assertThat(event.getType(), is(GitLabSystemHookEvent.Type.UNKNOWN));
+        assertThat(event.getEventName(), is("project_create"));
+    }
+
+    /**
+     * Parses dates with milliseconds.
+     */
+    @Test
+    public void parseDateWithMilliseconds() throws Exception {
+        JSONObject jsonObject = jsonFile("systemhooks/user_create").loadAsObject()
+                .put("created_at", "2014-07-21T07:44:07.500Z");
+
+        assertThat(new GitLabSystemHookEvent(jsonObject).getCreatedAt(),
+                is(utcDate(2014, JULY, 21, 7, 44, 7).getTime() + 500));
+    }
+
+    /**
+     * Attempts to parse a user event without a user ID.
+     */
+    @Test
+    public void parseUserEventWithoutUserId() throws Exception {
+        JSONObject jsonObject = jsonFile("systemhooks/user_create").loadAsObject();
+        jsonObject.remove("user_id");
+
+        thrown.expect(IllegalArgumentException.class);
+        new GitLabSystemHookEvent(jsonObject);
+    }
+
+    /**
+     * Attempts to parse an event without an event name.
+     */
+    @Test
+    public void parseEventWithoutName() {
+        thrown.expect(IllegalArgumentException.class);
+        new GitLabSystemHookEvent(new JSONObject());
+    }
+
+    /**
+     * Loads a system hook event from a JSON file.
+     *
+     * @param name the event name
+     * @return a system hook event
+     */
+    private static GitLabSystemHookEvent loadEvent(String name) throws Exception {
+        return jsonFile("systemhooks/" + name).withType(GitLabSystemHookEvent.class).loadAsObject();
+    }
+}
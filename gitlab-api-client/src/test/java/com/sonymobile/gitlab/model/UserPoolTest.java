@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.gitlab.model;
+
+import com.sonymobile.gitlab.helpers.JsonFileLoader;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.sonymobile.gitlab.helpers.JsonFileLoader.jsonFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests sharing user identities between group members with a {@link GitLabUserPool}.
+ */
+public class UserPoolTest {
+    /** The pool to test. */
+    private GitLabUserPool pool;
+
+    /** Loader for the group members JSON file. */
+    private JsonFileLoader membersFile;
+
+    /**
+     * Creates a pool and a loader for group members.
+     */
+    @Before
+    public void setUp() {
+        pool = new GitLabUserPool();
+        membersFile = jsonFile("api/v3/groups/1/members");
+    }
+
+    /**
+     * Members of different groups for the same user should share the user identity.
+     */
+    @Test
+    public void shareIdentityBetweenGroups() throws Exception {
+        JSONObject jsonObject = membersFile.fromIndex(0).loadAsObject();
+
+        GitLabGroupMemberInfo firstMember = new GitLabGroupMemberInfo(jsonObject, 1, pool);
+        GitLabGroupMemberInfo secondMember = new GitLabGroupMemberInfo(
+                membersFile.fromIndex(0).loadAsObject(), 2, pool);
+
+        assertThat(secondMember.getIdentity(), is(sameInstance(firstMember.getIdentity())));
+        assertThat(secondMember.getGroupId(), is(2));
+        assertThat(firstMember, is(not(secondMember)));
+    }
+
+    /**
+     * Identities of different users should not be shared but their equal strings should.
+     */
+    @Test
+    public void shareStringsBetweenUsers() throws Exception {
+        GitLabUserIdentity firstUser = pool.identityOf(membersFile.fromIndex(0).loadAsObject());
+        GitLabUserIdentity secondUser = pool.identityOf(membersFile.fromIndex(1).loadAsObject());
+
+        assertThat(secondUser, is(not(firstUser)));
+        assertThat(secondUser.getUsername(), is(sameInstance(firstUser.getUsername())));
+        assertThat(secondUser.getEmail(), is(sameInstance(firstUser.getEmail())));
+    }
+
+    /**
+     * A changed user should replace the pooled identity.
+     */
+    @Test
+    public void replaceChangedIdentity() throws Exception {
+        JSONObject jsonObject = membersFile.fromIndex(0).loadAsObject();
+        GitLabUserIdentity oldIdentity = pool.identityOf(jsonObject);
+
+        jsonObject.put("name", "New Name");
+        GitLabUserIdentity newIdentity = pool.identityOf(jsonObject);
+
+        assertThat(newIdentity.getName(), is("New Name"));
+        assertThat(newIdentity, is(not(oldIdentity)));
+        assertThat(pool.identityOf(jsonObject), is(sameInstance(newIdentity)));
+    }
+
+    /**
+     * Equal identities should be equal and have the same hash code regardless of the pool.
+     */
+    @Test
+    public void equalIdentities() throws Exception {
+        GitLabUserIdentity pooledIdentity = pool.identityOf(membersFile.fromIndex(2).loadAsObject());
+        GitLabUserIdentity identity = new GitLabUserIdentity(membersFile.fromIndex(2).loadAsObject());
+
+        assertThat(identity, is(pooledIdentity));
+        assertThat(identity.hashCode(), is(pooledIdentity.hashCode()));
+    }
+
+    /**
+     * Equal group members should be equal and have the same hash code.
+     */
+    @Test
+    public void equalMembers() throws Exception {
+        GitLabGroupMemberInfo pooledMember = new GitLabGroupMemberInfo(
+                membersFile.fromIndex(2).loadAsObject(), 1, pool);
+        GitLabGroupMemberInfo member = new GitLabGroupMemberInfo(membersFile.fromIndex(2).loadAsObject(), 1);
+
+        assertThat(member, is(pooledMember));
+        assertThat(member.hashCode(), is(pooledMember.hashCode()));
+    }
+
+    /**
+     * The pool should never grow beyond its capacity.
+     */
+    @Test
+    public void boundedPool() throws Exception {
+        GitLabUserPool smallPool = new GitLabUserPool(1, 1);
+        JSONObject jsonObject = membersFile.fromIndex(0).loadAsObject();
+
+        GitLabUserIdentity firstUser = smallPool.identityOf(jsonObject);
+        smallPool.identityOf(membersFile.fromIndex(2).loadAsObject());
+
+        // the first user has been evicted by the second user
+        assertThat(smallPool.identityOf(jsonObject), is(not(sameInstance(firstUser))));
+        assertThat(smallPool.identityOf(jsonObject), is(firstUser));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.metrics.ApiCall;
+import com.sonymobile.gitlab.metrics.ApiCallListener;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import jenkins.model.Jenkins;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An extension point for recording every call to the API of the configured GitLab servers, e.g. as events of a
+ * profiler.
+ *
+ * The calls are only reported if at least one listener is installed when the clients are created. Listeners are
+ * called on the thread making the call, so they must return quickly.
+ */
+public abstract class GitLabApiCallListener implements ExtensionPoint {
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabApiCallListener.class.getName());
+
+    /**
+     * Called when a call to the API has completed.
+     *
+     * @param serverUrl the URL of the server called
+     * @param call      the call
+     */
+    public abstract void onCall(String serverUrl, ApiCall call);
+
+    /**
+     * Gets all listeners.
+     *
+     * @return the listeners
+     */
+    public static ExtensionList<GitLabApiCallListener> all() {
+        return Jenkins.getInstance().getExtensionList(GitLabApiCallListener.class);
+    }
+
+    /**
+     * Creates a call listener of a client notifying all listeners.
+     *
+     * @param serverUrl the URL of the server of the client
+     * @return the call listener (or null if no listeners are installed)
+     */
+    /* package */ static ApiCallListener createDispatcher(String serverUrl) {
+        if (Jenkins.getInstance() == null || all().isEmpty()) {
+            // nobody to report the calls to
+            return null;
+        }
+        return new Dispatcher(serverUrl);
+    }
+
+    /**
+     * Passes the calls of a client to all listeners.
+     */
+    private static class Dispatcher implements ApiCallListener {
+        /** The URL of the server of the client. */
+        private final String serverUrl;
+
+        /**
+         * Creates a dispatcher.
+         *
+         * @param serverUrl the URL of the server of the client
+         */
+        private Dispatcher(String serverUrl) {
+            this.serverUrl = serverUrl;
+        }
+
+        @Override
+        public void callCompleted(ApiCall call) {
+            for (GitLabApiCallListener listener : all()) {
+                try {
+                    listener.onCall(serverUrl, call);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "GitLab API call listener " + listener + " failed", e);
+                }
+            }
+        }
+    }
+}
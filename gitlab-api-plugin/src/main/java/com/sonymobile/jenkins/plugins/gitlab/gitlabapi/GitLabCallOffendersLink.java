@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.metrics.CallOffender;
+import com.sonymobile.gitlab.metrics.CallPatternDetector;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the slowest calls and the calls repeated within one scope on the <em>Manage Jenkins</em> page.
+ *
+ * Only administrators can see the page.
+ */
+@Extension
+public class GitLabCallOffendersLink extends ManagementLink {
+    /** The URL name of the page. */
+    public static final String URL_NAME = "gitlab-api-offenders";
+
+    @Override
+    public String getIconFileName() {
+        return "warning.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitLab API Offenders";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Slow calls and calls repeated once per item, with the code making them.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Checks whether slow and repeated calls are detected.
+     *
+     * @return true if call diagnostics are enabled
+     */
+    public boolean isEnabled() {
+        GitLabConfiguration config = GitLabConfiguration.getInstance();
+        return config != null && config.isCallDiagnostics();
+    }
+
+    /**
+     * Gets the most recent offenders.
+     *
+     * @return the offenders, the longest time spent in calls first
+     */
+    public List<CallOffender> getOffenders() {
+        CallPatternDetector detector = GitLabConfiguration.getCallPatternDetector();
+        return (detector != null) ? detector.getOffenders() : Collections.<CallOffender>emptyList();
+    }
+
+    /**
+     * Gets the number of offenders flagged, including offenders no longer kept.
+     *
+     * @return the number of offenders
+     */
+    public long getOffenderCount() {
+        CallPatternDetector detector = GitLabConfiguration.getCallPatternDetector();
+        return (detector != null) ? detector.getOffenderCount() : 0;
+    }
+
+    /**
+     * Forgets all offenders.
+     *
+     * @return a redirect back to the page
+     */
+    @RequirePOST
+    public HttpResponse doClear() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        CallPatternDetector detector = GitLabConfiguration.getCallPatternDetector();
+        if (detector != null) {
+            detector.clear();
+        }
+        return HttpResponses.redirectToDot();
+    }
+}
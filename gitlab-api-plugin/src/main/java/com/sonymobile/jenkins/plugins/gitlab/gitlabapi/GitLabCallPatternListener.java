@@ -0,0 +1,47 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.metrics.ApiCall;
+import com.sonymobile.gitlab.metrics.CallPatternDetector;
+import hudson.Extension;
+
+/**
+ * Passes the calls to all servers to the detector of slow and repeated calls while call diagnostics are enabled.
+ */
+@Extension
+public class GitLabCallPatternListener extends GitLabApiCallListener {
+    @Override
+    public void onCall(String serverUrl, ApiCall call) {
+        GitLabConfiguration config = GitLabConfiguration.getInstance();
+        if (config != null && config.isCallDiagnostics()) {
+            CallPatternDetector detector = GitLabConfiguration.getCallPatternDetector();
+            if (detector != null) {
+                detector.callCompleted(call);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.metrics.CallerAttribution;
+import com.sonymobile.gitlab.metrics.CallerStatistics;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows which callers make the requests to each endpoint on the <em>Manage Jenkins</em> page.
+ *
+ * Only administrators can see the page.
+ */
+@Extension
+public class GitLabCallersLink extends ManagementLink {
+    /** The URL name of the page. */
+    public static final String URL_NAME = "gitlab-api-callers";
+
+    /** Finds the plugin of the class of a caller. */
+    private final GitLabConsumerResolver resolver = new GitLabConsumerResolver();
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitLab API Callers";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Requests, bytes and latency of each plugin class calling each GitLab API endpoint.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Gets the requests of all callers.
+     *
+     * @return the statistics of each caller and endpoint template, the most requests first
+     */
+    public List<CallerStatistics> getStatistics() {
+        CallerAttribution attribution = GitLabConfiguration.getCallerAttribution();
+        return (attribution != null) ? attribution.getStatistics() : Collections.<CallerStatistics>emptyList();
+    }
+
+    /**
+     * Gets the number of untagged calls per captured stack.
+     *
+     * @return the number of calls
+     */
+    public int getSampleInterval() {
+        CallerAttribution attribution = GitLabConfiguration.getCallerAttribution();
+        return (attribution != null) ? attribution.getSampleInterval() : CallerAttribution.DEFAULT_SAMPLE_INTERVAL;
+    }
+
+    /**
+     * Gets the plugin of a caller.
+     *
+     * @param statistics the statistics of the caller
+     * @return the short name of the plugin of the class of the caller (or an empty string if tagged or not found)
+     */
+    public String getPlugin(CallerStatistics statistics) {
+        return statistics.isSampled() ? resolver.pluginOf(statistics.getCaller()) : "";
+    }
+
+    /**
+     * Forgets all callers.
+     *
+     * @return a redirect back to the page
+     */
+    @RequirePOST
+    public HttpResponse doClear() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        CallerAttribution attribution = GitLabConfiguration.getCallerAttribution();
+        if (attribution != null) {
+            attribution.clear();
+        }
+        return HttpResponses.redirectToDot();
+    }
+}
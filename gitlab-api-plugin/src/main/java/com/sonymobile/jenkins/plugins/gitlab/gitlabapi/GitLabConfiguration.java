@@ -25,12 +25,23 @@
 
 package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
 
+import com.sonymobile.gitlab.api.ConnectionProbe;
+import com.sonymobile.gitlab.api.ConnectionProbeResult;
 import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.directory.GitLabDirectory;
 import com.sonymobile.gitlab.exceptions.AuthenticationFailedException;
 import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.http.ConsumerQuota;
+import com.sonymobile.gitlab.http.ConsumerQuotas;
+import com.sonymobile.gitlab.http.ReadEndpointRouter;
+import com.sonymobile.gitlab.metrics.ApiMetrics;
+import com.sonymobile.gitlab.metrics.CallPatternDetector;
+import com.sonymobile.gitlab.metrics.CallerAttribution;
 import com.sonymobile.jenkins.plugins.gitlab.gitlabapi.exception.GitLabConfigurationException;
 import hudson.Extension;
 import hudson.ProxyConfiguration;
+import hudson.Util;
 import hudson.util.FormValidation;
 import hudson.util.Secret;
 import jenkins.model.GlobalConfiguration;
@@ -39,10 +50,23 @@ import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
+import javax.management.JMException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.apache.commons.lang.StringUtils.trimToNull;
 
@@ -53,18 +77,108 @@ import static org.apache.commons.lang.StringUtils.trimToNull;
  */
 @Extension
 public class GitLabConfiguration extends GlobalConfiguration {
+    /** The default maximum number of requests in flight per consumer. */
+    public static final int DEFAULT_CONSUMER_MAX_CONCURRENT = 4;
+
+    /** The name the metrics of the default server are registered with in JMX. */
+    public static final String DEFAULT_METRICS_NAME = "default";
+
+    /** The prefix of the names the metrics of named servers are registered with in JMX. */
+    public static final String SERVER_METRICS_PREFIX = "server/";
+
+    /** The number of untagged calls per stack captured to find the caller. */
+    private static final int CALLER_SAMPLE_INTERVAL = Integer.getInteger(
+            GitLabConfiguration.class.getSimpleName() + ".callerSampleInterval",
+            CallerAttribution.DEFAULT_SAMPLE_INTERVAL);
+
+    /** The time in milliseconds the failure to create the client of the default server is remembered. */
+    private static final long CLIENT_RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabConfiguration.class.getName());
+
+    /** The pattern of the quota of a specific consumer. */
+    private static final Pattern CONSUMER_QUOTA_PATTERN = Pattern.compile("\\s*([^=\\s]+)\\s*=\\s*(\\d+)\\s*/\\s*"
+            + "(\\d+(?:\\.\\d+)?)\\s*");
+
     /** The GitLab server URL. */
     private String serverUrl;
 
+    /** The URLs of servers serving read requests in place of the GitLab server, one per line. */
+    private String readServerUrls;
+
     /** The private GitLab token. */
     private Secret privateToken;
 
+    /** The secret token authenticating system hooks sent by GitLab. */
+    private Secret systemHookToken;
+
+    /** The secret token authenticating scrapes of the metrics. */
+    private Secret metricsToken;
+
+    /** The maximum number of requests in flight per consumer without a quota of its own (0 for no limit). */
+    private int consumerMaxConcurrent = DEFAULT_CONSUMER_MAX_CONCURRENT;
+
+    /** The maximum number of requests per second per consumer without a quota of its own (0 for no limit). */
+    private double consumerRequestsPerSecond = 0;
+
+    /** The quotas of specific consumers, one <code>consumer=maxConcurrent/requestsPerSecond</code> per line. */
+    private String consumerQuotas;
+
+    /** Whether slow and repeated calls are detected. */
+    private boolean callDiagnostics = false;
+
+    /** The duration of a slow call in milliseconds (0 to not flag slow calls). */
+    private long slowCallThreshold = CallPatternDetector.DEFAULT_SLOW_THRESHOLD;
+
+    /** The number of calls to the same endpoint template in one scope flagged as repeated (0 to not flag any). */
+    private int repeatedCallThreshold = CallPatternDetector.DEFAULT_REPEAT_THRESHOLD;
+
+    /** The named servers configured in addition to the default server. */
+    private List<GitLabServer> servers = new ArrayList<GitLabServer>();
+
+    /** The named servers by name. */
+    private transient volatile Map<String, GitLabServer> serversByName = Collections.emptyMap();
+
     /** The proxy configuration */
-    private transient ProxyConfiguration proxyConfiguration;
+    private transient volatile ProxyConfiguration proxyConfiguration;
+
+    /** The lock of the client and the lookup cache of the default server. */
+    private final transient Object clientLock = new Object();
 
     /** The GitLab API client. */
     private transient GitLabApiClient client;
 
+    /** The number of times the client has been invalidated, telling whether a client being created is still current. */
+    private transient int clientGeneration;
+
+    /** The failure of the last attempt to create the client (or null if it didn't fail). */
+    private transient GitLabApiException clientFailure;
+
+    /** The time in milliseconds until which the failure is thrown without trying to create the client again. */
+    private transient long clientFailureUntil;
+
+    /** The lookup cache using the API client. */
+    private transient GitLabLookupCache lookupCache;
+
+    /** The directory of the GitLab server kept up to date by system hooks. */
+    private transient GitLabDirectory directory;
+
+    /** The quotas and usage of the consumers, kept when the client is replaced. */
+    private transient ConsumerQuotas quotas;
+
+    /** The metrics of the requests to the default server, kept when the client is replaced. */
+    private transient ApiMetrics metrics = new ApiMetrics();
+
+    /** The detector of slow and repeated calls to all servers. */
+    private transient CallPatternDetector callPatternDetector = new CallPatternDetector()
+            .withIgnoredPackage(GitLabConfiguration.class.getPackage().getName() + ".");
+
+    /** The attribution of the requests to all servers to their callers. */
+    private transient CallerAttribution callerAttribution = new CallerAttribution()
+            .withSampleInterval(CALLER_SAMPLE_INTERVAL)
+            .withIgnoredPackage(GitLabConfiguration.class.getPackage().getName() + ".");
+
     /**
      * Creates a GitLab configuration object.
      *
@@ -73,6 +187,12 @@ public class GitLabConfiguration extends GlobalConfiguration {
     public GitLabConfiguration() {
         proxyConfiguration = Jenkins.getInstance().proxy;
         load();
+        applyCallDiagnostics();
+        serversByName = indexServers(getServers());
+        registerMetrics(metrics, DEFAULT_METRICS_NAME);
+        for (GitLabServer server : serversByName.values()) {
+            registerMetrics(server.getMetrics(), SERVER_METRICS_PREFIX + server.getName());
+        }
     }
 
     /**
@@ -81,8 +201,27 @@ public class GitLabConfiguration extends GlobalConfiguration {
      * @param serverUrl the server URL
      */
     public void setServerUrl(String serverUrl) {
-        invalidateClient();
+        boolean isChanged = serverUrl == null || !serverUrl.equals(this.serverUrl);
+        // set before invalidating so that a client created after the invalidation uses the new value
         this.serverUrl = serverUrl;
+        if (isChanged) {
+            // the directory describes another server
+            directory = null;
+            invalidateClient();
+        }
+    }
+
+    /**
+     * Sets the URLs of servers serving read requests in place of the GitLab server.
+     *
+     * @param readServerUrls one server URL per line
+     */
+    public void setReadServerUrls(String readServerUrls) {
+        boolean isChanged = !parseServerUrls(readServerUrls).equals(parseServerUrls(this.readServerUrls));
+        this.readServerUrls = readServerUrls;
+        if (isChanged) {
+            invalidateClient();
+        }
     }
 
     /**
@@ -91,8 +230,133 @@ public class GitLabConfiguration extends GlobalConfiguration {
      * @param privateToken the private token
      */
     public void setPrivateToken(String privateToken) {
-        invalidateClient();
-        this.privateToken = Secret.fromString(privateToken);
+        Secret newPrivateToken = Secret.fromString(privateToken);
+        boolean isChanged = !Secret.toString(newPrivateToken).equals(getPrivateToken());
+        this.privateToken = newPrivateToken;
+        if (isChanged) {
+            invalidateClient();
+        }
+    }
+
+    /**
+     * Sets the secret token authenticating system hooks.
+     *
+     * @param systemHookToken the system hook token
+     */
+    public void setSystemHookToken(String systemHookToken) {
+        this.systemHookToken = Secret.fromString(systemHookToken);
+    }
+
+    /**
+     * Sets the secret token authenticating scrapes of the metrics.
+     *
+     * @param metricsToken the metrics token
+     */
+    public void setMetricsToken(String metricsToken) {
+        this.metricsToken = Secret.fromString(metricsToken);
+    }
+
+    /**
+     * Sets the maximum number of requests in flight per consumer without a quota of its own.
+     *
+     * @param consumerMaxConcurrent the maximum number of requests (0 for no limit)
+     */
+    public void setConsumerMaxConcurrent(int consumerMaxConcurrent) {
+        this.consumerMaxConcurrent = Math.max(0, consumerMaxConcurrent);
+        applyConsumerQuotas();
+    }
+
+    /**
+     * Sets the maximum number of requests per second per consumer without a quota of its own.
+     *
+     * @param consumerRequestsPerSecond the maximum rate (0 for no limit)
+     */
+    public void setConsumerRequestsPerSecond(double consumerRequestsPerSecond) {
+        this.consumerRequestsPerSecond = Math.max(0, consumerRequestsPerSecond);
+        applyConsumerQuotas();
+    }
+
+    /**
+     * Sets the quotas of specific consumers.
+     *
+     * @param consumerQuotas one <code>consumer=maxConcurrent/requestsPerSecond</code> per line
+     */
+    public void setConsumerQuotas(String consumerQuotas) {
+        this.consumerQuotas = consumerQuotas;
+        applyConsumerQuotas();
+    }
+
+    /**
+     * Sets whether slow and repeated calls are detected.
+     *
+     * @param callDiagnostics true to detect slow and repeated calls
+     */
+    public void setCallDiagnostics(boolean callDiagnostics) {
+        this.callDiagnostics = callDiagnostics;
+    }
+
+    /**
+     * Sets the duration of a slow call.
+     *
+     * @param slowCallThreshold the duration in milliseconds (0 to not flag slow calls)
+     */
+    public void setSlowCallThreshold(long slowCallThreshold) {
+        this.slowCallThreshold = Math.max(0, slowCallThreshold);
+        applyCallDiagnostics();
+    }
+
+    /**
+     * Sets the number of calls to the same endpoint template in one scope flagged as repeated.
+     *
+     * @param repeatedCallThreshold the number of calls (0 to not flag repeated calls)
+     */
+    public void setRepeatedCallThreshold(int repeatedCallThreshold) {
+        this.repeatedCallThreshold = Math.max(0, repeatedCallThreshold);
+        applyCallDiagnostics();
+    }
+
+    /**
+     * Sets the named servers configured in addition to the default server.
+     *
+     * Servers with the same name and connection settings as before are kept, letting them keep their clients and
+     * caches. Servers without a name and servers with the name of a previous server in the list are ignored.
+     *
+     * @param servers the servers
+     */
+    public void setServers(List<GitLabServer> servers) {
+        List<GitLabServer> replacedServers = new ArrayList<GitLabServer>();
+        synchronized (this) {
+            Map<String, GitLabServer> previousServers = serversByName;
+            List<GitLabServer> keptServers = new ArrayList<GitLabServer>(servers.size());
+            for (GitLabServer server : servers) {
+                GitLabServer previousServer = previousServers.get(server.getName());
+                keptServers.add((previousServer != null && previousServer.isSameServer(server))
+                        ? previousServer : server);
+            }
+            this.servers = keptServers;
+            serversByName = indexServers(keptServers);
+            applyConsumerQuotas();
+
+            for (GitLabServer previousServer : previousServers.values()) {
+                if (!serversByName.containsKey(previousServer.getName())) {
+                    unregisterMetrics(SERVER_METRICS_PREFIX + previousServer.getName());
+                }
+                if (serversByName.get(previousServer.getName()) != previousServer) {
+                    // the server was removed or its settings changed
+                    replacedServers.add(previousServer);
+                }
+            }
+            for (GitLabServer server : serversByName.values()) {
+                if (previousServers.get(server.getName()) != server) {
+                    registerMetrics(server.getMetrics(), SERVER_METRICS_PREFIX + server.getName());
+                }
+            }
+        }
+
+        // a server may be creating its client, which needs the configuration to be unlocked
+        for (GitLabServer replacedServer : replacedServers) {
+            replacedServer.shutdown();
+        }
     }
 
     /**
@@ -104,6 +368,15 @@ public class GitLabConfiguration extends GlobalConfiguration {
         return serverUrl;
     }
 
+    /**
+     * Gets the URLs of servers serving read requests in place of the GitLab server.
+     *
+     * @return one server URL per line
+     */
+    public String getReadServerUrls() {
+        return readServerUrls;
+    }
+
     /**
      * Gets the private GitLab API token.
      *
@@ -113,6 +386,87 @@ public class GitLabConfiguration extends GlobalConfiguration {
         return Secret.toString(privateToken);
     }
 
+    /**
+     * Gets the secret token authenticating system hooks.
+     *
+     * @return the system hook token
+     */
+    public String getSystemHookToken() {
+        return Secret.toString(systemHookToken);
+    }
+
+    /**
+     * Gets the secret token authenticating scrapes of the metrics.
+     *
+     * @return the metrics token
+     */
+    public String getMetricsToken() {
+        return Secret.toString(metricsToken);
+    }
+
+    /**
+     * Gets the maximum number of requests in flight per consumer without a quota of its own.
+     *
+     * @return the maximum number of requests (0 for no limit)
+     */
+    public int getConsumerMaxConcurrent() {
+        return consumerMaxConcurrent;
+    }
+
+    /**
+     * Gets the maximum number of requests per second per consumer without a quota of its own.
+     *
+     * @return the maximum rate (0 for no limit)
+     */
+    public double getConsumerRequestsPerSecond() {
+        return consumerRequestsPerSecond;
+    }
+
+    /**
+     * Gets the quotas of specific consumers.
+     *
+     * @return one <code>consumer=maxConcurrent/requestsPerSecond</code> per line
+     */
+    public String getConsumerQuotas() {
+        return consumerQuotas;
+    }
+
+    /**
+     * Checks whether slow and repeated calls are detected.
+     *
+     * @return true if slow and repeated calls are detected
+     */
+    public boolean isCallDiagnostics() {
+        return callDiagnostics;
+    }
+
+    /**
+     * Gets the duration of a slow call.
+     *
+     * @return the duration in milliseconds (0 to not flag slow calls)
+     */
+    public long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * Gets the number of calls to the same endpoint template in one scope flagged as repeated.
+     *
+     * @return the number of calls (0 to not flag repeated calls)
+     */
+    public int getRepeatedCallThreshold() {
+        return repeatedCallThreshold;
+    }
+
+    /**
+     * Gets the named servers configured in addition to the default server.
+     *
+     * @return the servers
+     */
+    public List<GitLabServer> getServers() {
+        return (servers != null) ? Collections.unmodifiableList(servers) : Collections.<GitLabServer>emptyList();
+    }
+
     /**
      * Gets the configured proxy host.
      *
@@ -160,45 +514,378 @@ public class GitLabConfiguration extends GlobalConfiguration {
 
     /**
      * Invalidates the client, forcing a new one to be created next time someone tries to reach the old one.
+     *
+     * The connection pool of the replaced client is shut down.
      */
     private void invalidateClient() {
-        client = null;
+        GitLabApiClient replacedClient;
+        synchronized (clientLock) {
+            replacedClient = client;
+            client = null;
+            lookupCache = null;
+            // clients being created with the previous settings are discarded
+            clientGeneration++;
+            clientFailure = null;
+        }
+        if (replacedClient != null) {
+            replacedClient.shutdown();
+        }
     }
 
     /**
      * Checks if the global proxy configuration has changed and in that case fetches the new values.
+     *
+     * @return the current proxy configuration
      */
-    private void fetchProxyConfiguration() {
-        // check if the proxy configuration has changed
-        if (proxyConfiguration != Jenkins.getInstance().proxy) {
-            proxyConfiguration = Jenkins.getInstance().proxy;
+    /* package */ ProxyConfiguration fetchProxyConfiguration() {
+        ProxyConfiguration currentProxyConfiguration = Jenkins.getInstance().proxy;
+        boolean isChanged;
+        synchronized (this) {
+            // check if the proxy configuration has changed
+            isChanged = proxyConfiguration != currentProxyConfiguration;
+            proxyConfiguration = currentProxyConfiguration;
+        }
+        if (isChanged) {
             invalidateClient();
         }
+        return currentProxyConfiguration;
     }
 
     /**
      * Gets the API client using the configured settings.
      *
+     * The client is created and its connection tested without holding the lock of the client, and only published if
+     * no other client was published and the settings haven't changed in the meantime. A failure to create the client is
+     * remembered for a short time so that callers don't wait for the connection test of an unreachable server in turn.
+     *
      * @return an GitLab API
      * @throws GitLabApiException if the client couldn't be created with the given values
      */
     private GitLabApiClient getClient() throws GitLabApiException {
         fetchProxyConfiguration();
-        if (client == null) {
-            testApiConnection(
-                    getServerUrl(),
-                    getPrivateToken(),
-                    getProxyHost(),
-                    getProxyPort(),
-                    getProxyUsername(),
-                    getProxyPassword(),
-                    getNoProxyHostPatterns());
-            return new GitLabApiClient(getServerUrl(),
-                    getPrivateToken(),
-                    getProxyHost(),
-                    getProxyPort());
+        int generation;
+        synchronized (clientLock) {
+            if (client != null) {
+                return client;
+            }
+            if (clientFailure != null && System.currentTimeMillis() < clientFailureUntil) {
+                throw clientFailure;
+            }
+            generation = clientGeneration;
+        }
+
+        GitLabApiClient newClient;
+        try {
+            newClient = createClient(getServerUrl(), getPrivateToken(), readServerUrls, getQuotas(), metrics);
+        } catch (GitLabApiException e) {
+            synchronized (clientLock) {
+                if (generation == clientGeneration) {
+                    clientFailure = e;
+                    clientFailureUntil = System.currentTimeMillis() + CLIENT_RETRY_DELAY;
+                }
+            }
+            throw e;
+        }
+
+        GitLabApiClient publishedClient;
+        synchronized (clientLock) {
+            if (generation == clientGeneration && client == null) {
+                client = newClient;
+                clientFailure = null;
+                return newClient;
+            }
+            publishedClient = (generation == clientGeneration) ? client : null;
+        }
+        // another caller published a client first or the settings changed while the client was created
+        newClient.shutdown();
+        return (publishedClient != null) ? publishedClient : getClient();
+    }
+
+    /**
+     * Creates an API client with the configured proxy settings.
+     *
+     * The connection is tested without locking the configuration, so callers should hold no lock shared with other
+     * servers while creating a client.
+     *
+     * @param serverUrl      the server URL
+     * @param privateToken   the private token
+     * @param readServerUrls the URLs of servers serving read requests, one per line (can be null)
+     * @param quotas         the quotas and usage of the consumers, updated with the configured quotas
+     * @param apiMetrics     the metrics of the requests
+     * @return the API client
+     * @throws GitLabApiException if the client couldn't be created with the given values
+     */
+    /* package */ GitLabApiClient createClient(String serverUrl, String privateToken,
+                                              String readServerUrls, ConsumerQuotas quotas,
+                                              ApiMetrics apiMetrics)
+            throws GitLabApiException {
+        testApiConnection(
+                serverUrl,
+                privateToken,
+                getProxyHost(),
+                getProxyPort(),
+                getProxyUsername(),
+                getProxyPassword(),
+                getNoProxyHostPatterns());
+        GitLabApiClient newClient = new GitLabApiClient(serverUrl,
+                privateToken,
+                getProxyHost(),
+                getProxyPort(),
+                getProxyUsername(),
+                getProxyPassword(),
+                getNoProxyHostPatterns());
+        applyConsumerQuotas(quotas);
+        newClient.setConsumerQuotas(quotas);
+        newClient.setMetrics(apiMetrics);
+        newClient.setCallListener(GitLabApiCallListener.createDispatcher(serverUrl));
+        List<String> readUrls = parseServerUrls(readServerUrls);
+        if (!readUrls.isEmpty()) {
+            newClient.setReadEndpointRouter(new ReadEndpointRouter(readUrls));
+        }
+        return newClient;
+    }
+
+    /**
+     * Registers the metrics of a server with JMX.
+     *
+     * A failure is logged since the metrics are still available through the API.
+     *
+     * @param apiMetrics the metrics
+     * @param name       the name to register the metrics with
+     */
+    private static void registerMetrics(ApiMetrics apiMetrics, String name) {
+        try {
+            apiMetrics.register(name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the GitLab API metrics of " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics of a removed server from JMX.
+     *
+     * @param name the name the metrics were registered with
+     */
+    private static void unregisterMetrics(String name) {
+        try {
+            ApiMetrics.unregister(name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to unregister the GitLab API metrics of " + name, e);
+        }
+    }
+
+    /**
+     * Indexes servers by name.
+     *
+     * Servers without a name and servers with the name of a previous server are ignored.
+     *
+     * @param servers the servers
+     * @return the servers by name
+     */
+    private static Map<String, GitLabServer> indexServers(List<GitLabServer> servers) {
+        Map<String, GitLabServer> index = new HashMap<String, GitLabServer>();
+        for (GitLabServer server : servers) {
+            if (server.getName() != null && !index.containsKey(server.getName())) {
+                index.put(server.getName(), server);
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Gets a named server.
+     *
+     * @param name the name of the server
+     * @return the server or null if no server has the name
+     */
+    private GitLabServer getServer(String name) {
+        return serversByName.get(name);
+    }
+
+    /**
+     * Parses a list of server URLs.
+     *
+     * Blank lines are ignored.
+     *
+     * @param serverUrls one server URL per line (can be null)
+     * @return the server URLs
+     */
+    private static List<String> parseServerUrls(String serverUrls) {
+        List<String> urls = new ArrayList<String>();
+        if (serverUrls != null) {
+            for (String line : serverUrls.split("\\r?\\n")) {
+                String url = trimToNull(line);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Gets the quotas and usage of the consumers.
+     *
+     * @return the consumer quotas
+     */
+    private synchronized ConsumerQuotas getQuotas() {
+        if (quotas == null) {
+            quotas = new ConsumerQuotas().withResolver(new GitLabConsumerResolver());
+            applyConsumerQuotas(quotas);
+        }
+        return quotas;
+    }
+
+    /**
+     * Applies the configured thresholds to the detector of slow and repeated calls.
+     */
+    private void applyCallDiagnostics() {
+        callPatternDetector
+                .withSlowThreshold(slowCallThreshold, TimeUnit.MILLISECONDS)
+                .withRepeatThreshold(repeatedCallThreshold);
+    }
+
+    /**
+     * Applies the configured quotas to the consumer quotas of all servers.
+     */
+    private synchronized void applyConsumerQuotas() {
+        applyConsumerQuotas(quotas);
+        for (GitLabServer server : getServers()) {
+            applyConsumerQuotas(server.getQuotas());
+        }
+    }
+
+    /**
+     * Applies the configured quotas to consumer quotas.
+     *
+     * @param consumerQuotasToApply the consumer quotas (can be null)
+     */
+    private synchronized void applyConsumerQuotas(ConsumerQuotas consumerQuotasToApply) {
+        if (consumerQuotasToApply != null) {
+            consumerQuotasToApply
+                    .withDefaultQuota(new ConsumerQuota(consumerMaxConcurrent, consumerRequestsPerSecond))
+                    .withQuotas(parseConsumerQuotas(consumerQuotas));
+        }
+    }
+
+    /**
+     * Parses the quotas of specific consumers.
+     *
+     * Malformed lines are ignored.
+     *
+     * @param consumerQuotas one <code>consumer=maxConcurrent/requestsPerSecond</code> per line (can be null)
+     * @return the quotas by consumer
+     */
+    private static Map<String, ConsumerQuota> parseConsumerQuotas(String consumerQuotas) {
+        Map<String, ConsumerQuota> quotasByConsumer = new HashMap<String, ConsumerQuota>();
+        if (consumerQuotas != null) {
+            for (String line : consumerQuotas.split("\\r?\\n")) {
+                Matcher matcher = CONSUMER_QUOTA_PATTERN.matcher(line);
+                if (matcher.matches()) {
+                    quotasByConsumer.put(matcher.group(1), new ConsumerQuota(
+                            Integer.parseInt(matcher.group(2)),
+                            Double.parseDouble(matcher.group(3))));
+                }
+            }
+        }
+        return quotasByConsumer;
+    }
+
+    /**
+     * Gets the lookup cache using the API client.
+     *
+     * @return a lookup cache
+     * @throws GitLabApiException if the client couldn't be created with the given values
+     */
+    private GitLabLookupCache getCache() throws GitLabApiException {
+        for (;;) {
+            GitLabApiClient currentClient = getClient();
+            synchronized (clientLock) {
+                // the client may have been replaced since it was fetched
+                if (currentClient == client) {
+                    if (lookupCache == null || lookupCache.getClient() != currentClient) {
+                        lookupCache = new GitLabLookupCache(currentClient);
+                    }
+                    return lookupCache;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the API client of the default server without creating it.
+     *
+     * @return the client (or null if it hasn't been created)
+     */
+    /* package */ GitLabApiClient getCreatedClient() {
+        synchronized (clientLock) {
+            return client;
+        }
+    }
+
+    /**
+     * Gets the lookup cache of the default server without creating it.
+     *
+     * @return the lookup cache (or null if it hasn't been created)
+     */
+    /* package */ GitLabLookupCache getCreatedLookupCache() {
+        synchronized (clientLock) {
+            return lookupCache;
+        }
+    }
+
+    /**
+     * Gets the directory of the configured server.
+     *
+     * @return a directory
+     */
+    private synchronized GitLabDirectory getServerDirectory() {
+        if (directory == null) {
+            directory = new GitLabDirectory();
+            directory.addListener(new GitLabDirectoryListener.Notifier());
+        }
+        return directory;
+    }
+
+    /**
+     * Checks whether a token matches the configured system hook token.
+     *
+     * The tokens are compared in constant time to not reveal the configured token through timing.
+     *
+     * @param token the token sent with a system hook
+     * @return true if a system hook token is configured and the token matches it
+     */
+    public boolean isValidSystemHookToken(String token) {
+        return isValidToken(getSystemHookToken(), token);
+    }
+
+    /**
+     * Checks whether a token matches the configured metrics token.
+     *
+     * @param token the token sent with a scrape of the metrics
+     * @return true if a metrics token is configured and the token matches it
+     */
+    public boolean isValidMetricsToken(String token) {
+        return isValidToken(getMetricsToken(), token);
+    }
+
+    /**
+     * Checks whether a token matches a configured token in constant time.
+     *
+     * @param expectedToken the configured token (can be blank if not configured)
+     * @param token         the token to check (can be null)
+     * @return true if a token is configured and the token matches it
+     */
+    private static boolean isValidToken(String expectedToken, String token) {
+        if (isBlank(expectedToken) || token == null) {
+            return false;
+        }
+        try {
+            return MessageDigest.isEqual(expectedToken.getBytes("UTF-8"), token.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
         }
-        return client;
     }
 
     /**
@@ -222,6 +909,139 @@ public class GitLabConfiguration extends GlobalConfiguration {
         return null;
     }
 
+    /**
+     * Returns the API client of a named server.
+     *
+     * The client is created once and kept until the settings of the server change, independently of other servers.
+     *
+     * @param serverName the name of the server
+     * @return an GitLab API or null if no server has the name
+     */
+    public static GitLabApiClient getApiClient(String serverName) {
+        GitLabConfiguration config = getInstance();
+        GitLabServer server = (config != null) ? config.getServer(serverName) : null;
+
+        try {
+            if (server != null) {
+                return server.getClient(config);
+            }
+        } catch (GitLabApiException e) {
+            // fixme: use logger
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a lookup cache using the API client of a named server.
+     *
+     * @param serverName the name of the server
+     * @return a lookup cache or null if no server has the name
+     */
+    public static GitLabLookupCache getLookupCache(String serverName) {
+        GitLabConfiguration config = getInstance();
+        GitLabServer server = (config != null) ? config.getServer(serverName) : null;
+
+        try {
+            if (server != null) {
+                return server.getLookupCache(config);
+            }
+        } catch (GitLabApiException e) {
+            // fixme: use logger
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a lookup cache using the API client.
+     *
+     * Null if the configured values are incorrect.
+     *
+     * @return a lookup cache or null if wrong values are configured
+     */
+    public static GitLabLookupCache getLookupCache() {
+        GitLabConfiguration config = getInstance();
+
+        try {
+            if (config != null) {
+                return config.getCache();
+            }
+        } catch (GitLabApiException e) {
+            // fixme: use logger
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the quotas and usage of the consumers of the API client.
+     *
+     * @return the consumer quotas or null if Jenkins misbehaves
+     */
+    public static ConsumerQuotas getConsumerUsage() {
+        GitLabConfiguration config = getInstance();
+        return (config != null) ? config.getQuotas() : null;
+    }
+
+    /**
+     * Returns the metrics of the requests to the default server by endpoint template.
+     *
+     * The metrics are also registered with JMX as {@value #DEFAULT_METRICS_NAME}.
+     *
+     * @return the metrics or null if Jenkins misbehaves
+     */
+    public static ApiMetrics getMetrics() {
+        GitLabConfiguration config = getInstance();
+        return (config != null) ? config.metrics : null;
+    }
+
+    /**
+     * Returns the metrics of the requests to a named server by endpoint template.
+     *
+     * The metrics are also registered with JMX as {@value #SERVER_METRICS_PREFIX} followed by the name.
+     *
+     * @param serverName the name of the server
+     * @return the metrics or null if no server has the name
+     */
+    public static ApiMetrics getMetrics(String serverName) {
+        GitLabConfiguration config = getInstance();
+        GitLabServer server = (config != null) ? config.getServer(serverName) : null;
+        return (server != null) ? server.getMetrics() : null;
+    }
+
+    /**
+     * Returns the detector of slow and repeated calls to all servers.
+     *
+     * The detector keeps the offenders flagged while call diagnostics were enabled.
+     *
+     * @return the detector or null if Jenkins misbehaves
+     */
+    public static CallPatternDetector getCallPatternDetector() {
+        GitLabConfiguration config = getInstance();
+        return (config != null) ? config.callPatternDetector : null;
+    }
+
+    /**
+     * Returns the attribution of the requests to all servers to their callers.
+     *
+     * @return the attribution or null if Jenkins misbehaves
+     */
+    public static CallerAttribution getCallerAttribution() {
+        GitLabConfiguration config = getInstance();
+        return (config != null) ? config.callerAttribution : null;
+    }
+
+    /**
+     * Returns the directory of the configured server kept up to date by system hooks.
+     *
+     * @return a directory or null if Jenkins misbehaves
+     */
+    public static GitLabDirectory getDirectory() {
+        GitLabConfiguration config = getInstance();
+        return (config != null) ? config.getServerDirectory() : null;
+    }
+
     /**
      * Checks whether the required fields are set for API.
      *
@@ -302,6 +1122,115 @@ public class GitLabConfiguration extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Probes the latency and throughput of the connection to the given GitLab host through the configured proxy.
+     *
+     * Only administrators may probe since the probe makes requests to any host with any token.
+     *
+     * @param serverUrl    the GitLab host URL
+     * @param privateToken the GitLab private token
+     * @return a FormValidation object containing the outcome of the probe
+     */
+    @RequirePOST
+    public FormValidation doProbeConnection(
+            @QueryParameter("serverUrl") final String serverUrl,
+            @QueryParameter("privateToken") final String privateToken) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (isBlank(serverUrl) || isBlank(privateToken)) {
+            return FormValidation.error("Error: Server URL and private token are required");
+        }
+
+        fetchProxyConfiguration();
+        // a client with the settings to probe, since they may not have been saved yet
+        GitLabApiClient probeClient = new GitLabApiClient(
+                serverUrl,
+                privateToken,
+                trimToNull(getProxyHost()),
+                getProxyPort(),
+                getProxyUsername(),
+                getProxyPassword(),
+                getNoProxyHostPatterns());
+        try {
+            ConnectionProbeResult result = new ConnectionProbe(probeClient).run();
+            if (result.getRequests() == 0) {
+                return FormValidation.error("Error: Could not establish a connection"
+                        + ((result.getFailure() != null) ? ": " + result.getFailure() : ""));
+            }
+            String report = formatProbeResult(result);
+            return (result.isTimedOut() || result.getFailures() > 0)
+                    ? FormValidation.warningWithMarkup(report)
+                    : FormValidation.okWithMarkup(report);
+        } catch (AuthenticationFailedException e) {
+            return FormValidation.error("Error: Host found but private token is incorrect");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FormValidation.error("Error: Interrupted while probing the connection");
+        } finally {
+            probeClient.shutdown();
+        }
+    }
+
+    /**
+     * Formats the outcome of a probe of a connection.
+     *
+     * @param result the outcome of the probe
+     * @return the outcome as HTML, one line per aspect
+     */
+    private static String formatProbeResult(ConnectionProbeResult result) {
+        List<String> lines = new ArrayList<String>();
+        lines.add(String.format("Latency: p50 %d ms, p95 %d ms, p99 %d ms over %d requests (%d failed)",
+                result.getP50(TimeUnit.MILLISECONDS), result.getP95(TimeUnit.MILLISECONDS),
+                result.getP99(TimeUnit.MILLISECONDS), result.getRequests(), result.getFailures()));
+        lines.add(String.format("Connections: %d opened, %d ms to connect, %d ms for the TLS handshake",
+                result.getConnections(), result.getConnectTime(TimeUnit.MILLISECONDS),
+                result.getTlsTime(TimeUnit.MILLISECONDS)));
+        lines.add("Keep-alive: " + (result.isKeepAlive() ? "working" : "not working")
+                + ", compression: " + (result.isCompressed() ? "used" : "not used"));
+        lines.add(String.format("Throughput: %.1f requests/s", result.getThroughput()));
+        if (result.isTimedOut()) {
+            lines.add("Timed out before all requests completed");
+        }
+        if (result.getFailure() != null) {
+            lines.add("First failure: " + result.getFailure());
+        }
+
+        StringBuilder report = new StringBuilder();
+        for (String line : lines) {
+            if (report.length() > 0) {
+                report.append("<br>");
+            }
+            report.append(Util.escape(line));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Validates the name of a named server.
+     *
+     * @param value the name
+     * @return a FormValidation object requiring a name
+     */
+    public FormValidation doCheckName(@QueryParameter String value) {
+        return isBlank(value) ? FormValidation.error("Name is required") : FormValidation.ok();
+    }
+
+    /**
+     * Validates the quotas of specific consumers.
+     *
+     * @param value one <code>consumer=maxConcurrent/requestsPerSecond</code> per line
+     * @return a FormValidation object pointing out the first malformed line
+     */
+    public FormValidation doCheckConsumerQuotas(@QueryParameter String value) {
+        if (value != null) {
+            for (String line : value.split("\\r?\\n")) {
+                if (isNotBlank(line) && !CONSUMER_QUOTA_PATTERN.matcher(line).matches()) {
+                    return FormValidation.error("Expected consumer=maxConcurrent/requestsPerSecond: " + line);
+                }
+            }
+        }
+        return FormValidation.ok();
+    }
+
     /**
      * Saves the configured values from the submitted form.
      *
@@ -310,7 +1239,21 @@ public class GitLabConfiguration extends GlobalConfiguration {
     @Override
     public boolean configure(StaplerRequest req, JSONObject formData) {
         setServerUrl(formData.getString("serverUrl"));
+        setReadServerUrls(formData.optString("readServerUrls"));
         setPrivateToken(formData.getString("privateToken"));
+        setSystemHookToken(formData.optString("systemHookToken"));
+        setMetricsToken(formData.optString("metricsToken"));
+        setConsumerMaxConcurrent(formData.optInt("consumerMaxConcurrent", DEFAULT_CONSUMER_MAX_CONCURRENT));
+        setConsumerRequestsPerSecond(formData.optDouble("consumerRequestsPerSecond", 0));
+        setConsumerQuotas(formData.optString("consumerQuotas"));
+        setCallDiagnostics(formData.optBoolean("callDiagnostics"));
+        setSlowCallThreshold(formData.optLong("slowCallThreshold", CallPatternDetector.DEFAULT_SLOW_THRESHOLD));
+        setRepeatedCallThreshold(formData.optInt("repeatedCallThreshold",
+                CallPatternDetector.DEFAULT_REPEAT_THRESHOLD));
+        Object serversData = formData.opt("servers");
+        setServers((serversData != null)
+                ? req.bindJSONToList(GitLabServer.class, serversData)
+                : Collections.<GitLabServer>emptyList());
         save();
 
         return true;
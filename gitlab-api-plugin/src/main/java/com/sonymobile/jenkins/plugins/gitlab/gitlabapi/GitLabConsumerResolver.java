@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.http.StackConsumerResolver;
+import hudson.PluginManager;
+import hudson.PluginWrapper;
+import jenkins.model.Jenkins;
+
+/**
+ * Identifies the plugin calling the API client from the stack of the current thread.
+ *
+ * The consumer is the short name of the plugin of the innermost caller outside the API client and Jenkins core. The
+ * stack is walked for every untagged request since request handling and build threads serve many plugins, and the
+ * plugin of each class is remembered so that the walk is usually cheap.
+ */
+public class GitLabConsumerResolver extends StackConsumerResolver {
+    /** The placeholder for classes not belonging to a plugin. */
+    private static final String NO_PLUGIN = "";
+
+    /**
+     * Creates a resolver skipping the classes never making requests on their own behalf.
+     */
+    public GitLabConsumerResolver() {
+        super("java.", "javax.", "sun.", "com.sun.", "com.sonymobile.gitlab.", "com.mashape.unirest.",
+                "org.apache.http.", "hudson.", "jenkins.", "org.kohsuke.stapler.", "groovy.", "org.codehaus.groovy.");
+    }
+
+    /**
+     * Gets the short name of the plugin of a class.
+     *
+     * @param className the name of the class
+     * @return the short name or {@link #NO_PLUGIN} if the class doesn't belong to a plugin
+     */
+    /* package */ String pluginOf(String className) {
+        String plugin = consumerOf(className);
+        return (plugin != null) ? plugin : NO_PLUGIN;
+    }
+
+    @Override
+    protected String lookUpConsumer(String className) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        PluginManager pluginManager = jenkins.getPluginManager();
+        try {
+            // don't initialize the class just to find its plugin
+            Class<?> clazz = Class.forName(className, false, pluginManager.uberClassLoader);
+            PluginWrapper plugin = pluginManager.whichPlugin(clazz);
+            return (plugin != null) ? plugin.getShortName() : null;
+        } catch (ClassNotFoundException e) {
+            // e.g. a class generated at runtime
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.http.ConsumerQuotas;
+import com.sonymobile.gitlab.http.ConsumerUsage;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows how much each consumer uses the API client on the <em>Manage Jenkins</em> page.
+ *
+ * Only administrators can see the page.
+ */
+@Extension
+public class GitLabConsumerUsageLink extends ManagementLink {
+    /** The URL name of the page. */
+    public static final String URL_NAME = "gitlab-api-usage";
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitLab API Usage";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Requests, rejections and quotas of each plugin using the GitLab API.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Gets the usage of all consumers which have made requests.
+     *
+     * @return the usages sorted by consumer
+     */
+    public List<ConsumerUsage> getUsages() {
+        ConsumerQuotas quotas = GitLabConfiguration.getConsumerUsage();
+        return (quotas != null) ? quotas.getUsages() : Collections.<ConsumerUsage>emptyList();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the live state of the clients of all configured servers on the <em>Manage Jenkins</em> page.
+ *
+ * The page is rendered from the counters kept by the clients and never creates a client. Only administrators can see
+ * the page.
+ */
+@Extension
+public class GitLabDiagnosticsLink extends ManagementLink {
+    /** The URL name of the page. */
+    public static final String URL_NAME = "gitlab-api-diagnostics";
+
+    /** The interval in seconds between reloads of the page. */
+    public static final int REFRESH_INTERVAL = 10;
+
+    /** The name of the file the trace of the requests is downloaded as. */
+    private static final String TRACE_FILE_NAME = "gitlab-api-trace.txt";
+
+    @Override
+    public String getIconFileName() {
+        return "monitor.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitLab API Diagnostics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Connections, requests in flight, caches, quotas, recent errors and requests of the GitLab API clients.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Gets the status of all configured servers.
+     *
+     * @return the status of each server, starting with the default server if configured
+     */
+    public List<GitLabServerStatus> getServers() {
+        GitLabConfiguration config = GitLabConfiguration.getInstance();
+        return (config != null) ? GitLabServerStatus.all(config) : Collections.<GitLabServerStatus>emptyList();
+    }
+
+    /**
+     * Dumps the most recent requests of all servers as text, one request per line.
+     *
+     * The dump is downloaded as a file if the <code>download</code> parameter is given.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException if the dump couldn't be written
+     */
+    public void doTrace(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("text/plain;charset=UTF-8");
+        if (req.getParameter("download") != null) {
+            rsp.setHeader("Content-Disposition", "attachment; filename=" + TRACE_FILE_NAME);
+        }
+        PrintWriter writer = rsp.getWriter();
+        for (GitLabServerStatus server : getServers()) {
+            writer.println("# Server " + server.getName());
+            server.getTrace().writeTo(writer);
+            writer.println();
+        }
+        writer.flush();
+    }
+}
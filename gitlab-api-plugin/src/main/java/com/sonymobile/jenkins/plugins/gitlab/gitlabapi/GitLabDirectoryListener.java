@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.directory.GitLabDirectoryChange;
+import com.sonymobile.gitlab.directory.GitLabDirectoryDiff;
+import com.sonymobile.gitlab.directory.GitLabDirectorySnapshot;
+import com.sonymobile.gitlab.directory.SnapshotListener;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.util.DaemonThreadFactory;
+import jenkins.model.Jenkins;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An extension point for reacting to changes of the users, groups and group memberships of the configured GitLab
+ * server.
+ *
+ * Every new snapshot of the directory, whether from a system hook or a synchronization, is compared with the previous
+ * one in the background and the changes are passed to all listeners in the order they happened. Implement
+ * {@link #onChange(GitLabDirectoryChange)} for each change or {@link #onChanges(GitLabDirectorySnapshot, List)} for
+ * the changes of a snapshot at once.
+ */
+public abstract class GitLabDirectoryListener implements ExtensionPoint {
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabDirectoryListener.class.getName());
+
+    /**
+     * Called with the changes leading up to a new snapshot.
+     *
+     * Calls {@link #onChange(GitLabDirectoryChange)} for each change by default.
+     *
+     * @param snapshot the new snapshot
+     * @param changes  the changes since the previous snapshot
+     */
+    public void onChanges(GitLabDirectorySnapshot snapshot, List<GitLabDirectoryChange> changes) {
+        for (GitLabDirectoryChange change : changes) {
+            onChange(change);
+        }
+    }
+
+    /**
+     * Called for a change.
+     *
+     * @param change the change
+     */
+    public void onChange(GitLabDirectoryChange change) {
+        // nothing to do by default
+    }
+
+    /**
+     * Gets all listeners.
+     *
+     * @return the listeners
+     */
+    public static ExtensionList<GitLabDirectoryListener> all() {
+        return Jenkins.getInstance().getExtensionList(GitLabDirectoryListener.class);
+    }
+
+    /**
+     * Compares the snapshots of a directory and notifies the listeners in the background.
+     */
+    /* package */ static class Notifier implements SnapshotListener {
+        /** The single thread comparing the snapshots, keeping the changes in order. */
+        private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+
+        @Override
+        public void snapshotPublished(final GitLabDirectorySnapshot previous, final GitLabDirectorySnapshot current) {
+            if (all().isEmpty()) {
+                // nobody to notify
+                return;
+            }
+
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<GitLabDirectoryChange> changes = GitLabDirectoryDiff.compare(previous, current);
+                    if (changes.isEmpty()) {
+                        return;
+                    }
+
+                    for (GitLabDirectoryListener listener : all()) {
+                        try {
+                            listener.onChanges(current, changes);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "GitLab directory listener " + listener + " failed", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
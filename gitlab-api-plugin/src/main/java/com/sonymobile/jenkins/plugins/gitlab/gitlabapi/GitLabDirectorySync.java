@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.directory.GitLabDirectory;
+import com.sonymobile.gitlab.directory.GitLabDirectorySynchronizer;
+import com.sonymobile.gitlab.directory.GitLabSyncResult;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.http.RequestContext;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically synchronizes the directory of the configured GitLab server with the API.
+ *
+ * The period, the number of groups to fetch the members of in each pass and the delay between those requests can be
+ * changed with the system properties <code>GitLabDirectorySync.period</code> (minutes),
+ * <code>GitLabDirectorySync.groupsPerPass</code> and <code>GitLabDirectorySync.requestDelay</code> (milliseconds).
+ */
+@Extension
+public class GitLabDirectorySync extends AsyncPeriodicWork {
+    /** The consumer of the requests made when synchronizing (to tell them apart in the usage and the quotas). */
+    public static final String CONSUMER = "gitlab-api-directory-sync";
+
+    /** The time between passes in minutes. */
+    private static final long PERIOD = Long.getLong(GitLabDirectorySync.class.getSimpleName() + ".period", 5);
+
+    /** The number of groups, besides new groups, to fetch the members of in each pass. */
+    private static final int GROUPS_PER_PASS = Integer.getInteger(
+            GitLabDirectorySync.class.getSimpleName() + ".groupsPerPass",
+            GitLabDirectorySynchronizer.DEFAULT_GROUPS_PER_PASS);
+
+    /** The delay between requests for group members in milliseconds. */
+    private static final long REQUEST_DELAY = Long.getLong(
+            GitLabDirectorySync.class.getSimpleName() + ".requestDelay", 50);
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabDirectorySync.class.getName());
+
+    /** The synchronizer of the last pass. */
+    private transient GitLabDirectorySynchronizer synchronizer;
+
+    /** The result of the last successful pass. */
+    private volatile GitLabSyncResult lastResult;
+
+    /**
+     * Creates the periodic work.
+     */
+    public GitLabDirectorySync() {
+        super("GitLab directory synchronization");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(PERIOD);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!GitLabConfiguration.isApiConfigured()) {
+            listener.getLogger().println("GitLab API isn't configured, skipping");
+            return;
+        }
+
+        String previousConsumer = RequestContext.setConsumer(CONSUMER);
+        try {
+            GitLabSyncResult result = getSynchronizer().synchronize();
+            lastResult = result;
+            listener.getLogger().println("Synchronized GitLab directory: " + result);
+            LOGGER.log(Level.FINE, "Synchronized GitLab directory: {0}", result);
+        } catch (GitLabApiException e) {
+            listener.error("Failed to synchronize GitLab directory: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Failed to synchronize GitLab directory", e);
+        } catch (RuntimeException e) {
+            // the client couldn't be created with the configured values
+            listener.error("Failed to synchronize GitLab directory: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Failed to synchronize GitLab directory", e);
+        } finally {
+            RequestContext.setConsumer(previousConsumer);
+        }
+    }
+
+    /**
+     * Gets the result of the last successful pass.
+     *
+     * @return the result or null if no pass has succeeded yet
+     */
+    public GitLabSyncResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Gets a synchronizer for the current client and directory.
+     *
+     * A new synchronizer is created if the configuration has changed since the last pass.
+     *
+     * @return a synchronizer
+     */
+    private GitLabDirectorySynchronizer getSynchronizer() {
+        GitLabApiClient client = GitLabConfiguration.getApiClient();
+        GitLabDirectory directory = GitLabConfiguration.getDirectory();
+        if (synchronizer == null || synchronizer.getClient() != client || synchronizer.getDirectory() != directory) {
+            synchronizer = new GitLabDirectorySynchronizer(client, directory)
+                    .withGroupsPerPass(GROUPS_PER_PASS)
+                    .withRequestDelay(REQUEST_DELAY, TimeUnit.MILLISECONDS);
+        }
+        return synchronizer;
+    }
+}
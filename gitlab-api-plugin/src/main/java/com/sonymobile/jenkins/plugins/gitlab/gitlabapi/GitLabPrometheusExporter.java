@@ -0,0 +1,382 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.cache.RefreshingCache;
+import com.sonymobile.gitlab.http.ConsumerUsage;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.metrics.LatencyHistogram;
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the metrics of the API clients of all configured GitLab servers in the Prometheus text format.
+ *
+ * The metrics are reached at <code>/gitlab-api-metrics/</code> with the configured metrics token as a bearer token in
+ * the <code>Authorization</code> header, or as an administrator. The metrics are rendered into a buffer which is kept
+ * between scrapes, reading the counters of the clients in place.
+ */
+@Extension
+public class GitLabPrometheusExporter implements UnprotectedRootAction {
+    /** The URL name of the exporter. */
+    public static final String URL_NAME = "gitlab-api-metrics";
+
+    /** The content type of the Prometheus text format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** The prefix of the bearer token in the authorization header. */
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /** The quantiles of the latencies. */
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    /** The labels of the quantiles of the latencies. */
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.95", "0.99" };
+
+    /** The labels of the status classes, by the first digit of the status codes (0 for failed requests). */
+    private static final String[] STATUS_CLASS_LABELS = { "none", "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+    /** The writer rendering the metrics (guards the latencies as well). */
+    private final PrometheusTextWriter writer = new PrometheusTextWriter();
+
+    /** The latencies of the quantiles of an endpoint template in nanoseconds. */
+    private final long[] latencies = new long[QUANTILES.length];
+
+    @Override
+    public String getIconFileName() {
+        // not shown in the side panel
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Renders the metrics.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException if the response couldn't be sent
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GitLabConfiguration config = GitLabConfiguration.getInstance();
+        if (config == null || !isAuthorized(config, req.getHeader("Authorization"))) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        List<GitLabServerStatus> servers = GitLabServerStatus.all(config);
+        rsp.setContentType(CONTENT_TYPE);
+        synchronized (writer) {
+            writer.reset();
+            render(servers);
+            writer.writeTo(rsp.getWriter());
+        }
+    }
+
+    /**
+     * Checks whether a scrape is authorized by the metrics token or the permissions of the user.
+     *
+     * @param config        the global configuration
+     * @param authorization the authorization header (can be null)
+     * @return true if the metrics may be read
+     */
+    private static boolean isAuthorized(GitLabConfiguration config, String authorization) {
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)
+                && config.isValidMetricsToken(authorization.substring(BEARER_PREFIX.length()).trim())) {
+            return true;
+        }
+        return Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER);
+    }
+
+    /**
+     * Renders the metrics of all servers, keeping the samples of each metric together.
+     *
+     * @param servers the servers
+     */
+    private void render(List<GitLabServerStatus> servers) {
+        renderEndpoints(servers);
+        renderClients(servers);
+        renderCaches(servers);
+        renderConsumers(servers);
+    }
+
+    /**
+     * Renders the metrics of the endpoint templates.
+     *
+     * @param servers the servers
+     */
+    private void renderEndpoints(List<GitLabServerStatus> servers) {
+        writer.header("gitlab_api_requests_total", "counter",
+                "Requests to the GitLab API by endpoint template and status class.");
+        for (GitLabServerStatus server : servers) {
+            for (EndpointMetrics endpoint : server.getEndpoints()) {
+                long failures = endpoint.getStatusCount(EndpointMetrics.NO_RESPONSE);
+                if (failures > 0) {
+                    endpointSample("gitlab_api_requests_total", server, endpoint)
+                            .label("status", STATUS_CLASS_LABELS[0]).value(failures);
+                }
+                for (int statusClass = 1; statusClass < STATUS_CLASS_LABELS.length; statusClass++) {
+                    long count = endpoint.getStatusClassCount(statusClass);
+                    if (count > 0) {
+                        endpointSample("gitlab_api_requests_total", server, endpoint)
+                                .label("status", STATUS_CLASS_LABELS[statusClass]).value(count);
+                    }
+                }
+            }
+        }
+
+        writer.header("gitlab_api_request_duration_seconds", "summary",
+                "Latency of the requests to the GitLab API by endpoint template.");
+        for (GitLabServerStatus server : servers) {
+            for (EndpointMetrics endpoint : server.getEndpoints()) {
+                LatencyHistogram latency = endpoint.getLatency();
+                latency.getPercentiles(QUANTILES, latencies);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    endpointSample("gitlab_api_request_duration_seconds", server, endpoint)
+                            .label("quantile", QUANTILE_LABELS[i]).seconds(latencies[i]);
+                }
+                endpointSample("gitlab_api_request_duration_seconds_sum", server, endpoint)
+                        .seconds(latency.getSum(TimeUnit.NANOSECONDS));
+                endpointSample("gitlab_api_request_duration_seconds_count", server, endpoint)
+                        .value(latency.getCount());
+            }
+        }
+
+        writer.header("gitlab_api_response_bytes_total", "counter",
+                "Bytes received in response bodies by endpoint template.");
+        for (GitLabServerStatus server : servers) {
+            for (EndpointMetrics endpoint : server.getEndpoints()) {
+                endpointSample("gitlab_api_response_bytes_total", server, endpoint).value(endpoint.getBytesIn());
+            }
+        }
+
+        writer.header("gitlab_api_request_bytes_total", "counter",
+                "Bytes sent in request bodies by endpoint template.");
+        for (GitLabServerStatus server : servers) {
+            for (EndpointMetrics endpoint : server.getEndpoints()) {
+                endpointSample("gitlab_api_request_bytes_total", server, endpoint).value(endpoint.getBytesOut());
+            }
+        }
+    }
+
+    /**
+     * Renders the connection pools and schedulers of the clients which have been created.
+     *
+     * @param servers the servers
+     */
+    private void renderClients(List<GitLabServerStatus> servers) {
+        writer.header("gitlab_api_pool_connections", "gauge",
+                "Connections of the connection pool by state, and requests waiting for a connection.");
+        for (GitLabServerStatus server : servers) {
+            if (server.getPoolStats() != null) {
+                writer.sample("gitlab_api_pool_connections").label("server", server.getName())
+                        .label("state", "leased").value(server.getPoolStats().getLeased());
+                writer.sample("gitlab_api_pool_connections").label("server", server.getName())
+                        .label("state", "available").value(server.getPoolStats().getAvailable());
+                writer.sample("gitlab_api_pool_connections").label("server", server.getName())
+                        .label("state", "pending").value(server.getPoolStats().getPending());
+            }
+        }
+
+        writer.header("gitlab_api_pool_max_connections", "gauge", "The size of the connection pool.");
+        for (GitLabServerStatus server : servers) {
+            if (server.getPoolStats() != null) {
+                writer.sample("gitlab_api_pool_max_connections").label("server", server.getName())
+                        .value(server.getPoolStats().getMax());
+            }
+        }
+
+        writer.header("gitlab_api_requests_in_flight", "gauge", "Requests in flight let through by the scheduler.");
+        for (GitLabServerStatus server : servers) {
+            if (server.getClient() != null) {
+                writer.sample("gitlab_api_requests_in_flight").label("server", server.getName())
+                        .value(server.getClient().getScheduler().getInFlight());
+            }
+        }
+
+        writer.header("gitlab_api_concurrency_limit", "gauge",
+                "The number of requests the scheduler lets be in flight at once.");
+        for (GitLabServerStatus server : servers) {
+            if (server.getClient() != null) {
+                writer.sample("gitlab_api_concurrency_limit").label("server", server.getName())
+                        .value(server.getClient().getScheduler().getLimit());
+            }
+        }
+    }
+
+    /**
+     * Renders the lookup caches which have been created.
+     *
+     * Hit ratios are computed from the counters, e.g. <code>rate(gitlab_api_cache_hits_total[5m])</code> divided by
+     * the rate of hits and misses.
+     *
+     * @param servers the servers
+     */
+    private void renderCaches(List<GitLabServerStatus> servers) {
+        writer.header("gitlab_api_cache_hits_total", "counter", "Lookups answered by the lookup cache.");
+        for (GitLabServerStatus server : servers) {
+            GitLabLookupCache cache = server.getCache();
+            if (cache != null) {
+                renderCacheHits(server, "users", cache.getUserCache());
+                renderCacheHits(server, "groups", cache.getGroupCache());
+                renderCacheHits(server, "group_members", cache.getGroupMembersCache());
+            }
+        }
+
+        writer.header("gitlab_api_cache_misses_total", "counter", "Lookups requested from the API.");
+        for (GitLabServerStatus server : servers) {
+            GitLabLookupCache cache = server.getCache();
+            if (cache != null) {
+                cacheSample("gitlab_api_cache_misses_total", server, "users").value(cache.getUserCache().getMisses());
+                cacheSample("gitlab_api_cache_misses_total", server, "groups").value(cache.getGroupCache().getMisses());
+                cacheSample("gitlab_api_cache_misses_total", server, "group_members")
+                        .value(cache.getGroupMembersCache().getMisses());
+            }
+        }
+
+        writer.header("gitlab_api_cache_entries", "gauge", "Entries held by the lookup cache.");
+        for (GitLabServerStatus server : servers) {
+            GitLabLookupCache cache = server.getCache();
+            if (cache != null) {
+                cacheSample("gitlab_api_cache_entries", server, "users").value(cache.getUserCache().size());
+                cacheSample("gitlab_api_cache_entries", server, "groups").value(cache.getGroupCache().size());
+                cacheSample("gitlab_api_cache_entries", server, "group_members")
+                        .value(cache.getGroupMembersCache().size());
+            }
+        }
+    }
+
+    /**
+     * Renders the fresh and stale hits of a cache.
+     *
+     * @param server the server
+     * @param name   the name of the cache
+     * @param cache  the cache
+     */
+    private void renderCacheHits(GitLabServerStatus server, String name, RefreshingCache<?, ?> cache) {
+        cacheSample("gitlab_api_cache_hits_total", server, name).label("freshness", "fresh").value(cache.getFreshHits());
+        cacheSample("gitlab_api_cache_hits_total", server, name).label("freshness", "stale").value(cache.getStaleHits());
+    }
+
+    /**
+     * Renders the usage and remaining budget of the quota of each consumer.
+     *
+     * @param servers the servers
+     */
+    private void renderConsumers(List<GitLabServerStatus> servers) {
+        writer.header("gitlab_api_consumer_requests_total", "counter", "Requests let through by consumer.");
+        for (GitLabServerStatus server : servers) {
+            for (ConsumerUsage usage : server.getUsages()) {
+                consumerSample("gitlab_api_consumer_requests_total", server, usage).value(usage.getRequests());
+            }
+        }
+
+        writer.header("gitlab_api_consumer_rejected_total", "counter", "Requests rejected by the consumer quotas.");
+        for (GitLabServerStatus server : servers) {
+            for (ConsumerUsage usage : server.getUsages()) {
+                consumerSample("gitlab_api_consumer_rejected_total", server, usage).value(usage.getRejected());
+            }
+        }
+
+        writer.header("gitlab_api_consumer_in_flight", "gauge", "Requests in flight by consumer.");
+        for (GitLabServerStatus server : servers) {
+            for (ConsumerUsage usage : server.getUsages()) {
+                consumerSample("gitlab_api_consumer_in_flight", server, usage).value(usage.getInFlight());
+            }
+        }
+
+        writer.header("gitlab_api_consumer_max_concurrent", "gauge",
+                "The most requests the quota of the consumer lets be in flight (0 for no limit).");
+        for (GitLabServerStatus server : servers) {
+            for (ConsumerUsage usage : server.getUsages()) {
+                consumerSample("gitlab_api_consumer_max_concurrent", server, usage)
+                        .value(usage.getQuota().getMaxConcurrent());
+            }
+        }
+
+        writer.header("gitlab_api_consumer_available_requests", "gauge",
+                "Requests the rate limit of the consumer lets through right away (+Inf for no limit).");
+        for (GitLabServerStatus server : servers) {
+            for (ConsumerUsage usage : server.getUsages()) {
+                consumerSample("gitlab_api_consumer_available_requests", server, usage)
+                        .value(usage.getAvailableRequests());
+            }
+        }
+    }
+
+    /**
+     * Starts a sample of an endpoint template.
+     *
+     * @param name     the name of the metric
+     * @param server   the server
+     * @param endpoint the endpoint template
+     * @return the writer for adding labels and the value
+     */
+    private PrometheusTextWriter endpointSample(String name, GitLabServerStatus server, EndpointMetrics endpoint) {
+        return writer.sample(name).label("server", server.getName()).label("endpoint", endpoint.getTemplate());
+    }
+
+    /**
+     * Starts a sample of a cache.
+     *
+     * @param name   the name of the metric
+     * @param server the server
+     * @param cache  the name of the cache
+     * @return the writer for adding labels and the value
+     */
+    private PrometheusTextWriter cacheSample(String name, GitLabServerStatus server, String cache) {
+        return writer.sample(name).label("server", server.getName()).label("cache", cache);
+    }
+
+    /**
+     * Starts a sample of a consumer.
+     *
+     * @param name   the name of the metric
+     * @param server the server
+     * @param usage  the usage of the consumer
+     * @return the writer for adding labels and the value
+     */
+    private PrometheusTextWriter consumerSample(String name, GitLabServerStatus server, ConsumerUsage usage) {
+        return writer.sample(name).label("server", server.getName()).label("consumer", usage.getConsumer());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.http.ReadEndpoint;
+import com.sonymobile.gitlab.http.ReadEndpointRouter;
+import com.sonymobile.gitlab.http.RequestContext;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically checks the health of the configured read servers.
+ *
+ * Failing servers are taken back into rotation once they pass a check. The period can be changed with the system
+ * property <code>GitLabReadServerCheck.period</code> (seconds).
+ */
+@Extension
+public class GitLabReadServerCheck extends AsyncPeriodicWork {
+    /** The consumer of the requests made when checking (to tell them apart in the usage and the quotas). */
+    public static final String CONSUMER = "gitlab-api-read-server-check";
+
+    /** The time between checks in seconds. */
+    private static final long PERIOD = Long.getLong(GitLabReadServerCheck.class.getSimpleName() + ".period", 30);
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabReadServerCheck.class.getName());
+
+    /**
+     * Creates the periodic work.
+     */
+    public GitLabReadServerCheck() {
+        super("GitLab read server health check");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(PERIOD);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!GitLabConfiguration.isApiConfigured()) {
+            return;
+        }
+
+        String previousConsumer = RequestContext.setConsumer(CONSUMER);
+        try {
+            GitLabApiClient client = GitLabConfiguration.getApiClient();
+            ReadEndpointRouter router = client.getReadEndpointRouter();
+            if (router == null) {
+                return;
+            }
+            client.checkReadEndpoints();
+            for (ReadEndpoint endpoint : router.getEndpoints()) {
+                listener.getLogger().println(endpoint + (endpoint.isHealthy() ? " is healthy, " : " is failing, ")
+                        + endpoint.getLatency(TimeUnit.MILLISECONDS) + " ms");
+            }
+        } catch (GitLabApiException e) {
+            listener.error("Failed to check GitLab read servers: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Failed to check GitLab read servers", e);
+        } catch (RuntimeException e) {
+            // the client couldn't be created with the configured values
+            listener.error("Failed to check GitLab read servers: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Failed to check GitLab read servers", e);
+        } finally {
+            RequestContext.setConsumer(previousConsumer);
+        }
+    }
+}
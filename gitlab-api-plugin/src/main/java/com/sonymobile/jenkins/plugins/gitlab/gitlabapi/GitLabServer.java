@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.exceptions.GitLabApiException;
+import com.sonymobile.gitlab.http.ConsumerQuotas;
+import com.sonymobile.gitlab.metrics.ApiMetrics;
+import hudson.ProxyConfiguration;
+import hudson.util.Secret;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import static org.apache.commons.lang.StringUtils.trimToNull;
+
+/**
+ * A named GitLab server configured in addition to the default server.
+ *
+ * Every server has a client, a lookup cache, consumer quotas and metrics of its own. The client and the cache are
+ * created when first used and kept until the connection settings of the server or the proxy configuration change.
+ */
+public class GitLabServer {
+    /** The name of the server. */
+    private final String name;
+
+    /** The GitLab server URL. */
+    private final String serverUrl;
+
+    /** The private GitLab token. */
+    private final Secret privateToken;
+
+    /** The URLs of servers serving read requests in place of the GitLab server, one per line. */
+    private final String readServerUrls;
+
+    /** The proxy configuration the client was created with. */
+    private transient ProxyConfiguration clientProxyConfiguration;
+
+    /** The GitLab API client. */
+    private transient GitLabApiClient client;
+
+    /** The lookup cache using the API client. */
+    private transient GitLabLookupCache lookupCache;
+
+    /** The quotas and usage of the consumers, kept when the client is replaced. */
+    private transient volatile ConsumerQuotas quotas;
+
+    /** The metrics of the requests, kept when the client is replaced. */
+    private transient volatile ApiMetrics metrics;
+
+    /**
+     * Creates a server configuration.
+     *
+     * @param name           the name of the server
+     * @param serverUrl      the GitLab server URL
+     * @param privateToken   the private GitLab token
+     * @param readServerUrls the URLs of servers serving read requests, one per line
+     */
+    @DataBoundConstructor
+    public GitLabServer(String name, String serverUrl, String privateToken, String readServerUrls) {
+        this.name = trimToNull(name);
+        this.serverUrl = trimToNull(serverUrl);
+        this.privateToken = Secret.fromString(privateToken);
+        this.readServerUrls = readServerUrls;
+        this.quotas = createQuotas();
+        this.metrics = new ApiMetrics();
+    }
+
+    /**
+     * Restores the transient state after the server configuration was loaded.
+     *
+     * @return this object
+     */
+    private Object readResolve() {
+        quotas = createQuotas();
+        metrics = new ApiMetrics();
+        return this;
+    }
+
+    /**
+     * Gets the name of the server.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the GitLab server URL.
+     *
+     * @return the server URL
+     */
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    /**
+     * Gets the private GitLab API token.
+     *
+     * @return the private token
+     */
+    public String getPrivateToken() {
+        return Secret.toString(privateToken);
+    }
+
+    /**
+     * Gets the URLs of servers serving read requests in place of the GitLab server.
+     *
+     * @return one server URL per line
+     */
+    public String getReadServerUrls() {
+        return readServerUrls;
+    }
+
+    /**
+     * Checks whether another server configuration connects the same way as this one.
+     *
+     * @param other the other server configuration
+     * @return true if the name and all connection settings are equal
+     */
+    /* package */ boolean isSameServer(GitLabServer other) {
+        return equal(name, other.name)
+                && equal(serverUrl, other.serverUrl)
+                && equal(getPrivateToken(), other.getPrivateToken())
+                && equal(readServerUrls, other.readServerUrls);
+    }
+
+    /**
+     * Gets the API client of the server.
+     *
+     * @param config the global configuration providing the proxy and quota settings
+     * @return the API client
+     * @throws GitLabApiException if the client couldn't be created with the configured values
+     */
+    /* package */ synchronized GitLabApiClient getClient(GitLabConfiguration config) throws GitLabApiException {
+        ProxyConfiguration proxyConfiguration = config.fetchProxyConfiguration();
+        if (client == null || clientProxyConfiguration != proxyConfiguration) {
+            GitLabApiClient replacedClient = client;
+            client = config.createClient(serverUrl, getPrivateToken(), readServerUrls, getQuotas(), metrics);
+            clientProxyConfiguration = proxyConfiguration;
+            if (replacedClient != null) {
+                replacedClient.shutdown();
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Shuts down the connection pool of the client of a removed or replaced server.
+     */
+    /* package */ synchronized void shutdown() {
+        if (client != null) {
+            client.shutdown();
+            client = null;
+            lookupCache = null;
+        }
+    }
+
+    /**
+     * Gets the lookup cache using the API client of the server.
+     *
+     * @param config the global configuration providing the proxy and quota settings
+     * @return the lookup cache
+     * @throws GitLabApiException if the client couldn't be created with the configured values
+     */
+    /* package */ synchronized GitLabLookupCache getLookupCache(GitLabConfiguration config) throws GitLabApiException {
+        GitLabApiClient currentClient = getClient(config);
+        if (lookupCache == null || lookupCache.getClient() != currentClient) {
+            lookupCache = new GitLabLookupCache(currentClient);
+        }
+        return lookupCache;
+    }
+
+    /**
+     * Gets the API client of the server without creating it.
+     *
+     * @return the client (or null if it hasn't been created)
+     */
+    /* package */ synchronized GitLabApiClient getCreatedClient() {
+        return client;
+    }
+
+    /**
+     * Gets the lookup cache of the server without creating it.
+     *
+     * @return the lookup cache (or null if it hasn't been created)
+     */
+    /* package */ synchronized GitLabLookupCache getCreatedLookupCache() {
+        return lookupCache;
+    }
+
+    /**
+     * Gets the quotas and usage of the consumers of the server.
+     *
+     * @return the consumer quotas
+     */
+    /* package */ ConsumerQuotas getQuotas() {
+        return quotas;
+    }
+
+    /**
+     * Gets the metrics of the requests to the server.
+     *
+     * @return the metrics
+     */
+    /* package */ ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Creates the quotas and usage of the consumers.
+     *
+     * @return empty consumer quotas
+     */
+    private static ConsumerQuotas createQuotas() {
+        return new ConsumerQuotas().withResolver(new GitLabConsumerResolver());
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Compares two strings which may be null.
+     *
+     * @param a a string (can be null)
+     * @param b another string (can be null)
+     * @return true if both are null or equal
+     */
+    private static boolean equal(String a, String b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.api.GitLabApiClient;
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.http.ConsumerQuotas;
+import com.sonymobile.gitlab.http.ConsumerUsage;
+import com.sonymobile.gitlab.http.ReadEndpoint;
+import com.sonymobile.gitlab.http.ReadEndpointRouter;
+import com.sonymobile.gitlab.metrics.ApiError;
+import com.sonymobile.gitlab.metrics.ApiMetrics;
+import com.sonymobile.gitlab.metrics.EndpointMetrics;
+import com.sonymobile.gitlab.metrics.RequestTrace;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The counters of the client of a configured server, gathered without creating the client or its cache.
+ *
+ * The counters are read in place, so the status is cheap to gather whenever it is shown.
+ */
+public final class GitLabServerStatus {
+    /** The name of the server. */
+    private final String name;
+
+    /** The metrics of the requests. */
+    private final ApiMetrics metrics;
+
+    /** The metrics of the endpoint templates. */
+    private final List<EndpointMetrics> endpoints;
+
+    /** The usage of the consumers. */
+    private final List<ConsumerUsage> usages;
+
+    /** The API client (or null if it hasn't been created). */
+    private final GitLabApiClient client;
+
+    /** The connection pool of the client (or null if the client hasn't been created). */
+    private final PoolStats poolStats;
+
+    /** The lookup cache (or null if it hasn't been created). */
+    private final GitLabLookupCache cache;
+
+    /**
+     * Gathers the counters of a server.
+     *
+     * @param name    the name of the server
+     * @param metrics the metrics of the requests
+     * @param quotas  the quotas and usage of the consumers
+     * @param client  the API client (or null if it hasn't been created)
+     * @param cache   the lookup cache (or null if it hasn't been created)
+     */
+    private GitLabServerStatus(String name, ApiMetrics metrics, ConsumerQuotas quotas, GitLabApiClient client,
+                               GitLabLookupCache cache) {
+        this.name = name;
+        this.metrics = metrics;
+        this.endpoints = metrics.getEndpoints();
+        this.usages = quotas.getUsages();
+        this.client = client;
+        this.poolStats = (client != null) ? client.getPoolStats() : null;
+        this.cache = cache;
+    }
+
+    /**
+     * Gathers the counters of all configured servers.
+     *
+     * @param config the global configuration
+     * @return the status of each server, starting with the default server if configured
+     */
+    /* package */ static List<GitLabServerStatus> all(GitLabConfiguration config) {
+        List<GitLabServerStatus> servers = new ArrayList<GitLabServerStatus>();
+        if (GitLabConfiguration.isApiConfigured()) {
+            servers.add(new GitLabServerStatus(GitLabConfiguration.DEFAULT_METRICS_NAME,
+                    GitLabConfiguration.getMetrics(), GitLabConfiguration.getConsumerUsage(),
+                    config.getCreatedClient(), config.getCreatedLookupCache()));
+        }
+        for (GitLabServer server : config.getServers()) {
+            servers.add(new GitLabServerStatus(server.getName(), server.getMetrics(), server.getQuotas(),
+                    server.getCreatedClient(), server.getCreatedLookupCache()));
+        }
+        return servers;
+    }
+
+    /**
+     * Gets the name of the server.
+     *
+     * @return the name, {@value GitLabConfiguration#DEFAULT_METRICS_NAME} for the default server
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the metrics of the endpoint templates.
+     *
+     * @return the metrics sorted by template
+     */
+    public List<EndpointMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Gets the usage of the consumers.
+     *
+     * @return the usages sorted by consumer
+     */
+    public List<ConsumerUsage> getUsages() {
+        return usages;
+    }
+
+    /**
+     * Gets the API client.
+     *
+     * @return the client or null if it hasn't been created
+     */
+    public GitLabApiClient getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the connection pool of the client.
+     *
+     * @return the numbers of connections by state or null if the client hasn't been created
+     */
+    public PoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    /**
+     * Gets the connection pool of the client by route.
+     *
+     * @return the numbers of connections by state by route (empty if the client hasn't been created)
+     */
+    public SortedMap<String, PoolStats> getRoutePoolStats() {
+        return (client != null) ? client.getRoutePoolStats() : new TreeMap<String, PoolStats>();
+    }
+
+    /**
+     * Gets the read endpoints of the client, each with a circuit open while the endpoint is unhealthy.
+     *
+     * @return the read endpoints (empty if there are none or the client hasn't been created)
+     */
+    public List<ReadEndpoint> getReadEndpoints() {
+        ReadEndpointRouter router = (client != null) ? client.getReadEndpointRouter() : null;
+        return (router != null) ? router.getEndpoints() : Collections.<ReadEndpoint>emptyList();
+    }
+
+    /**
+     * Gets the lookup cache.
+     *
+     * @return the cache or null if it hasn't been created
+     */
+    public GitLabLookupCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the most recent errors.
+     *
+     * @return the errors, the most recent first
+     */
+    public List<ApiError> getRecentErrors() {
+        return metrics.getRecentErrors();
+    }
+
+    /**
+     * Gets the number of errors, including errors no longer kept.
+     *
+     * @return the number of errors
+     */
+    public long getErrorCount() {
+        return metrics.getErrorCount();
+    }
+
+    /**
+     * Gets the trace of the most recent requests.
+     *
+     * @return the trace
+     */
+    public RequestTrace getTrace() {
+        return metrics.getTrace();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import com.sonymobile.gitlab.cache.GitLabLookupCache;
+import com.sonymobile.gitlab.directory.GitLabDirectory;
+import com.sonymobile.gitlab.model.GitLabSystemHookEvent;
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives system hooks sent by GitLab and applies them to the directory and the lookup cache of the configured server.
+ *
+ * The receiver is reached at <code>/gitlab-systemhook/</code>. Only POST requests authenticated with the configured
+ * system hook token in the <code>X-Gitlab-Token</code> header are accepted. The receiver is disabled until a token
+ * is configured.
+ */
+@Extension
+public class GitLabSystemHookReceiver implements UnprotectedRootAction {
+    /** The URL name of the receiver. */
+    public static final String URL_NAME = "gitlab-systemhook";
+
+    /** The header with the secret token. */
+    public static final String TOKEN_HEADER = "X-Gitlab-Token";
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(GitLabSystemHookReceiver.class.getName());
+
+    @Override
+    public String getIconFileName() {
+        // not shown in the side panel
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Receives a system hook.
+     *
+     * @param req the request
+     * @param rsp the response
+     * @throws IOException if the request couldn't be read or the response couldn't be sent
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (!"POST".equals(req.getMethod())) {
+            rsp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        GitLabConfiguration config = GitLabConfiguration.getInstance();
+        if (config == null || !config.isValidSystemHookToken(req.getHeader(TOKEN_HEADER))) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        GitLabSystemHookEvent event;
+        try {
+            event = new GitLabSystemHookEvent(new JSONObject(IOUtils.toString(req.getReader())));
+        } catch (JSONException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed JSON object");
+            return;
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        apply(event);
+        rsp.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Applies a system hook event to the directory and the lookup cache.
+     *
+     * @param event the system hook event
+     */
+    private void apply(GitLabSystemHookEvent event) {
+        if (event.getType() == GitLabSystemHookEvent.Type.UNKNOWN) {
+            // not an event affecting users or groups
+            return;
+        }
+
+        GitLabDirectory directory = GitLabConfiguration.getDirectory();
+        if (directory != null && !directory.apply(event)) {
+            LOGGER.log(Level.FINE, "Ignored outdated or repeated system hook event {0}", event);
+        }
+
+        if (GitLabConfiguration.isApiConfigured()) {
+            try {
+                GitLabLookupCache lookupCache = GitLabConfiguration.getLookupCache();
+                if (lookupCache != null) {
+                    // the next lookup will fetch the changes from the API
+                    lookupCache.invalidate(event);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to invalidate the lookup cache", e);
+            }
+        }
+    }
+
+    /**
+     * Excludes the receiver from the CSRF protection since GitLab can't send a crumb.
+     */
+    @Extension
+    public static class CrumbExclusionImpl extends CrumbExclusion {
+        @Override
+        public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+                throws IOException, ServletException {
+            String pathInfo = req.getPathInfo();
+            if (pathInfo != null && (pathInfo.equals("/" + URL_NAME) || pathInfo.startsWith("/" + URL_NAME + "/"))) {
+                chain.doFilter(req, resp);
+                return true;
+            }
+            return false;
+        }
+    }
+}
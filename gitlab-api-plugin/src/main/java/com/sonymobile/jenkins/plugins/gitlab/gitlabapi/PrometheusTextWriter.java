@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renders metrics in the Prometheus text format into a buffer which is reused between scrapes.
+ *
+ * Numbers are formatted into the buffer without creating strings, so rendering only allocates when the buffer grows.
+ * A sample is written by {@link #sample(String)} followed by any number of {@link #label(String, String)} calls and
+ * one of the value methods. Not thread safe.
+ */
+/* package */ final class PrometheusTextWriter {
+    /** The number of nanoseconds per second. */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /** The number of decimals of fractional values. */
+    private static final long FRACTION_SCALE = 1000;
+
+    /** The buffer holding the rendered metrics. */
+    private final StringBuilder buffer = new StringBuilder(16384);
+
+    /** The chunk copied from the buffer to the output at a time. */
+    private final char[] chunk = new char[4096];
+
+    /** Whether the current sample has any labels. */
+    private boolean hasLabels = false;
+
+    /**
+     * Clears the buffer for a new scrape.
+     */
+    public void reset() {
+        buffer.setLength(0);
+        hasLabels = false;
+    }
+
+    /**
+     * Writes the help and type of a metric, once before its samples.
+     *
+     * @param name the name of the metric
+     * @param type the type of the metric, e.g. <code>counter</code>
+     * @param help the description of the metric
+     */
+    public void header(String name, String type, String help) {
+        buffer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        buffer.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Starts a sample.
+     *
+     * @param name the name of the metric, including any suffix such as <code>_sum</code>
+     * @return this object for chaining
+     */
+    public PrometheusTextWriter sample(String name) {
+        buffer.append(name);
+        hasLabels = false;
+        return this;
+    }
+
+    /**
+     * Adds a label to the current sample.
+     *
+     * @param name  the name of the label
+     * @param value the value of the label, escaped as needed
+     * @return this object for chaining
+     */
+    public PrometheusTextWriter label(String name, String value) {
+        buffer.append(hasLabels ? ',' : '{').append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                buffer.append('\\').append(c);
+            } else if (c == '\n') {
+                buffer.append("\\n");
+            } else {
+                buffer.append(c);
+            }
+        }
+        buffer.append('"');
+        hasLabels = true;
+        return this;
+    }
+
+    /**
+     * Ends the current sample with an integer value.
+     *
+     * @param value the value
+     */
+    public void value(long value) {
+        endLabels();
+        buffer.append(value).append('\n');
+    }
+
+    /**
+     * Ends the current sample with a fractional value, rounded to three decimals.
+     *
+     * @param value the value (can be infinite)
+     */
+    public void value(double value) {
+        endLabels();
+        if (Double.isNaN(value)) {
+            buffer.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            buffer.append((value > 0) ? "+Inf" : "-Inf");
+        } else {
+            long scaled = Math.round(value * FRACTION_SCALE);
+            appendFixed(scaled, FRACTION_SCALE);
+        }
+        buffer.append('\n');
+    }
+
+    /**
+     * Ends the current sample with a duration in seconds.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void seconds(long nanos) {
+        endLabels();
+        appendFixed(nanos, NANOS_PER_SECOND);
+        buffer.append('\n');
+    }
+
+    /**
+     * Writes the rendered metrics.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if the metrics couldn't be written
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for (int start = 0; start < buffer.length(); start += chunk.length) {
+            int end = Math.min(buffer.length(), start + chunk.length);
+            buffer.getChars(start, end, chunk, 0);
+            writer.write(chunk, 0, end - start);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Closes the labels of the current sample, if any, and separates the value.
+     */
+    private void endLabels() {
+        if (hasLabels) {
+            buffer.append('}');
+        }
+        buffer.append(' ');
+    }
+
+    /**
+     * Appends a scaled integer as a decimal number without creating strings.
+     *
+     * @param scaled the value multiplied by the scale
+     * @param scale  the scale, a power of ten
+     */
+    private void appendFixed(long scaled, long scale) {
+        if (scaled < 0) {
+            buffer.append('-');
+            scaled = -scaled;
+        }
+        buffer.append(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            buffer.append('.');
+            for (long digit = scale / 10; digit > 0 && fraction != 0; digit /= 10) {
+                buffer.append((char)('0' + fraction / digit));
+                fraction %= digit;
+            }
+        }
+    }
+}
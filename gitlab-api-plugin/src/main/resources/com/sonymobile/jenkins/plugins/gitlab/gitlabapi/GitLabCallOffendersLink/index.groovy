@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi.GitLabCallOffendersLink
+
+import java.util.concurrent.TimeUnit
+
+def l = namespace("/lib/layout")
+
+l.layout(title: my.displayName, permission: app.ADMINISTER) {
+    l.main_panel {
+        h1(my.displayName)
+
+        if (!my.enabled) {
+            p("Call diagnostics are disabled. Enable them under GitLab API Configuration on the Configure System page.")
+        }
+
+        def offenders = my.offenders
+        if (offenders.isEmpty()) {
+            p("No slow or repeated calls have been detected.")
+        } else {
+            p("Showing the ${offenders.size()} most recent of ${my.offenderCount} offenders, the longest time spent in calls first.")
+            table(class: "sortable pane bigtable") {
+                tr {
+                    th("Kind")
+                    th("Endpoint")
+                    th("Consumer")
+                    th("Scope")
+                    th("Calls")
+                    th("Time (ms)")
+                    th("Flagged")
+                    th("Caller")
+                }
+                offenders.each { offender ->
+                    tr {
+                        td(offender.kind)
+                        td(offender.template)
+                        td(offender.consumer ?: "")
+                        td(offender.scope)
+                        td(offender.calls)
+                        td(offender.getDuration(TimeUnit.MILLISECONDS))
+                        td(new Date(offender.time))
+                        td {
+                            pre(offender.stackTrace.join("\n"))
+                        }
+                    }
+                }
+            }
+            form(method: "post", action: "clear") {
+                input(type: "submit", value: "Clear")
+            }
+        }
+    }
+}
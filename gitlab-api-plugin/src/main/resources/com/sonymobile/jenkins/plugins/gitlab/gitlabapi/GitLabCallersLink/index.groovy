@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi.GitLabCallersLink
+
+def l = namespace("/lib/layout")
+
+l.layout(title: my.displayName, permission: app.ADMINISTER) {
+    l.main_panel {
+        h1(my.displayName)
+
+        def statistics = my.statistics
+        if (statistics.isEmpty()) {
+            p("No requests have been made yet.")
+        } else {
+            p("Requests tagged with a consumer are counted exactly. The callers of other requests are found from the " +
+                    "stack of one request in ${my.sampleInterval}, so their requests and bytes are estimates (~).")
+            table(class: "sortable pane bigtable") {
+                tr {
+                    th("Caller")
+                    th("Plugin")
+                    th("Endpoint")
+                    th("Requests")
+                    th("Samples")
+                    th("Bytes in")
+                    th("Bytes out")
+                    th("Mean time (ms)")
+                    th("95th percentile (ms)")
+                }
+                statistics.each { caller ->
+                    def estimate = caller.sampled ? "~" : ""
+                    tr {
+                        td(caller.caller)
+                        td(my.getPlugin(caller))
+                        td(caller.template)
+                        td(data: caller.requests, estimate + caller.requests)
+                        td(caller.samples)
+                        td(data: caller.bytesIn, estimate + caller.bytesIn)
+                        td(data: caller.bytesOut, estimate + caller.bytesOut)
+                        td(String.format("%.1f", caller.meanLatency))
+                        td(String.format("%.1f", caller.latency95))
+                    }
+                }
+            }
+            form(method: "post", action: "clear") {
+                input(type: "submit", value: "Clear")
+            }
+        }
+    }
+}
@@ -36,5 +36,83 @@ f.section(title: "GitLab API Configuration") {
         f.textbox()
     }
     
+    f.entry(title: "System hook token", field: "systemHookToken", description: "Secret token of the GitLab system hook sent to JENKINS_URL/gitlab-systemhook/") {
+        f.password()
+    }
+    
+    f.entry(title: "Metrics token", field: "metricsToken", description: "Bearer token of scrapes of the Prometheus metrics at JENKINS_URL/gitlab-api-metrics/ (administrators can always scrape)") {
+        f.password()
+    }
+    
     f.validateButton(title: "Test Connection", progress: "Trying to connect...", method: "testConnection", with: "serverUrl,privateToken")
+
+    f.validateButton(title: "Probe Latency", progress: "Probing the connection...", method: "probeConnection", with: "serverUrl,privateToken")
+
+    f.advanced(title: "Read servers") {
+        f.entry(title: "Read server URLs", field: "readServerUrls", description: "Servers answering read requests in place of the GitLab server, e.g. GitLab Geo secondaries, one URL per line. Sessions are always created on the GitLab server.") {
+            f.textarea()
+        }
+    }
+
+    f.advanced(title: "Additional servers") {
+        f.entry(title: "Named servers", description: "Servers looked up by name with GitLabConfiguration.getApiClient(name), each with a client and cache of its own") {
+            f.repeatable(field: "servers", add: "Add server") {
+                table(width: "100%") {
+                    f.entry(title: "Name", field: "name") {
+                        f.textbox()
+                    }
+
+                    f.entry(title: "GitLab server URL", field: "serverUrl") {
+                        f.textbox()
+                    }
+
+                    f.entry(title: "GitLab private token", field: "privateToken") {
+                        f.textbox()
+                    }
+
+                    f.entry(title: "Read server URLs", field: "readServerUrls") {
+                        f.textarea()
+                    }
+
+                    f.validateButton(title: "Test Connection", progress: "Trying to connect...", method: "testConnection", with: "serverUrl,privateToken")
+
+                    f.validateButton(title: "Probe Latency", progress: "Probing the connection...", method: "probeConnection", with: "serverUrl,privateToken")
+
+                    f.entry {
+                        div(align: "right") {
+                            f.repeatableDeleteButton()
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    f.advanced(title: "Consumer quotas") {
+        f.entry(title: "Requests in flight per consumer", field: "consumerMaxConcurrent", description: "The most requests each plugin using the API may have in flight at once (0 for no limit)") {
+            f.textbox()
+        }
+
+        f.entry(title: "Requests per second per consumer", field: "consumerRequestsPerSecond", description: "The most requests each plugin using the API may make per second (0 for no limit)") {
+            f.textbox()
+        }
+
+        f.entry(title: "Quotas of specific consumers", field: "consumerQuotas", description: "One consumer=maxConcurrent/requestsPerSecond per line, e.g. workflow-multibranch=2/5") {
+            f.textarea()
+        }
+    }
+
+    f.advanced(title: "Call diagnostics") {
+        f.entry(title: "Detect slow and repeated calls", field: "callDiagnostics", description: "Logs slow calls and calls to the same endpoint repeated within one scope, e.g. once per item of a list, with the code making them and lists them on the GitLab API Offenders page") {
+            f.checkbox()
+        }
+
+        f.entry(title: "Slow call threshold (ms)", field: "slowCallThreshold", description: "The duration of a slow call (0 to not flag slow calls)") {
+            f.textbox()
+        }
+
+        f.entry(title: "Repeated call threshold", field: "repeatedCallThreshold", description: "The number of calls to the same endpoint within one scope flagged as repeated (0 to not flag repeated calls)") {
+            f.textbox()
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi.GitLabConsumerUsageLink
+
+import java.util.concurrent.TimeUnit
+
+def l = namespace("/lib/layout")
+
+l.layout(title: my.displayName, permission: app.ADMINISTER) {
+    l.main_panel {
+        h1(my.displayName)
+
+        def usages = my.usages
+        if (usages.isEmpty()) {
+            p("No requests have been made yet.")
+        } else {
+            table(class: "sortable pane bigtable") {
+                tr {
+                    th(initialSortDir: "down", "Consumer")
+                    th("Quota")
+                    th("In flight")
+                    th("Peak in flight")
+                    th("Requests")
+                    th("Rejected")
+                    th("Average time (ms)")
+                }
+                usages.each { usage ->
+                    tr {
+                        td(usage.consumer)
+                        td(usage.quota)
+                        td(usage.inFlight)
+                        td(usage.peakInFlight)
+                        td(usage.requests)
+                        td(usage.rejected)
+                        td(usage.getAverageTime(TimeUnit.MILLISECONDS))
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Andreas Alanko, Emil Nilsson, Sony Mobile Communications AB.
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.gitlab.gitlabapi.GitLabDiagnosticsLink
+
+import java.util.concurrent.TimeUnit
+
+def l = namespace("/lib/layout")
+
+def hitRate = { cache ->
+    def hits = cache.freshHits + cache.staleHits
+    def lookups = hits + cache.misses
+    lookups > 0 ? String.format("%.1f %%", 100.0 * hits / lookups) : "-"
+}
+
+l.layout(title: my.displayName, permission: app.ADMINISTER) {
+    l.header {
+        meta("http-equiv": "refresh", content: "${my.REFRESH_INTERVAL}")
+    }
+    l.main_panel {
+        h1(my.displayName)
+
+        def servers = my.servers
+        if (servers.isEmpty()) {
+            p("No GitLab server is configured.")
+        }
+        servers.each { server ->
+            h2("Server ${server.name}")
+
+            def client = server.client
+            if (client == null) {
+                p("The client hasn't been created yet.")
+            } else {
+                def scheduler = client.scheduler
+                p("Requests in flight: ${scheduler.inFlight} of ${scheduler.limit} let through at once")
+
+                h3("Connection pool")
+                table(class: "pane bigtable") {
+                    tr {
+                        th("Route")
+                        th("Leased")
+                        th("Available")
+                        th("Pending")
+                        th("Max")
+                    }
+                    server.routePoolStats.each { route, stats ->
+                        tr {
+                            td(route)
+                            td(stats.leased)
+                            td(stats.available)
+                            td(stats.pending)
+                            td(stats.max)
+                        }
+                    }
+                }
+
+                def readEndpoints = server.readEndpoints
+                if (!readEndpoints.isEmpty()) {
+                    h3("Read servers")
+                    table(class: "pane bigtable") {
+                        tr {
+                            th("Host")
+                            th("Circuit")
+                            th("In flight")
+                            th("Latency (ms)")
+                            th("Requests")
+                            th("Errors")
+                        }
+                        readEndpoints.each { endpoint ->
+                            tr {
+                                td(endpoint.host)
+                                td(endpoint.healthy ? "closed" : "open")
+                                td(endpoint.inFlight)
+                                td(endpoint.getLatency(TimeUnit.MILLISECONDS))
+                                td(endpoint.requests)
+                                td(endpoint.errors)
+                            }
+                        }
+                    }
+                }
+            }
+
+            def cache = server.cache
+            if (cache != null) {
+                h3("Lookup cache")
+                table(class: "pane bigtable") {
+                    tr {
+                        th("Cache")
+                        th("Entries")
+                        th("Fresh hits")
+                        th("Stale hits")
+                        th("Misses")
+                        th("Hit rate")
+                    }
+                    ["Users": cache.userCache, "Groups": cache.groupCache,
+                            "Group members": cache.groupMembersCache].each { name, refreshingCache ->
+                        tr {
+                            td(name)
+                            td(refreshingCache.size())
+                            td(refreshingCache.freshHits)
+                            td(refreshingCache.staleHits)
+                            td(refreshingCache.misses)
+                            td(hitRate(refreshingCache))
+                        }
+                    }
+                }
+            }
+
+            def usages = server.usages
+            if (!usages.isEmpty()) {
+                h3("Consumer quotas")
+                table(class: "pane bigtable") {
+                    tr {
+                        th("Consumer")
+                        th("Quota")
+                        th("In flight")
+                        th("Requests available")
+                        th("Rejected")
+                    }
+                    usages.each { usage ->
+                        def available = usage.availableRequests
+                        tr {
+                            td(usage.consumer)
+                            td(usage.quota)
+                            td(usage.inFlight)
+                            td(available.isInfinite() ? "unlimited" : String.format("%.1f", available))
+                            td(usage.rejected)
+                        }
+                    }
+                }
+            }
+
+            h3("Recent errors")
+            def errors = server.recentErrors
+            if (errors.isEmpty()) {
+                p("No errors have been recorded.")
+            } else {
+                p("Showing the ${errors.size()} most recent of ${server.errorCount} errors.")
+                table(class: "pane bigtable") {
+                    tr {
+                        th("Time")
+                        th("Endpoint")
+                        th("Status")
+                        th("Message")
+                    }
+                    errors.each { error ->
+                        tr {
+                            td(new Date(error.time))
+                            td(error.template)
+                            td(error.status > 0 ? error.status : "no response")
+                            td(error.message ?: "")
+                        }
+                    }
+                }
+            }
+
+            h3("Request trace")
+            def trace = server.trace
+            p {
+                text("The last ${Math.min(trace.recordCount, (long) trace.capacity)} of ${trace.recordCount} requests are kept: ")
+                a(href: "trace", "view")
+                text(" or ")
+                a(href: "trace?download", "download")
+                text(" the requests of all servers.")
+            }
+        }
+    }
+}